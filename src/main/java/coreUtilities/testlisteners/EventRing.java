@@ -0,0 +1,263 @@
+package coreUtilities.testlisteners;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free ring of events with many producers and one consumer
+ * thread that hands each event, in order, to a handler.
+ *
+ * Each slot carries a sequence number: a producer claims the next slot with a
+ * single compare-and-set on the tail and publishes by advancing the slot's
+ * sequence, and the consumer frees the slot by advancing it again a lap
+ * ahead. Producers never take a lock or wait for one another; they only wait
+ * when the ring is full, which is the back-pressure. {@link #offer(Object,
+ * long)} gives up after a while and counts the event as dropped,
+ * {@link #put(Object)} waits for as long as it takes.
+ *
+ * @param <E> - Event type; events should be immutable, as the consumer reads
+ *            them on another thread.
+ */
+public class EventRing<E> {
+
+	private static final long STALL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final String name;
+	private final int mask;
+	private final AtomicReferenceArray<E> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong handled = new AtomicLong();
+	private final Consumer<E> handler;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder stalls = new LongAdder();
+	private final LongAdder stallNanos = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+	private volatile Thread consumer;
+	private volatile boolean idle;
+
+	/**
+	 * @param name     - Name of the consumer thread.
+	 * @param capacity - Slots, rounded up to a power of two.
+	 * @param handler  - Called on the consumer thread for every event; an
+	 *                 exception it throws is printed and counted, and the
+	 *                 next event handled.
+	 */
+	public EventRing(String name, int capacity, Consumer<E> handler) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.name = name;
+		this.mask = size - 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.handler = handler;
+	}
+
+	/**
+	 * Starts the consumer thread, a daemon, so a suite that ends without
+	 * draining the ring does not keep the JVM up.
+	 *
+	 * @return EventRing - This ring.
+	 */
+	public synchronized EventRing<E> start() {
+		if (consumer == null) {
+			Thread thread = new Thread(this::consume, name);
+			thread.setDaemon(true);
+			consumer = thread;
+			thread.start();
+		}
+		return this;
+	}
+
+	/**
+	 * Publishes an event, waiting for a free slot if the ring is full.
+	 *
+	 * @param event - The event.
+	 */
+	public void put(E event) {
+		offer(event, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Publishes an event, waiting at most the given time for a free slot.
+	 *
+	 * @param event         - The event.
+	 * @param timeoutMillis - Longest time to wait if the ring is full.
+	 *
+	 * @return boolean - false if the event was dropped.
+	 */
+	public boolean offer(E event, long timeoutMillis) {
+		if (tryOffer(event)) {
+			return true;
+		}
+		stalls.increment();
+		long started = System.nanoTime();
+		long timeoutNanos = timeoutMillis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE
+				: TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		try {
+			while (System.nanoTime() - started < timeoutNanos) {
+				wake();
+				LockSupport.parkNanos(STALL_PARK_NANOS);
+				if (tryOffer(event)) {
+					return true;
+				}
+			}
+		} finally {
+			stallNanos.add(System.nanoTime() - started);
+		}
+		dropped.increment();
+		return false;
+	}
+
+	private boolean tryOffer(E event) {
+		while (true) {
+			long position = tail.get();
+			int index = (int) (position & mask);
+			long gap = sequences.get(index) - position;
+			if (gap < 0) {
+				return false;
+			}
+			if (gap == 0 && tail.compareAndSet(position, position + 1)) {
+				slots.lazySet(index, event);
+				sequences.set(index, position + 1);
+				published.increment();
+				maxDepth.accumulate(position + 1 - head.get());
+				wake();
+				return true;
+			}
+		}
+	}
+
+	private E poll() {
+		long position = head.get();
+		int index = (int) (position & mask);
+		if (sequences.get(index) != position + 1) {
+			return null;
+		}
+		E event = slots.get(index);
+		slots.lazySet(index, null);
+		head.set(position + 1);
+		sequences.set(index, position + mask + 1);
+		return event;
+	}
+
+	private void wake() {
+		Thread thread = consumer;
+		if (idle && thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	private void consume() {
+		while (true) {
+			E event = poll();
+			if (event == null) {
+				idle = true;
+				if (sequences.get((int) (head.get() & mask)) != head.get() + 1) {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+				idle = false;
+				continue;
+			}
+			try {
+				handler.accept(event);
+			} catch (Throwable e) {
+				failures.increment();
+				System.out.println("Unable to handle " + event + " on " + name + ": " + e);
+			}
+			handled.lazySet(handled.get() + 1);
+		}
+	}
+
+	/**
+	 * Waits until the consumer has handled every event published so far.
+	 *
+	 * @param timeoutMillis - Longest time to wait.
+	 *
+	 * @return boolean - true if the ring was drained in time.
+	 */
+	public boolean awaitDrained(long timeoutMillis) {
+		long target = tail.get();
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (handled.get() < target) {
+			if (System.currentTimeMillis() >= deadline || consumer == null) {
+				return false;
+			}
+			wake();
+			LockSupport.parkNanos(STALL_PARK_NANOS);
+		}
+		return true;
+	}
+
+	/**
+	 * @return long - Events in the ring, not yet taken by the consumer.
+	 */
+	public long getDepth() {
+		return tail.get() - head.get();
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	public long getPublished() {
+		return published.sum();
+	}
+
+	/**
+	 * @return long - Publishes that found the ring full and had to wait.
+	 */
+	public long getStalls() {
+		return stalls.sum();
+	}
+
+	/**
+	 * @return long - Time producers spent waiting for a free slot, in total.
+	 */
+	public long getStallMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(stallNanos.sum());
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return long - Events whose handler threw.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * @return long - Most events ever waiting in the ring at once.
+	 */
+	public long getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * @return String - e.g. "test-events: 240 published, 0 dropped, 3 stalls
+	 *         (12 ms), max depth 1024/1024, 0 handler failures".
+	 */
+	@Override
+	public String toString() {
+		return name + ": " + getPublished() + " published, " + getDropped() + " dropped, " + getStalls()
+				+ " stalls (" + getStallMillis() + " ms), max depth " + getMaxDepth() + "/" + getCapacity() + ", "
+				+ getFailures() + " handler failures";
+	}
+}
@@ -0,0 +1,106 @@
+package coreUtilities.testlisteners;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+
+import rest.ApiUtil;
+import rest.load.WorkloadDefinition;
+import rest.stub.DatasetSnapshot;
+import rest.stub.HealthAppStubServer;
+import rest.stub.StubParityCheck;
+import rest.stub.StubParityCheck.EndpointParity;
+
+/**
+ * Starts the embedded HealthApp stub server and points ApiUtil at it when the
+ * testng "environment" parameter is "stub", so the suite runs offline. Any other
+ * environment leaves ApiUtil on its configured base URL. The server is stopped
+ * when the suite finishes. The optional "dataset" parameter names a
+ * {@link DatasetSnapshot} for the stub to serve (e.g. "prod-like"), so
+ * benchmark runs see identical data; it overrides stub.snapshot.
+ *
+ * With environment "parity" the suite itself runs against live as usual while
+ * a {@link StubParityCheck} compares live and stub answers in the background;
+ * its report is printed and written to TestReport/parity.json when the suite
+ * finishes.
+ */
+public class StubServerListener implements ITestListener, ISuiteListener {
+
+	public static final String STUB_ENVIRONMENT = "stub";
+	public static final String PARITY_ENVIRONMENT = "parity";
+	public static final String DATASET_PARAMETER = "dataset";
+
+	private static HealthAppStubServer server;
+	private static String previousBaseUrl;
+	private static CompletableFuture<List<EndpointParity>> parity;
+
+	public synchronized void onStart(ITestContext context) {
+		String environment = context.getCurrentXmlTest().getParameter("environment");
+		boolean stub = STUB_ENVIRONMENT.equalsIgnoreCase(environment);
+		if (!stub && !PARITY_ENVIRONMENT.equalsIgnoreCase(environment) || server != null) {
+			return;
+		}
+		String dataset = context.getCurrentXmlTest().getParameter(DATASET_PARAMETER);
+		try {
+			HealthAppStubServer configured = HealthAppStubServer.fromConfig();
+			if (dataset != null && !dataset.trim().isEmpty()) {
+				DatasetSnapshot.install(configured, dataset.trim());
+			}
+			server = configured.start();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to start the HealthApp stub server", e);
+		}
+		previousBaseUrl = ApiUtil.getBaseUrl();
+		if (stub) {
+			ApiUtil.setBaseUrl(server.getBaseUrl());
+			System.out.println("Running against the HealthApp stub at " + server.getBaseUrl()
+					+ (dataset == null || dataset.trim().isEmpty() ? "" : " with dataset " + dataset.trim()));
+			return;
+		}
+		String stubBaseUrl = server.getBaseUrl();
+		parity = CompletableFuture.supplyAsync(() -> {
+			try {
+				return new StubParityCheck(WorkloadDefinition.load(StubParityCheck.DEFAULT_WORKLOAD),
+						previousBaseUrl, stubBaseUrl).run();
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to load " + StubParityCheck.DEFAULT_WORKLOAD, e);
+			}
+		});
+		System.out.println("Checking stub parity against " + previousBaseUrl + " in the background");
+	}
+
+	public synchronized void onFinish(ISuite suite) {
+		if (parity != null) {
+			try {
+				List<EndpointParity> results = parity.join();
+				StubParityCheck.printReport(results);
+				File report = StubParityCheck.defaultReportFile();
+				StubParityCheck.writeReport(results, report);
+				System.out.println("Parity report written to " + report.getPath());
+			} catch (RuntimeException | IOException e) {
+				// a broken parity check must not fail the suite it ran alongside
+				System.out.println("Stub parity check failed: " + e.getMessage());
+			}
+			parity = null;
+		}
+		if (server != null) {
+			server.stop();
+			server = null;
+			ApiUtil.setBaseUrl(previousBaseUrl);
+		}
+	}
+
+	/**
+	 * @return HealthAppStubServer - The running stub, or null when the suite is
+	 *         not in the stub environment.
+	 */
+	public static synchronized HealthAppStubServer getServer() {
+		return server;
+	}
+}
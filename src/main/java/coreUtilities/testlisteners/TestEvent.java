@@ -0,0 +1,159 @@
+package coreUtilities.testlisteners;
+
+import coreUtilities.testutils.JournalFilter;
+import coreUtilities.testutils.ResourceUsage;
+import coreUtilities.testutils.TestWatchdog;
+
+/**
+ * One listener callback, captured on the test thread and handed to the
+ * reporting thread through {@link EventRing}. Immutable, so it needs no
+ * locking on either side.
+ */
+public final class TestEvent {
+
+	public enum Type {
+		STARTED, PASSED, FAILED, SKIPPED, OVERRUN, HTTP
+	}
+
+	private final Type type;
+	private final long testId;
+	private final String methodName;
+	private final String description;
+	private final Throwable throwable;
+	private final String threadName;
+	private final long timeMillis;
+	private final ResourceUsage usage;
+	private final TestWatchdog.Overrun overrun;
+	private final JournalFilter.Exchange exchange;
+
+	/**
+	 * @param type        - What happened.
+	 * @param testId      - Ties a test's outcome to its start.
+	 * @param methodName  - The test method.
+	 * @param description - Its @Test description.
+	 * @param throwable   - Why it failed or was skipped; may be null.
+	 */
+	public TestEvent(Type type, long testId, String methodName, String description, Throwable throwable) {
+		this(type, testId, methodName, description, throwable, null);
+	}
+
+	/**
+	 * @param type        - What happened.
+	 * @param testId      - Ties a test's outcome to its start.
+	 * @param methodName  - The test method.
+	 * @param description - Its @Test description.
+	 * @param throwable   - Why it failed or was skipped; may be null.
+	 * @param usage       - What the test cost, measured on its thread; null
+	 *                    for a start event. Not changed once published.
+	 */
+	public TestEvent(Type type, long testId, String methodName, String description, Throwable throwable,
+			ResourceUsage usage) {
+		this.type = type;
+		this.testId = testId;
+		this.methodName = methodName;
+		this.description = description;
+		this.throwable = throwable;
+		this.threadName = Thread.currentThread().getName();
+		this.timeMillis = System.currentTimeMillis();
+		this.usage = usage;
+		this.overrun = null;
+		this.exchange = null;
+	}
+
+	/**
+	 * An OVERRUN event, published by the watchdog while the test still runs.
+	 *
+	 * @param overrun - What the watchdog found.
+	 */
+	public TestEvent(TestWatchdog.Overrun overrun) {
+		this.type = Type.OVERRUN;
+		this.testId = overrun.getTestId();
+		this.methodName = overrun.getTest();
+		this.description = null;
+		this.throwable = null;
+		this.threadName = overrun.getThreadName();
+		this.timeMillis = System.currentTimeMillis();
+		this.usage = null;
+		this.overrun = overrun;
+		this.exchange = null;
+	}
+
+	/**
+	 * An HTTP event, published by {@link JournalFilter} on the thread that
+	 * made the request.
+	 *
+	 * @param exchange - The request and its response.
+	 */
+	public TestEvent(JournalFilter.Exchange exchange) {
+		this.type = Type.HTTP;
+		this.testId = exchange.getTestId();
+		this.methodName = null;
+		this.description = null;
+		this.throwable = null;
+		this.threadName = Thread.currentThread().getName();
+		this.timeMillis = exchange.getAtMillis();
+		this.usage = null;
+		this.overrun = null;
+		this.exchange = exchange;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public long getTestId() {
+		return testId;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	/**
+	 * @return String - The test thread the callback came on, or the overrunning
+	 *         test's thread.
+	 */
+	public String getThreadName() {
+		return threadName;
+	}
+
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+
+	/**
+	 * @return ResourceUsage - What the test cost; null for a start event.
+	 */
+	public ResourceUsage getUsage() {
+		return usage;
+	}
+
+	/**
+	 * @return TestWatchdog.Overrun - What the watchdog found; null unless
+	 *         OVERRUN.
+	 */
+	public TestWatchdog.Overrun getOverrun() {
+		return overrun;
+	}
+
+	/**
+	 * @return JournalFilter.Exchange - The request and its response; null
+	 *         unless HTTP.
+	 */
+	public JournalFilter.Exchange getExchange() {
+		return exchange;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + methodName + " #" + testId;
+	}
+}
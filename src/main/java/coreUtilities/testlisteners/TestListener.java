@@ -1,79 +1,335 @@
 package coreUtilities.testlisteners;
 
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestResult;
 
 import com.aventstack.extentreports.ExtentReports;
 import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.markuputils.MarkupHelper;
 
+import restConfig.ConfigManager;
+
+import coreUtilities.testutils.JournalFilter;
+import coreUtilities.testutils.ResourceLedger;
+import coreUtilities.testutils.ResourceUsage;
+import coreUtilities.testutils.ResultAggregator;
+import coreUtilities.testutils.RunJournal;
+import coreUtilities.testutils.TestRegistry;
+import coreUtilities.testutils.TestWatchdog;
 import coreUtilities.utils.ExtentReportManager;
-import static coreUtilities.testutils.TestUtils.businessTestFile;
-import static coreUtilities.testutils.TestUtils.currentTest;
+import coreUtilities.utils.IncrementalReport;
+import static coreUtilities.testutils.TestUtils.flushResults;
+import static coreUtilities.testutils.TestUtils.outcomes;
+import static coreUtilities.testutils.TestUtils.progress;
+import static coreUtilities.testutils.TestUtils.resultFile;
 import static coreUtilities.testutils.TestUtils.yakshaAssert;
+import static coreUtilities.testutils.TestUtils.yakshaSkip;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 
-public class TestListener implements ITestListener
+public class TestListener implements ITestListener, ISuiteListener
 {
 
-	//Extent Report Declarations
-    private static ExtentReports extent = ExtentReportManager.createInstance();
-    private static ThreadLocal<ExtentTest> test = new ThreadLocal<ExtentTest>();
+    private static final long RESULT_FLUSH_MILLIS = 30000;
+    private static final String TEST_ID = "testListener.testId";
+    private static final String USAGE_SAMPLE = "testListener.usageSample";
+    private static final int USAGE_ROWS = 50;
+
+    // what each test cost the client, measured on its own thread (see ResourceUsage)
+    private static final ResourceLedger ledger = new ResourceLedger();
+
+    // with report.mode=incremental finished tests go to disk as they come, instead of
+    // an Extent report that holds every test until the end
+    private static final IncrementalReport report = IncrementalReport.fromConfig();
+    private static Map<Long, Long> startedMillis = new ConcurrentHashMap<Long, Long>();
+
+    // with report.mode=journal the run is only journaled, with its HTTP calls, and the
+    // report is rendered after the run by JournalReport
+    private static final RunJournal journal = report == null ? RunJournal.fromConfig() : null;
+
+    //Extent Report Declarations
+    private static ExtentReports extent = report == null && journal == null ? ExtentReportManager.createInstance() : null;
+    private static Map<Long, ExtentTest> tests = new ConcurrentHashMap<Long, ExtentTest>();
+
+    // test threads only publish events; the "test-events" thread does the console,
+    // Extent and result work, so parallel tests never wait on each other's reporting.
+    // A full ring holds outcome events back until there is room and drops start events
+    // after listener.events.drop.millis; their Extent test is then created with the outcome.
+    private static final long DROP_MILLIS = Long.parseLong(ConfigManager.getProperty("listener.events.drop.millis", "100"));
+    private static final AtomicLong testIds = new AtomicLong();
+    private static final EventRing<TestEvent> events = new EventRing<TestEvent>("test-events",
+            Integer.parseInt(ConfigManager.getProperty("listener.events.capacity", "1024")), TestListener::handle).start();
+
+    // HTTP calls reach the journal through the ring too, so a test thread's request never
+    // waits on the journal's lock or its flush; like start events they are dropped when
+    // the ring stays full
+    static {
+        if (journal != null) {
+            JournalFilter.install(exchange -> events.offer(new TestEvent(exchange), DROP_MILLIS));
+        }
+    }
+
+    // reports a test running far longer than it usually does, with a thread dump and the
+    // ApiUtil request it waits on, instead of leaving a suite that never finishes
+    private static final TestWatchdog watchdog = TestWatchdog.fromConfig(
+            overrun -> events.put(new TestEvent(overrun)));
  
     public synchronized void onStart(ITestContext context) {
         System.out.println("Extent Reports Version 3 Test Suite started!");
+        outcomes.start();
+        outcomes.expect(context.getAllTestMethods().length);
     }
  
     public synchronized void onFinish(ITestContext context) {
+        if (!events.awaitDrained(RESULT_FLUSH_MILLIS)) {
+            System.out.println("Test events were still being reported after " + RESULT_FLUSH_MILLIS + " ms");
+        }
         System.out.println(("Extent Reports Version 3  Test Suite is ending!"));
-        extent.flush();
+        System.out.println("Progress: " + progress());
+        System.out.println("Events: " + events);
+        try {
+            if (report != null) {
+                report.flush();
+            } else if (journal != null) {
+                journal.flush();
+            } else {
+                extent.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to write the report: " + e);
+        }
+    }
+
+    // test metadata is worked out here, once, rather than on every result
+    public void onStart(ISuite suite) {
+        TestRegistry.register(suite.getAllMethods());
+    }
+
+    public void onFinish(ISuite suite) {
+        if (watchdog != null) {
+            watchdog.close();
+        }
+        events.awaitDrained(RESULT_FLUSH_MILLIS);
+        if (!flushResults(RESULT_FLUSH_MILLIS)) {
+            System.out.println("Test results were still being pushed after " + RESULT_FLUSH_MILLIS + " ms");
+        }
+        writeUsage();
+        if (report != null) {
+            report.close();
+        }
+        if (journal != null) {
+            journal.close();
+            System.out.println("Run journal written to " + journal.getFile()
+                    + "; render it with java coreUtilities.utils.JournalReport " + journal.getFile());
+        }
     }
  
-    public synchronized void onTestStart(ITestResult result) {
-        System.out.println((result.getMethod().getMethodName() + " started!"));
-        ExtentTest extentTest = extent.createTest(result.getMethod().getMethodName(),result.getMethod().getDescription());
-        test.set(extentTest);
+    public void onTestStart(ITestResult result) {
+        // a watchdog interrupt an earlier test on this pooled thread never noticed
+        Thread.interrupted();
+        TestRegistry.begin(result.getMethod().getMethodName());
+        TestEvent started = event(TestEvent.Type.STARTED, result);
+        JournalFilter.testStarted(started.getTestId());
+        events.offer(started, DROP_MILLIS);
+        result.setAttribute(USAGE_SAMPLE, ResourceUsage.sample());
+        if (watchdog != null) {
+            watchdog.started(started.getTestId(), started.getMethodName());
+        }
     }
  
-    public synchronized void onTestSuccess(ITestResult result) {
-       System.out.println((result.getMethod().getMethodName() + " passed!"));
-        test.get().pass("Test passed");
-        try {
-            yakshaAssert(result.getMethod().getMethodName(), true, businessTestFile);
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+    public void onTestSuccess(ITestResult result) {
+        ResourceUsage usage = usage(result, ResultAggregator.Status.PASSED);
+        TestRegistry.end();
+        JournalFilter.testEnded();
+        TestEvent passed = event(TestEvent.Type.PASSED, result, usage);
+        if (watchdog != null) {
+            watchdog.finished(passed.getTestId(), true);
         }
+        events.put(passed);
     }
  
-    public synchronized void onTestFailure(ITestResult result) {
-        System.out.println((result.getMethod().getMethodName() + " failed!"));
-        System.out.println(result.getThrowable().toString());
+    public void onTestFailure(ITestResult result) {
+        ResourceUsage usage = usage(result, ResultAggregator.Status.FAILED);
+        TestRegistry.end();
+        JournalFilter.testEnded();
+        TestEvent failed = event(TestEvent.Type.FAILED, result, usage);
+        if (watchdog != null) {
+            watchdog.finished(failed.getTestId(), false);
+        }
+        events.put(failed);
+    }
+ 
+    public void onTestSkipped(ITestResult result) {
+        ResourceUsage usage = usage(result, ResultAggregator.Status.SKIPPED);
+        TestRegistry.end();
+        JournalFilter.testEnded();
+        TestEvent skipped = event(TestEvent.Type.SKIPPED, result, usage);
+        if (watchdog != null) {
+            watchdog.finished(skipped.getTestId(), false);
+        }
+        events.put(skipped);
+    }
+ 
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        System.out.println(("onTestFailedButWithinSuccessPercentage for " + result.getMethod().getMethodName()));
+    }	
+
+    private static TestEvent event(TestEvent.Type type, ITestResult result) {
+        return event(type, result, null);
+    }
+
+    // a test skipped before it started has no id yet
+    private static TestEvent event(TestEvent.Type type, ITestResult result, ResourceUsage usage) {
+        Object id = result.getAttribute(TEST_ID);
+        if (id == null) {
+            id = testIds.incrementAndGet();
+            result.setAttribute(TEST_ID, id);
+        }
+        return new TestEvent(type, (Long) id, result.getMethod().getMethodName(), result.getMethod().getDescription(),
+                result.getThrowable(), usage);
+    }
+
+    // null for a test skipped before it started
+    private static ResourceUsage usage(ITestResult result, ResultAggregator.Status status) {
+        Object sample = result.getAttribute(USAGE_SAMPLE);
+        if (!(sample instanceof long[])) {
+            return null;
+        }
+        ResourceUsage usage = ResourceUsage.since((long[]) sample);
+        usage.setTest(result.getMethod().getMethodName());
+        usage.setStatus(status.name());
+        return usage;
+    }
+
+    private static void writeUsage() {
+        File file = ResourceLedger.configuredFile();
         try {
-            yakshaAssert(result.getMethod().getMethodName(), false, businessTestFile);
+            ledger.write(file);
         } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            System.out.println("Unable to write " + file + ": " + e);
+        }
+        String[][] costliest = ledger.table(USAGE_ROWS);
+        System.out.println("Most expensive tests (resource usage of all " + ledger.size() + " in " + file + "):");
+        for (int i = 1; i < Math.min(6, costliest.length); i++) {
+            System.out.println("  " + String.join(" | ", costliest[i]));
+        }
+        if (extent != null) {
+            extent.createTest("Resource usage by cost", "The " + USAGE_ROWS + " most expensive tests, by CPU time")
+                    .info(MarkupHelper.createTable(costliest));
+            extent.flush();
         }
-        test.get().fail(result.getThrowable());
     }
- 
-    public synchronized void onTestSkipped(ITestResult result) {
-        System.out.println((result.getMethod().getMethodName() + " skipped!"));
+
+    // runs on the test-events thread only
+    private static void handle(TestEvent event) {
+        String name = event.getMethodName();
         try {
-            yakshaAssert(result.getMethod().getMethodName(), false, businessTestFile);
+            switch (event.getType()) {
+            case STARTED:
+                System.out.println((name + " started!"));
+                started(event);
+                break;
+            case PASSED:
+                System.out.println((name + " passed!"));
+                yakshaAssert(name, true, resultFileOf(name));
+                finished(event, ResultAggregator.Status.PASSED);
+                break;
+            case FAILED:
+                System.out.println((name + " failed!"));
+                System.out.println(event.getThrowable().toString());
+                yakshaAssert(name, false, resultFileOf(name));
+                finished(event, ResultAggregator.Status.FAILED);
+                break;
+            case SKIPPED:
+                System.out.println((name + " skipped!"));
+                yakshaSkip(name, resultFileOf(name));
+                finished(event, ResultAggregator.Status.SKIPPED);
+                break;
+            case OVERRUN:
+                System.out.println(("Watchdog: " + event.getOverrun()));
+                overrun(event);
+                break;
+            case HTTP:
+                journal.http(event.getExchange());
+                break;
+            }
         } catch (IOException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
         }
-        test.get().skip(result.getThrowable());
     }
- 
-    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
-        System.out.println(("onTestFailedButWithinSuccessPercentage for " + result.getMethod().getMethodName()));
-    }	
+
+    private static void started(TestEvent event) {
+        if (report != null) {
+            startedMillis.put(event.getTestId(), event.getTimeMillis());
+        } else if (journal != null) {
+            journal.started(event.getTestId(), TestRegistry.lookup(event.getMethodName()), event.getDescription(),
+                    event.getTimeMillis(), event.getThreadName());
+        } else {
+            extentTest(event);
+        }
+    }
+
+    private static void finished(TestEvent event, ResultAggregator.Status status) {
+        ResourceUsage usage = event.getUsage();
+        if (usage != null) {
+            ledger.add(usage);
+        }
+        if (report != null) {
+            Long started = startedMillis.remove(event.getTestId());
+            report.add(event.getMethodName(), event.getDescription(), status,
+                    started == null ? event.getTimeMillis() : started, event.getTimeMillis(), event.getThrowable(), usage);
+            return;
+        }
+        if (journal != null) {
+            journal.ended(event.getTestId(), event.getMethodName(), status, event.getTimeMillis(), event.getThrowable(),
+                    usage);
+            return;
+        }
+        ExtentTest extentTest = extentTest(event);
+        if (usage != null) {
+            extentTest.info(MarkupHelper.createTable(usage.toTable()));
+        }
+        if (status == ResultAggregator.Status.PASSED) {
+            extentTest.pass("Test passed");
+        } else if (status == ResultAggregator.Status.FAILED) {
+            extentTest.fail(event.getThrowable());
+        } else {
+            extentTest.skip(event.getThrowable());
+        }
+        tests.remove(event.getTestId());
+    }
+
+    private static void overrun(TestEvent event) {
+        TestWatchdog.Overrun overrun = event.getOverrun();
+        if (report != null) {
+            report.overrun(overrun);
+        } else if (journal != null) {
+            journal.overrun(overrun);
+        } else {
+            ExtentTest extentTest = extentTest(event);
+            extentTest.warning("Watchdog: " + overrun);
+            extentTest.info(MarkupHelper.createCodeBlock(overrun.getThreadDump()));
+            extent.flush();
+        }
+    }
+
+    private static ExtentTest extentTest(TestEvent event) {
+        return tests.computeIfAbsent(event.getTestId(),
+                id -> extent.createTest(event.getMethodName(), event.getDescription()));
+    }
+
+    private static File resultFileOf(String methodName) {
+        return resultFile(TestRegistry.lookup(methodName).getTestType());
+    }
 
 }
\ No newline at end of file
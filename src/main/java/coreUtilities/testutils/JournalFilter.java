@@ -0,0 +1,132 @@
+package coreUtilities.testutils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+/**
+ * RestAssured filter that captures every request's method, URL, status, time
+ * and response size as an {@link Exchange}, under the id of the test running
+ * on the calling thread, and hands it to a sink. The sink should only queue
+ * it, e.g. for the listener's reporting thread to write to the
+ * {@link RunJournal}, so test threads never wait on the journal.
+ */
+public class JournalFilter implements Filter {
+
+	private static final ThreadLocal<Long> runningTest = new ThreadLocal<Long>();
+
+	private final Consumer<Exchange> sink;
+
+	/**
+	 * @param sink - Called on the requesting thread with each exchange.
+	 */
+	public JournalFilter(Consumer<Exchange> sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Adds a filter handing exchanges to the given sink to RestAssured's
+	 * global filters.
+	 *
+	 * @param sink - Called on the requesting thread with each exchange.
+	 */
+	public static void install(Consumer<Exchange> sink) {
+		RestAssured.filters(new JournalFilter(sink));
+	}
+
+	/**
+	 * One HTTP exchange, captured on the test thread. Immutable, so it can be
+	 * journaled on another thread.
+	 */
+	public static final class Exchange {
+		private final long testId;
+		private final String method;
+		private final String url;
+		private final int status;
+		private final long millis;
+		private final long bytes;
+		private final long atMillis = System.currentTimeMillis();
+
+		/**
+		 * @param testId - The test that made it, 0 if none.
+		 * @param method - HTTP method.
+		 * @param url    - Request URL.
+		 * @param status - Response status, 0 if there was no response.
+		 * @param millis - Time to the response.
+		 * @param bytes  - Response body size.
+		 */
+		public Exchange(long testId, String method, String url, int status, long millis, long bytes) {
+			this.testId = testId;
+			this.method = method;
+			this.url = url;
+			this.status = status;
+			this.millis = millis;
+			this.bytes = bytes;
+		}
+
+		public long getTestId() {
+			return testId;
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return long - When the response came back.
+		 */
+		public long getAtMillis() {
+			return atMillis;
+		}
+	}
+
+	/**
+	 * @param testId - The listener's id of the test starting on this thread.
+	 */
+	public static void testStarted(long testId) {
+		runningTest.set(testId);
+	}
+
+	public static void testEnded() {
+		runningTest.remove();
+	}
+
+	@Override
+	public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+			FilterContext ctx) {
+		Long testId = runningTest.get();
+		long start = System.nanoTime();
+		Response response = null;
+		try {
+			response = ctx.next(requestSpec, responseSpec);
+			return response;
+		} finally {
+			long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			sink.accept(new Exchange(testId == null ? 0 : testId, requestSpec.getMethod(), requestSpec.getURI(),
+					response == null ? 0 : response.getStatusCode(), millis,
+					response == null ? 0 : response.asByteArray().length));
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package coreUtilities.testutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import restConfig.ConfigManager;
+
+/**
+ * Every test's {@link ResourceUsage} for the run, ranked by cost for the
+ * reports and written to report.usage as a JSON array, most expensive first.
+ */
+public class ResourceLedger {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final ConcurrentLinkedQueue<ResourceUsage> usages = new ConcurrentLinkedQueue<>();
+
+	public void add(ResourceUsage usage) {
+		usages.add(usage);
+	}
+
+	/**
+	 * @return List - Every usage added, most expensive first.
+	 */
+	public List<ResourceUsage> byCost() {
+		List<ResourceUsage> ranked = new ArrayList<>(usages);
+		ranked.sort(ResourceUsage.BY_COST);
+		return ranked;
+	}
+
+	/**
+	 * @param limit - Most rows to include.
+	 *
+	 * @return String[][] - A header row and one row per test, most expensive
+	 *         first, e.g. for an Extent table.
+	 */
+	public String[][] table(int limit) {
+		List<ResourceUsage> ranked = byCost();
+		int rows = Math.min(limit, ranked.size());
+		String[][] table = new String[rows + 1][];
+		String[] header = new ResourceUsage().toTable()[0];
+		table[0] = concat(new String[] { "Test", "Status" }, header);
+		for (int i = 0; i < rows; i++) {
+			ResourceUsage usage = ranked.get(i);
+			table[i + 1] = concat(new String[] { usage.getTest(), usage.getStatus() }, usage.toTable()[1]);
+		}
+		return table;
+	}
+
+	private static String[] concat(String[] first, String[] second) {
+		String[] row = new String[first.length + second.length];
+		System.arraycopy(first, 0, row, 0, first.length);
+		System.arraycopy(second, 0, row, first.length, second.length);
+		return row;
+	}
+
+	/**
+	 * Writes the ranked usages as a JSON array.
+	 *
+	 * @param file - Where to write them.
+	 * @throws IOException - If the file cannot be written.
+	 */
+	public void write(File file) throws IOException {
+		if (file.getAbsoluteFile().getParentFile() != null) {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		}
+		MAPPER.writeValue(file, byCost());
+	}
+
+	/**
+	 * @return File - report.usage from config.properties, by default
+	 *         TestReport/resource-usage.json.
+	 */
+	public static File configuredFile() {
+		return new File(ConfigManager.getProperty("report.usage", "TestReport/resource-usage.json"));
+	}
+
+	public int size() {
+		return usages.size();
+	}
+}
@@ -0,0 +1,210 @@
+package coreUtilities.testutils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Comparator;
+import java.util.List;
+
+import rest.ApiTraffic;
+
+/**
+ * What one test cost the client: wall time, the CPU time and heap its thread
+ * used, the garbage collections while it ran and its ApiUtil traffic.
+ *
+ * Take a {@link #sample()} on the test thread when the test starts and call
+ * {@link #since(long[])} on the same thread when it ends. CPU, allocation and
+ * traffic belong to the test thread alone; GC counts and time are JVM-wide,
+ * so with parallel tests they include collections caused by other tests.
+ * Measures the JVM cannot take are reported as -1.
+ */
+public class ResourceUsage {
+
+	/** Most expensive first: CPU time, then bytes allocated, then wall time. */
+	public static final Comparator<ResourceUsage> BY_COST = Comparator.comparingLong(ResourceUsage::getCpuMillis)
+			.thenComparingLong(ResourceUsage::getAllocatedBytes).thenComparingLong(ResourceUsage::getWallMillis)
+			.reversed();
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+	private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported()
+			&& enable(() -> THREADS.setThreadCpuTimeEnabled(true));
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+	private String test;
+	private String status;
+	private long wallMillis;
+	private long cpuMillis;
+	private long allocatedBytes;
+	private long gcCount;
+	private long gcMillis;
+	private long bytesSent;
+	private long bytesReceived;
+
+	private static boolean enable(Runnable setting) {
+		try {
+			setting.run();
+			return true;
+		} catch (UnsupportedOperationException | SecurityException e) {
+			return false;
+		}
+	}
+
+	// HotSpot's extension; absent on other JVMs
+	private static com.sun.management.ThreadMXBean allocations() {
+		try {
+			if (THREADS instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+				if (threads.isThreadAllocatedMemorySupported()
+						&& enable(() -> threads.setThreadAllocatedMemoryEnabled(true))) {
+					return threads;
+				}
+			}
+		} catch (NoClassDefFoundError e) {
+			// not a HotSpot JVM
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the calling thread's counters.
+	 *
+	 * @return long[] - A sample to pass to {@link #since(long[])} later on the
+	 *         same thread.
+	 */
+	public static long[] sample() {
+		long gcCount = 0;
+		long gcMillis = 0;
+		for (GarbageCollectorMXBean collector : COLLECTORS) {
+			gcCount += Math.max(0, collector.getCollectionCount());
+			gcMillis += Math.max(0, collector.getCollectionTime());
+		}
+		return new long[] { System.nanoTime(), CPU_TIME ? THREADS.getCurrentThreadCpuTime() : -1,
+				ALLOCATIONS != null ? ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1,
+				gcCount, gcMillis, ApiTraffic.sentBytes(), ApiTraffic.receivedBytes() };
+	}
+
+	/**
+	 * @param start - A {@link #sample()} taken on this thread when the test
+	 *              started.
+	 *
+	 * @return ResourceUsage - What the thread used since.
+	 */
+	public static ResourceUsage since(long[] start) {
+		long[] end = sample();
+		ResourceUsage usage = new ResourceUsage();
+		usage.wallMillis = (end[0] - start[0]) / 1000000;
+		usage.cpuMillis = start[1] < 0 ? -1 : (end[1] - start[1]) / 1000000;
+		usage.allocatedBytes = start[2] < 0 ? -1 : end[2] - start[2];
+		usage.gcCount = end[3] - start[3];
+		usage.gcMillis = end[4] - start[4];
+		usage.bytesSent = end[5] - start[5];
+		usage.bytesReceived = end[6] - start[6];
+		return usage;
+	}
+
+	/**
+	 * @return String[][] - A header row and a value row, e.g. for an Extent
+	 *         table.
+	 */
+	public String[][] toTable() {
+		return new String[][] {
+				{ "Wall ms", "CPU ms", "Allocated bytes", "GCs", "GC ms", "Bytes sent", "Bytes received" },
+				{ String.valueOf(wallMillis), String.valueOf(cpuMillis), String.valueOf(allocatedBytes),
+						String.valueOf(gcCount), String.valueOf(gcMillis), String.valueOf(bytesSent),
+						String.valueOf(bytesReceived) } };
+	}
+
+	/**
+	 * @return String - e.g. "wall 312 ms, cpu 40 ms, 12345678 B allocated, 1
+	 *         GC (3 ms), 512 B sent, 20480 B received".
+	 */
+	@Override
+	public String toString() {
+		return "wall " + wallMillis + " ms, cpu " + cpuMillis + " ms, " + allocatedBytes + " B allocated, " + gcCount
+				+ " GC (" + gcMillis + " ms), " + bytesSent + " B sent, " + bytesReceived + " B received";
+	}
+
+	public String getTest() {
+		return test;
+	}
+
+	public void setTest(String test) {
+		this.test = test;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public long getWallMillis() {
+		return wallMillis;
+	}
+
+	public void setWallMillis(long wallMillis) {
+		this.wallMillis = wallMillis;
+	}
+
+	/**
+	 * @return long - CPU time of the test thread; -1 if the JVM cannot
+	 *         measure it.
+	 */
+	public long getCpuMillis() {
+		return cpuMillis;
+	}
+
+	public void setCpuMillis(long cpuMillis) {
+		this.cpuMillis = cpuMillis;
+	}
+
+	/**
+	 * @return long - Heap allocated by the test thread; -1 if the JVM cannot
+	 *         measure it.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public void setAllocatedBytes(long allocatedBytes) {
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @return long - Collections in the whole JVM while the test ran.
+	 */
+	public long getGcCount() {
+		return gcCount;
+	}
+
+	public void setGcCount(long gcCount) {
+		this.gcCount = gcCount;
+	}
+
+	public long getGcMillis() {
+		return gcMillis;
+	}
+
+	public void setGcMillis(long gcMillis) {
+		this.gcMillis = gcMillis;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	public void setBytesSent(long bytesSent) {
+		this.bytesSent = bytesSent;
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	public void setBytesReceived(long bytesReceived) {
+		this.bytesReceived = bytesReceived;
+	}
+}
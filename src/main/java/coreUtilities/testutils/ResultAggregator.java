@@ -0,0 +1,153 @@
+package coreUtilities.testutils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free tallies of test outcomes, overall and per group, for any number
+ * of test threads. Every count is a {@link LongAdder}, which stripes its cells
+ * across contending threads, so recording an outcome never waits for another
+ * test. {@link #progress()} turns the tallies into a {@link TestProgress}
+ * snapshot with rate, ETA and the most recent failures, which reporters can
+ * poll while the suite runs.
+ */
+public class ResultAggregator {
+
+	public enum Status {
+		PASSED, FAILED, SKIPPED
+	}
+
+	static final int RECENT_FAILURES = 20;
+
+	private final LongAdder[] totals = adders();
+	private final Map<String, LongAdder[]> groups = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<String> recentFailures = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger recentFailureCount = new AtomicInteger();
+	private final AtomicLong startedMillis = new AtomicLong();
+	private final AtomicInteger expected = new AtomicInteger();
+
+	private static LongAdder[] adders() {
+		LongAdder[] adders = new LongAdder[Status.values().length];
+		for (int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	/**
+	 * Starts the clock for rate and ETA, unless it is already running.
+	 */
+	public void start() {
+		startedMillis.compareAndSet(0, System.currentTimeMillis());
+	}
+
+	/**
+	 * @param tests - Further tests the suite is going to run, added to the
+	 *              expected total used for the ETA.
+	 */
+	public void expect(int tests) {
+		expected.addAndGet(tests);
+	}
+
+	/**
+	 * Counts one outcome.
+	 *
+	 * @param testName - The test, kept for the recent failures.
+	 * @param group    - What to aggregate it under, e.g. the TestNG group.
+	 * @param status   - Its outcome.
+	 */
+	public void record(String testName, String group, Status status) {
+		start();
+		totals[status.ordinal()].increment();
+		groups.computeIfAbsent(group, g -> adders())[status.ordinal()].increment();
+		if (status != Status.PASSED) {
+			recentFailures.add(testName);
+			if (recentFailureCount.incrementAndGet() > RECENT_FAILURES) {
+				recentFailures.poll();
+				recentFailureCount.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @param status - An outcome.
+	 *
+	 * @return long - Tests recorded with it so far.
+	 */
+	public long count(Status status) {
+		return totals[status.ordinal()].sum();
+	}
+
+	/**
+	 * @return long - Tests recorded so far.
+	 */
+	public long total() {
+		long total = 0;
+		for (LongAdder adder : totals) {
+			total += adder.sum();
+		}
+		return total;
+	}
+
+	/**
+	 * Takes a snapshot. Counts are read without stopping the writers, so a
+	 * snapshot taken mid-run may be one or two outcomes behind.
+	 *
+	 * @return TestProgress - Counts, rate, ETA and recent failures as of now.
+	 */
+	public TestProgress progress() {
+		TestProgress progress = new TestProgress();
+		long passed = count(Status.PASSED);
+		long failed = count(Status.FAILED);
+		long skipped = count(Status.SKIPPED);
+		long completed = passed + failed + skipped;
+		long started = startedMillis.get();
+		long elapsed = started == 0 ? 0 : Math.max(1, System.currentTimeMillis() - started);
+		progress.setPassed(passed);
+		progress.setFailed(failed);
+		progress.setSkipped(skipped);
+		progress.setCompleted(completed);
+		progress.setExpected(expected.get());
+		progress.setElapsedMillis(elapsed);
+		double rate = elapsed == 0 ? 0 : completed * 1000.0 / elapsed;
+		progress.setTestsPerSecond(rate);
+		long remaining = expected.get() - completed;
+		progress.setEtaSeconds(remaining <= 0 ? 0 : rate > 0 ? Math.round(remaining / rate) : -1);
+		List<String> failures = new ArrayList<>(recentFailures);
+		progress.setRecentFailures(failures);
+		Map<String, Map<Status, Long>> byGroup = new LinkedHashMap<>();
+		Iterator<Map.Entry<String, LongAdder[]>> entries = groups.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<String, LongAdder[]> entry = entries.next();
+			Map<Status, Long> counts = new LinkedHashMap<>();
+			for (Status status : Status.values()) {
+				counts.put(status, entry.getValue()[status.ordinal()].sum());
+			}
+			byGroup.put(entry.getKey(), counts);
+		}
+		progress.setGroups(byGroup);
+		return progress;
+	}
+
+	/**
+	 * Clears every count, the clock and the expected total.
+	 */
+	public void reset() {
+		for (LongAdder adder : totals) {
+			adder.reset();
+		}
+		groups.clear();
+		recentFailures.clear();
+		recentFailureCount.set(0);
+		startedMillis.set(0);
+		expected.set(0);
+	}
+}
@@ -0,0 +1,438 @@
+package coreUtilities.testutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import restConfig.ConfigManager;
+
+/**
+ * Pushes yakshaAssert results to the results URL from one background thread,
+ * so a test thread only pays for an enqueue. Results wait in a bounded queue;
+ * the sender takes whatever has accumulated, up to {@code batchSize}, and posts
+ * the batch back to back over a kept-alive connection. The push endpoint takes
+ * one result per request, so a batch shares a connection and a wake-up rather
+ * than a request body. {@link #flush(long)} waits for everything queued so far
+ * to be sent; a shutdown hook flushes whatever a suite did not.
+ *
+ * With a {@link ResultSpool}, every batch is spooled (one fsync) before it is
+ * sent and acked once delivered. Each result carries a random id, sent as the
+ * Idempotency-Key header on every attempt, so the receiver can ignore repeats.
+ * Results the endpoint did not take stay pending in the spool and are replayed
+ * when the sender is idle, every {@value #REPLAY_INTERVAL_MILLIS} ms, and at
+ * the start of the next run; replaying stops at the first failure, since the
+ * endpoint is evidently still unreachable. To drain a spool by hand:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; coreUtilities.testutils.ResultPublisher [spool] [url]
+ * </pre>
+ *
+ * With {@link #streamTo(StreamingResultUploader)} the batches go out over
+ * one gzip NDJSON upload instead, and are acked when the upload ends.
+ *
+ * When the queue is full the result is spooled directly if there is a spool,
+ * and otherwise dropped with the usual "Unable to push" warning, rather than
+ * stalling the test that produced it.
+ *
+ * It does not touch {@link TestUtils}, whose initialisation starts the
+ * suite's own publisher on the configured spool; a second publisher on the
+ * same spool would send every pending result twice.
+ */
+public class ResultPublisher {
+
+	public static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+	public static final String DEFAULT_SPOOL = "results-spool.ndjson";
+	public static final String DEFAULT_URL = "https://compiler.techademy.com/v1/mfa-results/push";
+	static final long REPLAY_INTERVAL_MILLIS = 30000;
+	private static final int TIMEOUT_MILLIS = 10000;
+	private static final long SHUTDOWN_FLUSH_MILLIS = 10000;
+	private static final String TEXT_RESET = "\033[0m";
+	private static final String RED_BOLD_BRIGHT = "\033[1;91m";
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final String url;
+	private final BlockingQueue<ResultSpool.Record> queue;
+	private final int batchSize;
+	private final ResultSpool spool;
+	private StreamingResultUploader uploader;
+	private volatile boolean undelivered;
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong replayed = new AtomicLong();
+	private final Object idle = new Object();
+
+	/**
+	 * @param url       - The results push URL.
+	 * @param capacity  - Results that may wait to be sent.
+	 * @param batchSize - Most results sent per wake-up of the sender.
+	 * @param spool     - Where results are kept until delivered; null to keep
+	 *                  them in memory only.
+	 */
+	public ResultPublisher(String url, int capacity, int batchSize, ResultSpool spool) {
+		this.url = url;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = Math.max(1, batchSize);
+		this.spool = spool;
+	}
+
+	/**
+	 * Sends results over one streamed upload instead of a POST each; they count
+	 * as delivered when {@link #flush(long)} ends the upload. Replays still
+	 * POST to the push URL.
+	 *
+	 * @param uploader - The upload to use, or null to POST each result.
+	 *
+	 * @return ResultPublisher - This publisher.
+	 */
+	public ResultPublisher streamTo(StreamingResultUploader uploader) {
+		this.uploader = uploader;
+		return this;
+	}
+
+	/**
+	 * Starts the sender thread, which first replays whatever an earlier run
+	 * left in the spool, and registers the shutdown flush.
+	 *
+	 * @return ResultPublisher - This publisher.
+	 */
+	public ResultPublisher start() {
+		Thread sender = new Thread(this::sendLoop, "result-publisher");
+		sender.setDaemon(true);
+		sender.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(SHUTDOWN_FLUSH_MILLIS)));
+		return this;
+	}
+
+	/**
+	 * Queues a result for sending; never waits for the network.
+	 *
+	 * @param results - The payload to post.
+	 *
+	 * @return boolean - false if the queue was full, in which case the result
+	 *         was spooled for a later replay, or dropped without a spool.
+	 */
+	public boolean publish(TestResults results) {
+		ResultSpool.Record record = new ResultSpool.Record(UUID.randomUUID().toString(), results);
+		pending.incrementAndGet();
+		if (queue.offer(record)) {
+			return true;
+		}
+		done(1);
+		if (spool != null) {
+			try {
+				spool.append(Collections.singletonList(record));
+				undelivered = true;
+				warn("queue full, spooled for replay", results);
+				return false;
+			} catch (IOException e) {
+				// fall through to dropping it
+			}
+		}
+		dropped.incrementAndGet();
+		warn("queue full", results);
+		return false;
+	}
+
+	/**
+	 * Waits until every result queued before the call has been sent (or has
+	 * failed to send), ends a streamed upload, then drops the delivered results
+	 * from the spool.
+	 *
+	 * @param timeoutMillis - Longest time to wait.
+	 *
+	 * @return boolean - true if nothing is left to send.
+	 */
+	public boolean flush(long timeoutMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		synchronized (idle) {
+			while (pending.get() > 0) {
+				long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (left <= 0) {
+					return false;
+				}
+				try {
+					idle.wait(left);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		if (uploader != null && uploader.isOpen()) {
+			List<String> delivered = uploader.finish();
+			if (delivered.isEmpty()) {
+				undelivered = spool != null;
+			}
+			sent.addAndGet(delivered.size());
+			acknowledge(delivered);
+		}
+		if (spool != null && !undelivered) {
+			try {
+				spool.compact();
+			} catch (IOException e) {
+				System.out.println("Unable to compact the result spool " + spool.getFile() + ": " + e);
+			}
+		}
+		return true;
+	}
+
+	private void sendLoop() {
+		replayPending();
+		List<ResultSpool.Record> batch = new ArrayList<>(batchSize);
+		while (true) {
+			ResultSpool.Record first;
+			try {
+				first = queue.poll(REPLAY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (first == null) {
+				if (undelivered) {
+					replayPending();
+				}
+				continue;
+			}
+			batch.add(first);
+			queue.drainTo(batch, batchSize - 1);
+			try {
+				deliver(batch);
+			} catch (RuntimeException e) {
+				failed.incrementAndGet();
+				warn(e.toString(), first.getResults());
+			}
+			done(batch.size());
+			batch.clear();
+		}
+	}
+
+	private void deliver(List<ResultSpool.Record> batch) {
+		if (spool != null) {
+			try {
+				spool.append(batch);
+			} catch (IOException e) {
+				System.out.println("Unable to spool test results to " + spool.getFile() + ": " + e);
+			}
+		}
+		if (uploader != null) {
+			try {
+				uploader.write(batch);
+			} catch (IOException e) {
+				failed.addAndGet(batch.size());
+				undelivered = spool != null;
+				warn(e.toString(), batch.get(0).getResults());
+			}
+			return;
+		}
+		List<String> delivered = new ArrayList<>(batch.size());
+		for (ResultSpool.Record record : batch) {
+			if (send(record, true)) {
+				delivered.add(record.getId());
+			} else {
+				undelivered = spool != null;
+			}
+		}
+		acknowledge(delivered);
+	}
+
+	/**
+	 * Sends every result still pending in the spool, oldest first, stopping at
+	 * the first that the endpoint does not take.
+	 *
+	 * @return int - Results still pending afterwards.
+	 */
+	public int replayPending() {
+		if (spool == null) {
+			return 0;
+		}
+		try {
+			List<ResultSpool.Record> records = spool.pending();
+			List<String> delivered = new ArrayList<>();
+			for (ResultSpool.Record record : records) {
+				if (!send(record, false)) {
+					break;
+				}
+				delivered.add(record.getId());
+			}
+			acknowledge(delivered);
+			replayed.addAndGet(delivered.size());
+			int left = records.size() - delivered.size();
+			if (left == 0) {
+				spool.compact();
+			} else {
+				System.out.println(left + " test results remain spooled in " + spool.getFile()
+						+ "; the push endpoint is unreachable");
+			}
+			undelivered = left > 0;
+			return left;
+		} catch (IOException e) {
+			System.out.println("Unable to replay test results from " + spool.getFile() + ": " + e);
+			return -1;
+		}
+	}
+
+	private void acknowledge(List<String> ids) {
+		if (spool != null) {
+			try {
+				spool.ack(ids);
+			} catch (IOException e) {
+				// an unacked result is resent and ignored by id, never lost
+				System.out.println("Unable to ack test results in " + spool.getFile() + ": " + e);
+			}
+		}
+	}
+
+	private void done(int count) {
+		if (pending.addAndGet(-count) == 0) {
+			synchronized (idle) {
+				idle.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return boolean - Whether the endpoint took the result.
+	 */
+	private boolean send(ResultSpool.Record record, boolean warn) {
+		TestResults results = record.getResults();
+		HttpURLConnection conn = null;
+		try {
+			conn = (HttpURLConnection) new URL(url).openConnection();
+			conn.setConnectTimeout(TIMEOUT_MILLIS);
+			conn.setReadTimeout(TIMEOUT_MILLIS);
+			conn.setDoOutput(true);
+			conn.setRequestMethod("POST");
+			conn.setRequestProperty("Content-Type", "application/json");
+			conn.setRequestProperty(IDEMPOTENCY_HEADER, record.getId());
+			try (OutputStream os = conn.getOutputStream()) {
+				os.write(MAPPER.writeValueAsBytes(results));
+			}
+			int responseCode = conn.getResponseCode();
+			// reading the reply to the end lets the connection be reused
+			drain(responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream());
+			if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_CREATED) {
+				sent.incrementAndGet();
+				return true;
+			}
+			if (warn) {
+				failed.incrementAndGet();
+				warn(String.valueOf(responseCode), results);
+			}
+			return false;
+		} catch (IOException e) {
+			if (warn) {
+				failed.incrementAndGet();
+				warn(e.toString(), results);
+			}
+			if (conn != null) {
+				conn.disconnect();
+			}
+			return false;
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		if (in == null) {
+			return;
+		}
+		try (InputStream input = in) {
+			byte[] buffer = new byte[1024];
+			while (input.read(buffer) != -1) {
+				// discard
+			}
+		}
+	}
+
+	private static void warn(String reason, TestResults results) {
+		int length = results.getCustomData() == null ? 0 : results.getCustomData().length();
+		System.out.println(RED_BOLD_BRIGHT + "⚠️ Unable to push test cases,please try again! [" + reason
+				+ "|" + results.getHostName() + "|" + results.getAttemptId() + "|" + length + "]"
+				+ TEXT_RESET);
+	}
+
+	/**
+	 * @return String - results.push.url from config.properties, or
+	 *         {@link #DEFAULT_URL}.
+	 */
+	public static String configuredUrl() {
+		return ConfigManager.getProperty("results.push.url", DEFAULT_URL);
+	}
+
+	/**
+	 * @return StreamingResultUploader - An upload to results.stream.url when
+	 *         results.upload is "stream", otherwise null (a POST per result).
+	 */
+	public static StreamingResultUploader configuredUploader() {
+		if (!"stream".equalsIgnoreCase(ConfigManager.getProperty("results.upload", "post"))) {
+			return null;
+		}
+		String streamUrl = ConfigManager.getProperty("results.stream.url", null);
+		if (streamUrl == null) {
+			System.out.println("results.upload=stream needs results.stream.url; posting each result instead");
+			return null;
+		}
+		return new StreamingResultUploader(streamUrl);
+	}
+
+	/**
+	 * @return String - results.spool from config.properties, or
+	 *         {@link #DEFAULT_SPOOL} in the working directory.
+	 */
+	public static String configuredSpool() {
+		return ConfigManager.getProperty("results.spool", DEFAULT_SPOOL);
+	}
+
+	/**
+	 * @return long - Results queued or being sent.
+	 */
+	public long getPending() {
+		return pending.get();
+	}
+
+	public long getSent() {
+		return sent.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return long - Spooled results delivered by a replay.
+	 */
+	public long getReplayed() {
+		return replayed.get();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 2) {
+			System.out.println("Usage: ResultPublisher [spool] [url]");
+			System.exit(2);
+		}
+		ResultSpool spool = new ResultSpool(new File(args.length > 0 ? args[0] : configuredSpool()));
+		String url = args.length > 1 ? args[1] : configuredUrl();
+		int total = spool.pending().size();
+		int left = new ResultPublisher(url, 1, 1, spool).replayPending();
+		spool.close();
+		System.out.println("Replayed " + (total - left) + " of " + total + " spooled test results to " + url);
+		System.exit(left == 0 ? 0 : 1);
+	}
+}
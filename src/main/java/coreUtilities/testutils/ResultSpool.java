@@ -0,0 +1,254 @@
+package coreUtilities.testutils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Append-only local log of test results, so a result survives a slow or
+ * unreachable push endpoint and even a crashed JVM. One JSON line per event:
+ *
+ * <pre>
+ * {"op":"result","id":"3f0c...","at":1718000000000,"results":{...TestResults...}}
+ * {"op":"ack","id":"3f0c..."}
+ * </pre>
+ *
+ * A result is pending until an ack with its id follows it. Results are
+ * appended in batches with one fsync per batch; acks are not forced, since a
+ * lost ack only means the result is sent again and the id makes the receiver
+ * ignore the repeat. A line cut short by a crash is skipped on reading.
+ * {@link #compact()} rewrites the file with the pending results only, or
+ * empties it when nothing is pending.
+ */
+public class ResultSpool {
+
+	public static final String OP_RESULT = "result";
+	public static final String OP_ACK = "ack";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final File file;
+	private FileChannel channel;
+
+	/**
+	 * Opens a spool, creating the file if it does not exist.
+	 *
+	 * @param file - The spool file.
+	 * @throws IOException - If the file cannot be opened for appending.
+	 */
+	public ResultSpool(File file) throws IOException {
+		this.file = file;
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		channel = open();
+		endTornLine();
+	}
+
+	/**
+	 * Terminates a line left unfinished by a crash, so the next append starts
+	 * on a line of its own.
+	 */
+	private void endTornLine() throws IOException {
+		long size = channel.size();
+		if (size == 0) {
+			return;
+		}
+		ByteBuffer last = ByteBuffer.allocate(1);
+		try (FileChannel reader = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			reader.read(last, size - 1);
+		}
+		if (last.get(0) != '\n') {
+			write(new StringBuilder("\n"));
+		}
+	}
+
+	private FileChannel open() throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Appends results and forces them to disk with a single fsync.
+	 *
+	 * @param records - Results to spool, each with its id.
+	 * @throws IOException - If the spool cannot be written.
+	 */
+	public synchronized void append(Collection<Record> records) throws IOException {
+		if (records.isEmpty()) {
+			return;
+		}
+		StringBuilder lines = new StringBuilder();
+		for (Record record : records) {
+			record.setOp(OP_RESULT);
+			lines.append(MAPPER.writeValueAsString(record)).append('\n');
+		}
+		write(lines);
+		channel.force(false);
+	}
+
+	/**
+	 * Marks results as delivered.
+	 *
+	 * @param ids - Ids of the delivered results.
+	 * @throws IOException - If the spool cannot be written.
+	 */
+	public synchronized void ack(Collection<String> ids) throws IOException {
+		if (ids.isEmpty()) {
+			return;
+		}
+		StringBuilder lines = new StringBuilder();
+		for (String id : ids) {
+			Record ack = new Record();
+			ack.setOp(OP_ACK);
+			ack.setId(id);
+			lines.append(MAPPER.writeValueAsString(ack)).append('\n');
+		}
+		write(lines);
+	}
+
+	private void write(StringBuilder lines) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * @return List - Results without an ack, oldest first.
+	 * @throws IOException - If the spool cannot be read.
+	 */
+	public synchronized List<Record> pending() throws IOException {
+		Map<String, Record> pending = new LinkedHashMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Record record;
+				try {
+					record = MAPPER.readValue(line, Record.class);
+				} catch (IOException e) {
+					continue; // torn write at a crash
+				}
+				if (record.getId() == null) {
+					continue;
+				}
+				if (OP_ACK.equals(record.getOp())) {
+					pending.remove(record.getId());
+				} else if (record.getResults() != null) {
+					pending.put(record.getId(), record);
+				}
+			}
+		}
+		return new ArrayList<>(pending.values());
+	}
+
+	/**
+	 * Drops delivered results from the file.
+	 *
+	 * @return int - Results still pending.
+	 * @throws IOException - If the spool cannot be rewritten.
+	 */
+	public synchronized int compact() throws IOException {
+		List<Record> pending = pending();
+		if (pending.isEmpty()) {
+			channel.truncate(0);
+			return 0;
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		StringBuilder lines = new StringBuilder();
+		for (Record record : pending) {
+			lines.append(MAPPER.writeValueAsString(record)).append('\n');
+		}
+		Files.write(temp.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+		try (FileChannel forced = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+			forced.force(true);
+		}
+		channel.close();
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = open();
+		return pending.size();
+	}
+
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * One spool line: a result with its id, or the ack of one.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_DEFAULT)
+	public static class Record {
+
+		private String op;
+		private String id;
+		private long at;
+		private TestResults results;
+
+		public Record() {
+		}
+
+		/**
+		 * @param id      - Idempotency key sent with every delivery attempt.
+		 * @param results - The payload.
+		 */
+		public Record(String id, TestResults results) {
+			this.id = id;
+			this.at = System.currentTimeMillis();
+			this.results = results;
+		}
+
+		public String getOp() {
+			return op;
+		}
+
+		public void setOp(String op) {
+			this.op = op;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		/**
+		 * @return long - When the result was produced, in epoch milliseconds.
+		 */
+		public long getAt() {
+			return at;
+		}
+
+		public void setAt(long at) {
+			this.at = at;
+		}
+
+		public TestResults getResults() {
+			return results;
+		}
+
+		public void setResults(TestResults results) {
+			this.results = results;
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package coreUtilities.testutils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import restConfig.ConfigManager;
+
+/**
+ * Append-only journal of a run, one JSON object per line, so the test JVM
+ * only writes a few hundred bytes per test and the report is rendered
+ * afterwards by {@link coreUtilities.utils.JournalReport}.
+ *
+ * <pre>
+ * {"e":"run","v":1,"at":1718000000000,"host":"..."}
+ * {"e":"start","id":7,"test":"getAllItemsTest","class":"testcases.X","type":"functional","group":"PL2","at":...,"thread":"TestNG-1","desc":"..."}
+ * {"e":"http","id":7,"method":"GET","url":"https://.../api/...","status":200,"ms":41,"bytes":5120,"at":...}
+ * {"e":"overrun","id":7,"test":"getAllItemsTest","ms":95000,"limitMs":30000,"usualMs":1200,"request":"GET https://... sent at ...","interrupted":false,"dump":"...","at":...}
+ * {"e":"end","id":7,"test":"getAllItemsTest","status":"FAILED","at":...,"ms":312,"cpuMs":40,"alloc":12345678,"gc":1,"gcMs":3,"sent":512,"recv":20480,"error":"java.lang.AssertionError: ...","trace":"..."}
+ * {"e":"finish","at":...}
+ * </pre>
+ *
+ * The end line carries the test's {@link ResourceUsage} when it was measured;
+ * an overrun line is written by the {@link TestWatchdog} while a test runs
+ * far longer than usual, so a hung test leaves its thread dump behind.
+ * "id" ties a test's start, HTTP calls and end together; an http line has id
+ * 0 when it was made outside a test. Lines are buffered and pushed to the
+ * file once a second while they keep coming, at the end of each test context
+ * and on exit, so an aborted run leaves a journal that is complete up to
+ * then; a reader should skip a torn last line.
+ */
+public class RunJournal {
+
+	public static final int VERSION = 1;
+	private static final long FLUSH_MILLIS = 1000;
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private final File file;
+	private final Writer writer;
+	private final JsonGenerator json;
+	private final Map<Long, Long> startedMillis = new ConcurrentHashMap<>();
+	private long flushedMillis = System.currentTimeMillis();
+	private long lines;
+	private boolean closed;
+
+	/**
+	 * Starts a journal, replacing any earlier one at the same path.
+	 *
+	 * @param file - The journal file.
+	 * @throws IOException - If it cannot be created.
+	 */
+	public RunJournal(File file) throws IOException {
+		if (file.getAbsoluteFile().getParentFile() != null) {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		}
+		this.file = file;
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8),
+				64 * 1024);
+		this.json = JSON.createGenerator(writer);
+		json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+		json.setRootValueSeparator(null);
+		synchronized (this) {
+			json.writeStartObject();
+			json.writeStringField("e", "run");
+			json.writeNumberField("v", VERSION);
+			json.writeNumberField("at", System.currentTimeMillis());
+			json.writeStringField("host", System.getenv("HOSTNAME"));
+			endLine();
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "run-journal-flush"));
+	}
+
+	/**
+	 * @return RunJournal - A journal at report.journal when report.mode is
+	 *         "journal", otherwise null.
+	 */
+	public static RunJournal fromConfig() {
+		if (!"journal".equalsIgnoreCase(ConfigManager.getProperty("report.mode", "extent"))) {
+			return null;
+		}
+		File file = new File(ConfigManager.getProperty("report.journal", "TestReport/run-journal.jsonl"));
+		try {
+			RunJournal journal = new RunJournal(file);
+			System.out.println("Run journal: " + file + " (render it with coreUtilities.utils.JournalReport)");
+			return journal;
+		} catch (IOException e) {
+			System.out.println("Unable to open the run journal " + file + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Journals a test starting.
+	 *
+	 * @param testId      - The listener's id for this run of the test.
+	 * @param metadata    - The test.
+	 * @param description - Its @Test description.
+	 * @param atMillis    - When it started.
+	 * @param threadName  - The thread it runs on.
+	 */
+	public synchronized void started(long testId, TestMetadata metadata, String description, long atMillis,
+			String threadName) {
+		if (closed) {
+			return;
+		}
+		startedMillis.put(testId, atMillis);
+		try {
+			json.writeStartObject();
+			json.writeStringField("e", "start");
+			json.writeNumberField("id", testId);
+			json.writeStringField("test", metadata.getMethodName());
+			json.writeStringField("class", metadata.getClassName());
+			json.writeStringField("type", metadata.getTestType());
+			json.writeStringField("group", metadata.getGroup());
+			json.writeNumberField("at", atMillis);
+			json.writeStringField("thread", threadName);
+			if (description != null && !description.isEmpty()) {
+				json.writeStringField("desc", description);
+			}
+			endLine();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * Journals a test's outcome.
+	 *
+	 * @param testId    - The id it started with.
+	 * @param testName  - The test.
+	 * @param status    - Its outcome.
+	 * @param atMillis  - When it finished.
+	 * @param throwable - Why it failed or was skipped; may be null.
+	 * @param usage     - What the test cost; may be null.
+	 */
+	public synchronized void ended(long testId, String testName, ResultAggregator.Status status, long atMillis,
+			Throwable throwable, ResourceUsage usage) {
+		if (closed) {
+			return;
+		}
+		Long started = startedMillis.remove(testId);
+		try {
+			json.writeStartObject();
+			json.writeStringField("e", "end");
+			json.writeNumberField("id", testId);
+			json.writeStringField("test", testName);
+			json.writeStringField("status", status.name());
+			json.writeNumberField("at", atMillis);
+			json.writeNumberField("ms", started == null ? 0 : atMillis - started);
+			if (usage != null) {
+				json.writeNumberField("cpuMs", usage.getCpuMillis());
+				json.writeNumberField("alloc", usage.getAllocatedBytes());
+				json.writeNumberField("gc", usage.getGcCount());
+				json.writeNumberField("gcMs", usage.getGcMillis());
+				json.writeNumberField("sent", usage.getBytesSent());
+				json.writeNumberField("recv", usage.getBytesReceived());
+			}
+			if (throwable != null) {
+				StringWriter trace = new StringWriter();
+				throwable.printStackTrace(new PrintWriter(trace));
+				json.writeStringField("error", throwable.toString());
+				json.writeStringField("trace", trace.toString());
+			}
+			endLine();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * Journals a test found running past its watchdog limit.
+	 *
+	 * @param overrun - What the watchdog found.
+	 */
+	public synchronized void overrun(TestWatchdog.Overrun overrun) {
+		if (closed) {
+			return;
+		}
+		try {
+			json.writeStartObject();
+			json.writeStringField("e", "overrun");
+			json.writeNumberField("id", overrun.getTestId());
+			json.writeStringField("test", overrun.getTest());
+			json.writeNumberField("ms", overrun.getElapsedMillis());
+			json.writeNumberField("limitMs", overrun.getLimitMillis());
+			json.writeNumberField("usualMs", overrun.getUsualMillis());
+			if (overrun.getRequest() != null) {
+				json.writeStringField("request", overrun.getRequest());
+			}
+			json.writeBooleanField("interrupted", overrun.isInterrupted());
+			json.writeStringField("dump", overrun.getThreadDump());
+			json.writeNumberField("at", System.currentTimeMillis());
+			endLine();
+			// a hung test may be the last thing this run journals
+			flush();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * Journals one HTTP exchange. Called on the listener's reporting thread,
+	 * not on the test thread that made the request.
+	 *
+	 * @param exchange - The exchange, as {@link JournalFilter} captured it.
+	 */
+	public synchronized void http(JournalFilter.Exchange exchange) {
+		if (closed) {
+			return;
+		}
+		try {
+			json.writeStartObject();
+			json.writeStringField("e", "http");
+			json.writeNumberField("id", exchange.getTestId());
+			json.writeStringField("method", exchange.getMethod());
+			json.writeStringField("url", exchange.getUrl());
+			json.writeNumberField("status", exchange.getStatus());
+			json.writeNumberField("ms", exchange.getMillis());
+			json.writeNumberField("bytes", exchange.getBytes());
+			json.writeNumberField("at", exchange.getAtMillis());
+			endLine();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	private void endLine() throws IOException {
+		json.writeEndObject();
+		json.writeRaw('\n');
+		lines++;
+		long now = System.currentTimeMillis();
+		if (now - flushedMillis >= FLUSH_MILLIS) {
+			flush();
+			flushedMillis = now;
+		}
+	}
+
+	// a journal that cannot be written must not fail the test being reported
+	private void failed(IOException e) {
+		System.out.println("Unable to write the run journal " + file + ": " + e.getMessage());
+	}
+
+	/**
+	 * Pushes buffered lines to the file.
+	 *
+	 * @throws IOException - If they cannot be written.
+	 */
+	public synchronized void flush() throws IOException {
+		if (!closed) {
+			json.flush();
+			writer.flush();
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * Writes the finish line and closes the journal.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			json.writeStartObject();
+			json.writeStringField("e", "finish");
+			json.writeNumberField("at", System.currentTimeMillis());
+			endLine();
+			flush();
+			closed = true;
+			json.close();
+			writer.close();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return long - Lines written, the run line included.
+	 */
+	public synchronized long getLines() {
+		return lines;
+	}
+}
@@ -0,0 +1,189 @@
+package coreUtilities.testutils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Uploads results as one long-lived request instead of a POST per test: a
+ * chunked, gzip-compressed body of newline-delimited JSON records.
+ *
+ * <pre>
+ * {"type":"header","hostName":"...","attemptId":"...","customData":"...","filePath":"..."}
+ * {"type":"result","id":"3f0c...","at":1718000000000,"testCaseResults":"{...}"}
+ * {"type":"result",...}
+ * </pre>
+ *
+ * The metadata every TestResults envelope repeats is sent once, in a header
+ * record that applies to the results after it; a new header is sent only if
+ * the metadata changes. A header plus a result record is exactly the
+ * envelope a POST would have carried. Each {@link #write(List)} ends with a
+ * gzip sync flush, so a batch is on the wire as one chunk rather than waiting
+ * for the compressor's window to fill. {@link #finish()} ends the request and
+ * reports whether the receiver took it; until then nothing counts as
+ * delivered.
+ */
+public class StreamingResultUploader {
+
+	public static final String CONTENT_TYPE = "application/x-ndjson";
+	public static final String TYPE_HEADER = "header";
+	public static final String TYPE_RESULT = "result";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final int CHUNK_BYTES = 8192;
+	private static final int TIMEOUT_MILLIS = 30000;
+
+	private final String url;
+	private HttpURLConnection conn;
+	private Writer writer;
+	private TestResults lastHeader;
+	private final List<String> written = new ArrayList<>();
+
+	/**
+	 * @param url - Where to open the upload, e.g. the stub's
+	 *            /__results/stream.
+	 */
+	public StreamingResultUploader(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Appends results to the open upload, opening one first if needed.
+	 *
+	 * @param records - Results to send, in order.
+	 * @throws IOException - If the upload cannot be opened or written; it is
+	 *                     then abandoned, and none of its results count as
+	 *                     delivered.
+	 */
+	public synchronized void write(List<ResultSpool.Record> records) throws IOException {
+		try {
+			if (writer == null) {
+				open();
+			}
+			for (ResultSpool.Record record : records) {
+				TestResults results = record.getResults();
+				if (!sameMetadata(lastHeader, results)) {
+					Map<String, Object> header = new LinkedHashMap<>();
+					header.put("type", TYPE_HEADER);
+					header.put("hostName", results.getHostName());
+					header.put("attemptId", results.getAttemptId());
+					header.put("customData", results.getCustomData());
+					header.put("filePath", results.getFilePath());
+					line(header);
+					lastHeader = results;
+				}
+				Map<String, Object> result = new LinkedHashMap<>();
+				result.put("type", TYPE_RESULT);
+				result.put("id", record.getId());
+				result.put("at", record.getAt());
+				result.put("testCaseResults", results.getTestCaseResults());
+				line(result);
+				written.add(record.getId());
+			}
+			writer.flush();
+		} catch (IOException e) {
+			abandon();
+			throw e;
+		}
+	}
+
+	private void open() throws IOException {
+		conn = (HttpURLConnection) new URL(url).openConnection();
+		conn.setConnectTimeout(TIMEOUT_MILLIS);
+		conn.setReadTimeout(TIMEOUT_MILLIS);
+		conn.setDoOutput(true);
+		conn.setRequestMethod("POST");
+		conn.setChunkedStreamingMode(CHUNK_BYTES);
+		conn.setRequestProperty("Content-Type", CONTENT_TYPE);
+		conn.setRequestProperty("Content-Encoding", "gzip");
+		OutputStream body = new GZIPOutputStream(conn.getOutputStream(), CHUNK_BYTES, true);
+		writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+		lastHeader = null;
+	}
+
+	private void line(Map<String, Object> record) throws IOException {
+		writer.write(MAPPER.writeValueAsString(record));
+		writer.write('\n');
+	}
+
+	private static boolean sameMetadata(TestResults a, TestResults b) {
+		return a != null && Objects.equals(a.getHostName(), b.getHostName())
+				&& Objects.equals(a.getAttemptId(), b.getAttemptId())
+				&& Objects.equals(a.getCustomData(), b.getCustomData())
+				&& Objects.equals(a.getFilePath(), b.getFilePath());
+	}
+
+	/**
+	 * Ends the open upload and waits for the receiver's answer.
+	 *
+	 * @return List - Ids of the results the receiver took: everything written
+	 *         since the upload was opened, or nothing if it refused or failed.
+	 *         Empty when no upload was open.
+	 */
+	public synchronized List<String> finish() {
+		if (writer == null) {
+			return new ArrayList<>();
+		}
+		List<String> ids = new ArrayList<>(written);
+		try {
+			writer.close();
+			int responseCode = conn.getResponseCode();
+			drain(responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream());
+			if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_CREATED) {
+				System.out.println("Result upload to " + url + " refused with " + responseCode);
+				ids.clear();
+			}
+		} catch (IOException e) {
+			System.out.println("Result upload to " + url + " failed: " + e);
+			ids.clear();
+		}
+		reset();
+		return ids;
+	}
+
+	/**
+	 * @return boolean - Whether an upload is open.
+	 */
+	public synchronized boolean isOpen() {
+		return writer != null;
+	}
+
+	private void abandon() {
+		if (conn != null) {
+			conn.disconnect();
+		}
+		reset();
+	}
+
+	private void reset() {
+		conn = null;
+		writer = null;
+		lastHeader = null;
+		written.clear();
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		if (in == null) {
+			return;
+		}
+		try (InputStream input = in) {
+			byte[] buffer = new byte[1024];
+			while (input.read(buffer) != -1) {
+				// discard
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package coreUtilities.testutils;
+
+/**
+ * What the reporters need to know about one @Test method, worked out once by
+ * {@link TestRegistry} instead of on every result.
+ */
+public class TestMetadata {
+
+	private String methodName;
+	private String className;
+	private String displayName;
+	private String testType;
+	private String group;
+	private int priority;
+	private String description;
+
+	public TestMetadata() {
+	}
+
+	public TestMetadata(String methodName, String className, String displayName, String testType, String group,
+			int priority, String description) {
+		this.methodName = methodName;
+		this.className = className;
+		this.displayName = displayName;
+		this.testType = testType;
+		this.group = group;
+		this.priority = priority;
+		this.description = description;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	public void setMethodName(String methodName) {
+		this.methodName = methodName;
+	}
+
+	/**
+	 * @return String - The declaring test class; empty if the test was never
+	 *         scanned.
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	public void setClassName(String className) {
+		this.className = className;
+	}
+
+	/**
+	 * @return String - The method name as words without the leading verb, e.g.
+	 *         "All Departments Test" for getAllDepartmentsTest.
+	 */
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	public void setDisplayName(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * @return String - functional, boundary or exception.
+	 */
+	public String getTestType() {
+		return testType;
+	}
+
+	public void setTestType(String testType) {
+		this.testType = testType;
+	}
+
+	/**
+	 * @return String - The first group the test is in; empty when it has none.
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	public void setGroup(String group) {
+		this.group = group;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+}
@@ -0,0 +1,131 @@
+package coreUtilities.testutils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import coreUtilities.testutils.ResultAggregator.Status;
+
+/**
+ * A point-in-time view of a running suite, taken by
+ * {@link ResultAggregator#progress()}. Serialises to JSON as is.
+ */
+public class TestProgress {
+
+	private long completed;
+	private int expected;
+	private long passed;
+	private long failed;
+	private long skipped;
+	private long elapsedMillis;
+	private double testsPerSecond;
+	private long etaSeconds;
+	private List<String> recentFailures = new ArrayList<>();
+	private Map<String, Map<Status, Long>> groups = new LinkedHashMap<>();
+
+	/**
+	 * @return String - e.g. "42/120 done, 3 failed, 0 skipped, 1.8 tests/s, ETA
+	 *         43 s".
+	 */
+	@Override
+	public String toString() {
+		return completed + (expected > 0 ? "/" + expected : "") + " done, " + failed + " failed, " + skipped
+				+ " skipped, " + String.format("%.1f", testsPerSecond) + " tests/s"
+				+ (etaSeconds > 0 ? ", ETA " + etaSeconds + " s" : "");
+	}
+
+	public long getCompleted() {
+		return completed;
+	}
+
+	public void setCompleted(long completed) {
+		this.completed = completed;
+	}
+
+	/**
+	 * @return int - Tests the suite announced; 0 when unknown.
+	 */
+	public int getExpected() {
+		return expected;
+	}
+
+	public void setExpected(int expected) {
+		this.expected = expected;
+	}
+
+	public long getPassed() {
+		return passed;
+	}
+
+	public void setPassed(long passed) {
+		this.passed = passed;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public void setSkipped(long skipped) {
+		this.skipped = skipped;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public double getTestsPerSecond() {
+		return testsPerSecond;
+	}
+
+	public void setTestsPerSecond(double testsPerSecond) {
+		this.testsPerSecond = testsPerSecond;
+	}
+
+	/**
+	 * @return long - Seconds until the expected total is reached at the
+	 *         current rate; 0 when done, -1 when unknown.
+	 */
+	public long getEtaSeconds() {
+		return etaSeconds;
+	}
+
+	public void setEtaSeconds(long etaSeconds) {
+		this.etaSeconds = etaSeconds;
+	}
+
+	/**
+	 * @return List - Names of the latest failed or skipped tests, oldest
+	 *         first.
+	 */
+	public List<String> getRecentFailures() {
+		return recentFailures;
+	}
+
+	public void setRecentFailures(List<String> recentFailures) {
+		this.recentFailures = recentFailures;
+	}
+
+	/**
+	 * @return Map - Counts per status for each group.
+	 */
+	public Map<String, Map<Status, Long>> getGroups() {
+		return groups;
+	}
+
+	public void setGroups(Map<String, Map<Status, Long>> groups) {
+		this.groups = groups;
+	}
+}
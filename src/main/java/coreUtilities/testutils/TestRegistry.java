@@ -0,0 +1,174 @@
+package coreUtilities.testutils;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.testng.ITestNGMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Metadata of every @Test method, scanned once when the suite starts so that
+ * reporting a result is a map lookup: no stack walk for the running test, no
+ * regex split of its name and no file name checks for its type.
+ *
+ * Tests are keyed by method name, as that is all yakshaAssert is given; if
+ * two test classes share a method name the first one scanned wins. Names that
+ * were never scanned are worked out on first use and kept.
+ */
+public class TestRegistry {
+
+	public static final String FUNCTIONAL = "functional";
+	public static final String BOUNDARY = "boundary";
+	public static final String EXCEPTION = "exception";
+
+	private static final Map<String, TestMetadata> tests = new ConcurrentHashMap<>();
+	private static final Set<Class<?>> scanned = ConcurrentHashMap.newKeySet();
+	private static final Map<File, String> fileTypes = new ConcurrentHashMap<>();
+	private static final ThreadLocal<TestMetadata> running = new ThreadLocal<TestMetadata>();
+
+	private TestRegistry() {
+	}
+
+	/**
+	 * Scans the classes of the given methods, each class once.
+	 *
+	 * @param methods - The suite's test methods, e.g. ISuite.getAllMethods().
+	 */
+	public static void register(Collection<ITestNGMethod> methods) {
+		for (ITestNGMethod method : methods) {
+			register(method.getRealClass());
+		}
+	}
+
+	/**
+	 * Scans a test class for its @Test methods, public methods included when
+	 * the class itself is annotated. Does nothing if it was already scanned.
+	 *
+	 * @param testClass - The class to scan.
+	 */
+	public static void register(Class<?> testClass) {
+		if (testClass == null || !scanned.add(testClass)) {
+			return;
+		}
+		Test classTest = testClass.getAnnotation(Test.class);
+		for (Method method : testClass.getMethods()) {
+			Test test = method.getAnnotation(Test.class);
+			if (test == null && (classTest == null || method.getDeclaringClass() == Object.class
+					|| Modifier.isStatic(method.getModifiers()))) {
+				continue;
+			}
+			String[] groups = groups(test, classTest);
+			int priority = test != null ? test.priority() : classTest.priority();
+			String description = test != null && !test.description().isEmpty() ? test.description()
+					: classTest != null ? classTest.description() : "";
+			tests.putIfAbsent(method.getName(),
+					new TestMetadata(method.getName(), testClass.getName(), displayName(method.getName()),
+							testType(method.getName(), groups), groups.length > 0 ? groups[0] : "", priority,
+							description));
+		}
+	}
+
+	private static String[] groups(Test test, Test classTest) {
+		String[] own = test != null ? test.groups() : new String[0];
+		String[] inherited = classTest != null ? classTest.groups() : new String[0];
+		String[] groups = new String[own.length + inherited.length];
+		System.arraycopy(own, 0, groups, 0, own.length);
+		System.arraycopy(inherited, 0, groups, own.length, inherited.length);
+		return groups;
+	}
+
+	/**
+	 * @param methodName - A test method name.
+	 *
+	 * @return TestMetadata - Its metadata; worked out from the name alone, and
+	 *         kept, if it was never scanned.
+	 */
+	public static TestMetadata lookup(String methodName) {
+		TestMetadata metadata = tests.get(methodName);
+		if (metadata == null) {
+			metadata = tests.computeIfAbsent(methodName, name -> new TestMetadata(name, "", displayName(name),
+					testType(name, new String[0]), "", 0, ""));
+		}
+		return metadata;
+	}
+
+	/**
+	 * @param file - A result file, e.g. TestUtils.boundaryTestFile.
+	 *
+	 * @return String - The test type its name stands for.
+	 */
+	public static String typeOf(File file) {
+		String type = fileTypes.get(file);
+		if (type == null) {
+			String name = file.getName();
+			type = name.contains(BOUNDARY) ? BOUNDARY : name.contains(EXCEPTION) ? EXCEPTION : FUNCTIONAL;
+			fileTypes.put(file, type);
+		}
+		return type;
+	}
+
+	/**
+	 * Marks a test as running on the calling thread, for
+	 * {@link TestUtils#currentTest()}.
+	 *
+	 * @param methodName - The test starting.
+	 */
+	public static void begin(String methodName) {
+		running.set(lookup(methodName));
+	}
+
+	/**
+	 * Clears the calling thread's running test.
+	 */
+	public static void end() {
+		running.remove();
+	}
+
+	/**
+	 * @return TestMetadata - The test running on the calling thread, or null.
+	 */
+	public static TestMetadata current() {
+		return running.get();
+	}
+
+	/**
+	 * @return int - Tests known, scanned or looked up.
+	 */
+	public static int size() {
+		return tests.size();
+	}
+
+	// the words of a camel case name after the first, as the console has always shown them
+	static String displayName(String methodName) {
+		String[] words = methodName.split("(?=\\p{Upper})");
+		StringBuilder name = new StringBuilder();
+		for (int i = 1; i < words.length; i++) {
+			name.append(i > 1 ? " " : "").append(words[i]);
+		}
+		return name.toString();
+	}
+
+	// a boundary or exception group decides; failing that, the method name does
+	static String testType(String methodName, String[] groups) {
+		for (String group : groups) {
+			if (BOUNDARY.equalsIgnoreCase(group)) {
+				return BOUNDARY;
+			}
+			if (EXCEPTION.equalsIgnoreCase(group)) {
+				return EXCEPTION;
+			}
+		}
+		if (methodName.contains("Boundary")) {
+			return BOUNDARY;
+		}
+		if (methodName.contains("Exception")) {
+			return EXCEPTION;
+		}
+		return FUNCTIONAL;
+	}
+}
@@ -1,13 +1,7 @@
 package coreUtilities.testutils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -30,9 +24,8 @@ public class TestUtils {
 
 	public static String testResult;
 
-	public static int total;
-	public static int passed;
-	public static int failed;
+	// outcome counts; lock-free, so listeners need not serialise test threads
+	public static final ResultAggregator outcomes = new ResultAggregator();
 
 	public static File businessTestFile;
 	public static File boundaryTestFile;
@@ -41,13 +34,15 @@ public class TestUtils {
 
 	public static final String GUID = "6ed39465-d6d3-4ec4-b27d-1dcb870b2992";
 	public static String customData;
-	public static final String URL =  "https://compiler.techademy.com/v1/mfa-results/push";
+	public static final String URL =  ResultPublisher.DEFAULT_URL;
+	public static final int RESULT_QUEUE_CAPACITY = 4096;
+	public static final int RESULT_BATCH_SIZE = 64;
 
-	static {
-		total = 0;
-		passed = 0;
-		failed = 0;
+	private static final ResultPublisher publisher = new ResultPublisher(ResultPublisher.configuredUrl(),
+			RESULT_QUEUE_CAPACITY, RESULT_BATCH_SIZE, openSpool()).streamTo(ResultPublisher.configuredUploader())
+			.start();
 
+	static {
 		testResult = "";
 
 		businessTestFile = new File("./output_revised.txt");
@@ -74,13 +69,32 @@ public class TestUtils {
 	}
 
 	public static void yakshaAssert(String testName, Object result, File file) throws IOException {
+		report(testName, result, file,
+				result.toString().equals("true") ? ResultAggregator.Status.PASSED : ResultAggregator.Status.FAILED);
+	}
+
+	/**
+	 * Reports a skipped test: pushed as failed, as before, but counted as
+	 * skipped.
+	 *
+	 * @param testName - The skipped test.
+	 * @param file     - The result file naming the test type.
+	 * @throws IOException - Never thrown; kept for symmetry with yakshaAssert.
+	 */
+	public static void yakshaSkip(String testName, File file) throws IOException {
+		report(testName, false, file, ResultAggregator.Status.SKIPPED);
+	}
+
+	private static void report(String testName, Object result, File file, ResultAggregator.Status status)
+			throws IOException {
 		TestResults testResults = new TestResults();
 		Map<String, TestCaseResultDto> testCaseResults = new HashMap<String, TestCaseResultDto>();
 
-        customData = "";
+        String customData = "";
         try{
 		    customData = readData("../custom.ih");
 		}catch(Exception e)	{}
+        TestUtils.customData = customData;
 
 		String resultStatus = "Failed";
 		int resultScore = 0;
@@ -88,12 +102,8 @@ public class TestUtils {
 			resultScore = 1;
 			resultStatus = "Passed";
 		}
+		String testType = TestRegistry.typeOf(file);
 		try {
-			String testType = "functional";
-			if (file.getName().contains("boundary"))
-				testType = "boundary";
-			if (file.getName().contains("exception"))
-				testType = "exception";
 			testCaseResults.put(GUID,
 					new TestCaseResultDto(testName, testType, 1, resultScore, resultStatus, true, ""));
 		} catch (Exception e) {
@@ -114,81 +124,95 @@ public class TestUtils {
 		testResults.setFilePath(filePath);
 
 
-		int length = 0;
-		if(customData != null) {length = customData.length(); }
-
-		try {
-
-			URL url = new URL(URL);
-			HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-			conn.setDoOutput(true);
-			conn.setRequestMethod("POST");
-			conn.setRequestProperty("Content-Type", "application/json");
-
-			//	String input = "{\"qty\":100,\"name\":\"iPad 4\"}";
-			String input = asJsonString(testResults);
-			OutputStream os = conn.getOutputStream();
-			os.write(input.getBytes());
-			os.flush();
-			os.close();
-
-			int responseCode = conn.getResponseCode();
-			if (!(responseCode == HttpURLConnection.HTTP_OK  || responseCode == HttpURLConnection.HTTP_CREATED)) {
-				System.out.println(RED_BOLD_BRIGHT + "⚠️ Unable to push test cases,please try again! [" + responseCode +"|" + hostName +"|" + AttemptId + "|" + length + "]" + TEXT_RESET);
-			}
-
-			// BufferedReader br = new BufferedReader(new InputStreamReader((conn.getInputStream())));
+		publisher.publish(testResults);
 
-			// // String output;
-			// // while ((output = br.readLine()) != null) {
-			// // 	System.out.println(output);
-			// // }
+		TestMetadata test = TestRegistry.lookup(testName);
+		// per TestNG group, as in testng.xml; a test without one is counted under its type
+		outcomes.record(testName, test.getGroup().isEmpty() ? testType : test.getGroup(), status);
+		// one println per result, so lines from parallel tests do not interleave
+		StringBuilder line = new StringBuilder("\n" + BLUE_BOLD_BRIGHT + "=>");
 
-			conn.disconnect();
+		line.append(YELLOW_BOLD_BRIGHT + "Test For : ");
+		line.append(YELLOW_BOLD_BRIGHT + test.getDisplayName() + " ");
+		line.append(" : ");
 
-		} catch (MalformedURLException e) {
-
-			e.printStackTrace();
+		if (status == ResultAggregator.Status.PASSED) {
+			line.append(GREEN_BOLD_BRIGHT + "PASSED" + TEXT_RESET);
+		} else {
+			line.append(RED_BOLD_BRIGHT + (status == ResultAggregator.Status.SKIPPED ? "SKIPPED" : "FAILED")
+					+ TEXT_RESET);
+		}
+		System.out.println(line);
+	}
 
+	private static ResultSpool openSpool() {
+		try {
+			return new ResultSpool(new File(ResultPublisher.configuredSpool()));
 		} catch (IOException e) {
-
-			e.printStackTrace();
-
+			System.out.println("Unable to open the result spool " + ResultPublisher.configuredSpool()
+					+ ", results are not spooled: " + e);
+			return null;
 		}
+	}
 
-		total++;
-		String[] r = testName.split("(?=\\p{Upper})");
-		System.out.print("\n" + BLUE_BOLD_BRIGHT + "=>");
-
-		System.out.print(YELLOW_BOLD_BRIGHT + "Test For : ");
-
-		for (int i = 1; i < r.length; i++) {
-			System.out.print(YELLOW_BOLD_BRIGHT + r[i] + " ");
-
-		}
-		System.out.print(" : ");
+	/**
+	 * Waits for queued results to reach the push URL.
+	 *
+	 * @param timeoutMillis - Longest time to wait.
+	 *
+	 * @return boolean - true if every result was sent or failed to send.
+	 */
+	public static boolean flushResults(long timeoutMillis) {
+		return publisher.flush(timeoutMillis);
+	}
 
-		if (result.toString().equals("true")) {
-			System.out.println(GREEN_BOLD_BRIGHT + "PASSED" + TEXT_RESET);
-			passed++;
-		} else {
-			System.out.println(RED_BOLD_BRIGHT + "FAILED" + TEXT_RESET);
-			failed++;
-		}
+	/**
+	 * @return TestProgress - Live counts, rate, ETA and recent failures, for
+	 *         reporters to poll while the suite runs.
+	 */
+	public static TestProgress progress() {
+		return outcomes.progress();
 	}
 
 	public static void testReport() {
-
-		System.out.print("\n" + BLUE_BOLD_BRIGHT + "TEST CASES EVALUATED : " + total + TEXT_RESET);
+		// skipped tests are pushed as failed, so they are reported as failed too
+		long passed = outcomes.count(ResultAggregator.Status.PASSED);
+		long skipped = outcomes.count(ResultAggregator.Status.SKIPPED);
+		long failed = outcomes.count(ResultAggregator.Status.FAILED) + skipped;
+		System.out.print("\n" + BLUE_BOLD_BRIGHT + "TEST CASES EVALUATED : " + outcomes.total() + TEXT_RESET);
 		System.out.print("\n" + GREEN_BOLD_BRIGHT + "PASSED : " + passed + TEXT_RESET);
-		System.out.println("\n" + RED_BOLD_BRIGHT + "FAILED : " + failed + TEXT_RESET);
+		System.out.println("\n" + RED_BOLD_BRIGHT + "FAILED : " + failed
+				+ (skipped > 0 ? " (" + skipped + " skipped)" : "") + TEXT_RESET);
 
 	}
 
+	/**
+	 * @return String - The test the listener marked as running on this thread;
+	 *         outside a test, the calling method's name.
+	 */
 	public static String currentTest() {
+		TestMetadata running = TestRegistry.current();
+		if (running != null) {
+			return running.getMethodName();
+		}
 		return Thread.currentThread().getStackTrace()[2].getMethodName();
 	}
 
+	/**
+	 * @param testType - functional, boundary or exception.
+	 *
+	 * @return File - The result file for that test type.
+	 */
+	public static File resultFile(String testType) {
+		if (TestRegistry.BOUNDARY.equals(testType)) {
+			return boundaryTestFile;
+		}
+		if (TestRegistry.EXCEPTION.equals(testType)) {
+			return exceptionTestFile;
+		}
+		return businessTestFile;
+	}
+
 	// convert object into JSON
 	public static String asJsonString(Object obj) {
 		ObjectMapper mapper = new ObjectMapper();
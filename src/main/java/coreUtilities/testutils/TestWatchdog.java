@@ -0,0 +1,386 @@
+package coreUtilities.testutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import rest.ApiTraffic;
+import restConfig.ConfigManager;
+
+/**
+ * Watches running tests for ones that take far longer than they usually do,
+ * e.g. a test stuck on a socket read that would otherwise just keep the suite
+ * from finishing.
+ *
+ * A test's limit is watchdog.multiple times its usual duration, and at least
+ * watchdog.min.millis; a test with no history gets watchdog.default.millis.
+ * The usual duration is a moving average of the test's passing runs, kept
+ * across runs in watchdog.history. A test over its limit is reported once,
+ * as an {@link Overrun} with a dump of every thread (its own first) and the
+ * ApiUtil request it is waiting on. With watchdog.interrupt=true its thread
+ * is then interrupted, provided the test is still running on it; that ends
+ * sleeps, waits and NIO channel operations, but not a blocking socket read,
+ * which only its read timeout ends. An interrupt the test never noticed is
+ * cleared when it finishes, so it cannot fail the next test on that thread.
+ */
+public class TestWatchdog {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	// weight of the latest run in the moving average
+	private static final int HISTORY_WEIGHT = 4;
+
+	private final long multiple;
+	private final long minMillis;
+	private final long defaultMillis;
+	private final boolean interrupt;
+	private final File historyFile;
+	private final Consumer<Overrun> onOverrun;
+	private final Map<String, Long> history = new ConcurrentHashMap<>();
+	private final Map<Long, Watch> running = new ConcurrentHashMap<>();
+	private ScheduledExecutorService checker;
+
+	/** A running test; its monitor guards interrupting its thread. */
+	private static class Watch {
+		final long testId;
+		final String test;
+		final Thread thread;
+		final long startedNanos;
+		final long usualMillis;
+		final long limitMillis;
+		volatile boolean reported;
+
+		Watch(long testId, String test, Thread thread, long usualMillis, long limitMillis) {
+			this.testId = testId;
+			this.test = test;
+			this.thread = thread;
+			this.startedNanos = System.nanoTime();
+			this.usualMillis = usualMillis;
+			this.limitMillis = limitMillis;
+		}
+	}
+
+	/**
+	 * A test found running past its limit.
+	 */
+	public static class Overrun {
+		private final long testId;
+		private final String test;
+		private final String threadName;
+		private final long elapsedMillis;
+		private final long usualMillis;
+		private final long limitMillis;
+		private final String request;
+		private final String threadDump;
+		private final boolean interrupted;
+
+		Overrun(Watch watch, long elapsedMillis, String request, String threadDump, boolean interrupted) {
+			this.testId = watch.testId;
+			this.test = watch.test;
+			this.threadName = watch.thread.getName();
+			this.elapsedMillis = elapsedMillis;
+			this.usualMillis = watch.usualMillis;
+			this.limitMillis = watch.limitMillis;
+			this.request = request;
+			this.threadDump = threadDump;
+			this.interrupted = interrupted;
+		}
+
+		public long getTestId() {
+			return testId;
+		}
+
+		public String getTest() {
+			return test;
+		}
+
+		public String getThreadName() {
+			return threadName;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * @return long - The test's usual duration; -1 if it had no history.
+		 */
+		public long getUsualMillis() {
+			return usualMillis;
+		}
+
+		public long getLimitMillis() {
+			return limitMillis;
+		}
+
+		/**
+		 * @return String - The ApiUtil request the test was waiting on; null if
+		 *         none.
+		 */
+		public String getRequest() {
+			return request;
+		}
+
+		/**
+		 * @return String - Every thread's stack, the test's thread first.
+		 */
+		public String getThreadDump() {
+			return threadDump;
+		}
+
+		/**
+		 * @return boolean - Whether its thread was interrupted; it is not
+		 *         without watchdog.interrupt, or if the test finished before
+		 *         it was reported.
+		 */
+		public boolean isInterrupted() {
+			return interrupted;
+		}
+
+		/**
+		 * @return String - e.g. "validatePatientNotesTest has run 95000 ms on
+		 *         TestNG-2, over its 30000 ms limit (usually 1200 ms); waiting on
+		 *         GET https://.../api/... sent at 12:00:01.250; interrupted".
+		 */
+		@Override
+		public String toString() {
+			return test + " has run " + elapsedMillis + " ms on " + threadName + ", over its " + limitMillis
+					+ " ms limit (" + (usualMillis < 0 ? "no history" : "usually " + usualMillis + " ms") + ")"
+					+ (request == null ? "; not in an ApiUtil request" : "; waiting on " + request)
+					+ (interrupted ? "; interrupted" : "");
+		}
+	}
+
+	/**
+	 * @param multiple      - How many times its usual duration a test may
+	 *                      take.
+	 * @param minMillis     - The smallest limit, so fast tests are not
+	 *                      reported for ordinary jitter.
+	 * @param defaultMillis - The limit of a test with no history.
+	 * @param interrupt     - Whether to interrupt a test over its limit.
+	 * @param historyFile   - Usual durations from earlier runs; may be null.
+	 * @param onOverrun     - Called, on the watchdog thread, for each test over
+	 *                      its limit.
+	 */
+	public TestWatchdog(long multiple, long minMillis, long defaultMillis, boolean interrupt, File historyFile,
+			Consumer<Overrun> onOverrun) {
+		this.multiple = multiple;
+		this.minMillis = minMillis;
+		this.defaultMillis = defaultMillis;
+		this.interrupt = interrupt;
+		this.historyFile = historyFile;
+		this.onOverrun = onOverrun;
+		if (historyFile != null && historyFile.isFile()) {
+			try {
+				history.putAll(MAPPER.readValue(historyFile, new TypeReference<Map<String, Long>>() {
+				}));
+			} catch (IOException e) {
+				System.out.println("Ignoring unreadable test durations " + historyFile + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @param onOverrun - Called, on the watchdog thread, for each test over its
+	 *                  limit.
+	 *
+	 * @return TestWatchdog - A started watchdog configured from
+	 *         config.properties, or null when watchdog.enabled is false.
+	 */
+	public static TestWatchdog fromConfig(Consumer<Overrun> onOverrun) {
+		if (!Boolean.parseBoolean(ConfigManager.getProperty("watchdog.enabled", "true"))) {
+			return null;
+		}
+		return new TestWatchdog(Long.parseLong(ConfigManager.getProperty("watchdog.multiple", "5")),
+				Long.parseLong(ConfigManager.getProperty("watchdog.min.millis", "30000")),
+				Long.parseLong(ConfigManager.getProperty("watchdog.default.millis", "300000")),
+				Boolean.parseBoolean(ConfigManager.getProperty("watchdog.interrupt", "false")),
+				new File(ConfigManager.getProperty("watchdog.history", "TestReport/test-durations.json")), onOverrun)
+						.start(Long.parseLong(ConfigManager.getProperty("watchdog.poll.millis", "1000")));
+	}
+
+	/**
+	 * Starts checking the running tests on a daemon thread.
+	 *
+	 * @param pollMillis - How often to check.
+	 *
+	 * @return TestWatchdog - This watchdog.
+	 */
+	public synchronized TestWatchdog start(long pollMillis) {
+		if (checker == null) {
+			checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "test-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			});
+			checker.scheduleWithFixedDelay(this::check, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+		}
+		return this;
+	}
+
+	/**
+	 * Starts watching a test; call it on the test's thread.
+	 *
+	 * @param testId - The listener's id for this run of the test.
+	 * @param test   - The test method.
+	 */
+	public void started(long testId, String test) {
+		Long usual = history.get(test);
+		long limit = usual == null ? defaultMillis : Math.max(minMillis, multiple * usual);
+		running.put(testId, new Watch(testId, test, Thread.currentThread(), usual == null ? -1 : usual, limit));
+	}
+
+	/**
+	 * Stops watching a test; call it on the test's thread. A passing run that
+	 * was not reported counts towards its usual duration. Clears an interrupt
+	 * the watchdog left on the thread.
+	 *
+	 * @param testId - The id it started with; unknown ids are ignored.
+	 * @param passed - Whether it passed.
+	 */
+	public void finished(long testId, boolean passed) {
+		Watch watch = running.get(testId);
+		if (watch != null) {
+			// waits out an overrun being reported and interrupted, so no interrupt can follow the test
+			synchronized (watch) {
+				running.remove(testId, watch);
+			}
+			if (passed && !watch.reported) {
+				long millis = (System.nanoTime() - watch.startedNanos) / 1000000;
+				history.merge(watch.test, millis,
+						(usual, latest) -> (usual * (HISTORY_WEIGHT - 1) + latest) / HISTORY_WEIGHT);
+			}
+		}
+		Thread.interrupted();
+	}
+
+	// a test is reported once, and then no longer counts towards its history
+	private void check() {
+		try {
+			long now = System.nanoTime();
+			for (Watch watch : running.values()) {
+				long elapsed = (now - watch.startedNanos) / 1000000;
+				if (elapsed > watch.limitMillis && !watch.reported) {
+					watch.reported = true;
+					String request = ApiTraffic.inFlight(watch.thread);
+					String dump = threadDump(watch.thread);
+					// the test cannot finish while this holds its monitor, so the report says what happens;
+					// interrupted only while the test still runs, as its pooled thread may have moved on,
+					// and after reporting, so the report has the overrun before the failure it causes
+					synchronized (watch) {
+						boolean interrupting = interrupt && running.get(watch.testId) == watch;
+						try {
+							onOverrun.accept(new Overrun(watch, elapsed, request, dump, interrupting));
+						} finally {
+							if (interrupting) {
+								watch.thread.interrupt();
+							}
+						}
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			// keep watching; a failed check must not end the watchdog thread
+			System.out.println("Test watchdog check failed: " + e);
+		}
+	}
+
+	/**
+	 * @param first - The thread to put first.
+	 *
+	 * @return String - A dump of every live thread with its full stack and the
+	 *         locks it holds and waits on, in the usual jstack layout.
+	 */
+	public static String threadDump(Thread first) {
+		ThreadInfo[] infos = THREADS.dumpAllThreads(THREADS.isObjectMonitorUsageSupported(),
+				THREADS.isSynchronizerUsageSupported());
+		StringBuilder dump = new StringBuilder();
+		for (ThreadInfo info : infos) {
+			if (info.getThreadId() == first.getId()) {
+				append(dump, info);
+			}
+		}
+		for (ThreadInfo info : infos) {
+			if (info.getThreadId() != first.getId()) {
+				append(dump, info);
+			}
+		}
+		return dump.toString();
+	}
+
+	// ThreadInfo.toString() stops after 8 frames, too few to see what a test is stuck in
+	private static void append(StringBuilder dump, ThreadInfo info) {
+		dump.append('"').append(info.getThreadName()).append("\" #").append(info.getThreadId()).append(' ')
+				.append(info.getThreadState());
+		if (info.getLockName() != null) {
+			dump.append(" on ").append(info.getLockName());
+		}
+		if (info.getLockOwnerName() != null) {
+			dump.append(" owned by \"").append(info.getLockOwnerName()).append("\" #").append(info.getLockOwnerId());
+		}
+		if (info.isInNative()) {
+			dump.append(" (in native)");
+		}
+		dump.append('\n');
+		StackTraceElement[] stack = info.getStackTrace();
+		for (int depth = 0; depth < stack.length; depth++) {
+			dump.append("\tat ").append(stack[depth]).append('\n');
+			for (MonitorInfo monitor : info.getLockedMonitors()) {
+				if (monitor.getLockedStackDepth() == depth) {
+					dump.append("\t- locked ").append(monitor).append('\n');
+				}
+			}
+		}
+		LockInfo[] synchronizers = info.getLockedSynchronizers();
+		if (synchronizers.length > 0) {
+			dump.append("\tLocked synchronizers:\n");
+			for (LockInfo synchronizer : synchronizers) {
+				dump.append("\t- ").append(synchronizer).append('\n');
+			}
+		}
+		dump.append('\n');
+	}
+
+	/**
+	 * Stops checking and saves the usual durations to the history file.
+	 */
+	public synchronized void close() {
+		if (checker != null) {
+			checker.shutdownNow();
+			checker = null;
+		}
+		if (historyFile == null) {
+			return;
+		}
+		try {
+			if (historyFile.getAbsoluteFile().getParentFile() != null) {
+				historyFile.getAbsoluteFile().getParentFile().mkdirs();
+			}
+			MAPPER.writeValue(historyFile, new TreeMap<>(history));
+		} catch (IOException e) {
+			System.out.println("Unable to write test durations " + historyFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return int - Tests being watched now.
+	 */
+	public int running() {
+		return running.size();
+	}
+}
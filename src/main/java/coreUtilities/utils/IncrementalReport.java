@@ -0,0 +1,290 @@
+package coreUtilities.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import coreUtilities.testutils.ResourceUsage;
+import coreUtilities.testutils.ResultAggregator.Status;
+import coreUtilities.testutils.TestProgress;
+import coreUtilities.testutils.TestUtils;
+import coreUtilities.testutils.TestWatchdog;
+import restConfig.ConfigManager;
+
+/**
+ * An HTML report written while the suite runs, for suites too large to keep
+ * in an in-memory Extent report until the end.
+ *
+ * <pre>
+ * tests.html   every finished test, appended in order; never rewritten
+ * index.html   counts, groups and latest failures with links into tests.html;
+ *              rewritten (atomically) on every flush, refreshing itself while the run lasts
+ * </pre>
+ *
+ * Finished tests are buffered and appended every flush interval, so memory
+ * holds at most one interval's worth of tests, and a run that dies leaves a
+ * readable report of everything up to its last flush. Select it with
+ * report.mode=incremental in config.properties.
+ */
+public class IncrementalReport {
+
+	public static final String INDEX_FILE = "index.html";
+	public static final String TESTS_FILE = "tests.html";
+
+	static final int LATEST_FAILURES = 50;
+	private static final int BUFFER_LIMIT = 64 * 1024;
+	private static final String STYLE = "<style>body{font-family:sans-serif;background:#1e1e1e;color:#ddd}"
+			+ "a{color:#8cf}.test{border-left:4px solid #888;margin:6px 0;padding:4px 8px;background:#2a2a2a}"
+			+ ".passed{border-color:#4c4}.failed{border-color:#e44}.skipped{border-color:#ec4}.overrun{border-color:#c4e}"
+			+ "pre{white-space:pre-wrap;color:#e99}td,th{padding:2px 10px;text-align:left}</style>";
+
+	private final File directory;
+	private final String title;
+	private final long flushMillis;
+	private final StringBuilder buffer = new StringBuilder();
+	private final Deque<String> latestFailures = new ArrayDeque<>();
+	private FileOutputStream tests;
+	private ScheduledExecutorService flusher;
+	private long written;
+	private boolean finished;
+
+	/**
+	 * @param directory   - Where to write index.html and tests.html.
+	 * @param title       - Report title.
+	 * @param flushMillis - How often buffered tests are appended and the index
+	 *                    rewritten.
+	 */
+	public IncrementalReport(File directory, String title, long flushMillis) {
+		this.directory = directory;
+		this.title = title;
+		this.flushMillis = flushMillis;
+	}
+
+	/**
+	 * @return IncrementalReport - An opened report in report.dir when
+	 *         report.mode is "incremental", otherwise null (the Extent report).
+	 */
+	public static IncrementalReport fromConfig() {
+		if (!"incremental".equalsIgnoreCase(ConfigManager.getProperty("report.mode", "extent"))) {
+			return null;
+		}
+		File directory = new File(ConfigManager.getProperty("report.dir",
+				System.getProperty("user.dir") + File.separator + "TestReport" + File.separator + "incremental"));
+		long flushMillis = Long.parseLong(ConfigManager.getProperty("report.flush.millis", "2000"));
+		try {
+			return new IncrementalReport(directory, "Test Automation Report", flushMillis).open();
+		} catch (IOException e) {
+			System.out.println("Unable to open the incremental report in " + directory + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Starts tests.html afresh, writes a first index and starts flushing
+	 * every interval; a shutdown hook flushes whatever is left if the run is
+	 * cut short.
+	 *
+	 * @return IncrementalReport - This report.
+	 * @throws IOException - If the directory or files cannot be written.
+	 */
+	public synchronized IncrementalReport open() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		tests = new FileOutputStream(new File(directory, TESTS_FILE));
+		write("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>" + escape(title) + " - tests</title>"
+				+ STYLE + "</head><body><h1>" + escape(title) + "</h1><p><a href=\"" + INDEX_FILE
+				+ "\">Summary</a></p>\n");
+		writeIndex();
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "incremental-report");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly, "incremental-report-shutdown"));
+		System.out.println("Incremental report: " + new File(directory, INDEX_FILE));
+		return this;
+	}
+
+	/**
+	 * Adds a finished test; it reaches tests.html with the next flush.
+	 *
+	 * @param name          - The test.
+	 * @param description   - Its @Test description.
+	 * @param status        - PASSED, FAILED or SKIPPED.
+	 * @param startedMillis - When it started.
+	 * @param endedMillis   - When it finished.
+	 * @param throwable     - Why it failed or was skipped; may be null.
+	 * @param usage         - What the test cost; may be null.
+	 */
+	public synchronized void add(String name, String description, Status status, long startedMillis,
+			long endedMillis, Throwable throwable, ResourceUsage usage) {
+		long number = ++written;
+		String css = status.name().toLowerCase();
+		buffer.append("<div class=\"test ").append(css).append("\" id=\"t").append(number).append("\"><b>")
+				.append(escape(name)).append("</b> ").append(status).append(" in ").append(endedMillis - startedMillis)
+				.append(" ms, ").append(time(startedMillis));
+		if (description != null && !description.isEmpty()) {
+			buffer.append("<div>").append(escape(description).replace("\n", "<br>")).append("</div>");
+		}
+		if (usage != null) {
+			buffer.append("<div>").append(escape(usage.toString())).append("</div>");
+		}
+		if (throwable != null) {
+			StringWriter trace = new StringWriter();
+			throwable.printStackTrace(new PrintWriter(trace));
+			buffer.append("<pre>").append(escape(trace.toString())).append("</pre>");
+		}
+		buffer.append("</div>\n");
+		if (status != Status.PASSED) {
+			latestFailures.addLast("<a href=\"" + TESTS_FILE + "#t" + number + "\">" + escape(name) + "</a> " + css);
+			if (latestFailures.size() > LATEST_FAILURES) {
+				latestFailures.removeFirst();
+			}
+		}
+		if (buffer.length() >= BUFFER_LIMIT) {
+			flushQuietly();
+		}
+	}
+
+	/**
+	 * Adds a test the watchdog found running past its limit, with its thread
+	 * dump, and lists it with the latest failures. It is flushed at once, as
+	 * a hung test may be the last thing the run reports.
+	 *
+	 * @param overrun - What the watchdog found.
+	 */
+	public synchronized void overrun(TestWatchdog.Overrun overrun) {
+		String anchor = "o" + overrun.getTestId();
+		buffer.append("<div class=\"test overrun\" id=\"").append(anchor).append("\"><b>")
+				.append(escape(overrun.getTest())).append("</b> OVERRUN, ").append(time(System.currentTimeMillis()))
+				.append("<div>").append(escape(overrun.toString())).append("</div><pre>")
+				.append(escape(overrun.getThreadDump())).append("</pre></div>\n");
+		latestFailures.addLast(
+				"<a href=\"" + TESTS_FILE + "#" + anchor + "\">" + escape(overrun.getTest()) + "</a> overrun");
+		if (latestFailures.size() > LATEST_FAILURES) {
+			latestFailures.removeFirst();
+		}
+		flushQuietly();
+	}
+
+	/**
+	 * Appends the buffered tests to tests.html and rewrites index.html.
+	 *
+	 * @throws IOException - If either cannot be written.
+	 */
+	public synchronized void flush() throws IOException {
+		if (tests == null) {
+			return;
+		}
+		if (buffer.length() > 0) {
+			write(buffer.toString());
+			buffer.setLength(0);
+		}
+		writeIndex();
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			System.out.println("Unable to write the incremental report: " + e);
+		}
+	}
+
+	/**
+	 * Flushes, marks the report finished and closes tests.html.
+	 */
+	public synchronized void close() {
+		if (tests == null) {
+			return;
+		}
+		finished = true;
+		flusher.shutdown();
+		try {
+			flush();
+			write("</body></html>\n");
+			tests.close();
+		} catch (IOException e) {
+			System.out.println("Unable to finish the incremental report: " + e);
+		}
+		tests = null;
+	}
+
+	private void write(String html) throws IOException {
+		tests.write(html.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// written beside the index and moved over it, so a reader never sees half an index
+	private void writeIndex() throws IOException {
+		TestProgress progress = TestUtils.progress();
+		StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"utf-8\">");
+		if (!finished) {
+			html.append("<meta http-equiv=\"refresh\" content=\"").append(Math.max(1, flushMillis / 1000))
+					.append("\">");
+		}
+		html.append("<title>").append(escape(title)).append("</title>").append(STYLE).append("</head><body><h1>")
+				.append(escape(title)).append("</h1><p>").append(finished ? "Finished" : "Running").append(", updated ")
+				.append(time(System.currentTimeMillis())).append(": ").append(escape(progress.toString()))
+				.append("</p><table><tr><th>Passed</th><th>Failed</th><th>Skipped</th><th>In report</th></tr><tr><td>")
+				.append(progress.getPassed()).append("</td><td>").append(progress.getFailed()).append("</td><td>")
+				.append(progress.getSkipped()).append("</td><td>").append(written)
+				.append("</td></tr></table><h2>Groups</h2><table><tr><th>Group</th>");
+		for (Status status : Status.values()) {
+			html.append("<th>").append(status).append("</th>");
+		}
+		html.append("</tr>");
+		for (Map.Entry<String, Map<Status, Long>> group : progress.getGroups().entrySet()) {
+			html.append("<tr><td>").append(escape(group.getKey())).append("</td>");
+			for (Status status : Status.values()) {
+				html.append("<td>").append(group.getValue().get(status)).append("</td>");
+			}
+			html.append("</tr>");
+		}
+		html.append("</table><h2>Latest failures</h2><ul>");
+		for (String failure : latestFailures) {
+			html.append("<li>").append(failure).append("</li>");
+		}
+		html.append("</ul><p><a href=\"").append(TESTS_FILE).append("\">All tests</a></p></body></html>\n");
+		File temp = new File(directory, INDEX_FILE + ".tmp");
+		Files.write(temp.toPath(), html.toString().getBytes(StandardCharsets.UTF_8));
+		Files.move(temp.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String time(long millis) {
+		return new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(millis));
+	}
+
+	private static String escape(String text) {
+		if (text == null) {
+			return "";
+		}
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return long - Tests added so far.
+	 */
+	public long getWritten() {
+		return written;
+	}
+}
@@ -0,0 +1,420 @@
+package coreUtilities.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import coreUtilities.testutils.ResourceUsage;
+import rest.load.LatencyHistogram;
+
+/**
+ * Renders a {@link coreUtilities.testutils.RunJournal} after the run, outside
+ * the test JVM: an HTML report, JUnit XML for CI, and a plain text summary
+ * that is also printed.
+ *
+ * <pre>
+ * java coreUtilities.utils.JournalReport TestReport/run-journal.jsonl [output dir]
+ * </pre>
+ *
+ * A journal cut short by an aborted run renders too: its torn last line is
+ * skipped and tests that never finished are reported as UNFINISHED, with the
+ * watchdog's thread dump when it caught them overrunning.
+ */
+public class JournalReport {
+
+	public static final String HTML_FILE = "journal-report.html";
+	public static final String JUNIT_FILE = "junit-results.xml";
+	public static final String SUMMARY_FILE = "journal-summary.txt";
+	public static final String UNFINISHED = "UNFINISHED";
+
+	static final int SLOWEST_TESTS = 10;
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final Map<Long, TestRun> tests = new LinkedHashMap<>();
+	private final List<HttpCall> outsideTests = new ArrayList<>();
+	private final Map<String, LatencyHistogram> endpoints = new TreeMap<>();
+	private final Map<String, Long> endpointErrors = new TreeMap<>();
+	private String host;
+	private long runStartedAt;
+	private long lastAt;
+	private boolean finished;
+	private int tornLines;
+	private long httpCalls;
+	private long httpErrors;
+
+	/** One run of a test, from its start, end and HTTP lines. */
+	static class TestRun {
+		long id;
+		String test;
+		String className = "";
+		String type = "";
+		String group = "";
+		String thread = "";
+		String description = "";
+		String status = UNFINISHED;
+		String error;
+		String trace;
+		String overrun;
+		String dump;
+		long startedAt;
+		long millis;
+		ResourceUsage usage;
+		final List<HttpCall> http = new ArrayList<>();
+	}
+
+	/** One journaled HTTP exchange. */
+	static class HttpCall {
+		String method;
+		String url;
+		int status;
+		long millis;
+		long bytes;
+	}
+
+	/**
+	 * Reads a journal.
+	 *
+	 * @param journal - The journal file.
+	 *
+	 * @return JournalReport - The run it describes.
+	 * @throws IOException - If the journal cannot be read.
+	 */
+	public static JournalReport read(File journal) throws IOException {
+		JournalReport report = new JournalReport();
+		try (BufferedReader reader = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				try {
+					report.take(MAPPER.readTree(line));
+				} catch (JsonProcessingException e) {
+					report.tornLines++;
+				}
+			}
+		}
+		return report;
+	}
+
+	private void take(JsonNode line) {
+		String event = line.path("e").asText();
+		long at = line.path("at").asLong();
+		lastAt = Math.max(lastAt, at);
+		if ("run".equals(event)) {
+			host = line.path("host").asText(null);
+			runStartedAt = at;
+		} else if ("finish".equals(event)) {
+			finished = true;
+		} else if ("start".equals(event)) {
+			TestRun run = run(line);
+			run.className = line.path("class").asText("");
+			run.type = line.path("type").asText("");
+			run.group = line.path("group").asText("");
+			run.thread = line.path("thread").asText("");
+			run.description = line.path("desc").asText("");
+			run.startedAt = at;
+		} else if ("end".equals(event)) {
+			TestRun run = run(line);
+			run.status = line.path("status").asText();
+			run.millis = line.path("ms").asLong();
+			run.error = line.path("error").asText(null);
+			run.trace = line.path("trace").asText(null);
+			if (line.has("cpuMs")) {
+				run.usage = new ResourceUsage();
+				run.usage.setTest(run.test);
+				run.usage.setStatus(run.status);
+				run.usage.setWallMillis(run.millis);
+				run.usage.setCpuMillis(line.path("cpuMs").asLong());
+				run.usage.setAllocatedBytes(line.path("alloc").asLong());
+				run.usage.setGcCount(line.path("gc").asLong());
+				run.usage.setGcMillis(line.path("gcMs").asLong());
+				run.usage.setBytesSent(line.path("sent").asLong());
+				run.usage.setBytesReceived(line.path("recv").asLong());
+			}
+		} else if ("overrun".equals(event)) {
+			TestRun run = run(line);
+			long usual = line.path("usualMs").asLong(-1);
+			run.overrun = "ran " + line.path("ms").asLong() + " ms, over its " + line.path("limitMs").asLong()
+					+ " ms limit (" + (usual < 0 ? "no history" : "usually " + usual + " ms") + ")"
+					+ (line.has("request") ? "; waiting on " + line.path("request").asText() : "")
+					+ (line.path("interrupted").asBoolean() ? "; interrupted" : "");
+			run.dump = line.path("dump").asText(null);
+		} else if ("http".equals(event)) {
+			HttpCall call = new HttpCall();
+			call.method = line.path("method").asText();
+			call.url = line.path("url").asText();
+			call.status = line.path("status").asInt();
+			call.millis = line.path("ms").asLong();
+			call.bytes = line.path("bytes").asLong();
+			long id = line.path("id").asLong();
+			(id == 0 ? outsideTests : run(line).http).add(call);
+			String endpoint = endpoint(call);
+			endpoints.computeIfAbsent(endpoint, e -> new LatencyHistogram()).recordValue(call.millis * 1000);
+			httpCalls++;
+			if (call.status == 0 || call.status >= 400) {
+				httpErrors++;
+				endpointErrors.merge(endpoint, 1L, Long::sum);
+			}
+		}
+	}
+
+	// an http line can come before its test's start line, which the reporting thread writes
+	private TestRun run(JsonNode line) {
+		long id = line.path("id").asLong();
+		TestRun run = tests.computeIfAbsent(id, key -> new TestRun());
+		run.id = id;
+		if (line.has("test")) {
+			run.test = line.path("test").asText();
+		}
+		return run;
+	}
+
+	private static String endpoint(HttpCall call) {
+		String path = call.url;
+		try {
+			URI uri = URI.create(call.url);
+			if (uri.getRawPath() != null) {
+				path = uri.getRawPath();
+			}
+		} catch (IllegalArgumentException e) {
+			int query = path.indexOf('?');
+			path = query < 0 ? path : path.substring(0, query);
+		}
+		return call.method + " " + path;
+	}
+
+	/**
+	 * @param status - PASSED, FAILED, SKIPPED or UNFINISHED.
+	 *
+	 * @return long - Tests with that outcome.
+	 */
+	public long count(String status) {
+		long count = 0;
+		for (TestRun run : tests.values()) {
+			if (status.equals(run.status)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return String - Totals, the slowest and most expensive tests and HTTP
+	 *         timings per endpoint.
+	 */
+	public String summary() {
+		StringBuilder text = new StringBuilder();
+		text.append("Run").append(host == null ? "" : " on " + host).append(" at ").append(time(runStartedAt))
+				.append(", ").append(String.format(Locale.ROOT, "%.1f", (lastAt - runStartedAt) / 1000.0)).append(" s")
+				.append(finished ? "" : ", did not finish").append(tornLines > 0 ? ", " + tornLines + " torn line(s)" : "")
+				.append('\n');
+		text.append("Tests: ").append(tests.size()).append(", passed ").append(count("PASSED")).append(", failed ")
+				.append(count("FAILED")).append(", skipped ").append(count("SKIPPED")).append(", unfinished ")
+				.append(count(UNFINISHED)).append('\n');
+		List<TestRun> slowest = new ArrayList<>(tests.values());
+		slowest.sort((a, b) -> Long.compare(b.millis, a.millis));
+		text.append("Slowest tests:\n");
+		for (TestRun run : slowest.subList(0, Math.min(SLOWEST_TESTS, slowest.size()))) {
+			text.append(String.format(Locale.ROOT, "  %8d ms  %s %s%n", run.millis, run.test, run.status));
+		}
+		List<ResourceUsage> costliest = new ArrayList<>();
+		for (TestRun run : tests.values()) {
+			if (run.usage != null) {
+				costliest.add(run.usage);
+			}
+		}
+		costliest.sort(ResourceUsage.BY_COST);
+		if (!costliest.isEmpty()) {
+			text.append("Most expensive tests:\n").append(String.format(Locale.ROOT, "  %7s %12s %4s %10s %10s  %s%n",
+					"cpu ms", "alloc bytes", "gcs", "sent", "received", "test"));
+			for (ResourceUsage usage : costliest.subList(0, Math.min(SLOWEST_TESTS, costliest.size()))) {
+				text.append(String.format(Locale.ROOT, "  %7d %12d %4d %10d %10d  %s%n", usage.getCpuMillis(),
+						usage.getAllocatedBytes(), usage.getGcCount(), usage.getBytesSent(), usage.getBytesReceived(),
+						usage.getTest()));
+			}
+		}
+		for (TestRun run : tests.values()) {
+			if (run.overrun != null) {
+				text.append("Overrun: ").append(run.test).append(' ').append(run.overrun).append(", ")
+						.append(run.status).append('\n');
+			}
+		}
+		text.append("HTTP: ").append(httpCalls).append(" calls, ").append(httpErrors)
+				.append(" errors (no response or status >= 400)\n");
+		text.append(String.format(Locale.ROOT, "  %7s %5s %7s %7s %7s  %s%n", "calls", "err", "p50 ms", "p95 ms",
+				"max ms", "endpoint"));
+		for (Map.Entry<String, LatencyHistogram> endpoint : endpoints.entrySet()) {
+			LatencyHistogram histogram = endpoint.getValue();
+			text.append(String.format(Locale.ROOT, "  %7d %5d %7d %7d %7d  %s%n", histogram.getTotalCount(),
+					endpointErrors.getOrDefault(endpoint.getKey(), 0L), histogram.getValueAtPercentile(50) / 1000,
+					histogram.getValueAtPercentile(95) / 1000, histogram.getMaxValue() / 1000, endpoint.getKey()));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Writes the HTML report.
+	 *
+	 * @param file - Where to write it.
+	 * @throws IOException - If it cannot be written.
+	 */
+	public void writeHtml(File file) throws IOException {
+		StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><meta charset=\"utf-8\">"
+				+ "<title>Test Automation Report</title><style>body{font-family:sans-serif;background:#1e1e1e;"
+				+ "color:#ddd}.test{border-left:4px solid #888;margin:6px 0;padding:4px 8px;background:#2a2a2a}"
+				+ ".PASSED{border-color:#4c4}.FAILED{border-color:#e44}.SKIPPED{border-color:#ec4}"
+				+ ".UNFINISHED{border-color:#c4e}pre{white-space:pre-wrap;color:#e99}"
+				+ "td,th{padding:2px 10px;text-align:left}</style></head><body><h1>Test Automation Report</h1><pre style=\"color:#ddd\">");
+		html.append(escape(summary())).append("</pre><h2>Tests</h2>\n");
+		for (TestRun run : tests.values()) {
+			html.append("<div class=\"test ").append(run.status).append("\"><b>").append(escape(run.test))
+					.append("</b> ").append(run.status).append(" in ").append(run.millis).append(" ms");
+			if (run.startedAt > 0) {
+				html.append(", ").append(time(run.startedAt)).append(" on ").append(escape(run.thread));
+			}
+			if (!run.description.isEmpty()) {
+				html.append("<div>").append(escape(run.description).replace("\n", "<br>")).append("</div>");
+			}
+			if (run.usage != null) {
+				html.append("<div>").append(escape(run.usage.toString())).append("</div>");
+			}
+			if (!run.http.isEmpty()) {
+				html.append("<table><tr><th>Method</th><th>URL</th><th>Status</th><th>ms</th><th>Bytes</th></tr>");
+				for (HttpCall call : run.http) {
+					html.append("<tr><td>").append(escape(call.method)).append("</td><td>").append(escape(call.url))
+							.append("</td><td>").append(call.status).append("</td><td>").append(call.millis)
+							.append("</td><td>").append(call.bytes).append("</td></tr>");
+				}
+				html.append("</table>");
+			}
+			if (run.trace != null) {
+				html.append("<pre>").append(escape(run.trace)).append("</pre>");
+			}
+			if (run.overrun != null) {
+				html.append("<div>Overrun: ").append(escape(run.overrun)).append("</div>");
+				if (run.dump != null) {
+					html.append("<details><summary>Thread dump</summary><pre style=\"color:#ddd\">")
+							.append(escape(run.dump)).append("</pre></details>");
+				}
+			}
+			html.append("</div>\n");
+		}
+		html.append("</body></html>\n");
+		Files.write(file.toPath(), html.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes JUnit XML: one testsuite, a testcase per test run, failures and
+	 * skips as JUnit reports them and unfinished tests as errors.
+	 *
+	 * @param file - Where to write it.
+	 * @throws IOException - If it cannot be written.
+	 */
+	public void writeJUnit(File file) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeStartElement("testsuite");
+			xml.writeAttribute("name", "journal");
+			xml.writeAttribute("tests", String.valueOf(tests.size()));
+			xml.writeAttribute("failures", String.valueOf(count("FAILED")));
+			xml.writeAttribute("skipped", String.valueOf(count("SKIPPED")));
+			xml.writeAttribute("errors", String.valueOf(count(UNFINISHED)));
+			xml.writeAttribute("time", seconds(lastAt - runStartedAt));
+			xml.writeAttribute("timestamp",
+					new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT).format(new Date(runStartedAt)));
+			if (host != null) {
+				xml.writeAttribute("hostname", host);
+			}
+			for (TestRun run : tests.values()) {
+				xml.writeStartElement("testcase");
+				xml.writeAttribute("classname", run.className.isEmpty() ? run.type : run.className);
+				xml.writeAttribute("name", String.valueOf(run.test));
+				xml.writeAttribute("time", seconds(run.millis));
+				if ("FAILED".equals(run.status)) {
+					xml.writeStartElement("failure");
+					xml.writeAttribute("message", run.error == null ? "" : run.error);
+					xml.writeCharacters(run.trace == null ? "" : run.trace);
+					xml.writeEndElement();
+				} else if ("SKIPPED".equals(run.status)) {
+					xml.writeEmptyElement("skipped");
+					if (run.error != null) {
+						xml.writeAttribute("message", run.error);
+					}
+				} else if (UNFINISHED.equals(run.status)) {
+					xml.writeEmptyElement("error");
+					xml.writeAttribute("message", "the run ended before this test finished");
+				}
+				if (run.overrun != null) {
+					xml.writeStartElement("system-err");
+					xml.writeCharacters("Overrun: " + run.overrun + "\n\n" + (run.dump == null ? "" : run.dump));
+					xml.writeEndElement();
+				}
+				xml.writeEndElement();
+			}
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException("Cannot write " + file, e);
+		}
+	}
+
+	private static String seconds(long millis) {
+		return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+	}
+
+	private static String time(long millis) {
+		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(millis));
+	}
+
+	private static String escape(String text) {
+		if (text == null) {
+			return "";
+		}
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: JournalReport <journal> [output dir]");
+			System.exit(2);
+		}
+		File journal = new File(args[0]);
+		if (!journal.isFile()) {
+			System.out.println("No journal at " + journal);
+			System.exit(2);
+		}
+		File directory = args.length > 1 ? new File(args[1]) : journal.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		JournalReport report = read(journal);
+		String summary = report.summary();
+		report.writeHtml(new File(directory, HTML_FILE));
+		report.writeJUnit(new File(directory, JUNIT_FILE));
+		Files.write(new File(directory, SUMMARY_FILE).toPath(), summary.getBytes(StandardCharsets.UTF_8));
+		System.out.print(summary);
+		System.out.println("Wrote " + HTML_FILE + ", " + JUNIT_FILE + " and " + SUMMARY_FILE + " to " + directory);
+	}
+}
@@ -0,0 +1,141 @@
+package rest;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+/**
+ * RestAssured filter counting the bytes each thread sends and receives
+ * through ApiUtil: headers plus body, the body as RestAssured holds it (so
+ * after decompression). Counts are per thread and only ever grow; take the
+ * difference of two readings to get a test's traffic. It also keeps the
+ * request each thread is waiting on, for the test watchdog.
+ *
+ * It runs on every request of the test it measures, so it does no more than
+ * add up lengths RestAssured already holds: the request body is measured as
+ * RestAssured serialised it (a body it streams, such as a file or multipart
+ * part, counts as 0), and the waiting request is only formatted when the
+ * watchdog asks for it.
+ */
+public class ApiTraffic implements Filter {
+
+	private static final ThreadLocal<long[]> counts = ThreadLocal.withInitial(() -> new long[2]);
+	private static final Map<Thread, Sent> inFlight = new ConcurrentHashMap<>();
+	private static boolean installed;
+
+	/** A request being waited on. */
+	private static final class Sent {
+		final String method;
+		final String uri;
+		final long atMillis;
+
+		Sent(String method, String uri, long atMillis) {
+			this.method = method;
+			this.uri = uri;
+			this.atMillis = atMillis;
+		}
+	}
+
+	/**
+	 * Adds the filter to RestAssured's global filters once per JVM. ApiUtil
+	 * installs it ahead of the record/replay filter, so replayed traffic is
+	 * counted too.
+	 */
+	public static synchronized void install() {
+		if (!installed) {
+			RestAssured.filters(new ApiTraffic());
+			installed = true;
+		}
+	}
+
+	/**
+	 * @return long - Bytes the calling thread has sent so far.
+	 */
+	public static long sentBytes() {
+		return counts.get()[0];
+	}
+
+	/**
+	 * @return long - Bytes the calling thread has received so far.
+	 */
+	public static long receivedBytes() {
+		return counts.get()[1];
+	}
+
+	/**
+	 * @param thread - A thread.
+	 *
+	 * @return String - The ApiUtil request it is waiting on, e.g. "GET
+	 *         https://.../api/... sent at 12:00:01.250", or null if none.
+	 */
+	public static String inFlight(Thread thread) {
+		Sent sent = inFlight.get(thread);
+		return sent == null ? null
+				: sent.method + " " + sent.uri + " sent at "
+						+ new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(sent.atMillis));
+	}
+
+	@Override
+	public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+			FilterContext ctx) {
+		long[] thread = counts.get();
+		String method = requestSpec.getMethod();
+		String uri = requestSpec.getURI();
+		thread[0] += method.length() + uri.length() + size(requestSpec.getHeaders()) + bodySize(requestSpec.getBody());
+		inFlight.put(Thread.currentThread(), new Sent(method, uri, System.currentTimeMillis()));
+		try {
+			Response response = ctx.next(requestSpec, responseSpec);
+			thread[1] += size(response.getHeaders()) + response.asByteArray().length;
+			return response;
+		} finally {
+			inFlight.remove(Thread.currentThread());
+		}
+	}
+
+	private static long size(Headers headers) {
+		long size = 0;
+		if (headers != null) {
+			for (Header header : headers) {
+				// "name: value\r\n"
+				size += header.getName().length() + header.getValue().length() + 4;
+			}
+		}
+		return size;
+	}
+
+	// RestAssured serialises an object body when it is set, so this is a String or byte[]
+	private static long bodySize(Object body) {
+		if (body instanceof byte[]) {
+			return ((byte[]) body).length;
+		}
+		if (body instanceof String) {
+			return utf8Length((String) body);
+		}
+		return 0;
+	}
+
+	// the UTF-8 length, without encoding a copy of the body
+	private static long utf8Length(String text) {
+		long length = text.length();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= 0x800) {
+				// a surrogate pair is 4 bytes for its 2 chars
+				length += Character.isSurrogate(c) ? 1 : 2;
+			} else if (c >= 0x80) {
+				length++;
+			}
+		}
+		return length;
+	}
+}
@@ -4,10 +4,74 @@ import java.util.List;
 import java.util.Map;
 
 import io.restassured.response.Response;
+import rest.replay.RecordReplayFilter;
+import restConfig.ConfigManager;
 
 public class ApiUtil {
 
-	private static final String BASE_URL = "https://healthapp.yaksha.com/api";
+	private static final String LIVE_HOST = "https://healthapp.yaksha.com";
+
+	// not final: the local stub server (rest.stub) repoints it at runtime
+	private static volatile String BASE_URL = ConfigManager.getProperty("base.url", LIVE_HOST + "/api");
+
+	static {
+		// counts each thread's traffic, for per-test resource accounting
+		ApiTraffic.install();
+		// records or replays every request when replay.mode is set
+		RecordReplayFilter.installFromConfig();
+	}
+
+	/**
+	 * @return String - The API base URL every relative endpoint is resolved
+	 *         against, "https://healthapp.yaksha.com/api" unless overridden.
+	 */
+	public static String getBaseUrl() {
+		return BASE_URL;
+	}
+
+	/**
+	 * Points ApiUtil at another backend, e.g. the local HealthApp stub server.
+	 *
+	 * @param baseUrl - The new base URL including its "/api" path.
+	 */
+	public static void setBaseUrl(String baseUrl) {
+		BASE_URL = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+	}
+
+	/**
+	 * Builds the URL to call for an endpoint. Relative endpoints are appended to
+	 * the base URL; absolute live URLs (the report endpoints are passed in full)
+	 * are moved onto the base URL's host, so switching the base URL switches
+	 * every call. Any other absolute URL is returned unchanged.
+	 *
+	 * @param endpoint - e.g. "/AssetReports/GetAllItems" or
+	 *                 "https://healthapp.yaksha.com/Reporting/...".
+	 *
+	 * @return String - The URL to request.
+	 */
+	public static String resolveUrl(String endpoint) {
+		return resolveUrl(BASE_URL, endpoint);
+	}
+
+	/**
+	 * Same as {@link #resolveUrl(String)} against an explicit base URL, for
+	 * callers that talk to more than one backend at once.
+	 *
+	 * @param baseUrl  - The base URL including its "/api" path.
+	 * @param endpoint - The endpoint as passed to the ApiUtil methods.
+	 *
+	 * @return String - The URL to request.
+	 */
+	public static String resolveUrl(String baseUrl, String endpoint) {
+		if (endpoint.startsWith(LIVE_HOST)) {
+			String host = baseUrl.endsWith("/api") ? baseUrl.substring(0, baseUrl.length() - 4) : baseUrl;
+			return host + endpoint.substring(LIVE_HOST.length());
+		}
+		if (endpoint.startsWith("http://") || endpoint.startsWith("https://")) {
+			return endpoint;
+		}
+		return baseUrl + endpoint;
+	}
 
 	/**
 	 * @Test1 This method fetches all departments from the API using the
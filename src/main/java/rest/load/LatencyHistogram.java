@@ -0,0 +1,181 @@
+package rest.load;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, log-linear latency histogram in the spirit of HdrHistogram. Values
+ * are recorded in microseconds; every power of two is split into 16 linear
+ * sub-buckets, which keeps the relative error of any reported percentile below
+ * roughly 6% while the whole histogram stays a single 960-slot array.
+ *
+ * Recording is lock-free and safe from any number of threads.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS - 1) * HALF_SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong totalValue = new AtomicLong();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * Records one latency sample.
+	 *
+	 * @param micros - The observed latency in microseconds; negative values are
+	 *               clamped to zero.
+	 */
+	public void recordValue(long micros) {
+		long value = Math.max(0L, micros);
+		counts.incrementAndGet(indexOf(value));
+		totalCount.incrementAndGet();
+		totalValue.addAndGet(value);
+		maxValue.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Adds every sample of the given histogram into this one.
+	 *
+	 * @param other - The histogram to merge; it is not modified.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long count = other.counts.get(i);
+			if (count != 0) {
+				counts.addAndGet(i, count);
+			}
+		}
+		totalCount.addAndGet(other.totalCount.get());
+		totalValue.addAndGet(other.totalValue.get());
+		maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+	}
+
+	/**
+	 * Clears all recorded samples.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0L);
+		}
+		totalCount.set(0L);
+		totalValue.set(0L);
+		maxValue.set(0L);
+	}
+
+	/**
+	 * Writes the histogram in a compact sparse form: only non-empty buckets are
+	 * sent, which is a few hundred bytes for a typical latency distribution.
+	 *
+	 * @param out - The destination stream.
+	 * @throws IOException - If the stream fails.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		int nonEmpty = 0;
+		long[] snapshot = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			if (snapshot[i] != 0) {
+				nonEmpty++;
+			}
+		}
+		out.writeLong(totalValue.get());
+		out.writeLong(maxValue.get());
+		out.writeShort(nonEmpty);
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (snapshot[i] != 0) {
+				out.writeShort(i);
+				out.writeLong(snapshot[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a histogram written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in - The source stream.
+	 *
+	 * @return LatencyHistogram - A new histogram holding the samples.
+	 * @throws IOException - If the stream fails or is malformed.
+	 */
+	public static LatencyHistogram readFrom(DataInput in) throws IOException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.totalValue.set(in.readLong());
+		histogram.maxValue.set(in.readLong());
+		int nonEmpty = in.readUnsignedShort();
+		long total = 0;
+		for (int i = 0; i < nonEmpty; i++) {
+			int index = in.readUnsignedShort();
+			if (index >= BUCKET_COUNT) {
+				throw new IOException("Histogram bucket " + index + " out of range");
+			}
+			long count = in.readLong();
+			histogram.counts.set(index, count);
+			total += count;
+		}
+		histogram.totalCount.set(total);
+		return histogram;
+	}
+
+	public long getTotalCount() {
+		return totalCount.get();
+	}
+
+	public long getMaxValue() {
+		return maxValue.get();
+	}
+
+	public double getMean() {
+		long count = totalCount.get();
+		return count == 0 ? 0.0 : (double) totalValue.get() / count;
+	}
+
+	/**
+	 * Returns the value at the given percentile, reported as the upper bound of
+	 * the bucket holding that sample (so percentiles never under-report).
+	 *
+	 * @param percentile - A percentile between 0 and 100.
+	 *
+	 * @return long - The latency in microseconds, or 0 when nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = totalCount.get();
+		if (count == 0) {
+			return 0L;
+		}
+		long target = Math.max(1L, (long) Math.ceil(count * Math.min(100.0, percentile) / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highestValueOf(i), maxValue.get());
+			}
+		}
+		return maxValue.get();
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - SUB_BUCKET_BITS + 1;
+		return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT
+				+ (int) ((value >>> shift) - HALF_SUB_BUCKET_COUNT);
+	}
+
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+		long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,220 @@
+package rest.load;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Uses a whole load box by forking several {@link LoadWorker} JVMs, each running
+ * a slice of the workload, so client-side CPU and GC limits of a single JVM do
+ * not cap the offered load. Workers stream cumulative stats over a loopback
+ * socket; the coordinator shows merged progress while they run and prints one
+ * merged report at the end. Usage:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; [-Dload.worker.jvmArgs="-Xmx1g"] rest.load.LoadCoordinator &lt;workload.json&gt; [workers]
+ * </pre>
+ *
+ * Worker output goes to TestReport/load-worker-&lt;n&gt;.log.
+ */
+public class LoadCoordinator {
+
+	private static final long ACCEPT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+	private final String workloadPath;
+	private final int workerCount;
+	private final AtomicReferenceArray<WorkerSnapshot> latest;
+
+	public LoadCoordinator(String workloadPath, int workerCount) {
+		this.workloadPath = workloadPath;
+		this.workerCount = workerCount;
+		this.latest = new AtomicReferenceArray<>(workerCount);
+	}
+
+	/**
+	 * Forks the workers, collects their snapshots until all have exited, and
+	 * returns the merged per-scenario stats.
+	 *
+	 * @return List&lt;ScenarioStats&gt; - One merged entry per scenario.
+	 * @throws IOException          - If the workers cannot be started or do not
+	 *                              connect.
+	 * @throws InterruptedException - If interrupted while waiting.
+	 */
+	public List<ScenarioStats> run() throws IOException, InterruptedException {
+		List<Process> processes = new ArrayList<>();
+		List<Thread> readers = new ArrayList<>();
+		try (ServerSocket server = new ServerSocket(0, workerCount, InetAddress.getLoopbackAddress())) {
+			server.setSoTimeout((int) ACCEPT_TIMEOUT_MILLIS);
+			for (int i = 0; i < workerCount; i++) {
+				processes.add(fork(i, server.getLocalPort()));
+			}
+			for (int i = 0; i < workerCount; i++) {
+				Socket socket;
+				try {
+					socket = server.accept();
+				} catch (SocketTimeoutException e) {
+					throw new IOException("Only " + i + " of " + workerCount + " workers connected; see worker logs");
+				}
+				Thread reader = new Thread(() -> readSnapshots(socket), "load-coordinator-reader-" + i);
+				reader.start();
+				readers.add(reader);
+			}
+
+			long nextProgress = System.currentTimeMillis() + PROGRESS_INTERVAL_MILLIS;
+			for (Process process : processes) {
+				while (!process.waitFor(200, TimeUnit.MILLISECONDS)) {
+					if (System.currentTimeMillis() >= nextProgress) {
+						printProgress();
+						nextProgress += PROGRESS_INTERVAL_MILLIS;
+					}
+				}
+			}
+			for (Thread reader : readers) {
+				reader.join(TimeUnit.SECONDS.toMillis(10));
+			}
+		} finally {
+			for (Process process : processes) {
+				process.destroy();
+			}
+		}
+
+		for (int i = 0; i < workerCount; i++) {
+			WorkerSnapshot snapshot = latest.get(i);
+			if (snapshot == null || !snapshot.last) {
+				System.out.println("Worker " + i + " did not send a final snapshot; its last report is used");
+			}
+		}
+		return merge();
+	}
+
+	private Process fork(int index, int port) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		String jvmArgs = System.getProperty("load.worker.jvmArgs", "").trim();
+		if (!jvmArgs.isEmpty()) {
+			for (String arg : jvmArgs.split("\\s+")) {
+				command.add(arg);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LoadWorker.class.getName());
+		command.add(workloadPath);
+		command.add(String.valueOf(index));
+		command.add(String.valueOf(workerCount));
+		command.add(String.valueOf(port));
+
+		File log = new File(System.getProperty("user.dir") + "/TestReport", "load-worker-" + index + ".log");
+		log.getParentFile().mkdirs();
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+	}
+
+	private void readSnapshots(Socket socket) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+			while (true) {
+				if (in.readInt() != LoadWorker.SNAPSHOT_MAGIC) {
+					throw new IOException("Corrupt worker snapshot stream");
+				}
+				WorkerSnapshot snapshot = new WorkerSnapshot();
+				int index = in.readInt();
+				snapshot.last = in.readBoolean();
+				snapshot.elapsedNanos = in.readLong();
+				int scenarios = in.readInt();
+				for (int i = 0; i < scenarios; i++) {
+					snapshot.stats.add(ScenarioStats.readFrom(in));
+				}
+				latest.set(index, snapshot);
+				if (snapshot.last) {
+					return;
+				}
+			}
+		} catch (EOFException e) {
+			// worker closed the connection
+		} catch (IOException e) {
+			System.out.println("Lost a worker stream: " + e.getMessage());
+		}
+	}
+
+	private List<ScenarioStats> merge() {
+		Map<String, ScenarioStats> merged = new LinkedHashMap<>();
+		for (int i = 0; i < workerCount; i++) {
+			WorkerSnapshot snapshot = latest.get(i);
+			if (snapshot != null) {
+				for (ScenarioStats stats : snapshot.stats) {
+					merged.computeIfAbsent(stats.getName(), ScenarioStats::new).add(stats);
+				}
+			}
+		}
+		return new ArrayList<>(merged.values());
+	}
+
+	private void printProgress() {
+		long requests = 0;
+		long errors = 0;
+		long elapsed = 1;
+		int reporting = 0;
+		for (int i = 0; i < workerCount; i++) {
+			WorkerSnapshot snapshot = latest.get(i);
+			if (snapshot != null) {
+				reporting++;
+				elapsed = Math.max(elapsed, snapshot.elapsedNanos);
+				for (ScenarioStats stats : snapshot.stats) {
+					requests += stats.getHistogram().getTotalCount();
+					errors += stats.getFailures();
+				}
+			}
+		}
+		System.out.println(String.format("[%d/%d workers] %d requests, %d errors, %.1f req/s", reporting, workerCount,
+				requests, errors, requests / (elapsed / 1e9)));
+	}
+
+	/**
+	 * @return long - The longest measured phase reported by any worker.
+	 */
+	public long getElapsedNanos() {
+		long elapsed = 0;
+		for (int i = 0; i < workerCount; i++) {
+			WorkerSnapshot snapshot = latest.get(i);
+			if (snapshot != null) {
+				elapsed = Math.max(elapsed, snapshot.elapsedNanos);
+			}
+		}
+		return elapsed;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: LoadCoordinator <workload.json> [workers]");
+			System.exit(2);
+		}
+		WorkloadDefinition definition = WorkloadDefinition.load(args[0]);
+		if (definition.getProfile() != null) {
+			throw new IllegalArgumentException("Capacity-search profiles need a single measuring process; "
+					+ "run them with WorkloadRunner");
+		}
+		int workers = args.length == 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		LoadCoordinator coordinator = new LoadCoordinator(args[0], Math.max(1, workers));
+		List<ScenarioStats> merged = coordinator.run();
+		WorkloadRunner.printReport(definition.getName() + " x" + workers + " workers", merged,
+				coordinator.getElapsedNanos());
+	}
+
+	private static class WorkerSnapshot {
+		private final List<ScenarioStats> stats = new ArrayList<>();
+		private boolean last;
+		private long elapsedNanos;
+	}
+}
@@ -0,0 +1,114 @@
+package rest.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time-varying target rate for a capacity search, plus the thresholds that
+ * define "sustainable". A measurement window breaches when its p99 latency
+ * exceeds {@code maxP99Ms}, its error rate exceeds {@code maxErrorRate}, or the
+ * achieved throughput falls below {@code minAchievedRatio} of the target. The
+ * knee is the first of {@code kneeWindows} consecutive breaching windows.
+ */
+public class LoadProfile {
+
+	private List<LoadStage> stages = new ArrayList<>();
+	private int windowSeconds = 10;
+	private double maxP99Ms = 2000;
+	private double maxErrorRate = 0.01;
+	private double minAchievedRatio = 0.9;
+	private int kneeWindows = 2;
+	private boolean stopAtKnee = true;
+
+	/**
+	 * Validates every stage.
+	 *
+	 * @return long - The total profile duration in seconds.
+	 */
+	public long validate() {
+		if (stages.isEmpty()) {
+			throw new IllegalArgumentException("Load profile needs at least one stage");
+		}
+		if (windowSeconds <= 0 || kneeWindows <= 0) {
+			throw new IllegalArgumentException("Load profile needs positive windowSeconds and kneeWindows");
+		}
+		long total = 0;
+		for (LoadStage stage : stages) {
+			stage.validate();
+			total += stage.getDurationSeconds();
+		}
+		return total;
+	}
+
+	/**
+	 * @param seconds - Time since the profile began.
+	 *
+	 * @return double - The target rate, or -1 once the last stage has finished.
+	 */
+	public double rateAt(double seconds) {
+		double stageStart = 0;
+		for (LoadStage stage : stages) {
+			if (seconds < stageStart + stage.getDurationSeconds()) {
+				return stage.rateAt(seconds - stageStart);
+			}
+			stageStart += stage.getDurationSeconds();
+		}
+		return -1;
+	}
+
+	public List<LoadStage> getStages() {
+		return stages;
+	}
+
+	public void setStages(List<LoadStage> stages) {
+		this.stages = stages;
+	}
+
+	public int getWindowSeconds() {
+		return windowSeconds;
+	}
+
+	public void setWindowSeconds(int windowSeconds) {
+		this.windowSeconds = windowSeconds;
+	}
+
+	public double getMaxP99Ms() {
+		return maxP99Ms;
+	}
+
+	public void setMaxP99Ms(double maxP99Ms) {
+		this.maxP99Ms = maxP99Ms;
+	}
+
+	public double getMaxErrorRate() {
+		return maxErrorRate;
+	}
+
+	public void setMaxErrorRate(double maxErrorRate) {
+		this.maxErrorRate = maxErrorRate;
+	}
+
+	public double getMinAchievedRatio() {
+		return minAchievedRatio;
+	}
+
+	public void setMinAchievedRatio(double minAchievedRatio) {
+		this.minAchievedRatio = minAchievedRatio;
+	}
+
+	public int getKneeWindows() {
+		return kneeWindows;
+	}
+
+	public void setKneeWindows(int kneeWindows) {
+		this.kneeWindows = kneeWindows;
+	}
+
+	public boolean isStopAtKnee() {
+		return stopAtKnee;
+	}
+
+	public void setStopAtKnee(boolean stopAtKnee) {
+		this.stopAtKnee = stopAtKnee;
+	}
+}
@@ -0,0 +1,245 @@
+package rest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rest.ApiUtil;
+
+/**
+ * Drives a {@link WorkloadRunner}'s scenario mix along a {@link LoadProfile},
+ * measuring every window to build a throughput-vs-latency curve. Requests are
+ * issued on an open-model schedule whose spacing follows the profile's target
+ * rate, so a saturated server shows up as rising latency and falling achieved
+ * throughput rather than as a quietly slower request rate.
+ *
+ * A request counts towards the window in which it completes, so the slow
+ * responses that straddle a window boundary still land in a window that is
+ * yet to be measured.
+ */
+public class LoadProfileScheduler {
+
+	private static final double MIN_SCHEDULED_RPS = 0.5;
+	private static final long IDLE_ADVANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final WorkloadRunner runner;
+	private final LoadProfile profile;
+	private final AtomicLong nextSlot = new AtomicLong();
+	private final AtomicReference<Window> window = new AtomicReference<>(new Window());
+	private final List<CurvePoint> curve = new ArrayList<>();
+	private volatile boolean stopped;
+	private long start;
+	private int kneeIndex = -1;
+
+	public LoadProfileScheduler(WorkloadRunner runner, LoadProfile profile) {
+		this.runner = runner;
+		this.profile = profile;
+	}
+
+	/**
+	 * Runs the whole profile, or until the knee is confirmed when
+	 * {@link LoadProfile#isStopAtKnee()} is set.
+	 *
+	 * @return List&lt;CurvePoint&gt; - One point per measurement window.
+	 * @throws InterruptedException - If interrupted while running.
+	 */
+	public List<CurvePoint> run() throws InterruptedException {
+		long totalSeconds = profile.validate();
+		long windowNanos = TimeUnit.SECONDS.toNanos(profile.getWindowSeconds());
+		start = System.nanoTime();
+		nextSlot.set(start);
+		// nothing recorded before the run (e.g. during warm-up) counts towards the first window
+		window.set(new Window());
+
+		ExecutorService workers = Executors.newFixedThreadPool(runner.getDefinition().getThreads());
+		for (int i = 0; i < runner.getDefinition().getThreads(); i++) {
+			workers.execute(() -> {
+				ApiUtil apiUtil = new ApiUtil();
+				long slot;
+				while ((slot = claimSlot()) >= 0) {
+					WorkloadRunner.parkUntil(slot);
+					runner.execute(apiUtil, runner.pick(), slot, this::record);
+				}
+			});
+		}
+
+		int breaching = 0;
+		long windowStart = start;
+		while (!stopped) {
+			long windowEnd = windowStart + windowNanos;
+			WorkloadRunner.parkUntil(windowEnd);
+			CurvePoint point = measure(close(window.getAndSet(new Window())), windowStart, windowEnd);
+			curve.add(point);
+			System.out.println(point);
+
+			breaching = point.breached ? breaching + 1 : 0;
+			if (breaching == profile.getKneeWindows() && kneeIndex < 0) {
+				kneeIndex = curve.size() - breaching;
+				System.out.println("Knee detected at " + String.format("%.1f", curve.get(kneeIndex).targetRps)
+						+ " req/s target");
+				stopped = profile.isStopAtKnee();
+			}
+			if (windowEnd - start >= TimeUnit.SECONDS.toNanos(totalSeconds)) {
+				stopped = true;
+			}
+			windowStart = windowEnd;
+		}
+
+		workers.shutdown();
+		if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+			workers.shutdownNow();
+			WorkloadRunner.awaitStragglers(workers);
+		}
+		return Collections.unmodifiableList(curve);
+	}
+
+	private long claimSlot() {
+		while (!stopped) {
+			long slot = nextSlot.get();
+			double rate = profile.rateAt((slot - start) / 1e9);
+			if (rate < 0) {
+				return -1;
+			}
+			boolean idle = rate < MIN_SCHEDULED_RPS;
+			long next = slot + (idle ? IDLE_ADVANCE_NANOS : (long) (1e9 / rate));
+			if (nextSlot.compareAndSet(slot, next) && !idle) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	// pins the current window while recording, so close() can wait for late samples
+	private void record(long micros, String errorType) {
+		Window current;
+		while (true) {
+			current = window.get();
+			current.recording.incrementAndGet();
+			if (window.get() == current) {
+				break;
+			}
+			current.recording.decrementAndGet();
+		}
+		try {
+			current.record(micros, errorType);
+		} finally {
+			current.recording.decrementAndGet();
+		}
+	}
+
+	// a swapped-out window is measured only once no sample is still being recorded into it
+	private static ScenarioStats close(Window closed) {
+		while (closed.recording.get() > 0) {
+			Thread.yield();
+		}
+		return closed;
+	}
+
+	private CurvePoint measure(ScenarioStats stats, long windowStart, long windowEnd) {
+		double seconds = (windowEnd - windowStart) / 1e9;
+		double target = 0;
+		for (int i = 0; i < 10; i++) {
+			target += Math.max(0, profile.rateAt((windowStart - start) / 1e9 + seconds * (i + 0.5) / 10));
+		}
+		target /= 10;
+
+		LatencyHistogram histogram = stats.getHistogram();
+		long requests = histogram.getTotalCount();
+		CurvePoint point = new CurvePoint();
+		point.offsetSeconds = (windowStart - start) / 1e9;
+		point.targetRps = target;
+		point.achievedRps = requests / seconds;
+		point.p50Ms = histogram.getValueAtPercentile(50) / 1000.0;
+		point.p99Ms = histogram.getValueAtPercentile(99) / 1000.0;
+		point.errorRate = requests == 0 ? 0.0 : (double) stats.getFailures() / requests;
+		point.breached = point.p99Ms > profile.getMaxP99Ms() || point.errorRate > profile.getMaxErrorRate()
+				|| requests + 1 < target * seconds * profile.getMinAchievedRatio();
+		return point;
+	}
+
+	/**
+	 * @return double - The highest achieved throughput of any window that met the
+	 *         thresholds before the knee.
+	 */
+	public double getMaxSustainableRps() {
+		double best = 0;
+		int end = kneeIndex < 0 ? curve.size() : kneeIndex;
+		for (int i = 0; i < end; i++) {
+			if (!curve.get(i).breached) {
+				best = Math.max(best, curve.get(i).achievedRps);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Writes the curve as CSV for plotting.
+	 *
+	 * @param file - Destination file; parent directories are created.
+	 * @throws IOException - If the file cannot be written.
+	 */
+	public void writeCurve(File file) throws IOException {
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+			writer.println("offset_s,target_rps,achieved_rps,p50_ms,p99_ms,error_rate,breached");
+			for (CurvePoint point : curve) {
+				writer.println(String.format("%.1f,%.2f,%.2f,%.2f,%.2f,%.4f,%b", point.offsetSeconds, point.targetRps,
+						point.achievedRps, point.p50Ms, point.p99Ms, point.errorRate, point.breached));
+			}
+		}
+	}
+
+	/**
+	 * Prints the capacity verdict.
+	 */
+	public void printReport() {
+		System.out.println("\nCapacity search for '" + runner.getDefinition().getName() + "'");
+		if (kneeIndex < 0) {
+			System.out.println("No knee reached; the backend sustained the whole profile.");
+		} else {
+			System.out.println(String.format("Knee at %.1f req/s target (window starting %.0fs)",
+					curve.get(kneeIndex).targetRps, curve.get(kneeIndex).offsetSeconds));
+		}
+		System.out.println(String.format("Maximum sustainable rate: %.1f req/s", getMaxSustainableRps()));
+	}
+
+	/** Stats of one measurement window and the samples being recorded into it. */
+	private static class Window extends ScenarioStats {
+		final AtomicInteger recording = new AtomicInteger();
+
+		Window() {
+			super("window");
+		}
+	}
+
+	/**
+	 * Measurements of one window of the capacity search.
+	 */
+	public static class CurvePoint {
+		public double offsetSeconds;
+		public double targetRps;
+		public double achievedRps;
+		public double p50Ms;
+		public double p99Ms;
+		public double errorRate;
+		public boolean breached;
+
+		@Override
+		public String toString() {
+			return String.format("[%6.0fs] target %8.1f/s  achieved %8.1f/s  p50 %8.1fms  p99 %8.1fms  errors %5.2f%%%s",
+					offsetSeconds, targetRps, achievedRps, p50Ms, p99Ms, errorRate * 100, breached ? "  BREACH" : "");
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package rest.load;
+
+/**
+ * One segment of a {@link LoadProfile}. The {@code type} decides how the target
+ * rate moves from {@code fromRps} to {@code toRps} over {@code durationSeconds}:
+ * <ul>
+ * <li>"constant" - holds {@code fromRps} (a short constant stage is a spike)</li>
+ * <li>"ramp" - moves linearly from {@code fromRps} to {@code toRps}, which also
+ * covers ramp-down when {@code toRps < fromRps}</li>
+ * <li>"step" - starts at {@code fromRps} and adds {@code stepRps} every
+ * {@code stepSeconds} until {@code toRps}; the duration is derived</li>
+ * </ul>
+ */
+public class LoadStage {
+
+	private String type = "constant";
+	private double fromRps;
+	private double toRps;
+	private int durationSeconds;
+	private double stepRps;
+	private int stepSeconds;
+
+	/**
+	 * Checks the stage is complete and derives the duration of step stages.
+	 *
+	 * @throws IllegalArgumentException - If the stage cannot be executed.
+	 */
+	public void validate() {
+		if (fromRps < 0 || toRps < 0) {
+			throw new IllegalArgumentException("Load stage rates cannot be negative");
+		}
+		switch (type) {
+		case "constant":
+			toRps = fromRps;
+			break;
+		case "ramp":
+			break;
+		case "step":
+			if (stepRps == 0 || stepSeconds <= 0 || (toRps - fromRps) / stepRps < 0) {
+				throw new IllegalArgumentException("Step stage needs a stepRps moving fromRps towards toRps "
+						+ "and a positive stepSeconds");
+			}
+			durationSeconds = (int) (Math.floor((toRps - fromRps) / stepRps) + 1) * stepSeconds;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown load stage type '" + type + "'");
+		}
+		if (durationSeconds <= 0) {
+			throw new IllegalArgumentException("Load stage '" + type + "' needs a positive duration");
+		}
+	}
+
+	/**
+	 * @param secondsIntoStage - Time since the stage began.
+	 *
+	 * @return double - The target request rate at that moment.
+	 */
+	public double rateAt(double secondsIntoStage) {
+		switch (type) {
+		case "ramp":
+			return fromRps + (toRps - fromRps) * Math.min(1.0, secondsIntoStage / durationSeconds);
+		case "step":
+			double stepped = fromRps + stepRps * Math.floor(secondsIntoStage / stepSeconds);
+			return stepRps > 0 ? Math.min(stepped, toRps) : Math.max(stepped, toRps);
+		default:
+			return fromRps;
+		}
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public double getFromRps() {
+		return fromRps;
+	}
+
+	public void setFromRps(double fromRps) {
+		this.fromRps = fromRps;
+	}
+
+	public double getToRps() {
+		return toRps;
+	}
+
+	public void setToRps(double toRps) {
+		this.toRps = toRps;
+	}
+
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	public void setDurationSeconds(int durationSeconds) {
+		this.durationSeconds = durationSeconds;
+	}
+
+	public double getStepRps() {
+		return stepRps;
+	}
+
+	public void setStepRps(double stepRps) {
+		this.stepRps = stepRps;
+	}
+
+	public int getStepSeconds() {
+		return stepSeconds;
+	}
+
+	public void setStepSeconds(int stepSeconds) {
+		this.stepSeconds = stepSeconds;
+	}
+}
@@ -0,0 +1,103 @@
+package rest.load;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker JVM started by {@link LoadCoordinator}. It connects, warms itself up,
+ * then runs its slice of the workload (threads and target rate divided by the
+ * worker count) and streams cumulative stats snapshots to the coordinator over
+ * a loopback socket once a second, with a final snapshot when the run ends. Because every snapshot is
+ * cumulative, the coordinator only ever needs the latest one per worker.
+ *
+ * Usage: {@code LoadWorker <workload.json> <workerIndex> <workerCount> <port>}
+ */
+public class LoadWorker {
+
+	static final int SNAPSHOT_MAGIC = 0x4C574B31;
+	private static final long SNAPSHOT_INTERVAL_MILLIS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 4) {
+			System.out.println("Usage: LoadWorker <workload.json> <workerIndex> <workerCount> <port>");
+			System.exit(2);
+		}
+		int index = Integer.parseInt(args[1]);
+		int count = Integer.parseInt(args[2]);
+		int port = Integer.parseInt(args[3]);
+
+		WorkloadDefinition definition = slice(WorkloadDefinition.load(args[0]), index, count);
+		WorkloadRunner runner = new WorkloadRunner(definition);
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			socket.setTcpNoDelay(true);
+			new WarmUpPhase(runner, definition.getWarmup()).run();
+			if (definition.getTraceFile() != null) {
+				runner.openTrace(new File(definition.getTraceFile()));
+			}
+			long start = System.nanoTime();
+			Thread reporter = new Thread(() -> {
+				try {
+					while (!Thread.currentThread().isInterrupted()) {
+						Thread.sleep(SNAPSHOT_INTERVAL_MILLIS);
+						sendSnapshot(out, runner, index, false, System.nanoTime() - start);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (IOException e) {
+					System.out.println("Worker " + index + " lost its coordinator: " + e.getMessage());
+				}
+			}, "load-worker-reporter");
+			reporter.setDaemon(true);
+			reporter.start();
+
+			long elapsed = runner.run();
+			runner.closeTrace();
+			reporter.interrupt();
+			reporter.join(TimeUnit.SECONDS.toMillis(5));
+			sendSnapshot(out, runner, index, true, elapsed);
+		}
+	}
+
+	/**
+	 * Reduces a workload to one worker's share.
+	 *
+	 * @param definition - The full workload.
+	 * @param index      - This worker's zero-based index.
+	 * @param count      - The number of workers.
+	 *
+	 * @return WorkloadDefinition - The same definition with threads and rate
+	 *         divided among the workers.
+	 */
+	static WorkloadDefinition slice(WorkloadDefinition definition, int index, int count) {
+		int threads = definition.getThreads() / count + (index < definition.getThreads() % count ? 1 : 0);
+		definition.setThreads(Math.max(1, threads));
+		definition.setTargetRps(definition.getTargetRps() / count);
+		definition.setName(definition.getName() + "#" + index);
+		if (definition.getTraceFile() != null) {
+			definition.setTraceFile(definition.getTraceFile() + "." + index);
+		}
+		return definition;
+	}
+
+	private static void sendSnapshot(DataOutputStream out, WorkloadRunner runner, int index, boolean last,
+			long elapsedNanos) throws IOException {
+		synchronized (out) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(index);
+			out.writeBoolean(last);
+			out.writeLong(elapsedNanos);
+			out.writeInt(runner.getScenarios().size());
+			for (Scenario scenario : runner.getScenarios()) {
+				scenario.getStats().writeTo(out);
+			}
+			out.flush();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package rest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import coreUtilities.utils.FileOperations;
+
+/**
+ * Describes where a single endpoint placeholder gets its value from. Supported
+ * sources are:
+ * <ul>
+ * <li>"literal" - the fixed {@code value}</li>
+ * <li>"excel" - column {@code key} of {@code sheet} in {@code file}, read through
+ * {@link FileOperations#readExcelPOI(String, String)}</li>
+ * <li>"json" - the JSON pointer {@code key} (e.g. "/FirstName") of {@code file}</li>
+ * <li>"system" - the JVM system property (or environment variable) {@code key},
+ * falling back to {@code value}</li>
+ * <li>"values" - a random pick from {@code values} on every request</li>
+ * <li>"range" - a random integer between {@code min} and {@code max} on every
+ * request</li>
+ * </ul>
+ * Static sources are resolved once by {@link #prepare()} so the hot path never
+ * touches the file system.
+ */
+public class ParameterSource {
+
+	private static final Map<String, Map<String, String>> EXCEL_CACHE = new ConcurrentHashMap<>();
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private String source = "literal";
+	private String value;
+	private String file;
+	private String sheet;
+	private String key;
+	private List<String> values;
+	private long min;
+	private long max;
+
+	private transient String resolved;
+
+	/**
+	 * Resolves static sources up front and validates dynamic ones.
+	 *
+	 * @throws IOException              - If a referenced file cannot be read.
+	 * @throws IllegalArgumentException - If the source is unknown or incomplete.
+	 */
+	public void prepare() throws IOException {
+		switch (source) {
+		case "literal":
+			resolved = require(value, "value");
+			break;
+		case "excel":
+			resolved = readExcel(require(file, "file"), require(sheet, "sheet"), require(key, "key"));
+			break;
+		case "json":
+			JsonNode node = MAPPER.readTree(new File(require(file, "file"))).at(require(key, "key"));
+			if (node.isMissingNode()) {
+				throw new IllegalArgumentException("JSON pointer '" + key + "' not found in " + file);
+			}
+			resolved = node.asText();
+			break;
+		case "system":
+			String property = System.getProperty(require(key, "key"), System.getenv(key));
+			resolved = property != null ? property : require(value, "value");
+			break;
+		case "values":
+			if (values == null || values.isEmpty()) {
+				throw new IllegalArgumentException("Parameter source 'values' needs a non-empty 'values' list");
+			}
+			break;
+		case "range":
+			if (max < min) {
+				throw new IllegalArgumentException("Parameter source 'range' needs min <= max");
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown parameter source '" + source + "'");
+		}
+	}
+
+	/**
+	 * @return String - The value to substitute for the next request.
+	 */
+	public String next() {
+		if (resolved != null) {
+			return resolved;
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if ("values".equals(source)) {
+			return values.get(random.nextInt(values.size()));
+		}
+		return String.valueOf(min + (long) (random.nextDouble() * (max - min + 1)));
+	}
+
+	private static String readExcel(String file, String sheet, String key) throws IOException {
+		Map<String, String> row = EXCEL_CACHE.computeIfAbsent(file + "#" + sheet, k -> {
+			try {
+				return new FileOperations().readExcelPOI(file, sheet);
+			} catch (Exception e) {
+				throw new IllegalStateException("Unable to read sheet '" + sheet + "' of " + file, e);
+			}
+		});
+		if (row == null || row.get(key) == null) {
+			throw new IOException("Key '" + key + "' not found in sheet '" + sheet + "' of " + file);
+		}
+		return row.get(key);
+	}
+
+	private String require(String field, String name) {
+		if (field == null) {
+			throw new IllegalArgumentException("Parameter source '" + source + "' needs '" + name + "'");
+		}
+		return field;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	public void setFile(String file) {
+		this.file = file;
+	}
+
+	public String getSheet() {
+		return sheet;
+	}
+
+	public void setSheet(String sheet) {
+		this.sheet = sheet;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	public List<String> getValues() {
+		return values;
+	}
+
+	public void setValues(List<String> values) {
+		this.values = values;
+	}
+
+	public long getMin() {
+		return min;
+	}
+
+	public void setMin(long min) {
+		this.min = min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public void setMax(long max) {
+		this.max = max;
+	}
+}
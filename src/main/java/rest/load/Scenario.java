@@ -0,0 +1,163 @@
+package rest.load;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import rest.ApiUtil;
+import rest.CustomResponse;
+
+/**
+ * A {@link ScenarioDefinition} bound to its {@link ApiUtil} method, with the
+ * endpoint template pre-split so building a URL is a single append loop.
+ */
+public class Scenario {
+
+	private final String name;
+	private final int weight;
+	private final Method method;
+	private final String[] literals;
+	private final ParameterSource[] sources;
+	private final ScenarioStats stats;
+
+	private Scenario(ScenarioDefinition definition, Method method, List<String> literals,
+			List<ParameterSource> sources) {
+		this.name = definition.getName();
+		this.weight = definition.getWeight();
+		this.method = method;
+		this.literals = literals.toArray(new String[0]);
+		this.sources = sources.toArray(new ParameterSource[0]);
+		this.stats = new ScenarioStats(name);
+	}
+
+	/**
+	 * Validates a definition and binds it to its ApiUtil method.
+	 *
+	 * @param definition - The scenario as written in the workload file.
+	 *
+	 * @return Scenario - The executable scenario.
+	 * @throws IOException              - If a parameter file cannot be read.
+	 * @throws IllegalArgumentException - If the method, weight or a placeholder is
+	 *                                  invalid.
+	 */
+	public static Scenario from(ScenarioDefinition definition) throws IOException {
+		if (definition.getName() == null || definition.getEndpoint() == null) {
+			throw new IllegalArgumentException("Every scenario needs a 'name' and an 'endpoint'");
+		}
+		if (definition.getWeight() <= 0) {
+			throw new IllegalArgumentException("Scenario '" + definition.getName() + "' needs a positive weight");
+		}
+		Method method = findApiMethod(definition.getMethod());
+
+		List<String> literals = new ArrayList<>();
+		List<ParameterSource> sources = new ArrayList<>();
+		String template = definition.getEndpoint();
+		int cursor = 0;
+		int open;
+		while ((open = template.indexOf('{', cursor)) >= 0) {
+			int close = template.indexOf('}', open);
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed placeholder in endpoint " + template);
+			}
+			String param = template.substring(open + 1, close);
+			ParameterSource source = definition.getParams().get(param);
+			if (source == null) {
+				throw new IllegalArgumentException(
+						"Scenario '" + definition.getName() + "' has no parameter source for {" + param + "}");
+			}
+			source.prepare();
+			literals.add(template.substring(cursor, open));
+			sources.add(source);
+			cursor = close + 1;
+		}
+		literals.add(template.substring(cursor));
+		return new Scenario(definition, method, literals, sources);
+	}
+
+	/**
+	 * Looks up a public ApiUtil method taking (endpoint, body).
+	 *
+	 * @param methodName - Name of the ApiUtil method, e.g. "searchPatient".
+	 *
+	 * @return Method - The reflective handle.
+	 */
+	public static Method findApiMethod(String methodName) {
+		StringBuilder available = new StringBuilder();
+		for (Method candidate : ApiUtil.class.getMethods()) {
+			if (candidate.getDeclaringClass() == ApiUtil.class && candidate.getParameterCount() == 2
+					&& candidate.getParameterTypes()[0] == String.class
+					&& candidate.getReturnType() == CustomResponse.class) {
+				if (candidate.getName().equals(methodName)) {
+					return candidate;
+				}
+				available.append(' ').append(candidate.getName());
+			}
+		}
+		throw new IllegalArgumentException("ApiUtil has no method '" + methodName + "'; available:" + available);
+	}
+
+	/**
+	 * @return String - The endpoint with every placeholder substituted.
+	 */
+	public String nextEndpoint() {
+		StringBuilder endpoint = new StringBuilder(64);
+		for (int i = 0; i < sources.length; i++) {
+			endpoint.append(literals[i]).append(sources[i].next());
+		}
+		return endpoint.append(literals[sources.length]).toString();
+	}
+
+	/**
+	 * Calls the bound ApiUtil method once.
+	 *
+	 * @param apiUtil  - The ApiUtil instance owned by the calling thread.
+	 * @param endpoint - The endpoint to pass to the method.
+	 *
+	 * @return CustomResponse - Whatever the ApiUtil method returned.
+	 * @throws Exception - Whatever the ApiUtil method threw.
+	 */
+	public CustomResponse invoke(ApiUtil apiUtil, String endpoint) throws Exception {
+		try {
+			return (CustomResponse) method.invoke(apiUtil, endpoint, null);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : e;
+		}
+	}
+
+	/**
+	 * Classifies a call's outcome.
+	 *
+	 * @param response - The response returned by {@link #invoke(ApiUtil, String)}.
+	 *
+	 * @return String - null when the call succeeded, else a short error class.
+	 */
+	public static String errorTypeOf(CustomResponse response) {
+		if (response == null) {
+			return "NoResponse";
+		}
+		int statusCode = response.getStatusCode();
+		if (statusCode >= 200 && statusCode < 400) {
+			return null;
+		}
+		return statusCode == 0 ? "NoStatus" : "HTTP " + statusCode;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	public String getMethodName() {
+		return method.getName();
+	}
+
+	public ScenarioStats getStats() {
+		return stats;
+	}
+}
@@ -0,0 +1,58 @@
+package rest.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One entry of a workload mix: which {@link rest.ApiUtil} method to call, the
+ * endpoint template it is called with, its share of the traffic and where the
+ * "{placeholder}" values in the endpoint come from.
+ */
+public class ScenarioDefinition {
+
+	private String name;
+	private String method;
+	private String endpoint;
+	private int weight = 1;
+	private Map<String, ParameterSource> params = new LinkedHashMap<>();
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public void setMethod(String method) {
+		this.method = method;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public void setEndpoint(String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	public Map<String, ParameterSource> getParams() {
+		return params;
+	}
+
+	public void setParams(Map<String, ParameterSource> params) {
+		this.params = params;
+	}
+}
@@ -0,0 +1,128 @@
+package rest.load;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram collected for one scenario of a workload.
+ */
+public class ScenarioStats {
+
+	private final String name;
+	private final LatencyHistogram histogram = new LatencyHistogram();
+	private final LongAdder successes = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final Map<String, LongAdder> failuresByType = new ConcurrentHashMap<>();
+
+	public ScenarioStats(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records the outcome of one request.
+	 *
+	 * @param micros    - Latency in microseconds, measured from the intended start.
+	 * @param errorType - null on success, otherwise a short error class such as
+	 *                  "HTTP 500" or an exception's simple name.
+	 */
+	public void record(long micros, String errorType) {
+		histogram.recordValue(micros);
+		if (errorType == null) {
+			successes.increment();
+		} else {
+			failures.increment();
+			failuresByType.computeIfAbsent(errorType, k -> new LongAdder()).increment();
+		}
+	}
+
+	/**
+	 * Adds another set of stats for the same scenario into this one.
+	 *
+	 * @param other - The stats to merge; they are not modified.
+	 */
+	public void add(ScenarioStats other) {
+		histogram.add(other.histogram);
+		successes.add(other.getSuccesses());
+		failures.add(other.getFailures());
+		for (Map.Entry<String, Long> entry : other.getFailuresByType().entrySet()) {
+			failuresByType.computeIfAbsent(entry.getKey(), k -> new LongAdder()).add(entry.getValue());
+		}
+	}
+
+	/**
+	 * Serialises a snapshot of these stats, e.g. for a worker reporting to its
+	 * coordinator.
+	 *
+	 * @param out - The destination stream.
+	 * @throws IOException - If the stream fails.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeUTF(name);
+		out.writeLong(getSuccesses());
+		out.writeLong(getFailures());
+		Map<String, Long> byType = getFailuresByType();
+		out.writeInt(byType.size());
+		for (Map.Entry<String, Long> entry : byType.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue());
+		}
+		histogram.writeTo(out);
+	}
+
+	/**
+	 * Reads stats written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in - The source stream.
+	 *
+	 * @return ScenarioStats - A new stats object holding the snapshot.
+	 * @throws IOException - If the stream fails or is malformed.
+	 */
+	public static ScenarioStats readFrom(DataInput in) throws IOException {
+		ScenarioStats stats = new ScenarioStats(in.readUTF());
+		stats.successes.add(in.readLong());
+		stats.failures.add(in.readLong());
+		int types = in.readInt();
+		for (int i = 0; i < types; i++) {
+			String type = in.readUTF();
+			stats.failuresByType.computeIfAbsent(type, k -> new LongAdder()).add(in.readLong());
+		}
+		stats.histogram.add(LatencyHistogram.readFrom(in));
+		return stats;
+	}
+
+	public void reset() {
+		histogram.reset();
+		successes.reset();
+		failures.reset();
+		failuresByType.clear();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	public long getSuccesses() {
+		return successes.sum();
+	}
+
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	public Map<String, Long> getFailuresByType() {
+		Map<String, Long> snapshot = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry : failuresByType.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().sum());
+		}
+		return snapshot;
+	}
+}
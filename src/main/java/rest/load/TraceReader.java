@@ -0,0 +1,209 @@
+package rest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline reader for traces written by {@link TraceWriter}. It re-aggregates
+ * latency (measured from the intended start), errors and bytes by endpoint, by
+ * time window, or both, optionally restricted to a time range or one endpoint.
+ * A trace from a crashed run (no committed count) is read up to the last
+ * complete record. Usage:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; rest.load.TraceReader TestReport/pl2.trace [--by endpoint|window|both]
+ *     [--window 10] [--from 60] [--to 600] [--endpoint GetAllItems]
+ * </pre>
+ */
+public class TraceReader {
+
+	private final Map<Integer, String> names = new HashMap<>();
+	private final List<MappedByteBuffer> chunks = new ArrayList<>();
+	private final long epochMillis;
+	private final long recordCount;
+
+	public TraceReader(File trace) throws IOException {
+		File namesFile = new File(trace.getPath() + ".names");
+		names.put(0, "");
+		if (namesFile.exists()) {
+			for (String line : Files.readAllLines(namesFile.toPath(), StandardCharsets.UTF_8)) {
+				int tab = line.indexOf('\t');
+				if (tab > 0) {
+					names.put(Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+				}
+			}
+		}
+		try (RandomAccessFile file = new RandomAccessFile(trace, "r"); FileChannel channel = file.getChannel()) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceWriter.HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong(0) != TraceWriter.MAGIC || header.getInt(8) != TraceWriter.VERSION
+					|| header.getInt(12) != TraceWriter.RECORD_SIZE) {
+				throw new IOException(trace + " is not a version " + TraceWriter.VERSION + " load trace");
+			}
+			epochMillis = header.getLong(16);
+			long available = (channel.size() - TraceWriter.HEADER_SIZE) / TraceWriter.RECORD_SIZE;
+			long committed = header.getLong(24);
+			for (long offset = 0; offset < available * TraceWriter.RECORD_SIZE; offset += TraceWriter.CHUNK_BYTES) {
+				long size = Math.min(TraceWriter.CHUNK_BYTES, available * TraceWriter.RECORD_SIZE - offset);
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, TraceWriter.HEADER_SIZE + offset,
+						size);
+				chunk.order(ByteOrder.LITTLE_ENDIAN);
+				chunks.add(chunk);
+			}
+			recordCount = committed > 0 ? Math.min(committed, available) : countCompleteRecords(available);
+		}
+	}
+
+	private long countCompleteRecords(long available) {
+		long count = 0;
+		while (count < available && (flagsOf(count) & TraceWriter.FLAG_COMPLETE) != 0) {
+			count++;
+		}
+		return count;
+	}
+
+	private int flagsOf(long index) {
+		return chunkOf(index).getShort(offsetOf(index) + 38);
+	}
+
+	private MappedByteBuffer chunkOf(long index) {
+		return chunks.get((int) (index / TraceWriter.CHUNK_RECORDS));
+	}
+
+	private static int offsetOf(long index) {
+		return (int) ((index % TraceWriter.CHUNK_RECORDS) * TraceWriter.RECORD_SIZE);
+	}
+
+	/**
+	 * Aggregates records into per-key stats.
+	 *
+	 * @param by            - "endpoint", "window" or "both".
+	 * @param windowSeconds - Window width for "window" and "both".
+	 * @param fromSeconds   - Only records intended to start at or after this
+	 *                      offset.
+	 * @param toSeconds     - Only records intended to start before this offset.
+	 * @param endpoint      - Only this endpoint, or null for all.
+	 *
+	 * @return Map&lt;String, ScenarioStats&gt; - Stats keyed and sorted by group.
+	 */
+	public Map<String, ScenarioStats> aggregate(String by, int windowSeconds, double fromSeconds, double toSeconds,
+			String endpoint) {
+		Map<String, ScenarioStats> groups = new TreeMap<>();
+		long windowNanos = Math.max(1, windowSeconds) * 1_000_000_000L;
+		for (long i = 0; i < recordCount; i++) {
+			MappedByteBuffer chunk = chunkOf(i);
+			int offset = offsetOf(i);
+			long intended = chunk.getLong(offset);
+			if (intended < fromSeconds * 1e9 || intended >= toSeconds * 1e9) {
+				continue;
+			}
+			String name = names.get((int) chunk.getShort(offset + 32));
+			if (endpoint != null && !endpoint.equals(name)) {
+				continue;
+			}
+			String key;
+			String window = String.format("%08.1fs", (double) (intended / windowNanos * windowSeconds));
+			switch (by) {
+			case "window":
+				key = window;
+				break;
+			case "both":
+				key = window + " " + name;
+				break;
+			default:
+				key = name;
+			}
+			int errorId = chunk.getShort(offset + 36);
+			groups.computeIfAbsent(key, ScenarioStats::new).record((chunk.getLong(offset + 16) - intended) / 1000,
+					errorId == 0 ? null : names.get(errorId));
+		}
+		return groups;
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	public long getEpochMillis() {
+		return epochMillis;
+	}
+
+	/**
+	 * @return long - Total response bytes recorded in the trace.
+	 */
+	public long getTotalBytes() {
+		long bytes = 0;
+		for (long i = 0; i < recordCount; i++) {
+			bytes += chunkOf(i).getInt(offsetOf(i) + 28);
+		}
+		return bytes;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: TraceReader <trace> [--by endpoint|window|both] [--window seconds] "
+					+ "[--from seconds] [--to seconds] [--endpoint name]");
+			System.exit(2);
+		}
+		String by = "endpoint";
+		int window = 10;
+		double from = 0;
+		double to = Double.MAX_VALUE;
+		String endpoint = null;
+		for (int i = 1; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "--by":
+				by = args[i + 1];
+				break;
+			case "--window":
+				window = Integer.parseInt(args[i + 1]);
+				break;
+			case "--from":
+				from = Double.parseDouble(args[i + 1]);
+				break;
+			case "--to":
+				to = Double.parseDouble(args[i + 1]);
+				break;
+			case "--endpoint":
+				endpoint = args[i + 1];
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		TraceReader reader = new TraceReader(new File(args[0]));
+		System.out.println(reader.getRecordCount() + " records, " + reader.getTotalBytes()
+				+ " response bytes, started " + new Date(reader.getEpochMillis()));
+		Map<String, ScenarioStats> groups = reader.aggregate(by, window, from, to, endpoint);
+		long span = "endpoint".equals(by) ? reader.getSpanNanos() : window * 1_000_000_000L;
+		WorkloadRunner.printReport(args[0] + " by " + by, new ArrayList<>(groups.values()), span);
+	}
+
+	/**
+	 * @return long - Nanoseconds between the first intended start and the last
+	 *         end in the trace.
+	 */
+	public long getSpanNanos() {
+		long first = Long.MAX_VALUE;
+		long last = 0;
+		for (long i = 0; i < recordCount; i++) {
+			MappedByteBuffer chunk = chunkOf(i);
+			int offset = offsetOf(i);
+			first = Math.min(first, chunk.getLong(offset));
+			last = Math.max(last, chunk.getLong(offset + 16));
+		}
+		return recordCount == 0 ? 0 : last - first;
+	}
+}
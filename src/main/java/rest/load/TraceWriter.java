@@ -0,0 +1,202 @@
+package rest.load;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only binary trace of every request of a load run, written through
+ * memory-mapped chunks so recording costs a few absolute stores and no system
+ * call. Each request takes one fixed 40-byte record:
+ *
+ * <pre>
+ * offset size field
+ *      0    8 intended start, ns since the trace epoch
+ *      8    8 actual start, ns since the trace epoch
+ *     16    8 end, ns since the trace epoch
+ *     24    4 RestAssured-measured response time in ms, -1 if unknown
+ *     28    4 response body bytes
+ *     32    2 endpoint (scenario) name id
+ *     34    2 HTTP status, 0 if none
+ *     36    2 error class name id, 0 on success
+ *     38    2 flags, bit 0 set once the record is complete
+ * </pre>
+ *
+ * A record splits a request into three phases: queueing (intended to actual
+ * start, i.e. the schedule running behind), RestAssured's response time
+ * (request sent to response read) and client overhead (the rest of actual
+ * start to end: building the request, filters and decoding in ApiUtil).
+ * Finer phases are not recorded. RestAssured reports only that one response
+ * time, and the Apache HttpClient it drives is created inside RestAssured per
+ * request, so DNS lookup, connect, TLS handshake and time to first byte
+ * cannot be observed from here without replacing RestAssured's HTTP client.
+ *
+ * The 32-byte header holds a magic, the format version, the record size, the
+ * wall-clock millis of the trace epoch and the committed record count.
+ * Names are interned into a "&lt;trace&gt;.names" side file as they first
+ * appear. Read the trace back with {@link TraceReader}.
+ *
+ * The file keeps the length of its last mapped chunk: it is never shrunk
+ * while mapped, since a late write into a truncated mapping faults the JVM.
+ * Readers go by the committed count, and records arriving after
+ * {@link #close()} are ignored.
+ */
+public class TraceWriter implements Closeable {
+
+	static final long MAGIC = 0x504C325452414345L;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int RECORD_SIZE = 40;
+	static final int FLAG_COMPLETE = 1;
+	static final long CHUNK_RECORDS = 1 << 20;
+	static final long CHUNK_BYTES = CHUNK_RECORDS * RECORD_SIZE;
+	private static final int MAX_CHUNKS = 4096;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final AtomicReferenceArray<MappedByteBuffer> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+	private final AtomicLong nextRecord = new AtomicLong();
+	private final Map<String, Short> names = new ConcurrentHashMap<>();
+	private final Writer namesFile;
+	private final long epochNanos = System.nanoTime();
+	private volatile boolean closed;
+
+	public TraceWriter(File trace) throws IOException {
+		if (trace.getParentFile() != null) {
+			trace.getParentFile().mkdirs();
+		}
+		file = new RandomAccessFile(trace, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(0, MAGIC);
+		header.putInt(8, VERSION);
+		header.putInt(12, RECORD_SIZE);
+		header.putLong(16, System.currentTimeMillis());
+		header.putLong(24, 0L);
+		namesFile = new OutputStreamWriter(new FileOutputStream(trace.getPath() + ".names"), StandardCharsets.UTF_8);
+		names.put("", (short) 0);
+	}
+
+	/**
+	 * Appends one request record. Safe to call from any number of threads;
+	 * ignored once the trace is closed.
+	 *
+	 * @param endpoint           - The scenario or endpoint name.
+	 * @param intendedStart      - {@link System#nanoTime()} the request was
+	 *                           scheduled for.
+	 * @param actualStart        - {@link System#nanoTime()} the request started.
+	 * @param end                - {@link System#nanoTime()} the response was
+	 *                           returned.
+	 * @param status             - HTTP status, 0 if none.
+	 * @param bytes              - Response body size.
+	 * @param responseTimeMillis - RestAssured's own response time, -1 if unknown.
+	 * @param errorClass         - null on success, otherwise the error class.
+	 */
+	public void record(String endpoint, long intendedStart, long actualStart, long end, int status, int bytes,
+			int responseTimeMillis, String errorClass) {
+		if (closed) {
+			return;
+		}
+		long index = nextRecord.getAndIncrement();
+		MappedByteBuffer chunk = chunk((int) (index / CHUNK_RECORDS));
+		int offset = (int) ((index % CHUNK_RECORDS) * RECORD_SIZE);
+		chunk.putLong(offset, intendedStart - epochNanos);
+		chunk.putLong(offset + 8, actualStart - epochNanos);
+		chunk.putLong(offset + 16, end - epochNanos);
+		chunk.putInt(offset + 24, responseTimeMillis);
+		chunk.putInt(offset + 28, bytes);
+		chunk.putShort(offset + 32, idOf(endpoint));
+		chunk.putShort(offset + 34, (short) status);
+		chunk.putShort(offset + 36, errorClass == null ? 0 : idOf(errorClass));
+		chunk.putShort(offset + 38, (short) FLAG_COMPLETE);
+	}
+
+	private MappedByteBuffer chunk(int number) {
+		MappedByteBuffer chunk = chunks.get(number);
+		if (chunk == null) {
+			synchronized (chunks) {
+				chunk = chunks.get(number);
+				if (chunk == null) {
+					try {
+						chunk = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + number * CHUNK_BYTES,
+								CHUNK_BYTES);
+					} catch (IOException e) {
+						throw new IllegalStateException("Unable to extend trace file", e);
+					}
+					chunk.order(ByteOrder.LITTLE_ENDIAN);
+					chunks.set(number, chunk);
+				}
+			}
+		}
+		return chunk;
+	}
+
+	private short idOf(String name) {
+		Short id = names.get(name);
+		if (id != null) {
+			return id;
+		}
+		synchronized (names) {
+			id = names.get(name);
+			if (id == null && closed) {
+				// a request that ended after close(); its record is not counted anyway
+				return 0;
+			}
+			if (id == null) {
+				if (names.size() > Short.MAX_VALUE) {
+					throw new IllegalStateException("Trace name dictionary is full");
+				}
+				id = (short) names.size();
+				try {
+					namesFile.write(id + "\t" + name + "\n");
+					namesFile.flush();
+				} catch (IOException e) {
+					throw new IllegalStateException("Unable to write trace names", e);
+				}
+				names.put(name, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @return long - The number of records appended so far.
+	 */
+	public long getRecordCount() {
+		return nextRecord.get();
+	}
+
+	/**
+	 * Commits the record count and flushes the mappings. Records still being
+	 * appended by requests that outlived the run are not counted.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		long count = nextRecord.get();
+		header.putLong(24, count);
+		header.force();
+		for (int i = 0; i < MAX_CHUNKS && chunks.get(i) != null; i++) {
+			chunks.get(i).force();
+		}
+		synchronized (names) {
+			namesFile.close();
+		}
+		file.close();
+	}
+}
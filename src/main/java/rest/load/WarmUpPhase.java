@@ -0,0 +1,200 @@
+package rest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.restassured.response.Response;
+import rest.ApiUtil;
+import rest.CustomResponse;
+
+/**
+ * Unmeasured warm-up that runs before a workload's measured phase. It calls
+ * every scenario of the workload, plus every other ApiUtil method with an
+ * endpoint from {@link WarmUpSettings#getCoverage()}, in turn, closed-loop on
+ * all the workload's threads, through the same {@link WorkloadRunner#execute}
+ * path the measured phase uses. Each successful response is decoded the way
+ * the tests decode it: "Results" through RestAssured's JsonPath and a
+ * stringified "Results.JsonData" through Jackson. So JIT compilation, class
+ * loading, the Groovy JsonPath bootstrap, TLS handshakes and connection-pool
+ * fill are paid for here.
+ *
+ * Only successful, decoded responses count towards the throughput that has to
+ * stabilise, so a backend that fails fast never looks warm. The trace is
+ * paused while warming up, and the scenario stats the warm-up recorded into
+ * are reset at the end.
+ */
+public class WarmUpPhase {
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+
+	private final WorkloadRunner runner;
+	private final WarmUpSettings settings;
+	private final LongAdder completed = new LongAdder();
+	private final AtomicInteger cursor = new AtomicInteger();
+	private volatile boolean finished;
+
+	public WarmUpPhase(WorkloadRunner runner, WarmUpSettings settings) {
+		this.runner = runner;
+		this.settings = settings;
+	}
+
+	/**
+	 * Runs the warm-up (if enabled) and resets the runner's stats.
+	 *
+	 * @return boolean - true if throughput stabilised, false if warm-up was
+	 *         disabled or hit {@code maxSeconds} first.
+	 * @throws InterruptedException - If interrupted while warming up.
+	 */
+	public boolean run() throws InterruptedException {
+		if (settings == null || !settings.isEnabled()) {
+			return false;
+		}
+		if (settings.getWindowSeconds() <= 0 || settings.getStableWindows() < 2) {
+			throw new IllegalArgumentException("Warm-up needs a positive windowSeconds and stableWindows >= 2");
+		}
+		List<Scenario> scenarios = scenarios();
+		TraceWriter trace = runner.pauseTrace();
+		try {
+			return warmUp(scenarios);
+		} finally {
+			runner.resetStats();
+			runner.resumeTrace(trace);
+		}
+	}
+
+	private boolean warmUp(List<Scenario> scenarios) throws InterruptedException {
+		int threads = runner.getDefinition().getThreads();
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.execute(() -> {
+				ApiUtil apiUtil = new ApiUtil();
+				while (!finished) {
+					exercise(apiUtil, scenarios.get(Math.floorMod(cursor.getAndIncrement(), scenarios.size())));
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		long windowNanos = TimeUnit.SECONDS.toNanos(settings.getWindowSeconds());
+		Deque<Double> recent = new ArrayDeque<>();
+		boolean stable = false;
+		long windowStart = start;
+		while (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(settings.getMaxSeconds())) {
+			WorkloadRunner.parkUntil(windowStart + windowNanos);
+			long now = System.nanoTime();
+			recent.addLast(completed.sumThenReset() / ((now - windowStart) / 1e9));
+			windowStart = now;
+			if (recent.size() > settings.getStableWindows()) {
+				recent.removeFirst();
+			}
+			if (now - start >= TimeUnit.SECONDS.toNanos(settings.getMinSeconds())
+					&& recent.size() == settings.getStableWindows() && isStable(recent)) {
+				stable = true;
+				break;
+			}
+		}
+		finished = true;
+		workers.shutdown();
+		if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+			workers.shutdownNow();
+		}
+
+		System.out.println(String.format("Warm-up %s after %.1fs at %.1f successful req/s over %d endpoints",
+				stable ? "stabilised" : "gave up stabilising", (System.nanoTime() - start) / 1e9,
+				recent.isEmpty() ? 0.0 : recent.peekLast(), scenarios.size()));
+		return stable;
+	}
+
+	// the workload's scenarios, then one per ApiUtil method they leave out, where coverage has one
+	private List<Scenario> scenarios() {
+		List<Scenario> scenarios = new ArrayList<>(runner.getScenarios());
+		Set<String> missing = new LinkedHashSet<>();
+		for (Method method : ApiUtil.class.getMethods()) {
+			if (method.getDeclaringClass() == ApiUtil.class && method.getParameterCount() == 2
+					&& method.getReturnType() == CustomResponse.class) {
+				missing.add(method.getName());
+			}
+		}
+		for (Scenario scenario : scenarios) {
+			missing.remove(scenario.getMethodName());
+		}
+		if (!missing.isEmpty() && settings.getCoverage() != null) {
+			List<ScenarioDefinition> coverage;
+			try {
+				coverage = WorkloadDefinition.load(settings.getCoverage()).getScenarios();
+			} catch (IOException | IllegalArgumentException e) {
+				System.out.println("Warm-up coverage " + new File(settings.getCoverage()).getPath()
+						+ " not usable: " + e.getMessage());
+				coverage = new ArrayList<>();
+			}
+			// one scenario that cannot be loaded (e.g. its Excel parameters) leaves only its own method out
+			for (ScenarioDefinition definition : coverage) {
+				if (!missing.contains(definition.getMethod())) {
+					continue;
+				}
+				try {
+					scenarios.add(Scenario.from(definition));
+					missing.remove(definition.getMethod());
+				} catch (IOException | RuntimeException e) {
+					System.out.println("Warm-up cannot cover ApiUtil." + definition.getMethod() + " with scenario '"
+							+ definition.getName() + "': " + e);
+				}
+			}
+		}
+		if (!missing.isEmpty()) {
+			System.out.println("Warm-up has no endpoint for ApiUtil methods " + missing);
+		}
+		return scenarios;
+	}
+
+	private void exercise(ApiUtil apiUtil, Scenario scenario) {
+		CustomResponse response = runner.execute(apiUtil, scenario, System.nanoTime(), null);
+		if (Scenario.errorTypeOf(response) == null && decoded(response.getResponse())) {
+			completed.increment();
+		}
+	}
+
+	// failures during warm-up are expected while pools fill; they are not measured
+	private static boolean decoded(Response response) {
+		if (response == null) {
+			return false;
+		}
+		try {
+			Object results = response.jsonPath().get("Results");
+			if (results instanceof Map && ((Map<?, ?>) results).get("JsonData") instanceof String) {
+				JSON.readValue((String) ((Map<?, ?>) results).get("JsonData"), Object.class);
+			}
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private boolean isStable(Deque<Double> windows) {
+		double min = Double.MAX_VALUE;
+		double max = 0;
+		double sum = 0;
+		for (double rate : windows) {
+			min = Math.min(min, rate);
+			max = Math.max(max, rate);
+			sum += rate;
+		}
+		double mean = sum / windows.size();
+		return mean > 0 && (max - min) / 2 <= mean * settings.getTolerance();
+	}
+}
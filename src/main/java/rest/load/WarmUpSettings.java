@@ -0,0 +1,84 @@
+package rest.load;
+
+/**
+ * The "warmup" section of a workload. Warm-up runs for at least
+ * {@code minSeconds}, then ends as soon as the throughput of the last
+ * {@code stableWindows} windows of {@code windowSeconds} varies by no more than
+ * {@code tolerance} (0.1 = 10%) around their mean, or gives up after
+ * {@code maxSeconds}.
+ *
+ * ApiUtil methods the workload does not call are warmed up too, with the
+ * endpoints the {@code coverage} workload gives them (by default the parity
+ * workload, which calls every ApiUtil method).
+ */
+public class WarmUpSettings {
+
+	private boolean enabled = true;
+	private int minSeconds = 10;
+	private int maxSeconds = 120;
+	private int windowSeconds = 2;
+	private int stableWindows = 3;
+	private double tolerance = 0.1;
+	private String coverage = "src/main/resources/workloads/pl2-parity.json";
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMinSeconds() {
+		return minSeconds;
+	}
+
+	public void setMinSeconds(int minSeconds) {
+		this.minSeconds = minSeconds;
+	}
+
+	public int getMaxSeconds() {
+		return maxSeconds;
+	}
+
+	public void setMaxSeconds(int maxSeconds) {
+		this.maxSeconds = maxSeconds;
+	}
+
+	public int getWindowSeconds() {
+		return windowSeconds;
+	}
+
+	public void setWindowSeconds(int windowSeconds) {
+		this.windowSeconds = windowSeconds;
+	}
+
+	public int getStableWindows() {
+		return stableWindows;
+	}
+
+	public void setStableWindows(int stableWindows) {
+		this.stableWindows = stableWindows;
+	}
+
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @return String - Workload file whose scenarios warm up the ApiUtil methods
+	 *         the workload itself does not call; null to warm up the workload's
+	 *         scenarios only.
+	 */
+	public String getCoverage() {
+		return coverage;
+	}
+
+	public void setCoverage(String coverage) {
+		this.coverage = coverage;
+	}
+}
@@ -0,0 +1,122 @@
+package rest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JSON description of a traffic mix, loaded by {@link WorkloadRunner}. Pacing
+ * works in one of two ways:
+ * <ul>
+ * <li>{@code targetRps > 0} - open model: requests are started on a fixed
+ * schedule shared by all threads, and latency is measured from the intended
+ * start so a slow server cannot hide its own queueing delay</li>
+ * <li>{@code targetRps == 0} - closed model: every thread loops, and each
+ * iteration takes at least {@code pacingMs}</li>
+ * </ul>
+ * An optional {@code profile} replaces both with a time-varying rate for
+ * capacity searches (see {@link LoadProfile}). An optional {@code warmup}
+ * section runs an unmeasured {@link WarmUpPhase} first, and {@code traceFile}
+ * records every measured request with {@link TraceWriter}.
+ *
+ * See src/main/resources/workloads/pl2-mix.json for an example.
+ */
+public class WorkloadDefinition {
+
+	private String name = "workload";
+	private int threads = 4;
+	private int durationSeconds = 60;
+	private double targetRps;
+	private long pacingMs;
+	private List<ScenarioDefinition> scenarios = new ArrayList<>();
+	private LoadProfile profile;
+	private WarmUpSettings warmup;
+	private String traceFile;
+
+	/**
+	 * Reads a workload definition from a JSON file.
+	 *
+	 * @param path - Location of the workload file.
+	 *
+	 * @return WorkloadDefinition - The parsed definition.
+	 * @throws IOException - If the file is missing or not valid JSON.
+	 */
+	public static WorkloadDefinition load(String path) throws IOException {
+		return new ObjectMapper().readValue(new File(path), WorkloadDefinition.class);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getDurationSeconds() {
+		return durationSeconds;
+	}
+
+	public void setDurationSeconds(int durationSeconds) {
+		this.durationSeconds = durationSeconds;
+	}
+
+	public double getTargetRps() {
+		return targetRps;
+	}
+
+	public void setTargetRps(double targetRps) {
+		this.targetRps = targetRps;
+	}
+
+	public long getPacingMs() {
+		return pacingMs;
+	}
+
+	public void setPacingMs(long pacingMs) {
+		this.pacingMs = pacingMs;
+	}
+
+	public List<ScenarioDefinition> getScenarios() {
+		return scenarios;
+	}
+
+	public void setScenarios(List<ScenarioDefinition> scenarios) {
+		this.scenarios = scenarios;
+	}
+
+	public LoadProfile getProfile() {
+		return profile;
+	}
+
+	public void setProfile(LoadProfile profile) {
+		this.profile = profile;
+	}
+
+	public WarmUpSettings getWarmup() {
+		return warmup;
+	}
+
+	public void setWarmup(WarmUpSettings warmup) {
+		this.warmup = warmup;
+	}
+
+	public String getTraceFile() {
+		return traceFile;
+	}
+
+	public void setTraceFile(String traceFile) {
+		this.traceFile = traceFile;
+	}
+}
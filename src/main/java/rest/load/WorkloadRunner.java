@@ -0,0 +1,305 @@
+package rest.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import io.restassured.response.Response;
+import rest.ApiUtil;
+import rest.CustomResponse;
+
+/**
+ * Executes a {@link WorkloadDefinition} against the ApiUtil methods and prints
+ * per-scenario throughput and latency percentiles. Usage:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; rest.load.WorkloadRunner src/main/resources/workloads/pl2-mix.json
+ * </pre>
+ *
+ * When the workload has a "profile" section the run is handed to
+ * {@link LoadProfileScheduler} for a capacity search instead.
+ */
+public class WorkloadRunner {
+
+	private final WorkloadDefinition definition;
+	private final List<Scenario> scenarios;
+	private final int[] cumulativeWeights;
+	private volatile TraceWriter trace;
+
+	public WorkloadRunner(WorkloadDefinition definition) throws IOException {
+		if (definition.getScenarios().isEmpty()) {
+			throw new IllegalArgumentException("Workload '" + definition.getName() + "' has no scenarios");
+		}
+		if (definition.getThreads() <= 0) {
+			throw new IllegalArgumentException("Workload '" + definition.getName() + "' needs at least one thread");
+		}
+		this.definition = definition;
+		List<Scenario> bound = new ArrayList<>();
+		cumulativeWeights = new int[definition.getScenarios().size()];
+		int total = 0;
+		for (ScenarioDefinition scenarioDefinition : definition.getScenarios()) {
+			Scenario scenario = Scenario.from(scenarioDefinition);
+			total += scenario.getWeight();
+			cumulativeWeights[bound.size()] = total;
+			bound.add(scenario);
+		}
+		scenarios = Collections.unmodifiableList(bound);
+	}
+
+	/**
+	 * @return Scenario - A scenario drawn at random according to the weights.
+	 */
+	public Scenario pick() {
+		int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]) + 1;
+		int index = Arrays.binarySearch(cumulativeWeights, ticket);
+		return scenarios.get(index >= 0 ? index : -index - 1);
+	}
+
+	/**
+	 * Runs the workload for its configured duration.
+	 *
+	 * @return long - The elapsed wall time in nanoseconds.
+	 * @throws InterruptedException - If interrupted while waiting for the workers.
+	 */
+	public long run() throws InterruptedException {
+		long durationNanos = TimeUnit.SECONDS.toNanos(definition.getDurationSeconds());
+		long start = System.nanoTime();
+		long deadline = start + durationNanos;
+		long intervalNanos = definition.getTargetRps() > 0 ? (long) (1e9 / definition.getTargetRps()) : 0L;
+		AtomicLong nextSlot = new AtomicLong(start);
+
+		ExecutorService workers = Executors.newFixedThreadPool(definition.getThreads());
+		for (int i = 0; i < definition.getThreads(); i++) {
+			workers.execute(() -> {
+				ApiUtil apiUtil = new ApiUtil();
+				while (!Thread.currentThread().isInterrupted()) {
+					long intendedStart;
+					if (intervalNanos > 0) {
+						intendedStart = nextSlot.getAndAdd(intervalNanos);
+						if (intendedStart >= deadline) {
+							return;
+						}
+						parkUntil(intendedStart);
+					} else {
+						intendedStart = System.nanoTime();
+						if (intendedStart >= deadline) {
+							return;
+						}
+					}
+					execute(apiUtil, pick(), intendedStart, null);
+					if (intervalNanos == 0 && definition.getPacingMs() > 0) {
+						parkUntil(intendedStart + TimeUnit.MILLISECONDS.toNanos(definition.getPacingMs()));
+					}
+				}
+			});
+		}
+		workers.shutdown();
+		if (!workers.awaitTermination(durationNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS)) {
+			workers.shutdownNow();
+			awaitStragglers(workers);
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Waits for workers that outlived the run after {@code shutdownNow()}: a
+	 * request blocked in a socket read ignores the interrupt, and must not
+	 * record into stats or a trace that is being closed.
+	 *
+	 * @param workers - The shut down workers.
+	 * @throws InterruptedException - If interrupted while waiting.
+	 */
+	static void awaitStragglers(ExecutorService workers) throws InterruptedException {
+		if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+			System.out.println("Requests were still running a minute after the run ended; they are not traced");
+		}
+	}
+
+	/**
+	 * Executes one request and records it against the scenario.
+	 *
+	 * @param apiUtil       - The calling thread's ApiUtil.
+	 * @param scenario      - The scenario to execute.
+	 * @param intendedStart - {@link System#nanoTime()} at which the request was
+	 *                      scheduled to start.
+	 * @param completed     - Optional extra sink (e.g. the current measurement
+	 *                      window) given the latency in microseconds and the error
+	 *                      type once the response has arrived; may be null.
+	 *
+	 * @return CustomResponse - What the ApiUtil method returned; null if it threw.
+	 */
+	public CustomResponse execute(ApiUtil apiUtil, Scenario scenario, long intendedStart,
+			BiConsumer<Long, String> completed) {
+		long actualStart = System.nanoTime();
+		CustomResponse response = null;
+		String errorType;
+		try {
+			response = scenario.invoke(apiUtil, scenario.nextEndpoint());
+			errorType = Scenario.errorTypeOf(response);
+		} catch (Exception e) {
+			errorType = e.getClass().getSimpleName();
+		}
+		long end = System.nanoTime();
+		long micros = TimeUnit.NANOSECONDS.toMicros(end - intendedStart);
+		scenario.getStats().record(micros, errorType);
+		if (completed != null) {
+			completed.accept(micros, errorType);
+		}
+		TraceWriter trace = this.trace;
+		if (trace != null) {
+			Response raw = response == null ? null : response.getResponse();
+			trace.record(scenario.getName(), intendedStart, actualStart, end,
+					response == null ? 0 : response.getStatusCode(), raw == null ? 0 : raw.asByteArray().length,
+					raw == null ? -1 : (int) raw.getTime(), errorType);
+		}
+		return response;
+	}
+
+	/**
+	 * Starts recording every executed request into a binary trace.
+	 *
+	 * @param file - The trace file to create.
+	 * @throws IOException - If the trace cannot be created.
+	 */
+	public void openTrace(File file) throws IOException {
+		trace = new TraceWriter(file);
+	}
+
+	/**
+	 * Stops recording into the trace, e.g. while warming up, without closing it.
+	 *
+	 * @return TraceWriter - The open trace, to hand back to
+	 *         {@link #resumeTrace(TraceWriter)}; null if none is open.
+	 */
+	TraceWriter pauseTrace() {
+		TraceWriter open = trace;
+		trace = null;
+		return open;
+	}
+
+	void resumeTrace(TraceWriter paused) {
+		trace = paused;
+	}
+
+	/**
+	 * Commits and closes the trace, if one is open.
+	 *
+	 * @throws IOException - If the trace cannot be flushed.
+	 */
+	public void closeTrace() throws IOException {
+		TraceWriter open = trace;
+		trace = null;
+		if (open != null) {
+			open.close();
+			System.out.println(open.getRecordCount() + " requests traced");
+		}
+	}
+
+	/**
+	 * Prints one line per scenario plus a total line.
+	 *
+	 * @param elapsedNanos - The wall time the numbers were collected over.
+	 */
+	public void printReport(long elapsedNanos) {
+		List<ScenarioStats> stats = new ArrayList<>();
+		for (Scenario scenario : scenarios) {
+			stats.add(scenario.getStats());
+		}
+		printReport(definition.getName(), stats, elapsedNanos);
+	}
+
+	/**
+	 * Prints one line per scenario plus a total line.
+	 *
+	 * @param title        - The workload name shown in the heading.
+	 * @param scenarios    - The per-scenario stats to print.
+	 * @param elapsedNanos - The wall time the numbers were collected over.
+	 */
+	public static void printReport(String title, List<ScenarioStats> scenarios, long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		System.out.println("\nWorkload '" + title + "' - " + String.format("%.1f", seconds) + "s");
+		System.out.println(String.format("%-28s %8s %7s %9s %9s %9s %9s %9s", "Scenario", "Requests", "Errors",
+				"Req/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+		LatencyHistogram total = new LatencyHistogram();
+		long errors = 0;
+		for (ScenarioStats stats : scenarios) {
+			printLine(stats.getName(), stats.getHistogram(), stats.getFailures(), seconds);
+			total.add(stats.getHistogram());
+			errors += stats.getFailures();
+			if (!stats.getFailuresByType().isEmpty()) {
+				System.out.println("    errors: " + stats.getFailuresByType());
+			}
+		}
+		printLine("TOTAL", total, errors, seconds);
+	}
+
+	private static void printLine(String name, LatencyHistogram histogram, long errors, double seconds) {
+		System.out.println(String.format("%-28s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f", name,
+				histogram.getTotalCount(), errors, histogram.getTotalCount() / Math.max(seconds, 1e-9),
+				histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+				histogram.getValueAtPercentile(99) / 1000.0, histogram.getMaxValue() / 1000.0));
+	}
+
+	/**
+	 * Clears every scenario's counters and histogram.
+	 */
+	public void resetStats() {
+		for (Scenario scenario : scenarios) {
+			scenario.getStats().reset();
+		}
+	}
+
+	static void parkUntil(long deadlineNanos) {
+		long remaining;
+		while ((remaining = deadlineNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	public WorkloadDefinition getDefinition() {
+		return definition;
+	}
+
+	public List<Scenario> getScenarios() {
+		return scenarios;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.out.println("Usage: WorkloadRunner <workload.json>");
+			System.exit(2);
+		}
+		WorkloadRunner runner = new WorkloadRunner(WorkloadDefinition.load(args[0]));
+		new WarmUpPhase(runner, runner.getDefinition().getWarmup()).run();
+		if (runner.getDefinition().getTraceFile() != null) {
+			runner.openTrace(new File(runner.getDefinition().getTraceFile()));
+		}
+		LoadProfile profile = runner.getDefinition().getProfile();
+		if (profile == null) {
+			long elapsed = runner.run();
+			runner.closeTrace();
+			runner.printReport(elapsed);
+			return;
+		}
+		LoadProfileScheduler scheduler = new LoadProfileScheduler(runner, profile);
+		long start = System.nanoTime();
+		scheduler.run();
+		runner.closeTrace();
+		runner.printReport(System.nanoTime() - start);
+		scheduler.printReport();
+		File curve = new File(System.getProperty("user.dir") + "/TestReport",
+				"capacity-" + runner.getDefinition().getName() + ".csv");
+		scheduler.writeCurve(curve);
+		System.out.println("Throughput-vs-latency curve written to " + curve.getPath());
+	}
+}
@@ -0,0 +1,232 @@
+package rest.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Replay store that keeps each distinct body once, named by its SHA-256:
+ *
+ * <pre>
+ * &lt;dir&gt;/index/&lt;fp[0..2]&gt;/&lt;fingerprint&gt;.json   status, headers, latency and bodyHash
+ * &lt;dir&gt;/blobs/&lt;hash[0..2]&gt;/&lt;hash&gt;            the body
+ * </pre>
+ *
+ * Recording a body that is already stored writes only the small index entry,
+ * so identical GetAllDepartments, SubCategories or InventoryFiscalYears
+ * responses cost almost nothing after the first. Blobs are reference-counted
+ * by the index entries pointing at them. A blob whose count drops to zero is
+ * not deleted on the spot, because a concurrent replay may still be reading
+ * it; {@link #compact()} recounts from the index and removes unreferenced
+ * blobs. Usage: {@code ContentAddressedReplayStore <dir> [stats|compact]}
+ */
+public class ContentAddressedReplayStore implements ReplayStore {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final File indexDir;
+	private final File blobDir;
+	private final Map<String, AtomicInteger> refCounts = new ConcurrentHashMap<>();
+	private final LongAdder bytesWritten = new LongAdder();
+	private final LongAdder bytesDeduplicated = new LongAdder();
+	private volatile boolean countsLoaded;
+
+	public ContentAddressedReplayStore(File directory) {
+		this.indexDir = new File(directory, "index");
+		this.blobDir = new File(directory, "blobs");
+	}
+
+	@Override
+	public void put(String fingerprint, RecordedExchange exchange, byte[] body) throws IOException {
+		loadCounts();
+		String hash = RequestFingerprint.hex(RequestFingerprint.sha256().digest(body));
+		File blob = blob(hash);
+		exchange.setBodyLength(body.length);
+		exchange.setBodyHash(hash);
+		// under the same lock as compact(), so a blob found here cannot be removed before it is referenced
+		synchronized (this) {
+			if (blob.exists()) {
+				bytesDeduplicated.add(body.length);
+			} else {
+				DirectoryReplayStore.write(blob, body);
+				bytesWritten.add(body.length);
+			}
+			RecordedExchange previous = get(fingerprint);
+			DirectoryReplayStore.write(entry(fingerprint), MAPPER.writeValueAsBytes(exchange));
+			refCounts.computeIfAbsent(hash, h -> new AtomicInteger()).incrementAndGet();
+			if (previous != null && previous.getBodyHash() != null) {
+				refCounts.computeIfAbsent(previous.getBodyHash(), h -> new AtomicInteger()).decrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public RecordedExchange get(String fingerprint) throws IOException {
+		File entry = entry(fingerprint);
+		return entry.exists() ? MAPPER.readValue(entry, RecordedExchange.class) : null;
+	}
+
+	@Override
+	public ByteBuffer getBody(String fingerprint) throws IOException {
+		RecordedExchange exchange = get(fingerprint);
+		if (exchange == null || exchange.getBodyHash() == null) {
+			return null;
+		}
+		try {
+			return ByteBuffer.wrap(Files.readAllBytes(blob(exchange.getBodyHash()).toPath())).asReadOnlyBuffer();
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private File entry(String fingerprint) {
+		return new File(new File(indexDir, fingerprint.substring(0, 2)), fingerprint + ".json");
+	}
+
+	private File blob(String hash) {
+		return new File(new File(blobDir, hash.substring(0, 2)), hash);
+	}
+
+	private void loadCounts() throws IOException {
+		if (!countsLoaded) {
+			synchronized (this) {
+				if (!countsLoaded) {
+					refCounts.clear();
+					refCounts.putAll(countReferences());
+					countsLoaded = true;
+				}
+			}
+		}
+	}
+
+	private Map<String, AtomicInteger> countReferences() throws IOException {
+		Map<String, AtomicInteger> counts = new HashMap<>();
+		for (File entry : files(indexDir)) {
+			if (entry.getName().endsWith(".json")) {
+				String hash = MAPPER.readValue(entry, RecordedExchange.class).getBodyHash();
+				if (hash != null) {
+					counts.computeIfAbsent(hash, h -> new AtomicInteger()).incrementAndGet();
+				}
+			}
+		}
+		return counts;
+	}
+
+	private static File[] files(File root) {
+		File[] buckets = root.listFiles(File::isDirectory);
+		if (buckets == null) {
+			return new File[0];
+		}
+		List<File> files = new ArrayList<>();
+		for (File bucket : buckets) {
+			File[] inBucket = bucket.listFiles(File::isFile);
+			if (inBucket != null) {
+				files.addAll(Arrays.asList(inBucket));
+			}
+		}
+		return files.toArray(new File[0]);
+	}
+
+	/**
+	 * Recounts references from the index and deletes every blob nothing refers
+	 * to, plus temporary files left by interrupted writes.
+	 *
+	 * @return long[] - {blobs removed, bytes reclaimed}.
+	 * @throws IOException - If the index cannot be read.
+	 */
+	public synchronized long[] compact() throws IOException {
+		Map<String, AtomicInteger> counts = countReferences();
+		long removed = 0;
+		long reclaimed = 0;
+		for (File blob : files(blobDir)) {
+			AtomicInteger count = counts.get(blob.getName());
+			if (count == null || count.get() <= 0) {
+				long length = blob.length();
+				if (blob.delete()) {
+					removed++;
+					reclaimed += length;
+				}
+			}
+		}
+		for (File entry : files(indexDir)) {
+			if (entry.getName().endsWith(".tmp")) {
+				entry.delete();
+			}
+		}
+		refCounts.clear();
+		refCounts.putAll(counts);
+		countsLoaded = true;
+		return new long[] { removed, reclaimed };
+	}
+
+	/**
+	 * @return int - Blobs whose last reference was replaced since the last
+	 *         count; {@link #compact()} would remove them.
+	 */
+	public int getUnreferencedBlobCount() {
+		int unreferenced = 0;
+		for (AtomicInteger count : refCounts.values()) {
+			if (count.get() <= 0) {
+				unreferenced++;
+			}
+		}
+		return unreferenced;
+	}
+
+	/**
+	 * @return long - Body bytes actually written by this instance.
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.sum();
+	}
+
+	/**
+	 * @return long - Body bytes not written because the blob already existed.
+	 */
+	public long getBytesDeduplicated() {
+		return bytesDeduplicated.sum();
+	}
+
+	@Override
+	public void close() {
+		// nothing held open
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: ContentAddressedReplayStore <dir> [stats|compact]");
+			System.exit(2);
+		}
+		ContentAddressedReplayStore store = new ContentAddressedReplayStore(new File(args[0]));
+		if (args.length > 1 && "compact".equals(args[1])) {
+			long[] result = store.compact();
+			System.out.println("Removed " + result[0] + " unreferenced blobs, " + result[1] + " bytes");
+		}
+		Map<String, AtomicInteger> counts = store.countReferences();
+		long logical = 0;
+		long physical = 0;
+		int references = 0;
+		for (File blob : files(store.blobDir)) {
+			AtomicInteger count = counts.get(blob.getName());
+			int refs = count == null ? 0 : count.get();
+			physical += blob.length();
+			logical += blob.length() * refs;
+			references += refs;
+		}
+		System.out.println(String.format("%d recordings, %d distinct bodies, %d bytes stored for %d bytes recorded"
+				+ " (%.1fx)", references, counts.size(), physical, logical, physical == 0 ? 1.0 : (double) logical / physical));
+	}
+}
@@ -0,0 +1,72 @@
+package rest.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Keeps each recording as two files under
+ * {@code <dir>/<first two fingerprint chars>/}: {@code <fingerprint>.json}
+ * with the status, headers and latency, and {@code <fingerprint>.body} with the
+ * raw body. Both are written to a temporary file and moved into place, so a
+ * reader never sees a half-written recording.
+ */
+public class DirectoryReplayStore implements ReplayStore {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private final File directory;
+
+	public DirectoryReplayStore(File directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public void put(String fingerprint, RecordedExchange exchange, byte[] body) throws IOException {
+		exchange.setBodyLength(body.length);
+		write(file(fingerprint, ".body"), body);
+		write(file(fingerprint, ".json"), MAPPER.writeValueAsBytes(exchange));
+	}
+
+	@Override
+	public RecordedExchange get(String fingerprint) throws IOException {
+		File meta = file(fingerprint, ".json");
+		return meta.exists() ? MAPPER.readValue(meta, RecordedExchange.class) : null;
+	}
+
+	@Override
+	public ByteBuffer getBody(String fingerprint) throws IOException {
+		File body = file(fingerprint, ".body");
+		return body.exists() ? ByteBuffer.wrap(Files.readAllBytes(body.toPath())).asReadOnlyBuffer() : null;
+	}
+
+	private File file(String fingerprint, String suffix) {
+		return new File(new File(directory, fingerprint.substring(0, 2)), fingerprint + suffix);
+	}
+
+	static void write(File target, byte[] bytes) throws IOException {
+		target.getParentFile().mkdirs();
+		Path temp = Files.createTempFile(target.getParentFile().toPath(), target.getName(), ".tmp");
+		try {
+			Files.write(temp, bytes);
+			Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public void close() {
+		// nothing held open
+	}
+}
@@ -0,0 +1,489 @@
+package rest.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Replay corpus kept in one memory-mapped segment file, so hundreds of
+ * thousands of recordings cost no heap and opening the corpus only maps it.
+ * Layout:
+ *
+ * <pre>
+ * header  64 bytes: magic, version, slot count, entry count, end of data
+ * index   slot count x 40 bytes: SHA-256 fingerprint (32), record position (8)
+ * data    records: meta length (4), body length (4), meta JSON, body
+ * </pre>
+ *
+ * The index is an open-addressing hash table probed linearly from the first
+ * eight fingerprint bytes; a zero position marks an empty slot. Records never
+ * straddle a 1 GB mapping chunk, so {@link #getBody(String)} returns a
+ * read-only slice of the mapping without copying. Re-recording a request
+ * appends a new record and repoints its slot; {@link #compact()} drops the
+ * superseded records, and the index doubles (via the same rewrite) when it is
+ * three-quarters full. Writers are serialised; readers never lock, and see a
+ * record once the end of data has moved past it. A recording corpus maps each
+ * chunk only as far as its data reaches (in 4 MB steps), so the file grows
+ * with what is recorded rather than a chunk at a time.
+ *
+ * A rewrite never renames over a mapped file, which Windows refuses: it
+ * writes the next generation, "corpus.seg.g1", "corpus.seg.g2" and so on,
+ * and seals it by writing the magic last. Opening a corpus picks its newest
+ * sealed generation. The superseded generation is closed and deleted; where
+ * the platform keeps a file that is still mapped (Windows, until the mapping
+ * is collected), it is deleted on the next writable open instead.
+ */
+public class MappedReplayStore implements ReplayStore {
+
+	static final long MAGIC = 0x504C325245504C31L;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int SLOT_SIZE = 40;
+	static final long CHUNK_BYTES = 1L << 30;
+	static final long MAPPING_STEP = 4L << 20;
+	private static final int MAX_CHUNKS = 4096;
+	private static final int MAX_SLOTS = 1 << 25;
+	private static final double MAX_LOAD = 0.75;
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final File file;
+	private final boolean writable;
+	private volatile Segment segment;
+
+	/**
+	 * Opens a corpus, creating it when writable and missing.
+	 *
+	 * @param file         - The corpus file; its rewrites are generations
+	 *                     next to it.
+	 * @param writable     - false to open read-only (replay), true to record.
+	 * @param initialSlots - Index size for a new corpus, rounded up to a power of
+	 *                     two.
+	 * @throws IOException - If the file is missing (read-only), unreadable or not
+	 *                     a corpus.
+	 */
+	public MappedReplayStore(File file, boolean writable, int initialSlots) throws IOException {
+		this.file = file;
+		this.writable = writable;
+		int generation = newestGeneration();
+		if (generation < 0) {
+			if (!writable) {
+				throw new IOException("Replay corpus " + file + " does not exist");
+			}
+			if (file.getAbsoluteFile().getParentFile() != null) {
+				file.getAbsoluteFile().getParentFile().mkdirs();
+			}
+			segment = Segment.create(file, 0, Integer.highestOneBit(Math.max(16, initialSlots - 1) << 1));
+			segment.seal();
+		} else {
+			segment = Segment.open(generationFile(generation), generation, writable);
+			if (writable) {
+				deleteGenerationsBefore(generation);
+			}
+		}
+	}
+
+	/**
+	 * @return File - The file of a generation; generation 0 is the corpus file
+	 *         itself.
+	 */
+	private File generationFile(int generation) {
+		return generation == 0 ? file : new File(file.getPath() + ".g" + generation);
+	}
+
+	/**
+	 * @return int - The newest generation whose file is sealed, or -1 if there
+	 *         is none. An unsealed one is a rewrite that never finished.
+	 */
+	private int newestGeneration() {
+		int newest = file.exists() && Segment.isSealed(file) ? 0 : -1;
+		File directory = file.getAbsoluteFile().getParentFile();
+		String[] names = directory == null ? null : directory.list();
+		String prefix = file.getName() + ".g";
+		for (String name : names == null ? new String[0] : names) {
+			if (name.startsWith(prefix) && name.length() > prefix.length()
+					&& name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+				int generation = Integer.parseInt(name.substring(prefix.length()));
+				if (generation > newest && Segment.isSealed(generationFile(generation))) {
+					newest = generation;
+				}
+			}
+		}
+		return newest;
+	}
+
+	// older generations and unfinished rewrites; one still mapped elsewhere is left for the next open
+	private void deleteGenerationsBefore(int current) {
+		File directory = file.getAbsoluteFile().getParentFile();
+		String[] names = directory == null ? null : directory.list();
+		String prefix = file.getName() + ".g";
+		for (String name : names == null ? new String[0] : names) {
+			if (name.startsWith(prefix) && name.length() > prefix.length()
+					&& name.substring(prefix.length()).chars().allMatch(Character::isDigit)
+					&& Integer.parseInt(name.substring(prefix.length())) != current) {
+				new File(directory, name).delete();
+			}
+		}
+		if (current != 0) {
+			file.delete();
+		}
+	}
+
+	@Override
+	public synchronized void put(String fingerprint, RecordedExchange exchange, byte[] body) throws IOException {
+		if (!writable) {
+			throw new IOException("Replay corpus " + file + " is open read-only");
+		}
+		byte[] key = RequestFingerprint.bytes(fingerprint);
+		if (segment.find(key) < 0 && segment.entries + 1 > segment.slots * MAX_LOAD) {
+			if (segment.slots >= MAX_SLOTS) {
+				throw new IOException("Replay corpus " + file + " is full");
+			}
+			rewrite(segment.slots * 2);
+		}
+		exchange.setBodyLength(body.length);
+		segment.append(key, MAPPER.writeValueAsBytes(exchange), ByteBuffer.wrap(body));
+	}
+
+	@Override
+	public RecordedExchange get(String fingerprint) throws IOException {
+		Segment current = segment;
+		long position = current.position(RequestFingerprint.bytes(fingerprint));
+		if (position < 0) {
+			return null;
+		}
+		ByteBuffer meta = current.slice(position, 8, current.recordInt(position, 0));
+		byte[] bytes = new byte[meta.remaining()];
+		meta.get(bytes);
+		return MAPPER.readValue(bytes, RecordedExchange.class);
+	}
+
+	@Override
+	public ByteBuffer getBody(String fingerprint) {
+		Segment current = segment;
+		long position = current.position(RequestFingerprint.bytes(fingerprint));
+		if (position < 0) {
+			return null;
+		}
+		int metaLength = current.recordInt(position, 0);
+		return current.slice(position, 8 + metaLength, current.recordInt(position, 4)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return int - The number of distinct recordings.
+	 */
+	public int size() {
+		return segment.entries;
+	}
+
+	/**
+	 * Rewrites the corpus without superseded records.
+	 *
+	 * @throws IOException - If the new segment cannot be written.
+	 */
+	public synchronized void compact() throws IOException {
+		rewrite(segment.slots);
+	}
+
+	private void rewrite(int slots) throws IOException {
+		Segment old = segment;
+		int generation = old.generation + 1;
+		Segment rewritten = Segment.create(generationFile(generation), generation, slots);
+		byte[] key = new byte[32];
+		for (int slot = 0; slot < old.slots; slot++) {
+			long position = old.index.getLong(slot * SLOT_SIZE + 32);
+			if (position != 0) {
+				ByteBuffer index = old.index.duplicate();
+				index.position(slot * SLOT_SIZE);
+				index.get(key);
+				int metaLength = old.recordInt(position, 0);
+				byte[] meta = new byte[metaLength];
+				old.slice(position, 8, metaLength).get(meta);
+				rewritten.append(key.clone(), meta, old.slice(position, 8 + metaLength, old.recordInt(position, 4)));
+			}
+		}
+		rewritten.force();
+		rewritten.seal();
+		// readers still holding the old segment keep valid mappings until they finish
+		segment = rewritten;
+		old.close(false);
+		old.file.delete();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		segment.close(writable);
+	}
+
+	/**
+	 * Copies a {@link DirectoryReplayStore} into a corpus. Usage:
+	 * {@code MappedReplayStore <recordings dir> <corpus file>}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: MappedReplayStore <recordings dir> <corpus file>");
+			System.exit(2);
+		}
+		DirectoryReplayStore source = new DirectoryReplayStore(new File(args[0]));
+		int imported = 0;
+		try (MappedReplayStore target = new MappedReplayStore(new File(args[1]), true, 1 << 16)) {
+			File[] buckets = source.getDirectory().listFiles(File::isDirectory);
+			for (File bucket : buckets == null ? new File[0] : buckets) {
+				File[] metas = bucket.listFiles((dir, name) -> name.endsWith(".json"));
+				for (File meta : metas == null ? new File[0] : metas) {
+					String fingerprint = meta.getName().substring(0, meta.getName().length() - 5);
+					ByteBuffer body = source.getBody(fingerprint);
+					if (body != null) {
+						byte[] bytes = new byte[body.remaining()];
+						body.get(bytes);
+						target.put(fingerprint, source.get(fingerprint), bytes);
+						imported++;
+					}
+				}
+			}
+			System.out.println("Imported " + imported + " recordings into " + args[1] + " (" + target.size()
+					+ " distinct)");
+		}
+	}
+
+	/**
+	 * One mapped segment file.
+	 */
+	private static final class Segment {
+
+		private final File file;
+		private final int generation;
+		private final RandomAccessFile raf;
+		private final FileChannel channel;
+		private final boolean writable;
+		private final MappedByteBuffer header;
+		private final MappedByteBuffer index;
+		private final int slots;
+		private final long dataStart;
+		private final AtomicReferenceArray<MappedByteBuffer> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+		private volatile long dataEnd;
+		private volatile int entries;
+
+		private Segment(File file, int generation, RandomAccessFile raf, boolean writable, int slots)
+				throws IOException {
+			this.file = file;
+			this.generation = generation;
+			this.raf = raf;
+			this.channel = raf.getChannel();
+			this.writable = writable;
+			this.slots = slots;
+			this.dataStart = (HEADER_SIZE + (long) slots * SLOT_SIZE + 4095) & ~4095L;
+			FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+			this.header = channel.map(mode, 0, HEADER_SIZE);
+			this.index = channel.map(mode, HEADER_SIZE, (long) slots * SLOT_SIZE);
+		}
+
+		// unsealed until seal(), so a rewrite cut short is never opened
+		static Segment create(File file, int generation, int slots) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0);
+			Segment segment = new Segment(file, generation, raf, true, slots);
+			segment.header.putInt(8, VERSION);
+			segment.header.putInt(12, slots);
+			segment.header.putInt(16, 0);
+			segment.dataEnd = segment.dataStart;
+			segment.header.putLong(24, segment.dataEnd);
+			return segment;
+		}
+
+		/**
+		 * Writes the magic, after everything else has been forced to disk.
+		 */
+		void seal() {
+			header.putLong(0, MAGIC);
+			header.force();
+		}
+
+		/**
+		 * @return boolean - Whether the file is a sealed corpus segment.
+		 */
+		static boolean isSealed(File file) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				return raf.length() >= HEADER_SIZE && raf.readLong() == MAGIC;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		static Segment open(File file, int generation, boolean writable) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+			if (raf.length() < HEADER_SIZE) {
+				raf.close();
+				throw new IOException(file + " is not a replay corpus");
+			}
+			ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+			raf.getChannel().read(head, 0);
+			if (head.getLong(0) != MAGIC || head.getInt(8) != VERSION) {
+				raf.close();
+				throw new IOException(file + " is not a version " + VERSION + " replay corpus");
+			}
+			Segment segment = new Segment(file, generation, raf, writable, head.getInt(12));
+			segment.entries = head.getInt(16);
+			segment.dataEnd = head.getLong(24);
+			return segment;
+		}
+
+		/**
+		 * @return int - The slot holding the key, or -1.
+		 */
+		int find(byte[] key) {
+			int mask = slots - 1;
+			for (int slot = (int) (ByteBuffer.wrap(key).getLong() & mask);; slot = (slot + 1) & mask) {
+				int base = slot * SLOT_SIZE;
+				if (index.getLong(base + 32) == 0) {
+					return -1;
+				}
+				if (keyAt(base, key)) {
+					return slot;
+				}
+			}
+		}
+
+		/**
+		 * @return long - The record position for the key, or -1.
+		 */
+		long position(byte[] key) {
+			// volatile read pairs with the write at the end of append: only records
+			// below it are known to be visible; a slot pointing further on belongs to
+			// an append still in progress
+			long end = dataEnd;
+			if (end == dataStart) {
+				return -1;
+			}
+			int slot = find(key);
+			if (slot < 0) {
+				return -1;
+			}
+			long position = index.getLong(slot * SLOT_SIZE + 32);
+			return position <= 0 || position >= end ? -1 : position;
+		}
+
+		private boolean keyAt(int base, byte[] key) {
+			for (int i = 0; i < key.length; i++) {
+				if (index.get(base + i) != key[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void append(byte[] key, byte[] meta, ByteBuffer body) throws IOException {
+			long length = 8L + meta.length + body.remaining();
+			if (length > CHUNK_BYTES) {
+				throw new IOException("Recording of " + length + " bytes is larger than a corpus chunk");
+			}
+			long position = dataEnd;
+			long inChunk = (position - dataStart) % CHUNK_BYTES;
+			if (inChunk + length > CHUNK_BYTES) {
+				position += CHUNK_BYTES - inChunk;
+			}
+			long inChunkStart = (position - dataStart) % CHUNK_BYTES;
+			ByteBuffer target = chunk((int) ((position - dataStart) / CHUNK_BYTES), inChunkStart + length)
+					.duplicate();
+			target.position((int) inChunkStart);
+			target.putInt(meta.length).putInt(body.remaining()).put(meta).put(body.duplicate());
+
+			int mask = slots - 1;
+			int slot = (int) (ByteBuffer.wrap(key).getLong() & mask);
+			boolean added = false;
+			while (index.getLong(slot * SLOT_SIZE + 32) != 0 && !keyAt(slot * SLOT_SIZE, key)) {
+				slot = (slot + 1) & mask;
+			}
+			if (index.getLong(slot * SLOT_SIZE + 32) == 0) {
+				ByteBuffer keySlot = index.duplicate();
+				keySlot.position(slot * SLOT_SIZE);
+				keySlot.put(key);
+				added = true;
+			}
+			index.putLong(slot * SLOT_SIZE + 32, position);
+			if (added) {
+				header.putInt(16, entries + 1);
+				entries = entries + 1;
+			}
+			header.putLong(24, position + length);
+			// volatile write publishes the record and its slot to readers
+			dataEnd = position + length;
+		}
+
+		int recordInt(long position, int offset) {
+			int start = (int) ((position - dataStart) % CHUNK_BYTES) + offset;
+			return chunkAt(position, start + 4).getInt(start);
+		}
+
+		ByteBuffer slice(long position, int offset, int length) {
+			int start = (int) ((position - dataStart) % CHUNK_BYTES) + offset;
+			ByteBuffer slice = chunkAt(position, (long) start + length).duplicate();
+			slice.limit(start + length).position(start);
+			return slice.slice();
+		}
+
+		private MappedByteBuffer chunkAt(long position, long bytes) {
+			return chunk((int) ((position - dataStart) / CHUNK_BYTES), bytes);
+		}
+
+		/**
+		 * @param number - The chunk.
+		 * @param bytes  - How much of it the caller needs mapped.
+		 *
+		 * @return MappedByteBuffer - A mapping of the chunk. Read-only it covers
+		 *         the chunk's part of the file; writable it covers at least bytes,
+		 *         rounded up to MAPPING_STEP, and is remapped further as records
+		 *         are appended. Readers holding an earlier, shorter mapping of the
+		 *         same pages still see the same data.
+		 */
+		private MappedByteBuffer chunk(int number, long bytes) {
+			MappedByteBuffer chunk = chunks.get(number);
+			if (chunk == null || writable && chunk.capacity() < bytes) {
+				synchronized (chunks) {
+					chunk = chunks.get(number);
+					if (chunk == null || writable && chunk.capacity() < bytes) {
+						long start = dataStart + number * CHUNK_BYTES;
+						try {
+							chunk = writable
+									? channel.map(FileChannel.MapMode.READ_WRITE, start,
+											Math.min(CHUNK_BYTES, (bytes + MAPPING_STEP - 1) / MAPPING_STEP * MAPPING_STEP))
+									: channel.map(FileChannel.MapMode.READ_ONLY, start,
+											Math.min(CHUNK_BYTES, channel.size() - start));
+						} catch (IOException e) {
+							throw new IllegalStateException("Unable to map replay corpus chunk " + number, e);
+						}
+						chunks.set(number, chunk);
+					}
+				}
+			}
+			return chunk;
+		}
+
+		void force() {
+			header.force();
+			index.force();
+			for (int i = 0; i < MAX_CHUNKS && chunks.get(i) != null; i++) {
+				chunks.get(i).force();
+			}
+		}
+
+		void close(boolean trim) throws IOException {
+			if (writable) {
+				force();
+				if (trim) {
+					try {
+						raf.setLength(dataEnd);
+					} catch (IOException e) {
+						// still mapped on this platform; the header records the end of data
+					}
+				}
+			}
+			raf.close();
+		}
+	}
+}
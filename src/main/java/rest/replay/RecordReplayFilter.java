@@ -0,0 +1,253 @@
+package rest.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.restassured.RestAssured;
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import restConfig.ConfigManager;
+
+/**
+ * RestAssured filter that records ApiUtil responses to a {@link ReplayStore}
+ * or answers requests from it. Installed globally (see
+ * {@link #installFromConfig()}), so every {@code given()} in ApiUtil goes
+ * through it without any change to the ApiUtil methods.
+ *
+ * Configuration (config.properties or -D system properties):
+ * <ul>
+ * <li>replay.mode - off (default), record or replay.</li>
+ * <li>replay.dir - Where recordings live, default src/test/resources/replay.</li>
+ * <li>replay.store - directory (default, one file pair per recording), cas
+ * (bodies stored once by content, {@link ContentAddressedReplayStore}) or
+ * mapped (a single {@link MappedReplayStore} segment, replay.corpus).</li>
+ * <li>replay.latency - none (default, full speed), original, or a factor
+ * applied to the recorded latency, e.g. 0.5.</li>
+ * </ul>
+ *
+ * A replayed request with no recording gets a 404 with an "X-Replay: miss"
+ * header and the backend's error envelope, so it fails like any other bad
+ * response rather than silently reaching the network.
+ */
+public class RecordReplayFilter implements Filter {
+
+	public static final String REPLAY_HEADER = "X-Replay";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	// the body is stored decoded and whole, so these would describe it wrongly on replay
+	private static final Set<String> DROPPED_HEADERS = new HashSet<>(
+			Arrays.asList("content-length", "transfer-encoding", "content-encoding", "connection", "keep-alive"));
+	private static RecordReplayFilter installed;
+
+	private final ReplayMode mode;
+	private final ReplayStore store;
+	private final double latencyFactor;
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param mode          - What to do with requests.
+	 * @param store         - Where recordings are kept.
+	 * @param latencyFactor - Multiple of the recorded latency to wait before
+	 *                      answering a replayed request; 0 for none.
+	 */
+	public RecordReplayFilter(ReplayMode mode, ReplayStore store, double latencyFactor) {
+		this.mode = mode;
+		this.store = store;
+		this.latencyFactor = latencyFactor;
+	}
+
+	/**
+	 * @return RecordReplayFilter - A filter built from the replay.* settings.
+	 */
+	public static RecordReplayFilter fromConfig() {
+		ReplayMode mode = ReplayMode.parse(ConfigManager.getProperty("replay.mode", "off"));
+		String latency = ConfigManager.getProperty("replay.latency", "none");
+		double factor = "none".equalsIgnoreCase(latency) ? 0
+				: "original".equalsIgnoreCase(latency) ? 1 : Double.parseDouble(latency);
+		return new RecordReplayFilter(mode, mode == ReplayMode.OFF ? null : storeFromConfig(mode), factor);
+	}
+
+	/**
+	 * @param mode - RECORD opens the store writable, anything else read-only.
+	 *
+	 * @return ReplayStore - The store named by replay.store.
+	 */
+	public static ReplayStore storeFromConfig(ReplayMode mode) {
+		File directory = new File(ConfigManager.getProperty("replay.dir", "src/test/resources/replay"));
+		String type = ConfigManager.getProperty("replay.store", "directory");
+		if ("cas".equalsIgnoreCase(type)) {
+			return new ContentAddressedReplayStore(directory);
+		}
+		if (!"mapped".equalsIgnoreCase(type)) {
+			return new DirectoryReplayStore(directory);
+		}
+		File corpus = new File(ConfigManager.getProperty("replay.corpus", directory + "/corpus.seg"));
+		try {
+			return new MappedReplayStore(corpus, mode == ReplayMode.RECORD,
+					Integer.parseInt(ConfigManager.getProperty("replay.corpus.slots", "65536")));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open replay corpus " + corpus, e);
+		}
+	}
+
+	/**
+	 * Adds the configured filter to RestAssured's global filters once per JVM.
+	 * Does nothing when replay.mode is off.
+	 *
+	 * @return RecordReplayFilter - The installed filter, or null if off.
+	 */
+	public static synchronized RecordReplayFilter installFromConfig() {
+		if (installed == null) {
+			RecordReplayFilter filter = fromConfig();
+			if (filter.mode == ReplayMode.OFF) {
+				return null;
+			}
+			RestAssured.filters(filter);
+			installed = filter;
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					filter.store.close();
+				} catch (IOException e) {
+					System.out.println("Unable to close the replay store: " + e.getMessage());
+				}
+			}, "replay-store-close"));
+			System.out.println("ApiUtil traffic is in " + filter.mode + " mode");
+		}
+		return installed;
+	}
+
+	@Override
+	public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+			FilterContext ctx) {
+		if (mode == ReplayMode.OFF) {
+			return ctx.next(requestSpec, responseSpec);
+		}
+		String fingerprint = RequestFingerprint.of(requestSpec.getMethod(), requestSpec.getURI(),
+				bodyOf(requestSpec));
+		if (mode == ReplayMode.REPLAY) {
+			return replay(fingerprint, requestSpec);
+		}
+		long start = System.nanoTime();
+		Response response = ctx.next(requestSpec, responseSpec);
+		record(fingerprint, requestSpec, response, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return response;
+	}
+
+	private static byte[] bodyOf(FilterableRequestSpecification requestSpec) {
+		Object body = requestSpec.getBody();
+		if (body == null) {
+			return null;
+		}
+		if (body instanceof byte[]) {
+			return (byte[]) body;
+		}
+		if (body instanceof String) {
+			return ((String) body).getBytes(StandardCharsets.UTF_8);
+		}
+		try {
+			return MAPPER.writeValueAsBytes(body);
+		} catch (IOException e) {
+			return body.toString().getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private void record(String fingerprint, FilterableRequestSpecification requestSpec, Response response,
+			long latencyMillis) {
+		RecordedExchange exchange = new RecordedExchange();
+		exchange.setMethod(requestSpec.getMethod());
+		exchange.setUri(requestSpec.getURI());
+		exchange.setStatusCode(response.getStatusCode());
+		exchange.setStatusLine(response.getStatusLine());
+		exchange.setContentType(response.getContentType());
+		for (Header header : response.getHeaders()) {
+			if (!DROPPED_HEADERS.contains(header.getName().toLowerCase())) {
+				exchange.getHeaders().merge(header.getName(), header.getValue(), (a, b) -> a + "," + b);
+			}
+		}
+		exchange.setLatencyMillis(latencyMillis);
+		exchange.setRecordedAt(System.currentTimeMillis());
+		try {
+			store.put(fingerprint, exchange, response.asByteArray());
+			recorded.increment();
+		} catch (IOException e) {
+			// a failed recording must not fail the test that made the request
+			System.out.println("Unable to record " + requestSpec.getURI() + ": " + e.getMessage());
+		}
+	}
+
+	private Response replay(String fingerprint, FilterableRequestSpecification requestSpec) {
+		long start = System.nanoTime();
+		RecordedExchange exchange;
+		ByteBuffer body;
+		try {
+			exchange = store.get(fingerprint);
+			body = exchange == null ? null : store.getBody(fingerprint);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read the recording of " + requestSpec.getURI(), e);
+		}
+		if (exchange == null || body == null) {
+			misses.increment();
+			return new ResponseBuilder().setStatusCode(404).setStatusLine("HTTP/1.1 404 Not Found")
+					.setContentType("application/json; charset=utf-8")
+					.setHeaders(new Headers(new Header(REPLAY_HEADER, "miss")))
+					.setBody("{\"Status\":\"Failed\",\"ErrorMessage\":\"No recording for " + requestSpec.getMethod()
+							+ " " + requestSpec.getURI().replace("\"", "'") + "\",\"Results\":null}")
+					.build();
+		}
+		hits.increment();
+		List<Header> headers = new ArrayList<>();
+		for (Map.Entry<String, String> header : exchange.getHeaders().entrySet()) {
+			headers.add(new Header(header.getKey(), header.getValue()));
+		}
+		headers.add(new Header(REPLAY_HEADER, "hit"));
+		byte[] bytes = new byte[body.remaining()];
+		body.duplicate().get(bytes);
+		if (latencyFactor > 0) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos((long) (exchange.getLatencyMillis() * latencyFactor))
+					- (System.nanoTime() - start));
+		}
+		return new ResponseBuilder().setStatusCode(exchange.getStatusCode()).setStatusLine(exchange.getStatusLine())
+				.setContentType(exchange.getContentType()).setHeaders(new Headers(headers)).setBody(bytes).build();
+	}
+
+	public ReplayMode getMode() {
+		return mode;
+	}
+
+	public ReplayStore getStore() {
+		return store;
+	}
+
+	public long getRecordedCount() {
+		return recorded.sum();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+}
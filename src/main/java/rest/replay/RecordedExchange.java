@@ -0,0 +1,106 @@
+package rest.replay;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Everything a recording keeps about one response except its body, which the
+ * {@link ReplayStore} holds separately.
+ */
+public class RecordedExchange {
+
+	private String method;
+	private String uri;
+	private int statusCode;
+	private String statusLine;
+	private String contentType;
+	private Map<String, String> headers = new LinkedHashMap<>();
+	private long latencyMillis;
+	private long recordedAt;
+	private int bodyLength;
+	private String bodyHash;
+
+	public String getMethod() {
+		return method;
+	}
+
+	public void setMethod(String method) {
+		this.method = method;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public void setUri(String uri) {
+		this.uri = uri;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public void setStatusCode(int statusCode) {
+		this.statusCode = statusCode;
+	}
+
+	public String getStatusLine() {
+		return statusLine;
+	}
+
+	public void setStatusLine(String statusLine) {
+		this.statusLine = statusLine;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public void setHeaders(Map<String, String> headers) {
+		this.headers = headers;
+	}
+
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	public long getRecordedAt() {
+		return recordedAt;
+	}
+
+	public void setRecordedAt(long recordedAt) {
+		this.recordedAt = recordedAt;
+	}
+
+	public int getBodyLength() {
+		return bodyLength;
+	}
+
+	public void setBodyLength(int bodyLength) {
+		this.bodyLength = bodyLength;
+	}
+
+	/**
+	 * @return String - SHA-256 of the body, set by stores that keep bodies by
+	 *         content.
+	 */
+	public String getBodyHash() {
+		return bodyHash;
+	}
+
+	public void setBodyHash(String bodyHash) {
+		this.bodyHash = bodyHash;
+	}
+}
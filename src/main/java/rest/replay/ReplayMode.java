@@ -0,0 +1,17 @@
+package rest.replay;
+
+/**
+ * What {@link RecordReplayFilter} does with ApiUtil traffic.
+ */
+public enum ReplayMode {
+	/** Requests go to the server untouched. */
+	OFF,
+	/** Requests go to the server and every response is saved. */
+	RECORD,
+	/** Requests are answered from the recordings, never from the server. */
+	REPLAY;
+
+	public static ReplayMode parse(String value) {
+		return value == null || value.trim().isEmpty() ? OFF : valueOf(value.trim().toUpperCase());
+	}
+}
@@ -0,0 +1,39 @@
+package rest.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage for recorded responses, keyed by {@link RequestFingerprint}.
+ * Implementations must be safe for concurrent use.
+ */
+public interface ReplayStore extends Closeable {
+
+	/**
+	 * Saves a response, replacing any earlier recording of the same request.
+	 *
+	 * @param fingerprint - The request fingerprint.
+	 * @param exchange    - Status, headers and timing.
+	 * @param body        - The response body.
+	 * @throws IOException - If the recording cannot be written.
+	 */
+	void put(String fingerprint, RecordedExchange exchange, byte[] body) throws IOException;
+
+	/**
+	 * @param fingerprint - The request fingerprint.
+	 *
+	 * @return RecordedExchange - The recording, or null if there is none.
+	 * @throws IOException - If the recording cannot be read.
+	 */
+	RecordedExchange get(String fingerprint) throws IOException;
+
+	/**
+	 * @param fingerprint - The request fingerprint.
+	 *
+	 * @return ByteBuffer - The recorded body (read-only), or null if there is
+	 *         none.
+	 * @throws IOException - If the body cannot be read.
+	 */
+	ByteBuffer getBody(String fingerprint) throws IOException;
+}
@@ -0,0 +1,46 @@
+package rest.replay;
+
+import java.nio.ByteBuffer;
+
+import rest.stub.BufferBody;
+import rest.stub.HealthAppStubServer;
+import rest.stub.StubHandler;
+import rest.stub.StubRequest;
+import rest.stub.StubResponse;
+
+/**
+ * Serves recorded responses from a {@link ReplayStore} through the stub server,
+ * so any HTTP client can replay a corpus. Bodies from a
+ * {@link MappedReplayStore} go out straight from the mapping. Install it as the
+ * server's fallback so the canned routes still win, or on its own to replay
+ * everything.
+ */
+public class ReplayStubHandler implements StubHandler {
+
+	private final ReplayStore store;
+
+	public ReplayStubHandler(ReplayStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * @param server - The server whose unmatched requests should be replayed.
+	 * @param store  - The recordings to serve.
+	 */
+	public static void install(HealthAppStubServer server, ReplayStore store) {
+		server.setFallback(new ReplayStubHandler(store));
+	}
+
+	@Override
+	public StubResponse handle(StubRequest request) throws Exception {
+		String uri = request.getRawQuery() == null ? request.getPath() : request.getPath() + "?" + request.getRawQuery();
+		byte[] body = request.getBody().length == 0 ? null : request.getBody();
+		String fingerprint = RequestFingerprint.of(request.getMethod(), uri, body);
+		RecordedExchange exchange = store.get(fingerprint);
+		ByteBuffer recorded = exchange == null ? null : store.getBody(fingerprint);
+		if (recorded == null) {
+			return StubResponse.error(404, "No recording for " + request.getMethod() + " " + uri);
+		}
+		return new StubResponse(exchange.getStatusCode(), exchange.getContentType(), new BufferBody(recorded));
+	}
+}
@@ -0,0 +1,87 @@
+package rest.replay;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Identifies a request independently of the host it was sent to, so a
+ * recording taken against staging replays under any base URL. The fingerprint
+ * is the SHA-256 of the method, the path, the query parameters in sorted order
+ * and the body. Headers (including the bearer token, which expires) are not
+ * part of it.
+ */
+public class RequestFingerprint {
+
+	private RequestFingerprint() {
+	}
+
+	/**
+	 * @param method - HTTP method.
+	 * @param uri    - The full request URI including the query string.
+	 * @param body   - The request body, or null.
+	 *
+	 * @return String - 64 hex characters.
+	 */
+	public static String of(String method, String uri, byte[] body) {
+		MessageDigest digest = sha256();
+		digest.update(canonical(method, uri).getBytes(StandardCharsets.UTF_8));
+		if (body != null) {
+			digest.update((byte) '\n');
+			digest.update(body);
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * @return String - e.g. "GET /api/Inventory/AvailableQuantityByItemIdAndStoreId?itemId=1&amp;storeId=2".
+	 */
+	static String canonical(String method, String uri) {
+		URI parsed = URI.create(uri.replace(" ", "%20"));
+		StringBuilder canonical = new StringBuilder(method.toUpperCase()).append(' ');
+		canonical.append(parsed.getRawPath() == null || parsed.getRawPath().isEmpty() ? "/" : parsed.getRawPath());
+		String query = parsed.getRawQuery();
+		if (query != null && !query.isEmpty()) {
+			String[] params = query.split("&");
+			Arrays.sort(params);
+			canonical.append('?').append(String.join("&", params));
+		}
+		return canonical.toString();
+	}
+
+	/**
+	 * @param fingerprint - 64 hex characters.
+	 *
+	 * @return byte[] - The 32 raw digest bytes.
+	 */
+	static byte[] bytes(String fingerprint) {
+		if (fingerprint.length() != 64) {
+			throw new IllegalArgumentException("Not a fingerprint: " + fingerprint);
+		}
+		byte[] bytes = new byte[32];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(fingerprint.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	static String hex(byte[] bytes) {
+		char[] digits = "0123456789abcdef".toCharArray();
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = digits[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+}
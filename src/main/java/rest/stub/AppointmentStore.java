@@ -0,0 +1,392 @@
+package rest.stub;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-memory appointment backend for the create and clash flows
+ * (testData/createAppointmentData.json, clashAppointmentData.json). Two
+ * appointments clash when they have the same performer, date and time and the
+ * first is not cancelled; the second booking is then refused with a 409 in the
+ * backend's error envelope. A performer is identified by PerformerId; a
+ * booking that gives only PerformerName uses the id an earlier booking paired
+ * with that name (as clashAppointmentData.json does), else the name itself.
+ * Bookings made by name before the name was paired with an id stay under the
+ * name, so a booking of a paired performer checks both its id and its name.
+ *
+ * <pre>
+ * POST /api/Appointment/AddAppointment                         book, Results is the appointment
+ * GET  /api/Appointment/CheckForClashingAppointment?patientId=&amp;apptDate=&amp;performerId=
+ *                                                              Results true if the patient already has one
+ * PUT  /api/Appointment/AppointmentStatus?appointmentId=&amp;status=cancelled
+ * GET  /__control/appointments                                 counters; DELETE clears everything
+ * </pre>
+ *
+ * The slot index is lock-striped: a performer's bookings for one day live in
+ * one of {@code stripes} independently locked maps, chosen by hashing
+ * performer and date, so a race for one slot serialises only the requests
+ * for that performer's day; a booking that checks both an id and a name
+ * takes both stripes' locks, lowest stripe first. Field names in request
+ * bodies are matched case-insensitively, as ASP.NET model binding does.
+ */
+public class AppointmentStore {
+
+	public static final String CONTROL_PATH = "/__control/appointments";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final TypeReference<Map<String, Object>> BODY = new TypeReference<Map<String, Object>>() {
+	};
+
+	private final Stripe[] stripes;
+	private final Map<Integer, Map<String, Object>> appointments = new ConcurrentHashMap<>();
+	private final Map<Integer, String> dayOfAppointment = new ConcurrentHashMap<>();
+	private final Map<String, Integer> performerByName = new ConcurrentHashMap<>();
+	private final Map<Integer, String> nameOfPerformer = new ConcurrentHashMap<>();
+	private final AtomicInteger nextAppointmentId = new AtomicInteger(1);
+	private final AtomicInteger nextPatientId = new AtomicInteger(100000);
+	private final LongAdder booked = new LongAdder();
+	private final LongAdder clashes = new LongAdder();
+	private final LongAdder cancelled = new LongAdder();
+
+	/**
+	 * @param stripes - Number of independently locked index partitions,
+	 *                rounded up to a power of two.
+	 */
+	public AppointmentStore(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.stripes = new Stripe[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * One partition of the slot index: performer and day to the appointments
+	 * booked by time.
+	 */
+	private static final class Stripe {
+		private final Map<String, Map<String, Integer>> days = new HashMap<>();
+	}
+
+	/**
+	 * Adds the appointment routes and the control API.
+	 *
+	 * @param server - The stub server to add them to.
+	 */
+	public void registerOn(HealthAppStubServer server) {
+		String api = HealthAppStubServer.API_PREFIX + "/Appointment";
+		server.route(api + "/AddAppointment", request -> {
+			if (!"POST".equalsIgnoreCase(request.getMethod())) {
+				return StubResponse.error(405, "AddAppointment expects a POST");
+			}
+			Map<String, Object> body;
+			try {
+				body = fields(MAPPER.readValue(request.getBody(), BODY));
+			} catch (IOException e) {
+				return StubResponse.error(400, "Invalid appointment: " + e.getMessage());
+			}
+			return book(body);
+		});
+		server.route(api + "/CheckForClashingAppointment", request -> {
+			String performer = request.getParameter("performerId");
+			String date = request.getParameter("apptDate");
+			if (performer == null || date == null) {
+				return StubResponse.error(400, "performerId and apptDate are required");
+			}
+			return StubResponse.json(HealthAppFixtures.ok(
+					hasAppointment(performer, date, request.getIntParameter("patientId", 0))));
+		});
+		server.route(api + "/AppointmentStatus", request -> {
+			int appointmentId = request.getIntParameter("appointmentId", 0);
+			String status = request.getParameter("status");
+			if (!"cancelled".equalsIgnoreCase(status)) {
+				return StubResponse.error(400, "Only status=cancelled is supported");
+			}
+			Map<String, Object> appointment = cancel(appointmentId);
+			return appointment == null ? StubResponse.error(404, "No appointment " + appointmentId)
+					: StubResponse.json(HealthAppFixtures.ok(appointment));
+		});
+		server.route(CONTROL_PATH, request -> {
+			if ("DELETE".equalsIgnoreCase(request.getMethod())) {
+				clear();
+			}
+			return StubResponse.json(HealthAppFixtures.ok(HealthAppFixtures.row("Appointments", appointments.size(),
+					"Booked", booked.sum(), "Clashes", clashes.sum(), "Cancelled", cancelled.sum())));
+		});
+	}
+
+	private static Map<String, Object> fields(Map<String, Object> body) {
+		Map<String, Object> fields = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		fields.putAll(body);
+		return fields;
+	}
+
+	/**
+	 * Books an appointment unless its slot is taken.
+	 *
+	 * @param body - The request fields, keyed case-insensitively.
+	 *
+	 * @return StubResponse - The booked appointment, a 409 for a clash or a 400
+	 *         when a required field is missing.
+	 */
+	StubResponse book(Map<String, Object> body) {
+		String[] performer = performerOf(body);
+		String date = dateOf(body.get("AppointmentDate"));
+		String time = timeOf(body.get("AppointmentTime"));
+		if (performer == null || date == null || time == null || body.get("FirstName") == null) {
+			return StubResponse.error(400,
+					"FirstName, AppointmentDate, AppointmentTime and PerformerId or PerformerName are required");
+		}
+		while (true) {
+			String day = performer[0] + "|" + date;
+			String alias = performer[1] == null ? null : performer[1] + "|" + date;
+			Stripe[] locks = lockOrder(day, alias);
+			synchronized (locks[0]) {
+				synchronized (locks[1]) {
+					// the performer's name was paired with an id meanwhile; lock its keys instead
+					String[] current = performerOf(body);
+					if (!Arrays.equals(performer, current)) {
+						performer = current;
+						continue;
+					}
+					return book(body, day, alias, date, time);
+				}
+			}
+		}
+	}
+
+	// under the locks of day's and alias's stripes; a slot taken under either clashes
+	private StubResponse book(Map<String, Object> body, String day, String alias, String date, String time) {
+		Map<String, Integer> slots = stripeOf(day).days.computeIfAbsent(day, d -> new HashMap<>());
+		Integer existing = slots.get(time);
+		if (existing == null && alias != null) {
+			Map<String, Integer> aliasSlots = stripeOf(alias).days.get(alias);
+			existing = aliasSlots == null ? null : aliasSlots.get(time);
+		}
+		if (existing != null) {
+			clashes.increment();
+			return StubResponse.error(409, "Appointment clashes with appointment " + existing + " of "
+					+ display(body) + " on " + date + " at " + time);
+		}
+		int appointmentId = nextAppointmentId.getAndIncrement();
+		Map<String, Object> appointment = appointmentOf(appointmentId, body, date);
+		appointments.put(appointmentId, appointment);
+		dayOfAppointment.put(appointmentId, day);
+		slots.put(time, appointmentId);
+		booked.increment();
+		return StubResponse.json(HealthAppFixtures.ok(appointment));
+	}
+
+	/**
+	 * @return Stripe[] - The stripes of day and alias (alias may be null),
+	 *         lowest index first, so two bookings locking both never deadlock.
+	 */
+	private Stripe[] lockOrder(String day, String alias) {
+		int first = stripeIndex(day);
+		int second = alias == null ? first : stripeIndex(alias);
+		return new Stripe[] { stripes[Math.min(first, second)], stripes[Math.max(first, second)] };
+	}
+
+	private Map<String, Object> appointmentOf(int appointmentId, Map<String, Object> body, String date) {
+		int patientId = body.get("PatientId") == null ? 0 : toInt(body.get("PatientId"));
+		String firstName = String.valueOf(body.get("FirstName"));
+		String lastName = body.get("LastName") == null ? "" : String.valueOf(body.get("LastName"));
+		Map<String, Object> appointment = HealthAppFixtures.row("AppointmentId", appointmentId, "PatientId",
+				patientId > 0 ? patientId : nextPatientId.getAndIncrement());
+		appointment.put("FirstName", firstName);
+		appointment.put("LastName", lastName);
+		appointment.put("FullName", (firstName + " " + lastName).trim());
+		appointment.put("Gender", body.get("Gender"));
+		appointment.put("Age", intOrNull(body.get("Age")));
+		appointment.put("ContactNumber", body.get("ContactNumber"));
+		appointment.put("AppointmentDate", date + "T00:00:00");
+		appointment.put("AppointmentTime", String.valueOf(body.get("AppointmentTime")).trim());
+		appointment.put("PerformerId", intOrNull(body.get("PerformerId")));
+		appointment.put("PerformerName", body.get("PerformerName"));
+		appointment.put("AppointmentType", body.get("AppointmentType"));
+		appointment.put("AppointmentStatus", "Initiated");
+		appointment.put("DepartmentId", intOrNull(body.get("DepartmentId")));
+		return appointment;
+	}
+
+	/**
+	 * @return boolean - Whether the performer has a live appointment on the date,
+	 *         for the given patient when patientId is positive.
+	 */
+	private boolean hasAppointment(String performerId, String apptDate, int patientId) {
+		int id = toInt(performerId);
+		String date = dateOf(apptDate);
+		String day = "id:" + id + "|" + date;
+		String name = nameOfPerformer.get(id);
+		String alias = name == null ? null : "name:" + name + "|" + date;
+		Stripe[] locks = lockOrder(day, alias);
+		synchronized (locks[0]) {
+			synchronized (locks[1]) {
+				return hasAppointment(stripeOf(day).days.get(day), patientId)
+						|| alias != null && hasAppointment(stripeOf(alias).days.get(alias), patientId);
+			}
+		}
+	}
+
+	private boolean hasAppointment(Map<String, Integer> slots, int patientId) {
+		if (slots == null) {
+			return false;
+		}
+		if (patientId <= 0) {
+			return !slots.isEmpty();
+		}
+		for (Integer appointmentId : slots.values()) {
+			Map<String, Object> appointment = appointments.get(appointmentId);
+			if (appointment != null && Integer.valueOf(patientId).equals(appointment.get("PatientId"))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Cancels an appointment and frees its slot.
+	 *
+	 * @param appointmentId - The appointment to cancel.
+	 *
+	 * @return Map - The cancelled appointment, or null if there is none.
+	 */
+	Map<String, Object> cancel(int appointmentId) {
+		Map<String, Object> appointment = appointments.get(appointmentId);
+		String day = dayOfAppointment.get(appointmentId);
+		if (appointment == null || day == null) {
+			return null;
+		}
+		Stripe stripe = stripeOf(day);
+		synchronized (stripe) {
+			if ("Cancelled".equals(appointment.get("AppointmentStatus"))) {
+				return appointment;
+			}
+			Map<String, Integer> slots = stripe.days.get(day);
+			if (slots != null) {
+				slots.remove(timeOf(appointment.get("AppointmentTime")), appointmentId);
+				if (slots.isEmpty()) {
+					stripe.days.remove(day);
+				}
+			}
+			appointment.put("AppointmentStatus", "Cancelled");
+		}
+		cancelled.increment();
+		return appointment;
+	}
+
+	/**
+	 * Forgets every appointment and resets the counters.
+	 */
+	public void clear() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.days.clear();
+			}
+		}
+		appointments.clear();
+		dayOfAppointment.clear();
+		performerByName.clear();
+		nameOfPerformer.clear();
+		booked.reset();
+		clashes.reset();
+		cancelled.reset();
+	}
+
+	private Stripe stripeOf(String day) {
+		return stripes[stripeIndex(day)];
+	}
+
+	private int stripeIndex(String day) {
+		int hash = day.hashCode();
+		return (hash ^ hash >>> 16) & stripes.length - 1;
+	}
+
+	/**
+	 * Works out where a booking is indexed, pairing its name with its id the
+	 * first time a booking carries both.
+	 *
+	 * @return String[] - The key to book under: "id:48" when the id is given
+	 *         or the name was paired with one, else "name:dr. pooja mishra";
+	 *         then the name key the performer's bookings from before the
+	 *         pairing live under, or null. null when neither is given.
+	 */
+	private String[] performerOf(Map<String, Object> fields) {
+		int id = fields.get("PerformerId") == null ? 0 : toInt(fields.get("PerformerId"));
+		Object name = fields.get("PerformerName");
+		String trimmed = name == null ? "" : String.valueOf(name).trim().toLowerCase();
+		if (id <= 0) {
+			if (trimmed.isEmpty()) {
+				return null;
+			}
+			Integer known = performerByName.get(trimmed);
+			if (known == null) {
+				return new String[] { "name:" + trimmed, null };
+			}
+			id = known;
+		} else if (!trimmed.isEmpty() && performerByName.putIfAbsent(trimmed, id) == null) {
+			nameOfPerformer.putIfAbsent(id, trimmed);
+		}
+		String paired = nameOfPerformer.get(id);
+		return new String[] { "id:" + id, paired == null ? null : "name:" + paired };
+	}
+
+	private static String display(Map<String, Object> fields) {
+		Object name = fields.get("PerformerName");
+		return name != null ? String.valueOf(name) : "performer " + fields.get("PerformerId");
+	}
+
+	/**
+	 * @return String - "2024-11-12" from "2024-11-12T00:00:00" or "2024-11-12".
+	 */
+	private static String dateOf(Object value) {
+		if (value == null) {
+			return null;
+		}
+		String text = String.valueOf(value).trim();
+		return text.length() >= 10 ? text.substring(0, 10) : null;
+	}
+
+	/**
+	 * @return String - "11:30" from "11:30:00" or "11:30".
+	 */
+	private static String timeOf(Object value) {
+		if (value == null) {
+			return null;
+		}
+		String text = String.valueOf(value).trim();
+		return text.length() >= 5 ? text.substring(0, 5) : null;
+	}
+
+	private static Integer intOrNull(Object value) {
+		return value == null ? null : toInt(value);
+	}
+
+	private static int toInt(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		try {
+			return Integer.parseInt(String.valueOf(value).trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	public int getAppointmentCount() {
+		return appointments.size();
+	}
+
+	public long getClashCount() {
+		return clashes.sum();
+	}
+}
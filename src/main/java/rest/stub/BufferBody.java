@@ -0,0 +1,45 @@
+package rest.stub;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A body served straight from an existing buffer, such as a slice of a
+ * memory-mapped replay corpus, without copying it onto the heap first.
+ */
+public class BufferBody implements StubBody {
+
+	private final ByteBuffer source;
+
+	/**
+	 * @param source - The bytes to send; the buffer itself is not modified.
+	 */
+	public BufferBody(ByteBuffer source) {
+		this.source = source.duplicate();
+	}
+
+	@Override
+	public long length() {
+		return source.remaining();
+	}
+
+	@Override
+	public int fill(ByteBuffer target) {
+		if (!source.hasRemaining()) {
+			return -1;
+		}
+		int count = Math.min(source.remaining(), target.remaining());
+		ByteBuffer chunk = source.duplicate();
+		chunk.limit(chunk.position() + count);
+		target.put(chunk);
+		source.position(source.position() + count);
+		return count;
+	}
+
+	/**
+	 * @return ByteBuffer - The unsent remainder, for transports that can write a
+	 *         buffer directly.
+	 */
+	public ByteBuffer remaining() {
+		return source.duplicate();
+	}
+}
@@ -0,0 +1,303 @@
+package rest.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import rest.stub.SyntheticDataset.Entity;
+import restConfig.ConfigManager;
+
+/**
+ * A named, versioned dataset for the stub's list endpoints, so benchmark runs
+ * days apart serve byte-identical data. The descriptor checked in under
+ * src/main/resources/snapshots is all that is stored in the repository: a seed,
+ * the row count per entity and the SHA-256 of every body the seed produced when
+ * the snapshot was frozen, e.g.
+ *
+ * <pre>
+ * { "name": "prod-like", "version": 1, "seed": 20240601,
+ *   "rows": { "ITEMS": 2500, "REFERRERS": 300, ... },
+ *   "checksums": { "ITEMS": "9f2c...", ... } }
+ * </pre>
+ *
+ * The first run on a machine generates the bodies once into a
+ * {@link SnapshotFile} under stub.snapshot.dir and checks them against the
+ * checksums; later runs only map that file, which takes milliseconds whatever
+ * the size. Regenerating writes the next generation ("prod-like-v1.g1.snap")
+ * rather than over a file another run may still have mapped, and removes
+ * the older ones where it can. If the generator no longer reproduces a frozen snapshot the stub
+ * refuses to start rather than serve different data under the same name:
+ * changing a snapshot means bumping its version and freezing it again.
+ *
+ * Select one with stub.snapshot in config.properties or the testng "dataset"
+ * parameter. Usage:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; rest.stub.DatasetSnapshot &lt;name&gt; [freeze]
+ * </pre>
+ *
+ * which materialises the snapshot and prints its bodies, or with "freeze"
+ * records their checksums in the descriptor.
+ */
+public class DatasetSnapshot {
+
+	public static final String DIRECTORY = "src/main/resources/snapshots";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+	private String name;
+	private int version = 1;
+	private long seed = 42;
+	private int notesPatientId = SyntheticDataset.NOTES_PATIENT_ID;
+	private Map<Entity, Long> rows = new LinkedHashMap<>();
+	private Map<Entity, String> checksums = new LinkedHashMap<>();
+
+	/**
+	 * Reads a snapshot descriptor.
+	 *
+	 * @param name - A snapshot under src/main/resources/snapshots, e.g.
+	 *             "prod-like", or the path of a descriptor file.
+	 *
+	 * @return DatasetSnapshot - The parsed descriptor.
+	 * @throws IOException - If the descriptor is missing or malformed.
+	 */
+	public static DatasetSnapshot load(String name) throws IOException {
+		File file = descriptorFile(name);
+		if (!file.isFile()) {
+			throw new IOException("No dataset snapshot " + name + " (" + file.getPath() + ")");
+		}
+		DatasetSnapshot snapshot = MAPPER.readValue(file, DatasetSnapshot.class);
+		if (snapshot.name == null) {
+			snapshot.name = file.getName().replaceFirst("\\.json$", "");
+		}
+		return snapshot;
+	}
+
+	private static File descriptorFile(String name) {
+		return name.endsWith(".json") ? new File(name) : new File(DIRECTORY, name + ".json");
+	}
+
+	/**
+	 * Materialises the snapshot under stub.snapshot.dir and routes its
+	 * endpoints on the server.
+	 *
+	 * @param server - The stub server to serve the snapshot.
+	 * @param name   - The snapshot, as for {@link #load(String)}.
+	 *
+	 * @return SnapshotFile - The mapped snapshot now being served.
+	 */
+	public static SnapshotFile install(HealthAppStubServer server, String name) {
+		try {
+			SnapshotFile file = load(name).materialize(cacheDirectory());
+			file.registerOn(server);
+			return file;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to load dataset snapshot " + name, e);
+		}
+	}
+
+	/**
+	 * @return File - stub.snapshot.dir, where materialised snapshots are kept.
+	 */
+	public static File cacheDirectory() {
+		return new File(ConfigManager.getProperty("stub.snapshot.dir", "target/snapshots"));
+	}
+
+	/**
+	 * Maps the materialised snapshot, generating it first when it is missing or
+	 * was built from a different descriptor.
+	 *
+	 * @param directory - Where materialised snapshots are kept.
+	 *
+	 * @return SnapshotFile - The mapped snapshot.
+	 * @throws IOException           - If the file cannot be read or written.
+	 * @throws IllegalStateException - If the generated bodies do not match the
+	 *                               frozen checksums.
+	 */
+	public SnapshotFile materialize(File directory) throws IOException {
+		int generation = newestGeneration(directory);
+		if (generation >= 0) {
+			try {
+				SnapshotFile existing = SnapshotFile.read(fileOf(directory, generation));
+				if (existing.isBuiltFrom(this)) {
+					return existing.map();
+				}
+			} catch (IOException e) {
+				System.out.println("Discarding dataset snapshot file " + fileOf(directory, generation) + ": "
+						+ e.getMessage());
+			}
+		}
+		File file = fileOf(directory, generation + 1);
+		System.out.println("Generating dataset snapshot " + name + " v" + version + " into " + file.getPath());
+		SnapshotFile.write(file, this);
+		SnapshotFile generated = SnapshotFile.read(file);
+		for (Map.Entry<Entity, String> frozen : checksums.entrySet()) {
+			String actual = generated.getChecksum(frozen.getKey());
+			if (!frozen.getValue().equalsIgnoreCase(String.valueOf(actual))) {
+				// nothing maps the file yet, so this only fails if something else holds it
+				String left = file.delete() ? "" : " (" + file.getPath() + " could not be deleted)";
+				throw new IllegalStateException("Dataset snapshot " + name + " v" + version
+						+ " no longer reproduces its " + frozen.getKey() + " body (" + actual + " instead of "
+						+ frozen.getValue() + "); if the data was meant to change, bump the version and freeze it"
+						+ left);
+			}
+		}
+		if (checksums.isEmpty()) {
+			System.out.println("Dataset snapshot " + name + " has no checksums yet; freeze it to pin its data");
+		}
+		deleteGenerationsBefore(directory, generation + 1);
+		return generated.map();
+	}
+
+	/**
+	 * Generates the snapshot afresh and records its checksums in the
+	 * descriptor file.
+	 *
+	 * @param directory - Where materialised snapshots are kept.
+	 *
+	 * @return SnapshotFile - The mapped snapshot.
+	 * @throws IOException - If a file cannot be read or written.
+	 */
+	public SnapshotFile freeze(File directory) throws IOException {
+		int generation = newestGeneration(directory) + 1;
+		File file = fileOf(directory, generation);
+		SnapshotFile.write(file, this);
+		SnapshotFile generated = SnapshotFile.read(file);
+		checksums = new LinkedHashMap<>();
+		for (Entity entity : rows.keySet()) {
+			checksums.put(entity, generated.getChecksum(entity));
+		}
+		MAPPER.writeValue(descriptorFile(name), this);
+		deleteGenerationsBefore(directory, generation);
+		return generated.map();
+	}
+
+	/**
+	 * @return File - A generation of the materialised snapshot; generation 0 is
+	 *         "&lt;name&gt;-v&lt;version&gt;.snap".
+	 */
+	private File fileOf(File directory, int generation) {
+		return new File(directory, name + "-v" + version + (generation == 0 ? "" : ".g" + generation) + ".snap");
+	}
+
+	/**
+	 * @return int - The newest generation of the materialised snapshot, or -1
+	 *         if it has not been materialised.
+	 */
+	private int newestGeneration(File directory) {
+		int newest = -1;
+		for (int generation : generations(directory)) {
+			newest = Math.max(newest, generation);
+		}
+		return newest;
+	}
+
+	// a generation still mapped by another run cannot be deleted on Windows; the next regeneration retries
+	private void deleteGenerationsBefore(File directory, int current) {
+		for (int generation : generations(directory)) {
+			if (generation < current) {
+				fileOf(directory, generation).delete();
+			}
+		}
+	}
+
+	private int[] generations(File directory) {
+		String prefix = name + "-v" + version;
+		String[] names = directory.list();
+		return Arrays.stream(names == null ? new String[0] : names)
+				.filter(file -> file.startsWith(prefix) && file.endsWith(".snap"))
+				.map(file -> file.substring(prefix.length(), file.length() - ".snap".length()))
+				.filter(generation -> generation.isEmpty() || generation.matches("\\.g\\d+"))
+				.mapToInt(generation -> generation.isEmpty() ? 0 : Integer.parseInt(generation.substring(2)))
+				.toArray();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1 || args.length > 2 || args.length == 2 && !"freeze".equals(args[1])) {
+			System.out.println("Usage: DatasetSnapshot <name> [freeze]");
+			System.exit(2);
+		}
+		DatasetSnapshot snapshot = load(args[0]);
+		long start = System.nanoTime();
+		SnapshotFile file = args.length == 2 ? snapshot.freeze(cacheDirectory())
+				: snapshot.materialize(cacheDirectory());
+		System.out.println(String.format("%s v%d ready in %d ms: %s", snapshot.getName(), snapshot.getVersion(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), file.getFile().getPath()));
+		for (Entity entity : snapshot.getRows().keySet()) {
+			System.out.println(String.format("  %-15s %10d rows %12d bytes  sha256 %s", entity,
+					snapshot.getRows().get(entity), file.getLength(entity), file.getChecksum(entity)));
+		}
+	}
+
+	@JsonIgnore
+	public SyntheticDataset getDataset() {
+		return new SyntheticDataset(seed, 0);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @return int - The patient whose clinical notes are materialised; notes of
+	 *         other patients are generated per request from the same seed.
+	 */
+	public int getNotesPatientId() {
+		return notesPatientId;
+	}
+
+	public void setNotesPatientId(int notesPatientId) {
+		this.notesPatientId = notesPatientId;
+	}
+
+	/**
+	 * @return Map - Rows per entity; entities left out keep their canned
+	 *         fixtures.
+	 */
+	public Map<Entity, Long> getRows() {
+		return rows;
+	}
+
+	public void setRows(Map<Entity, Long> rows) {
+		this.rows = rows;
+	}
+
+	/**
+	 * @return Map - Hex SHA-256 of each entity's body as frozen; empty until the
+	 *         snapshot is frozen.
+	 */
+	public Map<Entity, String> getChecksums() {
+		return checksums;
+	}
+
+	public void setChecksums(Map<Entity, String> checksums) {
+		this.checksums = checksums;
+	}
+}
@@ -0,0 +1,253 @@
+package rest.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Applies the current {@link FaultProfile} to every stub response, and serves
+ * the control API that lets tests change the profile mid-run:
+ *
+ * <pre>
+ * GET    /__control/faults   current profile with per-rule "injected" counts
+ * PUT    /__control/faults   replace the profile (POST works too)
+ * DELETE /__control/faults   remove all faults
+ * </pre>
+ *
+ * Control paths (everything under /__control/, e.g. the appointment and
+ * result control APIs too) are never faulted, so a test can read and reset
+ * stub state while a fault profile is active. The profile is swapped as a whole, so a
+ * request always sees either the old profile or the new one.
+ */
+public class FaultInjector {
+
+	public static final String CONTROL_PATH = "/__control/faults";
+	public static final String CONTROL_PREFIX = "/__control/";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final Set<String> TYPES = new HashSet<>(
+			Arrays.asList("delay", "drip", "reset", "error", "malformed"));
+	private static final byte[] JSON_DATA_KEY = "\"JsonData\":\"".getBytes(StandardCharsets.UTF_8);
+	private static final int TRUNCATED_STREAM_BYTES = 1024;
+
+	private volatile FaultProfile profile = new FaultProfile();
+
+	/**
+	 * @param file - A JSON fault profile, e.g. the one named by stub.faults.
+	 *
+	 * @return FaultProfile - The parsed profile.
+	 * @throws IOException - If the file cannot be read.
+	 */
+	public static FaultProfile readProfile(File file) throws IOException {
+		return MAPPER.readValue(file, FaultProfile.class);
+	}
+
+	public FaultProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * @param profile - The faults to inject from now on.
+	 * @throws IllegalArgumentException - If a rule has an unknown type or an
+	 *                                  impossible percentage.
+	 */
+	public void setProfile(FaultProfile profile) {
+		for (FaultRule rule : profile.getRules()) {
+			if (rule.getType() == null || !TYPES.contains(rule.getType().toLowerCase())) {
+				throw new IllegalArgumentException("Unknown fault type '" + rule.getType() + "', expected one of " + TYPES);
+			}
+			if (rule.getPercent() < 0 || rule.getPercent() > 100) {
+				throw new IllegalArgumentException("Fault percent must be between 0 and 100");
+			}
+		}
+		this.profile = profile;
+	}
+
+	public void clear() {
+		this.profile = new FaultProfile();
+	}
+
+	/**
+	 * Adds the control API routes.
+	 *
+	 * @param server - The server to add them to.
+	 */
+	public void registerControlApi(HealthAppStubServer server) {
+		server.route(CONTROL_PATH, request -> {
+			switch (request.getMethod().toUpperCase()) {
+			case "PUT":
+			case "POST":
+				try {
+					setProfile(MAPPER.readValue(request.getBody(), FaultProfile.class));
+				} catch (IOException | IllegalArgumentException e) {
+					return StubResponse.error(400, e.getMessage());
+				}
+				break;
+			case "DELETE":
+				clear();
+				break;
+			default:
+			}
+			return StubResponse.json(MAPPER.writeValueAsBytes(profile));
+		});
+	}
+
+	/**
+	 * Rolls the dice for every rule that covers the request.
+	 *
+	 * @param request  - The request being answered.
+	 * @param response - The response its handler produced.
+	 *
+	 * @return StubResponse - The response to send, possibly delayed, dripping,
+	 *         reset, replaced by an error or corrupted.
+	 */
+	public StubResponse apply(StubRequest request, StubResponse response) {
+		if (request.getPath().startsWith(CONTROL_PREFIX)) {
+			return response;
+		}
+		StubResponse result = response;
+		boolean decided = false;
+		for (FaultRule rule : profile.getRules()) {
+			if (!rule.matches(request.getPath())) {
+				continue;
+			}
+			String type = rule.getType().toLowerCase();
+			// once a rule has decided the response only delays still apply; a burst is not used up
+			if (decided && !"delay".equals(type)) {
+				continue;
+			}
+			boolean burst = "error".equals(type) && rule.continueBurst();
+			if (!burst && ThreadLocalRandom.current().nextDouble(100) >= rule.getPercent()) {
+				continue;
+			}
+			if ("delay".equals(type)) {
+				rule.countInjection();
+				result = result.withDelay(delayOf(rule));
+				continue;
+			}
+			decided = true;
+			rule.countInjection();
+			switch (type) {
+			case "drip":
+				result = result.withDrip(rule.getDripBytes(), rule.getDripIntervalMillis());
+				break;
+			case "reset":
+				result = result.withReset();
+				break;
+			case "error":
+				if (!burst) {
+					rule.startBurst();
+				}
+				result = StubResponse.error(rule.getStatusCode(), "Injected fault")
+						.withDelay(result.getDelayMillis());
+				break;
+			default:
+				result = malformed(result);
+			}
+		}
+		return result;
+	}
+
+	private static long delayOf(FaultRule rule) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		switch (rule.getDistribution() == null ? "fixed" : rule.getDistribution().toLowerCase()) {
+		case "uniform":
+			return rule.getDelayMillis()
+					+ (long) (random.nextDouble() * Math.max(0, rule.getDelayMaxMillis() - rule.getDelayMillis()));
+		case "exponential":
+			return (long) (-rule.getDelayMillis() * Math.log(1 - random.nextDouble()));
+		default:
+			return rule.getDelayMillis();
+		}
+	}
+
+	/**
+	 * Keeps the envelope valid but cuts the stringified JsonData in half, so the
+	 * client fails when it parses JsonData. Without JsonData the body itself is
+	 * cut short.
+	 */
+	static StubResponse malformed(StubResponse response) {
+		StubResponse corrupted;
+		if (response.isStreamed()) {
+			corrupted = new StubResponse(response.getStatusCode(), response.getContentType(),
+					new TruncatedBody(response.getStream(), TRUNCATED_STREAM_BYTES));
+		} else {
+			corrupted = new StubResponse(response.getStatusCode(), response.getContentType(),
+					corrupt(response.getBody()));
+		}
+		return corrupted.withDelay(response.getDelayMillis());
+	}
+
+	private static byte[] corrupt(byte[] body) {
+		int start = indexOf(body, JSON_DATA_KEY);
+		if (start < 0) {
+			return Arrays.copyOf(body, body.length / 2);
+		}
+		int from = start + JSON_DATA_KEY.length;
+		int to = from;
+		while (to < body.length && body[to] != '"') {
+			to += body[to] == '\\' ? 2 : 1;
+		}
+		int cut = from + (to - from) / 2;
+		while (cut > from && body[cut - 1] == '\\') {
+			cut--;
+		}
+		byte[] corrupted = new byte[body.length - (to - cut)];
+		System.arraycopy(body, 0, corrupted, 0, cut);
+		System.arraycopy(body, to, corrupted, cut, body.length - to);
+		return corrupted;
+	}
+
+	private static int indexOf(byte[] haystack, byte[] needle) {
+		outer: for (int i = 0; i + needle.length <= haystack.length; i++) {
+			for (int j = 0; j < needle.length; j++) {
+				if (haystack[i + j] != needle[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * A streamed body that ends early.
+	 */
+	private static final class TruncatedBody implements StubBody {
+
+		private final StubBody delegate;
+		private long remaining;
+
+		TruncatedBody(StubBody delegate, long limit) {
+			this.delegate = delegate;
+			this.remaining = limit;
+		}
+
+		@Override
+		public long length() {
+			return -1;
+		}
+
+		@Override
+		public int fill(ByteBuffer target) {
+			if (remaining <= 0) {
+				return -1;
+			}
+			ByteBuffer window = target.slice();
+			window.limit((int) Math.min(window.remaining(), remaining));
+			int written = delegate.fill(window);
+			if (written > 0) {
+				target.position(target.position() + written);
+				remaining -= written;
+			}
+			return written;
+		}
+	}
+}
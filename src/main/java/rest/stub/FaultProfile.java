@@ -0,0 +1,32 @@
+package rest.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The set of faults the stub injects, as uploaded to the control API or
+ * loaded from the file named by stub.faults, e.g.
+ *
+ * <pre>
+ * {"rules": [
+ *   {"endpoint": "/Clinical/PatientNotes", "type": "delay", "percent": 20, "distribution": "exponential", "delayMillis": 800},
+ *   {"endpoint": "INCTV_DocterSummary", "type": "malformed", "percent": 5},
+ *   {"endpoint": "*", "type": "error", "percent": 1, "statusCode": 503, "burstLength": 10}
+ * ]}
+ * </pre>
+ *
+ * Rules are evaluated in order. Delay rules stack; the first other rule that
+ * fires decides the response.
+ */
+public class FaultProfile {
+
+	private List<FaultRule> rules = new ArrayList<>();
+
+	public List<FaultRule> getRules() {
+		return rules;
+	}
+
+	public void setRules(List<FaultRule> rules) {
+		this.rules = rules;
+	}
+}
@@ -0,0 +1,167 @@
+package rest.stub;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One fault of a {@link FaultProfile}. It applies to requests whose path
+ * contains {@code endpoint} ("*" for all) with probability {@code percent}/100.
+ * Types:
+ * <ul>
+ * <li>delay - Wait before responding: {@code delayMillis} when
+ * {@code distribution} is "fixed", uniform in
+ * [{@code delayMillis}, {@code delayMaxMillis}] for "uniform", exponential with
+ * mean {@code delayMillis} for "exponential". Delays stack with other
+ * faults.</li>
+ * <li>drip - Send the body {@code dripBytes} at a time, every
+ * {@code dripIntervalMillis}.</li>
+ * <li>reset - Drop the connection instead of answering.</li>
+ * <li>error - Answer {@code statusCode} (default 503); once triggered, the next
+ * {@code burstLength} - 1 matching requests fail as well.</li>
+ * <li>malformed - Corrupt the stringified JsonData (or, without JsonData, cut
+ * the body short).</li>
+ * </ul>
+ */
+public class FaultRule {
+
+	private String endpoint = "*";
+	private String type;
+	private double percent = 100;
+	private long delayMillis;
+	private long delayMaxMillis;
+	private String distribution = "fixed";
+	private int dripBytes = 64;
+	private long dripIntervalMillis = 100;
+	private int statusCode = 503;
+	private int burstLength = 1;
+
+	@JsonIgnore
+	private final AtomicInteger burstRemaining = new AtomicInteger();
+	@JsonIgnore
+	private final LongAdder injected = new LongAdder();
+
+	/**
+	 * @param path - The request path.
+	 *
+	 * @return boolean - true if this rule covers the path.
+	 */
+	boolean matches(String path) {
+		return "*".equals(endpoint) || path.toLowerCase().contains(endpoint.toLowerCase());
+	}
+
+	/**
+	 * Claims one request of a running error burst.
+	 *
+	 * @return boolean - true if a burst was in progress.
+	 */
+	boolean continueBurst() {
+		int remaining;
+		do {
+			remaining = burstRemaining.get();
+			if (remaining <= 0) {
+				return false;
+			}
+		} while (!burstRemaining.compareAndSet(remaining, remaining - 1));
+		return true;
+	}
+
+	void startBurst() {
+		burstRemaining.set(Math.max(0, burstLength - 1));
+	}
+
+	void countInjection() {
+		injected.increment();
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public void setEndpoint(String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public double getPercent() {
+		return percent;
+	}
+
+	public void setPercent(double percent) {
+		this.percent = percent;
+	}
+
+	public long getDelayMillis() {
+		return delayMillis;
+	}
+
+	public void setDelayMillis(long delayMillis) {
+		this.delayMillis = delayMillis;
+	}
+
+	public long getDelayMaxMillis() {
+		return delayMaxMillis;
+	}
+
+	public void setDelayMaxMillis(long delayMaxMillis) {
+		this.delayMaxMillis = delayMaxMillis;
+	}
+
+	public String getDistribution() {
+		return distribution;
+	}
+
+	public void setDistribution(String distribution) {
+		this.distribution = distribution;
+	}
+
+	public int getDripBytes() {
+		return dripBytes;
+	}
+
+	public void setDripBytes(int dripBytes) {
+		this.dripBytes = dripBytes;
+	}
+
+	public long getDripIntervalMillis() {
+		return dripIntervalMillis;
+	}
+
+	public void setDripIntervalMillis(long dripIntervalMillis) {
+		this.dripIntervalMillis = dripIntervalMillis;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public void setStatusCode(int statusCode) {
+		this.statusCode = statusCode;
+	}
+
+	public int getBurstLength() {
+		return burstLength;
+	}
+
+	public void setBurstLength(int burstLength) {
+		this.burstLength = burstLength;
+	}
+
+	/**
+	 * @return long - How many requests this rule has affected; reported by the
+	 *         control API, ignored when a profile is uploaded.
+	 */
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
+	public long getInjected() {
+		return injected.sum();
+	}
+}
@@ -0,0 +1,288 @@
+package rest.stub;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A JSON body written row by row as the transport pulls it: a fixed prefix,
+ * the rows separated by commas, then a fixed suffix. Each row is encoded into
+ * one reusable buffer, so memory use does not depend on the row count. In
+ * escaped mode every quote and backslash a row writes is escaped once more,
+ * which is how the rows of a stringified JsonData array are produced without
+ * building the string first.
+ */
+class GeneratedJsonBody implements StubBody {
+
+	/**
+	 * Encodes one row, deterministically from its index.
+	 */
+	interface RowEncoder {
+		void encode(long index, Row row);
+	}
+
+	private static final int PREFIX = 0;
+	private static final int ROWS = 1;
+	private static final int SUFFIX = 2;
+	private static final int DONE = 3;
+
+	private final byte[] prefix;
+	private final byte[] suffix;
+	private final long rows;
+	private final RowEncoder encoder;
+	private final Row row;
+	private long nextRow;
+	private int stage = PREFIX;
+	private byte[] pending = new byte[0];
+	private int pendingPos;
+	private int pendingLength;
+
+	GeneratedJsonBody(String prefix, String suffix, long rows, boolean escaped, RowEncoder encoder) {
+		this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+		this.suffix = suffix.getBytes(StandardCharsets.UTF_8);
+		this.rows = rows;
+		this.encoder = encoder;
+		this.row = new Row(escaped);
+	}
+
+	@Override
+	public long length() {
+		return -1;
+	}
+
+	@Override
+	public int fill(ByteBuffer target) {
+		int start = target.position();
+		while (target.hasRemaining()) {
+			if (pendingPos == pendingLength && !advance()) {
+				break;
+			}
+			int count = Math.min(target.remaining(), pendingLength - pendingPos);
+			target.put(pending, pendingPos, count);
+			pendingPos += count;
+		}
+		int written = target.position() - start;
+		return written == 0 && stage == DONE ? -1 : written;
+	}
+
+	private boolean advance() {
+		if (stage == PREFIX) {
+			stage = ROWS;
+			return pend(prefix, prefix.length);
+		}
+		if (stage == ROWS && nextRow < rows) {
+			row.length = 0;
+			if (nextRow > 0) {
+				row.put(',');
+			}
+			encoder.encode(nextRow++, row);
+			return pend(row.bytes, row.length);
+		}
+		if (stage == ROWS || stage == SUFFIX) {
+			stage = DONE;
+			return pend(suffix, suffix.length);
+		}
+		return false;
+	}
+
+	private boolean pend(byte[] bytes, int length) {
+		pending = bytes;
+		pendingPos = 0;
+		pendingLength = length;
+		return true;
+	}
+
+	/**
+	 * Allocation-free writer for one JSON object.
+	 */
+	static final class Row {
+
+		private final boolean escaped;
+		private byte[] bytes = new byte[256];
+		private int length;
+		private boolean first;
+
+		Row(boolean escaped) {
+			this.escaped = escaped;
+		}
+
+		Row begin() {
+			put('{');
+			first = true;
+			return this;
+		}
+
+		Row end() {
+			put('}');
+			return this;
+		}
+
+		Row number(String name, long value) {
+			name(name);
+			putLong(value);
+			return this;
+		}
+
+		/**
+		 * Writes a currency amount with two decimals, so it always parses as a
+		 * floating-point number.
+		 */
+		Row amount(String name, long cents) {
+			name(name);
+			if (cents < 0) {
+				put('-');
+				cents = -cents;
+			}
+			putLong(cents / 100);
+			put('.');
+			put((char) ('0' + cents % 100 / 10));
+			put((char) ('0' + cents % 10));
+			return this;
+		}
+
+		Row bool(String name, boolean value) {
+			name(name);
+			putAscii(value ? "true" : "false");
+			return this;
+		}
+
+		Row text(String name, String value) {
+			name(name);
+			quote();
+			putText(value);
+			quote();
+			return this;
+		}
+
+		/**
+		 * Starts a string value that the caller builds with {@link #append}.
+		 */
+		Row openText(String name) {
+			name(name);
+			quote();
+			return this;
+		}
+
+		Row append(String value) {
+			putText(value);
+			return this;
+		}
+
+		Row append(long value) {
+			putLong(value);
+			return this;
+		}
+
+		Row closeText() {
+			quote();
+			return this;
+		}
+
+		/**
+		 * Writes an ASP.NET-style timestamp, e.g. "2024-11-12T11:30:00".
+		 */
+		Row timestamp(String name, long epochSecond) {
+			name(name);
+			quote();
+			long days = Math.floorDiv(epochSecond, 86400L);
+			int seconds = (int) Math.floorMod(epochSecond, 86400L);
+			// civil-from-days, proleptic Gregorian
+			long z = days + 719468;
+			long era = Math.floorDiv(z, 146097);
+			long doe = z - era * 146097;
+			long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+			long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+			long mp = (5 * doy + 2) / 153;
+			long day = doy - (153 * mp + 2) / 5 + 1;
+			long month = mp < 10 ? mp + 3 : mp - 9;
+			long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+			putLong(year);
+			put('-');
+			putTwo(month);
+			put('-');
+			putTwo(day);
+			put('T');
+			putTwo(seconds / 3600);
+			put(':');
+			putTwo(seconds / 60 % 60);
+			put(':');
+			putTwo(seconds % 60);
+			quote();
+			return this;
+		}
+
+		private void name(String name) {
+			if (!first) {
+				put(',');
+			}
+			first = false;
+			quote();
+			putAscii(name);
+			quote();
+			put(':');
+		}
+
+		private void quote() {
+			if (escaped) {
+				put('\\');
+			}
+			put('"');
+		}
+
+		private void putText(String value) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					if (escaped) {
+						put('\\');
+						put('\\');
+						put('\\');
+					} else {
+						put('\\');
+					}
+					put(c);
+				} else if (c < 0x20 || c > 0x7e) {
+					if (escaped) {
+						put('\\');
+					}
+					putAscii(String.format("\\u%04x", (int) c));
+				} else {
+					put(c);
+				}
+			}
+		}
+
+		private void putAscii(String value) {
+			for (int i = 0; i < value.length(); i++) {
+				put(value.charAt(i));
+			}
+		}
+
+		private void putTwo(long value) {
+			put((char) ('0' + value / 10 % 10));
+			put((char) ('0' + value % 10));
+		}
+
+		private void putLong(long value) {
+			if (value < 0) {
+				put('-');
+				value = -value;
+			}
+			long divisor = 1;
+			while (divisor <= value / 10) {
+				divisor *= 10;
+			}
+			for (; divisor > 0; divisor /= 10) {
+				put((char) ('0' + value / divisor % 10));
+			}
+		}
+
+		void put(char c) {
+			if (length == bytes.length) {
+				byte[] grown = new byte[bytes.length * 2];
+				System.arraycopy(bytes, 0, grown, 0, length);
+				bytes = grown;
+			}
+			bytes[length++] = (byte) c;
+		}
+	}
+}
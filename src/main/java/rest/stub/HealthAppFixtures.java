@@ -0,0 +1,240 @@
+package rest.stub;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Canned HealthApp data for the PL2 endpoints. The shapes follow the live
+ * responses: a {"Status":"OK","Results":...} envelope, PascalCase keys,
+ * ASP.NET-style dates, decimals that always carry a fraction (so JsonPath reads
+ * them as Float) and the incentive report's Results.JsonData as a stringified
+ * JSON array. Static endpoints are encoded once; endpoints that echo their query
+ * parameters are encoded per request.
+ */
+public class HealthAppFixtures {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private HealthAppFixtures() {
+	}
+
+	/**
+	 * Registers every PL2 endpoint on the server.
+	 *
+	 * @param server - The stub server to populate.
+	 */
+	public static void registerAll(HealthAppStubServer server) {
+		String api = HealthAppStubServer.API_PREFIX;
+		server.route(api + "/AssetReports/GetAllDepartments", fixed(ok(departments())));
+		server.route(api + "/AssetReports/GetAllItems", fixed(ok(items())));
+		server.route("/BillingReports/INCTV_DocterSummary", fixed(ok(row("JsonData", toJson(doctorSummary())))));
+		server.route("/Reporting/HospitalIncomeIncentiveReport", fixed(ok(hospitalIncome())));
+		server.route(api + "/Incentive/EmployeeBillItems",
+				request -> StubResponse.json(ok(employeeBillItems(request.getIntParameter("employeeId", 1)))));
+		server.route(api + "/Inventory/InventoryFiscalYears", fixed(ok(fiscalYears())));
+		server.route(api + "/ActivateInventory", fixed(ok(stores())));
+		server.route(api + "/Inventory/SubCategories", fixed(ok(subCategories())));
+		server.route(api + "/Inventory/AvailableQuantityByItemIdAndStoreId",
+				request -> StubResponse.json(ok(row("ItemId", request.getIntParameter("itemId", 1), "AvailableQuantity",
+						120.0, "StoreId", request.getIntParameter("storeId", 1)))));
+		server.route(api + "/EmployeeSettings/Referrers", fixed(ok(referrers())));
+		server.route(api + "/Billing/LabBillCfgItems",
+				request -> StubResponse.json(ok(labBillCfgItems(request.getParameter("departmentName")))));
+		server.route(api + "/Visit/PatientCurrentVisitContext",
+				request -> StubResponse.json(ok(visitContext(request.getIntParameter("patientId", 176),
+						request.getIntParameter("visitId", 147)))));
+		server.route(api + "/Billing/PatientBillingContext",
+				request -> StubResponse.json(ok(billingContext(request.getIntParameter("patientId", 176)))));
+		server.route(api + "/Patient/SearchRegisteredPatient",
+				request -> StubResponse.json(ok(searchPatients(request.getParameter("search")))));
+		server.route(api + "/Clinical/PatientNotes",
+				request -> StubResponse.json(ok(patientNotes(request.getIntParameter("patientId", 0)))));
+	}
+
+	private static StubHandler fixed(byte[] body) {
+		StubResponse response = StubResponse.json(body);
+		return request -> response;
+	}
+
+	/**
+	 * @param results - The Results value.
+	 *
+	 * @return byte[] - The encoded {"Status":"OK","Results":...} envelope.
+	 */
+	static byte[] ok(Object results) {
+		try {
+			return MAPPER.writeValueAsBytes(row("Status", "OK", "Results", results));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unable to encode stub fixture", e);
+		}
+	}
+
+	static String toJson(Object value) {
+		try {
+			return MAPPER.writeValueAsString(value);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unable to encode stub fixture", e);
+		}
+	}
+
+	/**
+	 * @param keysAndValues - Alternating keys and values.
+	 *
+	 * @return Map&lt;String, Object&gt; - An insertion-ordered JSON object.
+	 */
+	static Map<String, Object> row(Object... keysAndValues) {
+		Map<String, Object> row = new LinkedHashMap<>();
+		for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+			row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+		}
+		return row;
+	}
+
+	/**
+	 * @param amount - A currency amount.
+	 *
+	 * @return double - The amount rounded to two decimals.
+	 */
+	static double money(double amount) {
+		return Math.round(amount * 100) / 100.0;
+	}
+
+	static List<Map<String, Object>> departments() {
+		String[] names = { "Administration", "Cardiology", "Dental", "Emergency", "Laboratory", "Orthopedics",
+				"Pharmacy", "Radiology" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			rows.add(row("DepartmentId", i + 1, "DepartmentName", names[i]));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> items() {
+		String[] names = { "Wheel Chair", "Stretcher", "ECG Machine", "Oxygen Cylinder", "Hospital Bed",
+				"Infusion Pump", "Patient Monitor", "Suction Machine", "Autoclave", "Nebulizer" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			rows.add(row("ItemId", i + 1, "ItemName", names[i]));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> doctorSummary() {
+		String[] names = { "Dr. Amit Shah", "Dr. Pooja Mishra", "Dr. Rakesh Verma", "Dr. Sunita Rao" };
+		double[] totals = { 15250.0, 8400.5, 22175.25, 4300.75 };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			double tds = money(totals[i] * 0.15);
+			rows.add(row("PrescriberName", names[i], "PrescriberId", 101 + i, "DocTotalAmount", totals[i], "TDSAmount",
+					tds, "NetPayableAmount", money(totals[i] - tds)));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> hospitalIncome() {
+		String[] names = { "Biochemistry", "Cardiology", "General Medicine", "Hematology", "Radiology",
+				"Ultrasound" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			double netSales = 12500.5 * (i + 1);
+			double commission = money(netSales * 0.05);
+			double other = money(netSales * 0.02);
+			rows.add(row("ServiceDepartmentId", 11 + i, "ServiceDepartmentName", names[i], "NetSales", netSales,
+					"ReferralCommission", commission, "GrossIncome", money(netSales - commission), "OtherIncentive",
+					other, "HospitalNetIncome", money(netSales - commission - other)));
+		}
+		return rows;
+	}
+
+	static Map<String, Object> employeeBillItems(int employeeId) {
+		List<Map<String, Object>> billItems = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			billItems.add(row("EmployeeBillItemsMapId", employeeId * 10 + i, "EmployeeId", employeeId, "BillItemPriceId",
+					200 + i, "ReferredByPercent", 10.0, "AssignedToPercent", 5.0, "HasGroupDistribution", false,
+					"IsActive", true));
+		}
+		return row("EmployeeIncentiveInfoId", employeeId, "EmployeeId", employeeId, "FullName",
+				"Dr. Employee " + employeeId, "TDSPercent", 15.0, "EmpTDSPercent", 15.0, "IsActive", true,
+				"EmployeeBillItemsMap", billItems);
+	}
+
+	static List<Map<String, Object>> fiscalYears() {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			int year = 2022 + i;
+			rows.add(row("FiscalYearId", i + 1, "FiscalYearName", year + "/" + (year + 1), "StartDate",
+					year + "-04-01T00:00:00", "EndDate", (year + 1) + "-03-31T23:59:59", "IsActive", i == 2));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> stores() {
+		String[] names = { "Main Store", "OT Store", "Ward Store" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			rows.add(row("StoreId", i + 1, "Name", names[i], "StoreDescription", names[i] + " inventory"));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> subCategories() {
+		String[] names = { "Consumables", "Stationery", "Surgical", "Linen", "Electronics" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			rows.add(row("SubCategoryId", i + 1, "SubCategoryName", names[i]));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> referrers() {
+		String[] names = { "Dr. Anil Kapoor", "Dr. Meera Nair", "Dr. Vikram Singh", "Dr. Kavita Joshi",
+				"Dr. Suresh Iyer" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			rows.add(row("EmployeeId", 301 + i, "FullName", names[i], "IsExternal", i % 2 == 1, "IsActive", true));
+		}
+		return rows;
+	}
+
+	static List<Map<String, Object>> labBillCfgItems(String departmentName) {
+		String department = departmentName == null || departmentName.isEmpty() ? "radiology" : departmentName;
+		String[] names = { "X-Ray Chest PA", "USG Abdomen", "CT Head", "MRI Spine" };
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			rows.add(row("BillItemPriceId", 501 + i, "ServiceDepartmentId", 21 + i, "ServiceDepartmentName",
+					department, "ItemName", names[i], "Price", 800.0 + 350 * i, "IsActive", true));
+		}
+		return rows;
+	}
+
+	static Map<String, Object> visitContext(int patientId, int visitId) {
+		return row("PatientId", patientId, "PatientVisitId", visitId, "PerformerId", 48, "PerformerName",
+				"Dr. Amit Shah", "VisitDate", "2024-11-12T00:00:00", "VisitType", "outpatient");
+	}
+
+	static Map<String, Object> billingContext(int patientId) {
+		return row("PatientId", patientId, "BillingType", "outpatient", "Insurance", null, "PatientVisitId", 147);
+	}
+
+	static List<Map<String, Object>> searchPatients(String search) {
+		String name = search == null || search.trim().isEmpty() ? "Devid8 Roy8" : search.trim();
+		List<Map<String, Object>> rows = new ArrayList<>();
+		rows.add(row("PatientId", 176, "PatientCode", "2411000176", "ShortName", name, "Gender", "Male", "Age",
+				"25Y", "PhoneNumber", "9876543210"));
+		return rows;
+	}
+
+	static List<Map<String, Object>> patientNotes(int patientId) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			rows.add(row("PatientId", patientId, "NotesId", patientId * 10 + i, "CreatedOn",
+					"2024-11-1" + (2 + i) + "T11:30:00", "VisitCode", "V24" + (147 + i), "NoteType", "Progress Note"));
+		}
+		return rows;
+	}
+}
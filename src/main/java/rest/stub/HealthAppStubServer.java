@@ -0,0 +1,224 @@
+package rest.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import rest.replay.RecordReplayFilter;
+import rest.replay.ReplayMode;
+import rest.replay.ReplayStubHandler;
+import restConfig.ConfigManager;
+
+/**
+ * Embedded stand-in for https://healthapp.yaksha.com serving the PL2 endpoints
+ * from {@link HealthAppFixtures} on the loopback interface. ApiUtil endpoints
+ * live under "/api" as on the live host; the report endpoints the tests pass as
+ * full URLs (BillingReports, Reporting) live at the root. Paths are matched
+ * case-insensitively and without a trailing slash. The bearer token is not
+ * checked. Every response passes through a {@link FaultInjector}, controlled
+ * at /__control/faults. Appointment bookings are kept by an
+ * {@link AppointmentStore}, so create and clash flows behave statefully, and
+ * a {@link ResultReceiver} stands in for the test results push endpoint.
+ * Connections are served by a non-blocking {@link NioHttpTransport}, so the
+ * stub is never the bottleneck of a client benchmark (see
+ * {@link StubServerBenchmark}).
+ *
+ * Point ApiUtil at it with {@code ApiUtil.setBaseUrl(server.getBaseUrl())}, run
+ * the suite with the testng "environment" parameter set to "stub" (see
+ * StubServerListener), or start it standalone and pass
+ * {@code -Dbase.url=http://127.0.0.1:<port>/api} to the client JVM:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; rest.stub.HealthAppStubServer [port]
+ * </pre>
+ */
+public class HealthAppStubServer {
+
+	public static final String API_PREFIX = "/api";
+
+	private final Map<String, StubHandler> routes = new ConcurrentHashMap<>();
+	private final FaultInjector faults = new FaultInjector();
+	private final AppointmentStore appointments = new AppointmentStore(64);
+	private final ResultReceiver results = new ResultReceiver();
+	private volatile StubHandler fallback;
+	private final int requestedPort;
+	private final int threads;
+	private NioHttpTransport transport;
+
+	/**
+	 * @param port    - TCP port, 0 for an ephemeral one.
+	 * @param threads - Selector threads serving connections, 0 for one per
+	 *                core.
+	 */
+	public HealthAppStubServer(int port, int threads) {
+		this.requestedPort = port;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		HealthAppFixtures.registerAll(this);
+		appointments.registerOn(this);
+		results.registerOn(this);
+		faults.registerControlApi(this);
+	}
+
+	/**
+	 * @return HealthAppStubServer - A server configured from stub.port and
+	 *         stub.threads in config.properties (defaults 0 and 0), serving
+	 *         {@link SyntheticDataset} rows when stub.dataset.rows is set, the
+	 *         {@link DatasetSnapshot} named by stub.snapshot if any, and falling
+	 *         back to the replay store when stub.replay is true.
+	 */
+	public static HealthAppStubServer fromConfig() {
+		return fromConfig(Integer.parseInt(ConfigManager.getProperty("stub.port", "0")));
+	}
+
+	private static HealthAppStubServer fromConfig(int port) {
+		HealthAppStubServer server = new HealthAppStubServer(port,
+				Integer.parseInt(ConfigManager.getProperty("stub.threads", "0")));
+		SyntheticDataset dataset = SyntheticDataset.fromConfig();
+		if (dataset != null) {
+			dataset.registerOn(server);
+		}
+		String snapshot = ConfigManager.getProperty("stub.snapshot", null);
+		if (snapshot != null) {
+			DatasetSnapshot.install(server, snapshot);
+		}
+		if (Boolean.parseBoolean(ConfigManager.getProperty("stub.replay", "false"))) {
+			ReplayStubHandler.install(server, RecordReplayFilter.storeFromConfig(ReplayMode.REPLAY));
+		}
+		String faultFile = ConfigManager.getProperty("stub.faults", null);
+		if (faultFile != null) {
+			try {
+				server.faults.setProfile(FaultInjector.readProfile(new File(faultFile)));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Unable to read fault profile " + faultFile, e);
+			}
+		}
+		return server;
+	}
+
+	/**
+	 * Adds or replaces the handler for a path.
+	 *
+	 * @param path    - e.g. "/api/AssetReports/GetAllItems".
+	 * @param handler - The handler serving it.
+	 */
+	public void route(String path, StubHandler handler) {
+		routes.put(normalise(path), handler);
+	}
+
+	/**
+	 * @param handler - Serves requests no route matches, e.g. a replay corpus;
+	 *                null for 404s.
+	 */
+	public void setFallback(StubHandler handler) {
+		this.fallback = handler;
+	}
+
+	private static String normalise(String path) {
+		String normalised = path.toLowerCase();
+		while (normalised.length() > 1 && normalised.endsWith("/")) {
+			normalised = normalised.substring(0, normalised.length() - 1);
+		}
+		return normalised;
+	}
+
+	/**
+	 * Routes a request to its handler, independent of the transport.
+	 *
+	 * @param request - The parsed request.
+	 *
+	 * @return StubResponse - The handler's response, a 404 for an unknown path or
+	 *         a 500 if the handler failed, after fault injection.
+	 */
+	public StubResponse dispatch(StubRequest request) {
+		StubHandler handler = routes.get(normalise(request.getPath()));
+		if (handler == null) {
+			handler = fallback;
+		}
+		StubResponse response;
+		if (handler == null) {
+			response = StubResponse.error(404, "No stub for " + request.getPath());
+		} else {
+			try {
+				response = handler.handle(request);
+			} catch (Exception e) {
+				response = StubResponse.error(500, e.toString());
+			}
+		}
+		return faults.apply(request, response);
+	}
+
+	/**
+	 * Binds the loopback interface and starts serving.
+	 *
+	 * @return HealthAppStubServer - this, for chaining.
+	 * @throws IOException - If the port cannot be bound.
+	 */
+	public synchronized HealthAppStubServer start() throws IOException {
+		if (transport == null) {
+			transport = new NioHttpTransport(this,
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort), threads);
+		}
+		return this;
+	}
+
+	public synchronized void stop() {
+		if (transport != null) {
+			transport.close();
+			transport = null;
+		}
+	}
+
+	/**
+	 * @return FaultInjector - The injector, for tests that change faults in
+	 *         process rather than through the control API.
+	 */
+	public FaultInjector getFaultInjector() {
+		return faults;
+	}
+
+	/**
+	 * @return AppointmentStore - The stateful appointment backend.
+	 */
+	public AppointmentStore getAppointmentStore() {
+		return appointments;
+	}
+
+	/**
+	 * @return ResultReceiver - The stand-in test results endpoint.
+	 */
+	public ResultReceiver getResultReceiver() {
+		return results;
+	}
+
+	public synchronized int getPort() {
+		if (transport == null) {
+			throw new IllegalStateException("Stub server is not running");
+		}
+		return transport.getPort();
+	}
+
+	/**
+	 * @return String - The host URL, e.g. "http://127.0.0.1:50123".
+	 */
+	public String getHostUrl() {
+		return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort();
+	}
+
+	/**
+	 * @return String - The value to hand to ApiUtil.setBaseUrl.
+	 */
+	public String getBaseUrl() {
+		return getHostUrl() + API_PREFIX;
+	}
+
+	public static void main(String[] args) throws Exception {
+		HealthAppStubServer server = args.length > 0 ? fromConfig(Integer.parseInt(args[0])) : fromConfig();
+		server.start();
+		System.out.println("HealthApp stub listening; use -Dbase.url=" + server.getBaseUrl());
+		Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+		Thread.currentThread().join();
+	}
+}
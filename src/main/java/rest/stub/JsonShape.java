@@ -0,0 +1,144 @@
+package rest.stub;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The structure of a JSON document without its values: every path ("$",
+ * "$.Results", "$.Results[].ItemName") with the set of JSON types seen there.
+ * Array elements are merged under "[]", so a list of 500 rows has the same
+ * shape as a list of 5. A string holding JSON (the report endpoints'
+ * "JsonData") is typed "json array" or "json object" and its contents are
+ * walked under the same path.
+ */
+final class JsonShape {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final Map<String, Set<String>> types = new TreeMap<>();
+
+	private JsonShape() {
+	}
+
+	static JsonShape of(JsonNode root) {
+		JsonShape shape = new JsonShape();
+		shape.walk(root, "$");
+		return shape;
+	}
+
+	private void walk(JsonNode node, String path) {
+		if (node.isTextual() && looksLikeJson(node.asText())) {
+			try {
+				JsonNode embedded = MAPPER.readTree(node.asText());
+				types.computeIfAbsent(path, p -> new TreeSet<>()).add("json " + typeOf(embedded));
+				walkChildren(embedded, path);
+				return;
+			} catch (IOException e) {
+				// not JSON after all, an ordinary string
+			}
+		}
+		types.computeIfAbsent(path, p -> new TreeSet<>()).add(typeOf(node));
+		walkChildren(node, path);
+	}
+
+	private void walkChildren(JsonNode node, String path) {
+		if (node.isObject()) {
+			Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				walk(field.getValue(), path + "." + field.getKey());
+			}
+		} else if (node.isArray()) {
+			for (JsonNode element : node) {
+				walk(element, path + "[]");
+			}
+		}
+	}
+
+	private static boolean looksLikeJson(String text) {
+		String trimmed = text.trim();
+		return trimmed.startsWith("{") && trimmed.endsWith("}") || trimmed.startsWith("[") && trimmed.endsWith("]");
+	}
+
+	private static String typeOf(JsonNode node) {
+		if (node.isObject()) {
+			return "object";
+		}
+		if (node.isArray()) {
+			return "array";
+		}
+		if (node.isNumber()) {
+			return "number";
+		}
+		if (node.isBoolean()) {
+			return "boolean";
+		}
+		return node.isNull() ? "null" : "string";
+	}
+
+	/**
+	 * Lists how {@code other} differs from this shape. Nulls are values, not
+	 * types, so a field that is null on one side is only compared by presence.
+	 * Only the topmost missing path is reported, and nothing is reported below
+	 * an array that is empty on one side, because there is nothing to compare.
+	 *
+	 * @param other     - The shape to compare, e.g. the stub's.
+	 * @param thisName  - What to call this side in the messages, e.g. "live".
+	 * @param otherName - What to call the other side.
+	 *
+	 * @return List - One line per drifting path; empty when the shapes match.
+	 */
+	List<String> diff(JsonShape other, String thisName, String otherName) {
+		List<String> drift = new ArrayList<>();
+		for (Map.Entry<String, Set<String>> entry : types.entrySet()) {
+			String path = entry.getKey();
+			Set<String> otherTypes = other.types.get(path);
+			if (otherTypes == null) {
+				if (other.expects(path)) {
+					drift.add(path + " missing from " + otherName);
+				}
+				continue;
+			}
+			Set<String> mine = withoutNull(entry.getValue());
+			Set<String> theirs = withoutNull(otherTypes);
+			if (!mine.isEmpty() && !theirs.isEmpty() && !mine.equals(theirs)) {
+				drift.add(path + " is " + String.join("|", mine) + " on " + thisName + " but "
+						+ String.join("|", theirs) + " on " + otherName);
+			}
+		}
+		for (String path : other.types.keySet()) {
+			if (!types.containsKey(path) && expects(path)) {
+				drift.add(path + " only on " + otherName);
+			}
+		}
+		return drift;
+	}
+
+	/**
+	 * @return boolean - Whether this document would have held the path if it
+	 *         had the field: its parent is an object here. An array element is
+	 *         never expected, since a missing one just means an empty array.
+	 */
+	private boolean expects(String path) {
+		if (path.endsWith("[]")) {
+			return false;
+		}
+		Set<String> parent = types.get(path.substring(0, path.lastIndexOf('.')));
+		return parent != null && (parent.contains("object") || parent.contains("json object"));
+	}
+
+	private static Set<String> withoutNull(Set<String> types) {
+		Set<String> result = new TreeSet<>(types);
+		result.remove("null");
+		return result;
+	}
+}
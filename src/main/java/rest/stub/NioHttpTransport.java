@@ -0,0 +1,698 @@
+package rest.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking HTTP/1.1 transport for the {@link HealthAppStubServer}. A fixed
+ * set of selector threads (event loops) serves every connection; the first
+ * loop also accepts and deals new connections out round-robin. Nothing ever
+ * blocks a loop:
+ * <ul>
+ * <li>requests are parsed straight out of a per-connection buffer, with
+ * keep-alive and pipelining; a chunked request body is buffered until its
+ * last chunk and handed over decoded;</li>
+ * <li>handlers run on the loop, so they must answer from memory or local
+ * files, as all the built-in ones do;</li>
+ * <li>responses go out with one gathering write of the cached status line and
+ * headers ({@link StubResponse#encodedHead()}) plus the body, and a buffer
+ * body such as a mapped replay slice is written without copying;</li>
+ * <li>delays and drips from the {@link FaultInjector} are timers on the loop
+ * instead of sleeping threads, and a reset closes with SO_LINGER 0.</li>
+ * </ul>
+ * A loop writes at most a few buffers per connection before serving the
+ * others, so one huge streamed body cannot starve small requests.
+ */
+final class NioHttpTransport {
+
+	private static final int READ_BUFFER_BYTES = 16 * 1024;
+	private static final int MAX_HEAD_BYTES = 64 * 1024;
+	private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+	private static final int MALFORMED = -2;
+	private static final int TOO_LARGE = -3;
+	private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+	private static final int PIECES_PER_EVENT = 16;
+	private static final byte[] END_OF_HEAD = ascii("\r\n");
+	private static final byte[] CLOSE_END_OF_HEAD = ascii("Connection: close\r\n\r\n");
+	private static final byte[] CONTINUE = ascii("HTTP/1.1 100 Continue\r\n\r\n");
+	private static final byte[] LAST_CHUNK = ascii("0\r\n\r\n");
+	private static final byte[] HEX = ascii("0123456789abcdef");
+
+	private final HealthAppStubServer server;
+	private final ServerSocketChannel acceptor;
+	private final EventLoop[] loops;
+	private final int port;
+	private int nextLoop;
+
+	/**
+	 * Binds the address and starts the loops.
+	 *
+	 * @param server  - Dispatches the parsed requests.
+	 * @param address - Where to listen.
+	 * @param threads - Number of selector threads.
+	 * @throws IOException - If the address cannot be bound.
+	 */
+	NioHttpTransport(HealthAppStubServer server, InetSocketAddress address, int threads) throws IOException {
+		this.server = server;
+		this.acceptor = ServerSocketChannel.open();
+		this.loops = new EventLoop[threads];
+		try {
+			acceptor.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			acceptor.bind(address, 1024);
+			acceptor.configureBlocking(false);
+			this.port = ((InetSocketAddress) acceptor.getLocalAddress()).getPort();
+			for (int i = 0; i < threads; i++) {
+				loops[i] = new EventLoop(i);
+			}
+			acceptor.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		for (EventLoop loop : loops) {
+			loop.thread.start();
+		}
+	}
+
+	int getPort() {
+		return port;
+	}
+
+	void close() {
+		for (EventLoop loop : loops) {
+			if (loop != null) {
+				loop.running = false;
+				loop.selector.wakeup();
+			}
+		}
+		for (EventLoop loop : loops) {
+			if (loop != null && loop.thread.isAlive() && loop.thread != Thread.currentThread()) {
+				try {
+					loop.thread.join(TimeUnit.SECONDS.toMillis(5));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		try {
+			acceptor.close();
+		} catch (IOException e) {
+			// already unusable
+		}
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private void accept(EventLoop acceptingLoop) throws IOException {
+		SocketChannel channel;
+		while ((channel = acceptor.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			EventLoop loop = loops[nextLoop++ % loops.length];
+			if (loop == acceptingLoop) {
+				loop.register(channel);
+			} else {
+				loop.accepted.add(channel);
+				loop.selector.wakeup();
+			}
+		}
+	}
+
+	/**
+	 * One selector thread and the connections, timers and buffers it owns. Only
+	 * the loop's own thread touches its connections.
+	 */
+	private final class EventLoop implements Runnable {
+
+		private final Selector selector;
+		private final Thread thread;
+		private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+		private final PriorityQueue<Connection> timers = new PriorityQueue<>(
+				Comparator.comparingLong(connection -> connection.wakeAt));
+		private volatile boolean running = true;
+
+		EventLoop(int index) throws IOException {
+			this.selector = Selector.open();
+			this.thread = new Thread(this, "healthapp-stub-" + index);
+			thread.setDaemon(true);
+		}
+
+		void register(SocketChannel channel) throws IOException {
+			Connection connection = new Connection(this, channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					select();
+					SocketChannel channel;
+					while ((channel = accepted.poll()) != null) {
+						try {
+							register(channel);
+						} catch (IOException e) {
+							closeQuietly(channel);
+						}
+					}
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							try {
+								accept(this);
+							} catch (IOException e) {
+								// e.g. out of file descriptors; the client sees a refused connection
+								System.out.println("Stub server could not accept a connection: " + e.getMessage());
+							}
+							continue;
+						}
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isReadable()) {
+								connection.onReadable();
+							}
+							if (key.isValid() && key.isWritable()) {
+								connection.write();
+							}
+						} catch (IOException | RuntimeException e) {
+							connection.close();
+						}
+					}
+					fireTimers();
+				}
+			} catch (IOException e) {
+				System.out.println("Stub server loop " + thread.getName() + " stopped: " + e.getMessage());
+			} finally {
+				for (SelectionKey key : selector.keys()) {
+					closeQuietly(key.channel());
+				}
+				closeQuietly(selector);
+			}
+		}
+
+		private void select() throws IOException {
+			Connection next = timers.peek();
+			if (next == null) {
+				selector.select();
+				return;
+			}
+			long waitNanos = next.wakeAt - System.nanoTime();
+			if (waitNanos <= 0) {
+				selector.selectNow();
+			} else {
+				selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999)));
+			}
+		}
+
+		private void fireTimers() {
+			long now = System.nanoTime();
+			Connection due;
+			while ((due = timers.peek()) != null && due.wakeAt - now <= 0) {
+				timers.poll();
+				try {
+					due.onTimer();
+				} catch (IOException | RuntimeException e) {
+					due.close();
+				}
+			}
+		}
+
+		private void closeQuietly(Closeable closeable) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// nothing more to do
+			}
+		}
+	}
+
+	/**
+	 * One client connection: its read buffer, the request being parsed and the
+	 * response being written.
+	 */
+	private final class Connection {
+
+		private final EventLoop loop;
+		private final SocketChannel channel;
+		private SelectionKey key;
+		// bytes received but not yet consumed are [0, position)
+		private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+		private int scanned;
+		private boolean continueSent;
+		private boolean parsing;
+		private boolean closeAfterResponse;
+		private boolean delayed;
+
+		private StubResponse response;
+		private boolean responding;
+		private ByteBuffer[] out;
+		private ByteBuffer body;
+		private int bodyEnd;
+		private StubBody stream;
+		private boolean chunked;
+		private boolean lastChunkQueued;
+		private boolean pieceHadData;
+		private ByteBuffer streamBuffer;
+		private final ByteBuffer chunkHead = ByteBuffer.allocate(18);
+		private final ByteBuffer chunkEnd = ByteBuffer.wrap(END_OF_HEAD);
+		private long wakeAt;
+
+		Connection(EventLoop loop, SocketChannel channel) {
+			this.loop = loop;
+			this.channel = channel;
+		}
+
+		void onReadable() throws IOException {
+			if (!in.hasRemaining()) {
+				in = ByteBuffer.allocate(in.capacity() * 2).put((ByteBuffer) in.flip());
+			}
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+			parseRequests();
+		}
+
+		private void parseRequests() throws IOException {
+			parsing = true;
+			try {
+				StubRequest request;
+				while (!responding && key.isValid() && (request = nextRequest()) != null) {
+					respond(request);
+				}
+			} finally {
+				parsing = false;
+			}
+		}
+
+		/**
+		 * @return StubRequest - The next complete request in the buffer, or null
+		 *         until more bytes arrive (or after answering a bad request).
+		 */
+		private StubRequest nextRequest() throws IOException {
+			int end = indexOfEndOfHead();
+			if (end < 0) {
+				scanned = Math.max(0, in.position() - 3);
+				if (in.position() >= MAX_HEAD_BYTES) {
+					fail(431, "Request header too large");
+				}
+				return null;
+			}
+			String[] lines = new String(in.array(), 0, end, StandardCharsets.ISO_8859_1).split("\r\n");
+			String[] requestLine = lines[0].split(" ");
+			if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+				fail(400, "Malformed request line");
+				return null;
+			}
+			Map<String, String> headers = new LinkedHashMap<>();
+			for (int i = 1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if (colon > 0) {
+					headers.merge(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim(),
+							(a, b) -> a + "," + b);
+				}
+			}
+			String transferEncoding = header(headers, "Transfer-Encoding");
+			if (transferEncoding != null && !"chunked".equalsIgnoreCase(transferEncoding)) {
+				fail(501, "Transfer-Encoding " + transferEncoding + " is not supported");
+				return null;
+			}
+			int bodyStart = end + 4;
+			int total;
+			byte[] requestBody;
+			if (transferEncoding != null) {
+				ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+				total = chunkedEnd(bodyStart, decoded);
+				if (total == MALFORMED) {
+					fail(400, "Malformed chunked body");
+					return null;
+				}
+				if (total == TOO_LARGE || total < 0 && in.position() - bodyStart > MAX_BODY_BYTES + MAX_HEAD_BYTES) {
+					fail(413, "Request body too large");
+					return null;
+				}
+				if (total < 0) {
+					expectContinue(headers);
+					return null;
+				}
+				requestBody = decoded.toByteArray();
+			} else {
+				long contentLength;
+				try {
+					String length = header(headers, "Content-Length");
+					contentLength = length == null ? 0 : Long.parseLong(length);
+				} catch (NumberFormatException e) {
+					fail(400, "Invalid Content-Length");
+					return null;
+				}
+				if (contentLength < 0 || contentLength > MAX_BODY_BYTES) {
+					fail(413, "Request body too large");
+					return null;
+				}
+				total = bodyStart + (int) contentLength;
+				if (in.position() < total) {
+					if (in.capacity() < total) {
+						in = ByteBuffer.allocate(total).put((ByteBuffer) in.flip());
+					}
+					expectContinue(headers);
+					return null;
+				}
+				requestBody = Arrays.copyOfRange(in.array(), bodyStart, total);
+			}
+			in.flip();
+			in.position(total);
+			in.compact();
+			scanned = 0;
+			continueSent = false;
+
+			String connection = header(headers, "Connection");
+			closeAfterResponse = "HTTP/1.0".equals(requestLine[2]) ? !"keep-alive".equalsIgnoreCase(connection)
+					: "close".equalsIgnoreCase(connection);
+			String target = requestLine[1];
+			int question = target.indexOf('?');
+			String rawPath = question < 0 ? target : target.substring(0, question);
+			return new StubRequest(requestLine[0], decodePath(rawPath),
+					question < 0 ? null : target.substring(question + 1), headers, requestBody);
+		}
+
+		private void expectContinue(Map<String, String> headers) throws IOException {
+			if (!continueSent && "100-continue".equalsIgnoreCase(header(headers, "Expect"))) {
+				continueSent = true;
+				channel.write(ByteBuffer.wrap(CONTINUE));
+			}
+		}
+
+		/**
+		 * Decodes a chunked body that starts at {@code from}. The whole body is
+		 * decoded again as more of it arrives, which is fine for the sizes a
+		 * stub receives.
+		 *
+		 * @return int - The index just past the body, -1 until it has all
+		 *         arrived, MALFORMED or TOO_LARGE.
+		 */
+		private int chunkedEnd(int from, ByteArrayOutputStream decoded) {
+			byte[] bytes = in.array();
+			int position = from;
+			while (true) {
+				int lineEnd = indexOfLineEnd(position);
+				if (lineEnd < 0) {
+					return -1;
+				}
+				String sizeLine = new String(bytes, position, lineEnd - position, StandardCharsets.ISO_8859_1);
+				int extension = sizeLine.indexOf(';');
+				int size;
+				try {
+					size = Integer.parseInt((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+				} catch (NumberFormatException e) {
+					return MALFORMED;
+				}
+				position = lineEnd + 2;
+				if (size == 0) {
+					// optional trailers, then an empty line
+					while ((lineEnd = indexOfLineEnd(position)) != position) {
+						if (lineEnd < 0) {
+							return -1;
+						}
+						position = lineEnd + 2;
+					}
+					return position + 2;
+				}
+				if (size < 0 || decoded.size() + size > MAX_BODY_BYTES) {
+					return TOO_LARGE;
+				}
+				if (in.position() < position + size + 2) {
+					return -1;
+				}
+				if (bytes[position + size] != '\r' || bytes[position + size + 1] != '\n') {
+					return MALFORMED;
+				}
+				decoded.write(bytes, position, size);
+				position += size + 2;
+			}
+		}
+
+		private int indexOfLineEnd(int from) {
+			byte[] bytes = in.array();
+			for (int i = from, last = in.position() - 2; i <= last; i++) {
+				if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private int indexOfEndOfHead() {
+			byte[] bytes = in.array();
+			for (int i = scanned, last = in.position() - 4; i <= last; i++) {
+				if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private String header(Map<String, String> headers, String name) {
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				if (header.getKey().equalsIgnoreCase(name)) {
+					return header.getValue();
+				}
+			}
+			return null;
+		}
+
+		private String decodePath(String rawPath) {
+			try {
+				return new URI(rawPath).getPath();
+			} catch (URISyntaxException e) {
+				return rawPath;
+			}
+		}
+
+		private void fail(int statusCode, String message) throws IOException {
+			closeAfterResponse = true;
+			start(StubResponse.error(statusCode, message));
+		}
+
+		private void respond(StubRequest request) throws IOException {
+			StubResponse dispatched;
+			try {
+				dispatched = server.dispatch(request);
+			} catch (RuntimeException e) {
+				dispatched = StubResponse.error(500, e.toString());
+			}
+			if (dispatched.getDelayMillis() > 0) {
+				responding = true;
+				delayed = true;
+				response = dispatched;
+				schedule(dispatched.getDelayMillis());
+				return;
+			}
+			start(dispatched);
+		}
+
+		private void start(StubResponse started) throws IOException {
+			responding = true;
+			response = started;
+			if (started.isReset()) {
+				// no response at all: an abortive close makes the client see a reset
+				channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+				close();
+				return;
+			}
+			ByteBuffer head = ByteBuffer.wrap(started.encodedHead());
+			ByteBuffer endOfHead = ByteBuffer.wrap(closeAfterResponse ? CLOSE_END_OF_HEAD : END_OF_HEAD);
+			body = null;
+			stream = null;
+			if (!started.isStreamed()) {
+				body = ByteBuffer.wrap(started.getBody());
+			} else if (started.getStream() instanceof BufferBody) {
+				body = ((BufferBody) started.getStream()).remaining();
+			} else {
+				stream = started.getStream();
+				chunked = stream.length() < 0;
+				if (streamBuffer == null) {
+					streamBuffer = ByteBuffer.allocateDirect(STREAM_BUFFER_BYTES);
+				}
+				lastChunkQueued = false;
+			}
+			if (body != null && body.hasRemaining()) {
+				bodyEnd = body.limit();
+				if (started.getDripBytes() > 0) {
+					body.limit(Math.min(bodyEnd, body.position() + started.getDripBytes()));
+				}
+				pieceHadData = true;
+				out = new ByteBuffer[] { head, endOfHead, body };
+			} else {
+				pieceHadData = false;
+				out = new ByteBuffer[] { head, endOfHead };
+			}
+			write();
+		}
+
+		/**
+		 * Writes what is queued and queues the next piece, until the socket is
+		 * full, a drip pause starts, the response is done, or this connection has
+		 * had its share of the loop.
+		 */
+		void write() throws IOException {
+			if (!responding) {
+				key.interestOps(SelectionKey.OP_READ);
+				return;
+			}
+			for (int pieces = 0; pieces < PIECES_PER_EVENT; pieces++) {
+				if (remaining(out)) {
+					channel.write(out);
+					if (remaining(out)) {
+						key.interestOps(SelectionKey.OP_WRITE);
+						return;
+					}
+				}
+				if (!nextPiece()) {
+					return;
+				}
+			}
+			key.interestOps(SelectionKey.OP_WRITE);
+		}
+
+		private boolean remaining(ByteBuffer[] buffers) {
+			for (ByteBuffer buffer : buffers) {
+				if (buffer.hasRemaining()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * @return boolean - true when another piece is queued, false when the
+		 *         connection now waits for a drip timer or the response is done.
+		 */
+		private boolean nextPiece() throws IOException {
+			int drip = response.getDripBytes();
+			if (drip > 0 && pieceHadData) {
+				pieceHadData = false;
+				schedule(response.getDripIntervalMillis());
+				return false;
+			}
+			if (body != null && body.position() < bodyEnd) {
+				body.limit(drip > 0 ? Math.min(bodyEnd, body.position() + drip) : bodyEnd);
+				out = new ByteBuffer[] { body };
+				pieceHadData = true;
+				return true;
+			}
+			if (stream != null && !lastChunkQueued) {
+				ByteBuffer data = streamBuffer;
+				data.clear();
+				if (drip > 0) {
+					data.limit(Math.min(data.capacity(), drip));
+				}
+				int filled = stream.fill(data);
+				if (filled < 0) {
+					lastChunkQueued = true;
+					if (!chunked) {
+						return finish();
+					}
+					out = new ByteBuffer[] { ByteBuffer.wrap(LAST_CHUNK) };
+					return true;
+				}
+				data.flip();
+				if (filled == 0) {
+					out = new ByteBuffer[0];
+				} else if (chunked) {
+					chunkHead.clear();
+					writeHex(chunkHead, data.remaining());
+					chunkHead.put(END_OF_HEAD).flip();
+					chunkEnd.rewind();
+					out = new ByteBuffer[] { chunkHead, data, chunkEnd };
+				} else {
+					out = new ByteBuffer[] { data };
+				}
+				pieceHadData = filled > 0;
+				return true;
+			}
+			return finish();
+		}
+
+		private void writeHex(ByteBuffer target, int value) {
+			int shift = 28;
+			while (shift > 0 && (value >>> shift & 0xf) == 0) {
+				shift -= 4;
+			}
+			for (; shift >= 0; shift -= 4) {
+				target.put(HEX[value >>> shift & 0xf]);
+			}
+		}
+
+		private boolean finish() throws IOException {
+			responding = false;
+			response = null;
+			body = null;
+			stream = null;
+			if (closeAfterResponse) {
+				close();
+				return false;
+			}
+			key.interestOps(SelectionKey.OP_READ);
+			if (!parsing) {
+				// requests pipelined behind this one are already in the buffer
+				parseRequests();
+			}
+			return false;
+		}
+
+		private void schedule(long delayMillis) {
+			wakeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+			key.interestOps(0);
+			loop.timers.add(this);
+		}
+
+		void onTimer() throws IOException {
+			if (!key.isValid()) {
+				return;
+			}
+			if (delayed) {
+				delayed = false;
+				start(response);
+				return;
+			}
+			write();
+		}
+
+		void close() {
+			loop.timers.remove(this);
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// already gone
+			}
+		}
+	}
+}
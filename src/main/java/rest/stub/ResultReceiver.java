@@ -0,0 +1,173 @@
+package rest.stub;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Local stand-in for the test results push endpoint, so result delivery,
+ * spooling and replay can be exercised offline: point results.push.url at
+ * {@code <stub host url>/__results/push} and take it down with a fault rule on
+ * that path.
+ *
+ * <pre>
+ * POST   /__results/push      take a result; repeats of an Idempotency-Key are answered 200 and ignored
+ * POST   /__results/stream    take a gzip NDJSON upload of header and result records (see
+ *                             StreamingResultUploader); results are deduplicated by id the same way
+ * GET    /__control/results   received, unique, duplicate and upload header counts
+ * DELETE /__control/results   forget everything
+ * </pre>
+ */
+public class ResultReceiver {
+
+	public static final String PUSH_PATH = "/__results/push";
+	public static final String STREAM_PATH = "/__results/stream";
+	public static final String CONTROL_PATH = "/__control/results";
+	public static final String IDEMPOTENCY_HEADER = "Idempotency-Key";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final TypeReference<Map<String, Object>> RECORD = new TypeReference<Map<String, Object>>() {
+	};
+
+	private final Map<String, byte[]> results = new ConcurrentHashMap<>();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder anonymous = new LongAdder();
+	private final LongAdder uploads = new LongAdder();
+	private final LongAdder headers = new LongAdder();
+
+	/**
+	 * Adds the push, upload and control routes.
+	 *
+	 * @param server - The stub server to add them to.
+	 */
+	public void registerOn(HealthAppStubServer server) {
+		server.route(PUSH_PATH, request -> {
+			if (!"POST".equalsIgnoreCase(request.getMethod())) {
+				return StubResponse.error(405, "Results are pushed with a POST");
+			}
+			received.increment();
+			String id = request.getHeader(IDEMPOTENCY_HEADER);
+			if (id == null) {
+				anonymous.increment();
+			} else if (results.putIfAbsent(id, request.getBody()) != null) {
+				duplicates.increment();
+			}
+			return StubResponse.json(HealthAppFixtures.ok(true));
+		});
+		server.route(STREAM_PATH, request -> {
+			if (!"POST".equalsIgnoreCase(request.getMethod())) {
+				return StubResponse.error(405, "Results are uploaded with a POST");
+			}
+			try {
+				int records = takeUpload(request);
+				return StubResponse.json(HealthAppFixtures.ok(HealthAppFixtures.row("Records", records)));
+			} catch (IOException e) {
+				return StubResponse.error(400, "Invalid result upload: " + e.getMessage());
+			}
+		});
+		server.route(CONTROL_PATH, request -> {
+			if ("DELETE".equalsIgnoreCase(request.getMethod())) {
+				clear();
+			}
+			return StubResponse.json(HealthAppFixtures.ok(HealthAppFixtures.row("Received", received.sum(),
+					"Unique", getUniqueCount(), "Duplicates", duplicates.sum(), "WithoutId", anonymous.sum(),
+					"Uploads", uploads.sum(), "Headers", headers.sum())));
+		});
+	}
+
+	/**
+	 * Takes every result of an upload, rebuilding each one's envelope from the
+	 * header record before it.
+	 *
+	 * @return int - Result records in the upload.
+	 */
+	private int takeUpload(StubRequest request) throws IOException {
+		InputStream body = new ByteArrayInputStream(request.getBody());
+		if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+			body = new GZIPInputStream(body);
+		}
+		uploads.increment();
+		int records = 0;
+		Map<String, Object> header = null;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				Map<String, Object> record = MAPPER.readValue(line, RECORD);
+				if ("header".equals(record.get("type"))) {
+					headers.increment();
+					header = record;
+					header.remove("type");
+					continue;
+				}
+				if (header == null) {
+					throw new IOException("result record before any header record");
+				}
+				Map<String, Object> envelope = new LinkedHashMap<>(header);
+				envelope.put("testCaseResults", record.get("testCaseResults"));
+				received.increment();
+				records++;
+				Object id = record.get("id");
+				if (id == null) {
+					anonymous.increment();
+				} else if (results.putIfAbsent(String.valueOf(id), MAPPER.writeValueAsBytes(envelope)) != null) {
+					duplicates.increment();
+				}
+			}
+		}
+		return records;
+	}
+
+	public void clear() {
+		results.clear();
+		uploads.reset();
+		headers.reset();
+		received.reset();
+		duplicates.reset();
+		anonymous.reset();
+	}
+
+	/**
+	 * @return long - Distinct results taken, counting those sent without an
+	 *         id once per request.
+	 */
+	public long getUniqueCount() {
+		return results.size() + anonymous.sum();
+	}
+
+	public long getDuplicateCount() {
+		return duplicates.sum();
+	}
+
+	/**
+	 * @return long - Header records taken in uploads; one per change of the
+	 *         metadata the results share.
+	 */
+	public long getHeaderCount() {
+		return headers.sum();
+	}
+
+	/**
+	 * @param id - A result id.
+	 *
+	 * @return byte[] - The result's TestResults envelope as received or
+	 *         rebuilt from an upload, or null.
+	 */
+	public byte[] getResult(String id) {
+		return results.get(id);
+	}
+}
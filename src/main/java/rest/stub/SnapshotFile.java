@@ -0,0 +1,272 @@
+package rest.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import rest.stub.SyntheticDataset.Entity;
+
+/**
+ * A {@link DatasetSnapshot} materialised as the exact response bytes of its
+ * endpoints, one region per entity, each memory-mapped and served as a
+ * read-only slice so that opening even a multi-gigabyte snapshot costs a few
+ * system calls and no heap. Layout:
+ *
+ * <pre>
+ * header  4096 bytes: magic, format, snapshot version, seed, notes patient, entity count,
+ *         then per entity: ordinal (4), rows (8), offset (8), length (8), SHA-256 (32)
+ * data    the response bodies, in entity order
+ * </pre>
+ *
+ * A snapshot is written in full under a name nothing maps yet and sealed by
+ * writing its magic last, so a reader never maps a half-written snapshot and
+ * no file is ever replaced while mapped (which Windows refuses). Its header
+ * can be read without mapping anything, so a stale file is checked and
+ * discarded without holding a mapping open.
+ */
+public class SnapshotFile {
+
+	static final long MAGIC = 0x504C32534E415031L;
+	static final int FORMAT = 1;
+	static final int HEADER_SIZE = 4096;
+	private static final int ENTRY_SIZE = 60;
+	private static final int WRITE_BUFFER = 1 << 20;
+
+	private final File file;
+	private final int version;
+	private final long seed;
+	private final int notesPatientId;
+	private final Map<Entity, Region> regions = new EnumMap<>(Entity.class);
+
+	private SnapshotFile(File file, ByteBuffer header) throws IOException {
+		this.file = file;
+		if (header.remaining() < 32 || header.getLong() != MAGIC || header.getInt() != FORMAT) {
+			throw new IOException(file + " is not a dataset snapshot");
+		}
+		version = header.getInt();
+		seed = header.getLong();
+		notesPatientId = header.getInt();
+		int count = header.getInt();
+		for (int i = 0; i < count; i++) {
+			Region region = new Region();
+			Entity entity = Entity.values()[header.getInt()];
+			region.rows = header.getLong();
+			region.offset = header.getLong();
+			region.length = header.getLong();
+			header.get(region.sha256);
+			regions.put(entity, region);
+		}
+	}
+
+	/**
+	 * One entity's body within the file.
+	 */
+	private static final class Region {
+		private long rows;
+		private long offset;
+		private long length;
+		private final byte[] sha256 = new byte[32];
+		private ByteBuffer body;
+	}
+
+	/**
+	 * Reads a snapshot file's header, without mapping its bodies.
+	 *
+	 * @param file - A file written by {@link #write(File, DatasetSnapshot)}.
+	 *
+	 * @return SnapshotFile - The snapshot, to check with
+	 *         {@link #isBuiltFrom(DatasetSnapshot)} and then {@link #map()}.
+	 * @throws IOException - If the file is unreadable, unsealed or truncated.
+	 */
+	static SnapshotFile read(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// until the header is read or the file ends
+			}
+			header.flip();
+			SnapshotFile snapshot = new SnapshotFile(file, header);
+			for (Region region : snapshot.regions.values()) {
+				if (region.offset + region.length > channel.size()) {
+					throw new IOException(file + " is truncated");
+				}
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Maps the bodies, which {@link #registerOn(HealthAppStubServer)} serves.
+	 *
+	 * @return SnapshotFile - This snapshot.
+	 * @throws IOException - If the file cannot be mapped.
+	 */
+	SnapshotFile map() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			for (Region region : regions.values()) {
+				region.body = channel.map(FileChannel.MapMode.READ_ONLY, region.offset, region.length);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Generates every entity of the snapshot and writes the bodies, with their
+	 * checksums, to a new file.
+	 *
+	 * @param file     - Where to write the snapshot; a file left there, e.g. by
+	 *                 a write that never finished, is replaced.
+	 * @param snapshot - The descriptor to generate.
+	 * @throws IOException - If the file cannot be written.
+	 */
+	static void write(File file, DatasetSnapshot snapshot) throws IOException {
+		if (snapshot.getRows().size() > (HEADER_SIZE - 32) / ENTRY_SIZE) {
+			throw new IOException("Too many entities in snapshot " + snapshot.getName());
+		}
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Unable to replace " + file + "; is it still in use?");
+		}
+		boolean written = false;
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				// the magic is written last, once everything else is on disk
+				header.putLong(0).putInt(FORMAT).putInt(snapshot.getVersion()).putLong(snapshot.getSeed())
+						.putInt(snapshot.getNotesPatientId()).putInt(snapshot.getRows().size());
+				ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+				SyntheticDataset dataset = snapshot.getDataset();
+				long offset = HEADER_SIZE;
+				channel.position(offset);
+				for (Map.Entry<Entity, Long> entry : snapshot.getRows().entrySet()) {
+					MessageDigest digest = sha256();
+					StubBody body = dataset.stream(entry.getKey(), entry.getValue(), snapshot.getNotesPatientId());
+					long length = 0;
+					buffer.clear();
+					while (body.fill(buffer) >= 0) {
+						buffer.flip();
+						digest.update(buffer.duplicate());
+						length += buffer.remaining();
+						while (buffer.hasRemaining()) {
+							channel.write(buffer);
+						}
+						buffer.clear();
+					}
+					if (length > Integer.MAX_VALUE) {
+						throw new IOException(entry.getKey() + " of snapshot " + snapshot.getName()
+								+ " exceeds the 2 GB a mapped body can hold");
+					}
+					header.putInt(entry.getKey().ordinal()).putLong(entry.getValue()).putLong(offset)
+							.putLong(length).put(digest.digest());
+					offset += length;
+				}
+				header.rewind();
+				channel.write(header, 0);
+				channel.force(true);
+				ByteBuffer magic = ByteBuffer.allocate(8);
+				magic.putLong(0, MAGIC);
+				channel.write(magic, 0);
+				channel.force(true);
+			}
+			written = true;
+		} finally {
+			if (!written) {
+				file.delete();
+			}
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	/**
+	 * @param snapshot - A descriptor.
+	 *
+	 * @return boolean - Whether this file holds exactly what the descriptor
+	 *         generates: same version, seed and rows, and the frozen checksums
+	 *         if it has any.
+	 */
+	boolean isBuiltFrom(DatasetSnapshot snapshot) {
+		if (version != snapshot.getVersion() || seed != snapshot.getSeed()
+				|| notesPatientId != snapshot.getNotesPatientId() || regions.size() != snapshot.getRows().size()) {
+			return false;
+		}
+		for (Map.Entry<Entity, Long> entry : snapshot.getRows().entrySet()) {
+			Region region = regions.get(entry.getKey());
+			if (region == null || region.rows != entry.getValue()) {
+				return false;
+			}
+		}
+		for (Map.Entry<Entity, String> frozen : snapshot.getChecksums().entrySet()) {
+			if (!frozen.getValue().equalsIgnoreCase(String.valueOf(getChecksum(frozen.getKey())))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Routes the snapshot's endpoints on the server. Requests for the snapshot's
+	 * data are answered straight from the mapping; a request that asks for
+	 * something else ("__rows", or another patient's notes) is generated from
+	 * the snapshot's seed instead.
+	 *
+	 * @param server - The stub server to serve the snapshot.
+	 */
+	public void registerOn(HealthAppStubServer server) {
+		SyntheticDataset dataset = new SyntheticDataset(seed, 0);
+		for (Map.Entry<Entity, Region> entry : regions.entrySet()) {
+			Entity entity = entry.getKey();
+			Region region = entry.getValue();
+			server.route(SyntheticDataset.pathOf(entity), request -> {
+				String rows = request.getParameter(SyntheticDataset.ROWS_PARAMETER);
+				int patientId = request.getIntParameter("patientId", notesPatientId);
+				if (rows != null || entity == Entity.CLINICAL_NOTES && patientId != notesPatientId) {
+					return StubResponse.json(
+							dataset.stream(entity, rows == null ? region.rows : Long.parseLong(rows), patientId));
+				}
+				return StubResponse.json(new BufferBody(region.body));
+			});
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return long - The entity's body length in bytes, or -1 if the snapshot
+	 *         does not include it.
+	 */
+	public long getLength(Entity entity) {
+		Region region = regions.get(entity);
+		return region == null ? -1 : region.length;
+	}
+
+	/**
+	 * @return String - Hex SHA-256 of the entity's body, or null if the
+	 *         snapshot does not include it.
+	 */
+	public String getChecksum(Entity entity) {
+		Region region = regions.get(entity);
+		if (region == null) {
+			return null;
+		}
+		StringBuilder hex = new StringBuilder(64);
+		for (byte b : region.sha256) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,26 @@
+package rest.stub;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A response body produced on demand instead of held in memory. The transport
+ * pulls it chunk by chunk into its own buffer, so a body of any size costs the
+ * stub one buffer. Instances are single-use.
+ */
+public interface StubBody {
+
+	/**
+	 * @return long - The body length in bytes, or -1 if it is only known at the
+	 *         end (the transport then sends it chunked).
+	 */
+	long length();
+
+	/**
+	 * Copies the next bytes of the body into the buffer.
+	 *
+	 * @param target - The buffer to fill; at least one byte must be free.
+	 *
+	 * @return int - Bytes written, or -1 once the body is exhausted.
+	 */
+	int fill(ByteBuffer target);
+}
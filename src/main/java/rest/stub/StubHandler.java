@@ -0,0 +1,16 @@
+package rest.stub;
+
+/**
+ * Serves one stub endpoint.
+ */
+@FunctionalInterface
+public interface StubHandler {
+
+	/**
+	 * @param request - The parsed request.
+	 *
+	 * @return StubResponse - The response to send.
+	 * @throws Exception - Reported to the client as a 500.
+	 */
+	StubResponse handle(StubRequest request) throws Exception;
+}
@@ -0,0 +1,333 @@
+package rest.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import rest.ApiUtil;
+import rest.AuthUtil;
+import rest.load.Scenario;
+import rest.load.ScenarioDefinition;
+import rest.load.WorkloadDefinition;
+
+/**
+ * Checks that the stub still answers like production. Every scenario of a
+ * workload (src/main/resources/workloads/pl2-parity.json lists the sixteen PL2
+ * requests) is sent to the live backend and to the stub at the same time, and
+ * the two bodies are compared as {@link JsonShape}s: keys and JSON types,
+ * never values. All requests are in flight together, so the whole check takes
+ * about as long as the slowest live call. Usage:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; rest.stub.StubParityCheck [workload.json] [liveBaseUrl]
+ * </pre>
+ *
+ * Without arguments it checks pl2-parity.json against base.url using a stub
+ * started from config.properties, writes TestReport/parity.json and exits with
+ * 1 when any endpoint drifted. Requests go out over plain HttpURLConnection, so
+ * the RestAssured replay filter cannot answer them in place of either side.
+ */
+public class StubParityCheck {
+
+	public static final String DEFAULT_WORKLOAD = "src/main/resources/workloads/pl2-parity.json";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+	private static final int TIMEOUT_MILLIS = 30000;
+
+	private final List<Scenario> scenarios = new ArrayList<>();
+	private final String liveBaseUrl;
+	private final String stubBaseUrl;
+	private final int threads;
+
+	/**
+	 * @param definition  - The workload whose scenarios are compared; its
+	 *                    threads bound the requests in flight.
+	 * @param liveBaseUrl - The production base URL including "/api".
+	 * @param stubBaseUrl - The stub base URL including "/api".
+	 * @throws IOException - If a scenario parameter file cannot be read.
+	 */
+	public StubParityCheck(WorkloadDefinition definition, String liveBaseUrl, String stubBaseUrl) throws IOException {
+		for (ScenarioDefinition scenario : definition.getScenarios()) {
+			scenarios.add(Scenario.from(scenario));
+		}
+		this.liveBaseUrl = liveBaseUrl;
+		this.stubBaseUrl = stubBaseUrl;
+		this.threads = Math.max(2, Math.min(definition.getThreads(), scenarios.size() * 2));
+	}
+
+	/**
+	 * Sends every scenario to both backends concurrently and compares the
+	 * answers.
+	 *
+	 * @return List - One result per scenario, in workload order.
+	 */
+	public List<EndpointParity> run() {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "parity-check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<CompletableFuture<EndpointParity>> pending = new ArrayList<>();
+			for (Scenario scenario : scenarios) {
+				String endpoint = scenario.nextEndpoint();
+				CompletableFuture<Fetched> live = CompletableFuture
+						.supplyAsync(() -> fetch(ApiUtil.resolveUrl(liveBaseUrl, endpoint)), executor);
+				CompletableFuture<Fetched> stub = CompletableFuture
+						.supplyAsync(() -> fetch(ApiUtil.resolveUrl(stubBaseUrl, endpoint)), executor);
+				pending.add(live.thenCombine(stub, (l, s) -> compare(scenario.getName(), endpoint, l, s)));
+			}
+			List<EndpointParity> results = new ArrayList<>();
+			for (CompletableFuture<EndpointParity> result : pending) {
+				results.add(result.join());
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Fetched fetch(String url) {
+		Fetched fetched = new Fetched();
+		long start = System.nanoTime();
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) new URL(url.replace(" ", "%20")).openConnection();
+			connection.setConnectTimeout(TIMEOUT_MILLIS);
+			connection.setReadTimeout(TIMEOUT_MILLIS);
+			connection.setRequestProperty("Accept", "application/json");
+			if (AuthUtil.getBearerToken() != null) {
+				connection.setRequestProperty("Authorization", AuthUtil.getAuthHeader());
+			}
+			fetched.status = connection.getResponseCode();
+			InputStream in = fetched.status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+			fetched.body = in == null ? new byte[0] : readAll(in);
+		} catch (IOException e) {
+			fetched.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		} finally {
+			if (connection != null) {
+				connection.disconnect();
+			}
+		}
+		fetched.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		return fetched;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		try (InputStream input = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static EndpointParity compare(String name, String endpoint, Fetched live, Fetched stub) {
+		EndpointParity result = new EndpointParity();
+		result.setName(name);
+		result.setEndpoint(endpoint);
+		result.setLiveStatus(live.status);
+		result.setStubStatus(stub.status);
+		result.setLiveMillis(live.millis);
+		result.setStubMillis(stub.millis);
+		if (live.error != null || stub.error != null) {
+			if (live.error != null) {
+				result.getDrift().add("live failed: " + live.error);
+			}
+			if (stub.error != null) {
+				result.getDrift().add("stub failed: " + stub.error);
+			}
+			return result;
+		}
+		if (live.status != stub.status) {
+			result.getDrift().add("status is " + live.status + " on live but " + stub.status + " on stub");
+		}
+		JsonNode liveJson = parse(live.body);
+		JsonNode stubJson = parse(stub.body);
+		if (liveJson == null || stubJson == null) {
+			if (liveJson != stubJson) {
+				result.getDrift().add("body is " + (liveJson == null ? "not JSON" : "JSON") + " on live but "
+						+ (stubJson == null ? "not JSON" : "JSON") + " on stub");
+			}
+			return result;
+		}
+		result.getDrift().addAll(JsonShape.of(liveJson).diff(JsonShape.of(stubJson), "live", "stub"));
+		return result;
+	}
+
+	private static JsonNode parse(byte[] body) {
+		try {
+			return body.length == 0 ? null : MAPPER.readTree(body);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Prints one line per endpoint followed by its drift, if any.
+	 *
+	 * @param results - The output of {@link #run()}.
+	 *
+	 * @return int - The number of endpoints that drifted.
+	 */
+	public static int printReport(List<EndpointParity> results) {
+		int drifted = 0;
+		System.out.println(String.format("%-38s %6s %6s %8s %8s  %s", "endpoint", "live", "stub", "live ms",
+				"stub ms", "parity"));
+		for (EndpointParity result : results) {
+			System.out.println(String.format("%-38s %6d %6d %8d %8d  %s", result.getName(), result.getLiveStatus(),
+					result.getStubStatus(), result.getLiveMillis(), result.getStubMillis(),
+					result.isMatching() ? "ok" : result.getDrift().size() + " drift"));
+			for (String drift : result.getDrift()) {
+				System.out.println("    " + drift);
+			}
+			if (!result.isMatching()) {
+				drifted++;
+			}
+		}
+		System.out.println(drifted == 0 ? "Stub matches live on all " + results.size() + " endpoints"
+				: drifted + " of " + results.size() + " endpoints drifted from live");
+		return drifted;
+	}
+
+	/**
+	 * @param results - The output of {@link #run()}.
+	 * @param file    - Where to write them as JSON.
+	 * @throws IOException - If the file cannot be written.
+	 */
+	public static void writeReport(List<EndpointParity> results, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		MAPPER.writeValue(file, results);
+	}
+
+	/**
+	 * @return File - TestReport/parity.json under the working directory.
+	 */
+	public static File defaultReportFile() {
+		return new File(System.getProperty("user.dir") + "/TestReport", "parity.json");
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 2) {
+			System.out.println("Usage: StubParityCheck [workload.json] [liveBaseUrl]");
+			System.exit(2);
+		}
+		WorkloadDefinition definition = WorkloadDefinition.load(args.length > 0 ? args[0] : DEFAULT_WORKLOAD);
+		String liveBaseUrl = args.length > 1 ? args[1] : ApiUtil.getBaseUrl();
+		HealthAppStubServer server = HealthAppStubServer.fromConfig().start();
+		List<EndpointParity> results;
+		try {
+			long start = System.nanoTime();
+			results = new StubParityCheck(definition, liveBaseUrl, server.getBaseUrl()).run();
+			System.out.println("Parity of " + liveBaseUrl + " and " + server.getBaseUrl() + " checked in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		} finally {
+			server.stop();
+		}
+		int drifted = printReport(results);
+		File report = defaultReportFile();
+		writeReport(results, report);
+		System.out.println("Parity report written to " + report.getPath());
+		System.exit(drifted == 0 ? 0 : 1);
+	}
+
+	private static final class Fetched {
+		private int status;
+		private byte[] body = new byte[0];
+		private long millis;
+		private String error;
+	}
+
+	/**
+	 * The parity verdict for one endpoint.
+	 */
+	public static class EndpointParity {
+
+		private String name;
+		private String endpoint;
+		private int liveStatus;
+		private int stubStatus;
+		private long liveMillis;
+		private long stubMillis;
+		private List<String> drift = new ArrayList<>();
+
+		public boolean isMatching() {
+			return drift.isEmpty();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getEndpoint() {
+			return endpoint;
+		}
+
+		public void setEndpoint(String endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		public int getLiveStatus() {
+			return liveStatus;
+		}
+
+		public void setLiveStatus(int liveStatus) {
+			this.liveStatus = liveStatus;
+		}
+
+		public int getStubStatus() {
+			return stubStatus;
+		}
+
+		public void setStubStatus(int stubStatus) {
+			this.stubStatus = stubStatus;
+		}
+
+		public long getLiveMillis() {
+			return liveMillis;
+		}
+
+		public void setLiveMillis(long liveMillis) {
+			this.liveMillis = liveMillis;
+		}
+
+		public long getStubMillis() {
+			return stubMillis;
+		}
+
+		public void setStubMillis(long stubMillis) {
+			this.stubMillis = stubMillis;
+		}
+
+		/**
+		 * @return List - Human-readable differences; empty when the stub matches.
+		 */
+		public List<String> getDrift() {
+			return drift;
+		}
+
+		public void setDrift(List<String> drift) {
+			this.drift = drift;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package rest.stub;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One request received by the {@link HealthAppStubServer}, independent of the
+ * transport that parsed it. Query parameter names are matched
+ * case-insensitively, as the live ASP.NET backend does.
+ */
+public class StubRequest {
+
+	private final String method;
+	private final String path;
+	private final String rawQuery;
+	private final Map<String, String> query;
+	private final Map<String, String> headers;
+	private final byte[] body;
+
+	public StubRequest(String method, String path, String rawQuery, Map<String, String> headers, byte[] body) {
+		this.method = method;
+		this.path = path;
+		this.rawQuery = rawQuery;
+		this.query = parseQuery(rawQuery);
+		this.headers = headers == null ? Collections.<String, String>emptyMap() : headers;
+		this.body = body == null ? new byte[0] : body;
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new LinkedHashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return query;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			query.put(decode(name).toLowerCase(), decode(value));
+		}
+		return query;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			return value;
+		}
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return String - The query string as received, or null.
+	 */
+	public String getRawQuery() {
+		return rawQuery;
+	}
+
+	/**
+	 * @param name - Query parameter name, any case.
+	 *
+	 * @return String - The decoded value, "" for a bare name, null if absent.
+	 */
+	public String getParameter(String name) {
+		return query.get(name.toLowerCase());
+	}
+
+	/**
+	 * @param name         - Query parameter name, any case.
+	 * @param defaultValue - Returned when the parameter is absent or not a number.
+	 *
+	 * @return int - The parameter as an int.
+	 */
+	public int getIntParameter(String name, int defaultValue) {
+		String value = getParameter(name);
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param name - Header name, any case.
+	 *
+	 * @return String - The header value, or null.
+	 */
+	public String getHeader(String name) {
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			if (header.getKey().equalsIgnoreCase(name)) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+}
@@ -0,0 +1,205 @@
+package rest.stub;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response produced by a {@link StubHandler}. Bodies are either pre-encoded
+ * bytes, so static responses can be built once and served many times, or a
+ * {@link StubBody} streamed out as it is generated. A response can also carry
+ * delivery instructions set by the {@link FaultInjector}: a delay before it is
+ * sent, a slow drip of its body, or a connection reset instead of a response.
+ * Responses are immutable; the {@code with...} methods return copies.
+ */
+public class StubResponse {
+
+	public static final String JSON = "application/json; charset=utf-8";
+
+	private final int statusCode;
+	private final String contentType;
+	private final byte[] body;
+	private final StubBody stream;
+	private long delayMillis;
+	private int dripBytes;
+	private long dripIntervalMillis;
+	private boolean reset;
+	private volatile byte[] encodedHead;
+
+	public StubResponse(int statusCode, String contentType, byte[] body) {
+		this.statusCode = statusCode;
+		this.contentType = contentType;
+		this.body = body;
+		this.stream = null;
+	}
+
+	public StubResponse(int statusCode, String contentType, StubBody stream) {
+		this.statusCode = statusCode;
+		this.contentType = contentType;
+		this.body = null;
+		this.stream = stream;
+	}
+
+	private StubResponse copy() {
+		StubResponse copy = stream == null ? new StubResponse(statusCode, contentType, body)
+				: new StubResponse(statusCode, contentType, stream);
+		copy.delayMillis = delayMillis;
+		copy.dripBytes = dripBytes;
+		copy.dripIntervalMillis = dripIntervalMillis;
+		copy.reset = reset;
+		return copy;
+	}
+
+	/**
+	 * @param millis - Extra time to wait before sending the response.
+	 *
+	 * @return StubResponse - A copy delayed by the given time on top of any
+	 *         existing delay.
+	 */
+	public StubResponse withDelay(long millis) {
+		StubResponse copy = copy();
+		copy.delayMillis += millis;
+		return copy;
+	}
+
+	/**
+	 * @param bytes          - Body bytes sent per write.
+	 * @param intervalMillis - Pause between writes.
+	 *
+	 * @return StubResponse - A copy whose body trickles out.
+	 */
+	public StubResponse withDrip(int bytes, long intervalMillis) {
+		StubResponse copy = copy();
+		copy.dripBytes = Math.max(1, bytes);
+		copy.dripIntervalMillis = intervalMillis;
+		return copy;
+	}
+
+	/**
+	 * @return StubResponse - A copy that is never sent; the connection is reset
+	 *         instead.
+	 */
+	public StubResponse withReset() {
+		StubResponse copy = copy();
+		copy.reset = true;
+		return copy;
+	}
+
+	public static StubResponse json(byte[] body) {
+		return new StubResponse(200, JSON, body);
+	}
+
+	public static StubResponse json(StubBody stream) {
+		return new StubResponse(200, JSON, stream);
+	}
+
+	/**
+	 * Builds an error in the backend's envelope, e.g.
+	 * {"Status":"Failed","ErrorMessage":"...","Results":null}.
+	 *
+	 * @param statusCode - HTTP status.
+	 * @param message    - The ErrorMessage text.
+	 *
+	 * @return StubResponse - The error response.
+	 */
+	public static StubResponse error(int statusCode, String message) {
+		String escaped = message.replace("\\", "\\\\").replace("\"", "\\\"");
+		return new StubResponse(statusCode, JSON,
+				("{\"Status\":\"Failed\",\"ErrorMessage\":\"" + escaped + "\",\"Results\":null}")
+						.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return byte[] - The pre-encoded body, or null for a streamed response.
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * @return StubBody - The streamed body, or null for a pre-encoded response.
+	 */
+	public StubBody getStream() {
+		return stream;
+	}
+
+	public boolean isStreamed() {
+		return stream != null;
+	}
+
+	public long getDelayMillis() {
+		return delayMillis;
+	}
+
+	/**
+	 * @return int - Body bytes per write when dripping, 0 to send at full speed.
+	 */
+	public int getDripBytes() {
+		return dripBytes;
+	}
+
+	public long getDripIntervalMillis() {
+		return dripIntervalMillis;
+	}
+
+	public boolean isReset() {
+		return reset;
+	}
+
+	/**
+	 * The status line and headers as sent on the wire, without the blank line
+	 * that ends them. Built on first use and kept, so a fixture response served
+	 * a million times is encoded once.
+	 *
+	 * @return byte[] - e.g. "HTTP/1.1 200 OK\r\nContent-Type: ...\r\nContent-Length: 42\r\n".
+	 */
+	byte[] encodedHead() {
+		byte[] head = encodedHead;
+		if (head == null) {
+			long length = stream == null ? body.length : stream.length();
+			StringBuilder builder = new StringBuilder(128).append("HTTP/1.1 ").append(statusCode).append(' ')
+					.append(reasonPhrase(statusCode)).append("\r\nContent-Type: ").append(contentType).append("\r\n");
+			if (length < 0) {
+				builder.append("Transfer-Encoding: chunked\r\n");
+			} else {
+				builder.append("Content-Length: ").append(length).append("\r\n");
+			}
+			head = builder.toString().getBytes(StandardCharsets.ISO_8859_1);
+			encodedHead = head;
+		}
+		return head;
+	}
+
+	private static String reasonPhrase(int statusCode) {
+		switch (statusCode) {
+		case 200:
+			return "OK";
+		case 400:
+			return "Bad Request";
+		case 404:
+			return "Not Found";
+		case 413:
+			return "Payload Too Large";
+		case 431:
+			return "Request Header Fields Too Large";
+		case 500:
+			return "Internal Server Error";
+		case 501:
+			return "Not Implemented";
+		case 502:
+			return "Bad Gateway";
+		case 503:
+			return "Service Unavailable";
+		case 504:
+			return "Gateway Timeout";
+		default:
+			return statusCode < 400 ? "OK" : "Error";
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package rest.stub;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+
+/**
+ * Shows how much headroom the stub has over the client it stands in for. Two
+ * runs against the same endpoint of an embedded stub:
+ * <ol>
+ * <li>server capacity - raw keep-alive connections pipelining pre-encoded
+ * requests, so the load generator costs next to nothing;</li>
+ * <li>client ceiling - the same number of threads calling through RestAssured,
+ * the stack ApiUtil uses, as fast as they can.</li>
+ * </ol>
+ * The stub only disappears from harness overhead measurements when the first
+ * number is well above the second. Both load paths run untimed first, so class
+ * loading, RestAssured's Groovy bootstrap and JIT compilation stay out of the
+ * measured windows. Usage:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; rest.stub.StubServerBenchmark [seconds] [threads] [endpoint] [warm-up seconds]
+ * </pre>
+ *
+ * Defaults are 10 seconds per run, 8 threads, /api/AssetReports/GetAllDepartments
+ * and a 3 second warm-up of each path.
+ */
+public class StubServerBenchmark {
+
+	private static final int PIPELINE_DEPTH = 16;
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		String endpoint = args.length > 2 ? args[2] : HealthAppStubServer.API_PREFIX + "/AssetReports/GetAllDepartments";
+		int warmUpSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+		HealthAppStubServer server = HealthAppStubServer.fromConfig().start();
+		try {
+			long durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+			if (warmUpSeconds > 0) {
+				long warmUpNanos = TimeUnit.SECONDS.toNanos(warmUpSeconds);
+				long[] raw = rawLoad(server.getPort(), endpoint, threads, warmUpNanos);
+				long[] restAssured = restAssuredLoad(server.getHostUrl() + endpoint, threads, warmUpNanos);
+				System.out.println(String.format("Warmed up for %d s per path: %d raw and %d RestAssured requests, not counted",
+						warmUpSeconds, raw[0], restAssured[0]));
+			}
+			double capacity = report("stub capacity (raw, pipelined)",
+					rawLoad(server.getPort(), endpoint, threads, durationNanos), durationNanos);
+			double ceiling = report("client ceiling (RestAssured)",
+					restAssuredLoad(server.getHostUrl() + endpoint, threads, durationNanos), durationNanos);
+			System.out.println(String.format("Stub headroom over the client: %.1fx", capacity / Math.max(1, ceiling)));
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static double report(String name, long[] counts, long durationNanos) {
+		double rps = counts[0] / (durationNanos / 1e9);
+		System.out.println(String.format("%-32s %10.0f req/s  %d requests, %d errors", name, rps, counts[0],
+				counts[1]));
+		return rps;
+	}
+
+	/**
+	 * @return long[] - {responses, non-200 responses or failed connections}.
+	 */
+	private static long[] rawLoad(int port, String endpoint, int connections, long durationNanos)
+			throws InterruptedException {
+		byte[] request = ("GET " + endpoint + " HTTP/1.1\r\nHost: 127.0.0.1:" + port
+				+ "\r\nAccept: application/json\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer batch = ByteBuffer.allocateDirect(request.length * PIPELINE_DEPTH);
+		for (int i = 0; i < PIPELINE_DEPTH; i++) {
+			batch.put(request);
+		}
+		batch.flip();
+		LongAdder responses = new LongAdder();
+		LongAdder errors = new LongAdder();
+		long deadline = System.nanoTime() + durationNanos;
+		List<Thread> clients = new ArrayList<>();
+		for (int i = 0; i < connections; i++) {
+			Thread client = new Thread(() -> {
+				try (SocketChannel channel = SocketChannel
+						.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+					ResponseReader reader = new ResponseReader(channel);
+					while (System.nanoTime() - deadline < 0) {
+						ByteBuffer requests = batch.duplicate();
+						while (requests.hasRemaining()) {
+							channel.write(requests);
+						}
+						for (int r = 0; r < PIPELINE_DEPTH; r++) {
+							if (reader.next() != 200) {
+								errors.increment();
+							}
+							responses.increment();
+						}
+					}
+				} catch (IOException e) {
+					errors.increment();
+				}
+			}, "stub-benchmark-raw-" + i);
+			clients.add(client);
+			client.start();
+		}
+		for (Thread client : clients) {
+			client.join();
+		}
+		return new long[] { responses.sum(), errors.sum() };
+	}
+
+	/**
+	 * @return long[] - {responses, non-200 responses or exceptions}.
+	 */
+	private static long[] restAssuredLoad(String url, int threads, long durationNanos) throws InterruptedException {
+		LongAdder responses = new LongAdder();
+		LongAdder errors = new LongAdder();
+		long deadline = System.nanoTime() + durationNanos;
+		List<Thread> clients = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			Thread client = new Thread(() -> {
+				while (System.nanoTime() - deadline < 0) {
+					try {
+						Response response = RestAssured.given().header("Accept", "application/json").get(url);
+						if (response.getStatusCode() != 200) {
+							errors.increment();
+						}
+						response.asByteArray();
+						responses.increment();
+					} catch (RuntimeException e) {
+						errors.increment();
+					}
+				}
+			}, "stub-benchmark-client-" + i);
+			clients.add(client);
+			client.start();
+		}
+		for (Thread client : clients) {
+			client.join();
+		}
+		return new long[] { responses.sum(), errors.sum() };
+	}
+
+	/**
+	 * Reads consecutive Content-Length or chunked framed responses off a
+	 * blocking channel, keeping only their status codes. Chunked bodies are
+	 * what a generated dataset (stub.dataset.rows) is streamed as.
+	 */
+	private static final class ResponseReader {
+
+		private final SocketChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+
+		ResponseReader(SocketChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		int next() throws IOException {
+			int end;
+			while ((end = endOfHead()) < 0) {
+				fill();
+			}
+			String head = new String(buffer.array(), buffer.position(), end - buffer.position(),
+					StandardCharsets.ISO_8859_1);
+			buffer.position(end + 4);
+			try {
+				int status = Integer.parseInt(head.substring(9, 12));
+				long remaining = 0;
+				boolean chunked = false;
+				for (String line : head.split("\r\n")) {
+					if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+						remaining = Long.parseLong(line.substring(15).trim());
+					} else if (line.regionMatches(true, 0, "Transfer-Encoding:", 0, 18)) {
+						chunked = line.substring(18).trim().equalsIgnoreCase("chunked");
+					}
+				}
+				if (!chunked) {
+					skip(remaining);
+					return status;
+				}
+				long size;
+				while ((size = Long.parseLong(chunkSize(line()), 16)) > 0) {
+					skip(size);
+					line();
+				}
+				// trailers, then the blank line that ends the body
+				String trailer;
+				do {
+					trailer = line();
+				} while (!trailer.isEmpty());
+				return status;
+			} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+				throw new IOException("Malformed response from the stub: " + e.getMessage());
+			}
+		}
+
+		private static String chunkSize(String line) {
+			int extension = line.indexOf(';');
+			return (extension < 0 ? line : line.substring(0, extension)).trim();
+		}
+
+		private void skip(long remaining) throws IOException {
+			while (remaining > 0) {
+				if (!buffer.hasRemaining()) {
+					fill();
+				}
+				int skip = (int) Math.min(remaining, buffer.remaining());
+				buffer.position(buffer.position() + skip);
+				remaining -= skip;
+			}
+		}
+
+		private String line() throws IOException {
+			while (true) {
+				byte[] bytes = buffer.array();
+				for (int i = buffer.position(); i < buffer.limit() - 1; i++) {
+					if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+						String line = new String(bytes, buffer.position(), i - buffer.position(),
+								StandardCharsets.ISO_8859_1);
+						buffer.position(i + 2);
+						return line;
+					}
+				}
+				fill();
+			}
+		}
+
+		private int endOfHead() {
+			byte[] bytes = buffer.array();
+			for (int i = buffer.position(), last = buffer.limit() - 4; i <= last; i++) {
+				if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void fill() throws IOException {
+			buffer.compact();
+			int read = channel.read(buffer);
+			buffer.flip();
+			if (read < 0) {
+				throw new EOFException("Stub closed the connection");
+			}
+		}
+	}
+}
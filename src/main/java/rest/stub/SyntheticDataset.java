@@ -0,0 +1,209 @@
+package rest.stub;
+
+import restConfig.ConfigManager;
+
+/**
+ * Seeded, deterministic data for the stub's list endpoints at any scale (10,
+ * 10k or 10M rows of departments, items, incentive rows, referrers and clinical
+ * notes). Every field of row i is derived from a hash of (seed, entity, i,
+ * field), so the same seed always yields the same bytes, any row can be
+ * generated on its own, and responses are streamed out row by row without
+ * being built in memory.
+ *
+ * Values follow rough real-world shapes: names are drawn with a skew toward the
+ * common ones, amounts are log-normal, flags are mostly true, and note
+ * timestamps spread over working hours.
+ *
+ * The row count comes from stub.dataset.rows in config.properties and can be
+ * overridden per request with the "__rows" query parameter, e.g.
+ * {@code /api/AssetReports/GetAllItems?__rows=10000000}.
+ */
+public class SyntheticDataset {
+
+	public static final String ROWS_PARAMETER = "__rows";
+	public static final int NOTES_PATIENT_ID = 176;
+
+	public enum Entity {
+		DEPARTMENTS, ITEMS, INCENTIVES, REFERRERS, CLINICAL_NOTES
+	}
+
+	private static final String[] DEPARTMENTS = { "General Medicine", "Laboratory", "Radiology", "Pharmacy",
+			"Emergency", "Cardiology", "Orthopedics", "Pediatrics", "Gynecology", "Dental", "ENT", "Dermatology",
+			"Neurology", "Nephrology", "Oncology", "Psychiatry", "Physiotherapy", "Administration" };
+	private static final String[] ITEMS = { "Syringe", "Surgical Gloves", "Gauze Roll", "IV Cannula", "Face Mask",
+			"Cotton Roll", "Bandage", "Catheter", "Thermometer", "Oxygen Mask", "Wheel Chair", "Stretcher",
+			"Hospital Bed", "Infusion Pump", "Patient Monitor", "ECG Machine", "Autoclave", "Nebulizer" };
+	private static final String[] ITEM_SIZES = { "Small", "Medium", "Large", "5ml", "10ml", "Standard" };
+	private static final String[] FIRST_NAMES = { "Amit", "Pooja", "Rakesh", "Sunita", "Anil", "Meera", "Vikram",
+			"Kavita", "Suresh", "Priya", "Rahul", "Neha", "Sanjay", "Anjali", "Deepak", "Ritu", "Manoj", "Asha" };
+	private static final String[] LAST_NAMES = { "Sharma", "Shah", "Verma", "Rao", "Singh", "Nair", "Joshi", "Iyer",
+			"Gupta", "Kapoor", "Mishra", "Reddy", "Patel", "Das", "Menon", "Kulkarni" };
+	private static final String[] NOTE_TYPES = { "Progress Note", "History & Physical", "Consultation Note",
+			"Discharge Summary", "Procedure Note", "Emergency Note" };
+	private static final long NOTES_FROM = 1577836800L; // 2020-01-01T00:00:00
+	private static final long NOTES_DAYS = 1826;
+
+	private final long seed;
+	private final long defaultRows;
+
+	/**
+	 * @param seed        - Seed every value is derived from.
+	 * @param defaultRows - Rows per list response when the request does not say.
+	 */
+	public SyntheticDataset(long seed, long defaultRows) {
+		this.seed = seed;
+		this.defaultRows = defaultRows;
+	}
+
+	/**
+	 * @return SyntheticDataset - A dataset from stub.dataset.seed and
+	 *         stub.dataset.rows, or null when stub.dataset.rows is not set (the
+	 *         stub then serves its canned fixtures).
+	 */
+	public static SyntheticDataset fromConfig() {
+		String rows = ConfigManager.getProperty("stub.dataset.rows", null);
+		if (rows == null) {
+			return null;
+		}
+		return new SyntheticDataset(Long.parseLong(ConfigManager.getProperty("stub.dataset.seed", "42")),
+				Long.parseLong(rows));
+	}
+
+	/**
+	 * Replaces the canned fixtures of the five list endpoints with streamed
+	 * generated data.
+	 *
+	 * @param server - The stub server to re-route.
+	 */
+	public void registerOn(HealthAppStubServer server) {
+		for (Entity entity : Entity.values()) {
+			server.route(pathOf(entity), request -> StubResponse
+					.json(stream(entity, rowsFor(request), request.getIntParameter("patientId", NOTES_PATIENT_ID))));
+		}
+	}
+
+	/**
+	 * @param entity - A list entity.
+	 *
+	 * @return String - The stub path that serves it.
+	 */
+	static String pathOf(Entity entity) {
+		switch (entity) {
+		case DEPARTMENTS:
+			return HealthAppStubServer.API_PREFIX + "/AssetReports/GetAllDepartments";
+		case ITEMS:
+			return HealthAppStubServer.API_PREFIX + "/AssetReports/GetAllItems";
+		case INCENTIVES:
+			return "/BillingReports/INCTV_DocterSummary";
+		case REFERRERS:
+			return HealthAppStubServer.API_PREFIX + "/EmployeeSettings/Referrers";
+		default:
+			return HealthAppStubServer.API_PREFIX + "/Clinical/PatientNotes";
+		}
+	}
+
+	private long rowsFor(StubRequest request) {
+		String rows = request.getParameter(ROWS_PARAMETER);
+		return rows == null ? defaultRows : Long.parseLong(rows);
+	}
+
+	/**
+	 * Opens a streamed {"Status":"OK","Results":...} response.
+	 *
+	 * @param entity    - What to generate.
+	 * @param rows      - How many rows.
+	 * @param patientId - Owner of the rows, for CLINICAL_NOTES.
+	 *
+	 * @return StubBody - A single-use body; call again for every response.
+	 */
+	public StubBody stream(Entity entity, long rows, int patientId) {
+		switch (entity) {
+		case DEPARTMENTS:
+			return list(rows, this::department);
+		case ITEMS:
+			return list(rows, this::item);
+		case INCENTIVES:
+			return new GeneratedJsonBody("{\"Status\":\"OK\",\"Results\":{\"JsonData\":\"[", "]\"}}", rows, true,
+					this::incentive);
+		case REFERRERS:
+			return list(rows, this::referrer);
+		default:
+			return list(rows, (index, row) -> note(patientId, index, row));
+		}
+	}
+
+	private static StubBody list(long rows, GeneratedJsonBody.RowEncoder encoder) {
+		return new GeneratedJsonBody("{\"Status\":\"OK\",\"Results\":[", "]}", rows, false, encoder);
+	}
+
+	private void department(long index, GeneratedJsonBody.Row row) {
+		row.begin().number("DepartmentId", index + 1).openText("DepartmentName")
+				.append(DEPARTMENTS[(int) (index % DEPARTMENTS.length)]);
+		if (index >= DEPARTMENTS.length) {
+			row.append(" ").append(index / DEPARTMENTS.length + 1);
+		}
+		row.closeText().end();
+	}
+
+	private void item(long index, GeneratedJsonBody.Row row) {
+		row.begin().number("ItemId", index + 1).openText("ItemName")
+				.append(pick(ITEMS, Entity.ITEMS, index, 0)).append(" ")
+				.append(pick(ITEM_SIZES, Entity.ITEMS, index, 1)).closeText().end();
+	}
+
+	private void incentive(long index, GeneratedJsonBody.Row row) {
+		long total = logNormalCents(Entity.INCENTIVES, index, 0, 8000, 1.0);
+		long tds = total * (uniform(Entity.INCENTIVES, index, 1) < 0.8 ? 15 : 10) / 100;
+		row.begin().openText("PrescriberName").append("Dr. ").append(pick(FIRST_NAMES, Entity.INCENTIVES, index, 2))
+				.append(" ").append(pick(LAST_NAMES, Entity.INCENTIVES, index, 3)).closeText()
+				.number("PrescriberId", index + 1).amount("DocTotalAmount", total).amount("TDSAmount", tds)
+				.amount("NetPayableAmount", total - tds).end();
+	}
+
+	private void referrer(long index, GeneratedJsonBody.Row row) {
+		row.begin().number("EmployeeId", index + 301).openText("FullName").append("Dr. ")
+				.append(pick(FIRST_NAMES, Entity.REFERRERS, index, 0)).append(" ")
+				.append(pick(LAST_NAMES, Entity.REFERRERS, index, 1)).closeText()
+				.bool("IsExternal", uniform(Entity.REFERRERS, index, 2) < 0.3)
+				.bool("IsActive", uniform(Entity.REFERRERS, index, 3) < 0.95).end();
+	}
+
+	private void note(int patientId, long index, GeneratedJsonBody.Row row) {
+		long day = (long) (uniform(Entity.CLINICAL_NOTES, index, 0) * NOTES_DAYS);
+		long second = 8 * 3600 + (long) (uniform(Entity.CLINICAL_NOTES, index, 1) * 10 * 3600);
+		row.begin().number("PatientId", patientId).number("NotesId", index + 1)
+				.timestamp("CreatedOn", NOTES_FROM + day * 86400 + second).openText("VisitCode").append("V")
+				.append(100000 + index / 3).closeText()
+				.text("NoteType", pick(NOTE_TYPES, Entity.CLINICAL_NOTES, index, 2)).end();
+	}
+
+	/**
+	 * @return String - A vocabulary entry, skewed toward the front of the list.
+	 */
+	private String pick(String[] vocabulary, Entity entity, long index, int field) {
+		double u = uniform(entity, index, field);
+		return vocabulary[(int) (u * u * vocabulary.length)];
+	}
+
+	private long logNormalCents(Entity entity, long index, int field, double median, double sigma) {
+		double u1 = Math.max(uniform(entity, index, field), Double.MIN_VALUE);
+		double u2 = uniform(entity, index, field + 100);
+		double normal = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+		return Math.round(median * Math.exp(sigma * normal) * 100);
+	}
+
+	/**
+	 * @return double - A uniform value in [0, 1) fixed by (seed, entity, index,
+	 *         field).
+	 */
+	double uniform(Entity entity, long index, int field) {
+		return (mix(seed ^ mix(entity.ordinal() * 0x9E3779B97F4A7C15L + index) + field) >>> 11) * 0x1.0p-53;
+	}
+
+	// SplitMix64 finaliser
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
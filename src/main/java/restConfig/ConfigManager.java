@@ -16,7 +16,30 @@ public class ConfigManager {
 		}
 	}
 
+	/**
+	 * Reads a setting. A JVM system property of the same name (e.g.
+	 * {@code -Dbase.url=...}) takes precedence over config.properties.
+	 *
+	 * @param key - The property name.
+	 *
+	 * @return String - The value, or null if it is not set anywhere.
+	 */
 	public static String getProperty(String key) {
-		return props.getProperty(key);
+		return System.getProperty(key, props.getProperty(key));
+	}
+
+	/**
+	 * Reads a setting like {@link #getProperty(String)}, trimmed. A key that is
+	 * missing or set to an empty value (e.g. {@code stub.snapshot=}) falls back
+	 * to the default.
+	 *
+	 * @param key          - The property name.
+	 * @param defaultValue - Used when the setting is missing or blank.
+	 *
+	 * @return String - The trimmed value, or defaultValue.
+	 */
+	public static String getProperty(String key, String defaultValue) {
+		String value = getProperty(key);
+		return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
 	}
 }
@@ -0,0 +1,96 @@
+package coreUtilities.testlisteners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class EventRingTest {
+
+	private static final int PRODUCERS = 8;
+	private static final int EVENTS = 20000;
+
+	@Test(description = "1. Publish from 8 threads at once into a ring of 8 slots\n"
+			+ "2. Verify the handler saw every event exactly once, in order per producer, and nothing was dropped.")
+	public void multiProducerPutTest() throws Exception {
+		// written by the consumer thread only, read once the ring is drained
+		int[] next = new int[PRODUCERS];
+		List<String> errors = Collections.synchronizedList(new ArrayList<>());
+		EventRing<int[]> ring = new EventRing<int[]>("ring-test", 8, event -> {
+			if (event[1] != next[event[0]]) {
+				errors.add("producer " + event[0] + " event " + event[1] + " after " + (next[event[0]] - 1));
+			}
+			next[event[0]] = event[1] + 1;
+		}).start();
+		CountDownLatch go = new CountDownLatch(1);
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < PRODUCERS; p++) {
+			int producer = p;
+			Thread thread = new Thread(() -> {
+				try {
+					go.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < EVENTS; i++) {
+					ring.put(new int[] { producer, i });
+				}
+			}, "ring-producer-" + p);
+			producers.add(thread);
+			thread.start();
+		}
+		go.countDown();
+		for (Thread producer : producers) {
+			producer.join(TimeUnit.SECONDS.toMillis(60));
+			Assert.assertFalse(producer.isAlive(), producer.getName() + " should have published everything.");
+		}
+		Assert.assertTrue(ring.awaitDrained(30000), "The ring should drain: " + ring);
+		Assert.assertEquals(errors, Collections.emptyList(), "Each producer's events should arrive in order.");
+		for (int p = 0; p < PRODUCERS; p++) {
+			Assert.assertEquals(next[p], EVENTS, "Every event of producer " + p + " should be handled.");
+		}
+		Assert.assertEquals(ring.getPublished(), (long) PRODUCERS * EVENTS, "Every put should publish.");
+		Assert.assertEquals(ring.getDropped(), 0L, "put() should never drop an event.");
+		Assert.assertEquals(ring.getDepth(), 0L, "Nothing should be left in the ring.");
+	}
+
+	@Test(description = "1. Block the handler on its first event and fill the ring\n"
+			+ "2. Verify a further offer times out and is counted as dropped\n"
+			+ "3. Verify awaitDrained fails while the handler is blocked and succeeds only once it has seen every event.")
+	public void offerTimeoutAndDrainTest() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+		EventRing<Integer> ring = new EventRing<Integer>("ring-test", 2, event -> {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			seen.add(event);
+		}).start();
+		try {
+			ring.put(0);
+			Assert.assertTrue(entered.await(10, TimeUnit.SECONDS), "The handler should take the first event.");
+			Assert.assertTrue(ring.offer(1, 1000), "The ring should have room for a second event.");
+			Assert.assertTrue(ring.offer(2, 1000), "The ring should have room for a third event.");
+			Assert.assertFalse(ring.offer(3, 50), "A full ring should drop the event once the offer times out.");
+			Assert.assertFalse(ring.offer(4, 50), "A full ring should drop the event once the offer times out.");
+			Assert.assertEquals(ring.getDropped(), 2L, "Each timed out offer should be counted as dropped.");
+			Assert.assertFalse(ring.awaitDrained(200), "The ring cannot drain while the handler is blocked.");
+			Assert.assertTrue(seen.isEmpty(), "The blocked handler should not have finished any event.");
+		} finally {
+			release.countDown();
+		}
+		Assert.assertTrue(ring.awaitDrained(10000), "The ring should drain once the handler is released: " + ring);
+		Assert.assertEquals(seen, Arrays.asList(0, 1, 2), "Only the published events should be handled.");
+		Assert.assertEquals(ring.getPublished(), 3L, "Dropped events should not count as published.");
+		Assert.assertTrue(ring.getStalls() >= 2, "Each offer into the full ring should count as a stall.");
+	}
+}
@@ -0,0 +1,177 @@
+package coreUtilities.testutils;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import rest.stub.FaultProfile;
+import rest.stub.FaultRule;
+import rest.stub.HealthAppStubServer;
+import rest.stub.ResultReceiver;
+
+public class ResultPublisherTest {
+
+	private static final int RESULTS = 16;
+
+	@Test(groups = { "stub" }, description = "1. Publish results while the receiver is down, so they are spooled\n"
+			+ "2. Start the receiver and drain the spool twice, as ResultPublisher.main does\n"
+			+ "3. Verify every result arrived exactly once.")
+	public void replayDeliversEachResultOnceTest() throws Exception {
+		int port;
+		try (ServerSocket free = new ServerSocket(0)) {
+			port = free.getLocalPort();
+		}
+		String url = "http://127.0.0.1:" + port + ResultReceiver.PUSH_PATH;
+		File spoolFile = File.createTempFile("results-spool", ".ndjson");
+		spoolFile.delete();
+		// the suite's own publisher uses the configured spool and URL, so pointing them here
+		// makes any second publisher on this spool show up as duplicates
+		System.setProperty("results.spool", spoolFile.getPath());
+		System.setProperty("results.push.url", url);
+		HealthAppStubServer server = null;
+		try {
+			ResultSpool spool = new ResultSpool(spoolFile);
+			ResultPublisher publisher = new ResultPublisher(url, RESULTS, 4, spool).start();
+			for (int i = 0; i < RESULTS; i++) {
+				publisher.publish(result(i));
+			}
+			Assert.assertTrue(publisher.flush(30000), "Every result should have been tried.");
+			Assert.assertEquals(publisher.getSent(), 0L, "Nothing can be sent while the receiver is down.");
+			Assert.assertEquals(spool.pending().size(), RESULTS, "Every result should be spooled.");
+			spool.close();
+
+			server = new HealthAppStubServer(port, 1).start();
+			ResultReceiver receiver = server.getResultReceiver();
+			for (int replay = 0; replay < 2; replay++) {
+				ResultSpool drained = new ResultSpool(spoolFile);
+				Assert.assertEquals(new ResultPublisher(url, 1, 1, drained).replayPending(), 0,
+						"Nothing should be left in the spool after replay " + (replay + 1) + ".");
+				drained.close();
+			}
+			Assert.assertEquals(receiver.getUniqueCount(), (long) RESULTS, "Every result should arrive.");
+			Assert.assertEquals(receiver.getDuplicateCount(), 0L, "No result should be sent twice.");
+		} finally {
+			System.clearProperty("results.spool");
+			System.clearProperty("results.push.url");
+			if (server != null) {
+				server.stop();
+			}
+			spoolFile.delete();
+		}
+	}
+
+	@Test(groups = { "stub" }, description = "1. Stream results to the receiver while it answers the upload with 503\n"
+			+ "2. Stream more results, changing their metadata twice, and end the upload with a 200\n"
+			+ "3. Verify one header per metadata change, that every envelope is rebuilt, and that only the results "
+			+ "of the accepted upload leave the spool, and only once it is accepted.")
+	public void streamedUploadTest() throws Exception {
+		int port;
+		int deadPort;
+		try (ServerSocket free = new ServerSocket(0); ServerSocket dead = new ServerSocket(0)) {
+			port = free.getLocalPort();
+			deadPort = dead.getLocalPort();
+		}
+		File spoolFile = File.createTempFile("results-spool", ".ndjson");
+		spoolFile.delete();
+		HealthAppStubServer server = new HealthAppStubServer(port, 1).start();
+		try {
+			ResultReceiver receiver = server.getResultReceiver();
+			ResultSpool spool = new ResultSpool(spoolFile);
+			// replays POST to the push URL, which is down, so only the upload can take results
+			ResultPublisher publisher = new ResultPublisher("http://127.0.0.1:" + deadPort + ResultReceiver.PUSH_PATH,
+					64, 3, spool).streamTo(new StreamingResultUploader(server.getHostUrl() + ResultReceiver.STREAM_PATH))
+					.start();
+
+			server.getFaultInjector().setProfile(refuse(ResultReceiver.STREAM_PATH, 503));
+			for (int i = 0; i < 4; i++) {
+				publisher.publish(result(i, "attempt-0", null));
+			}
+			Assert.assertTrue(publisher.flush(30000), "The refused upload should end.");
+			Assert.assertEquals(publisher.getSent(), 0L, "A refused upload delivers nothing.");
+			Assert.assertEquals(spool.pending().size(), 4, "A refused upload should leave its results spooled.");
+			server.getFaultInjector().clear();
+			receiver.clear();
+
+			for (int i = 0; i < 8; i++) {
+				TestResults results = i < 3 ? result(i, "attempt-1", null)
+						: result(i, "attempt-2", i < 6 ? null : "retry");
+				publisher.publish(results);
+			}
+			long deadline = System.currentTimeMillis() + 30000;
+			while (publisher.getPending() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(publisher.getPending(), 0L, "Every result should be written to the upload.");
+			Map<String, TestResults> streamed = new LinkedHashMap<>();
+			for (ResultSpool.Record record : spool.pending()) {
+				if (!"attempt-0".equals(record.getResults().getAttemptId())) {
+					streamed.put(record.getId(), record.getResults());
+				}
+			}
+			Assert.assertEquals(streamed.size(), 8, "Results written to an open upload should stay spooled.");
+			Assert.assertEquals(receiver.getUniqueCount(), 0L, "The receiver takes the upload only once it ends.");
+
+			Assert.assertTrue(publisher.flush(30000), "The accepted upload should end.");
+			Assert.assertEquals(publisher.getSent(), 8L, "The accepted upload should deliver its results.");
+			Assert.assertEquals(receiver.getHeaderCount(), 3L, "One header should be sent per metadata change.");
+			Assert.assertEquals(receiver.getUniqueCount(), 8L, "Every streamed result should arrive.");
+			ObjectMapper mapper = new ObjectMapper();
+			for (Map.Entry<String, TestResults> entry : streamed.entrySet()) {
+				byte[] received = receiver.getResult(entry.getKey());
+				Assert.assertNotNull(received, "Result " + entry.getKey() + " should arrive.");
+				Map<String, Object> envelope = mapper.readValue(received, new TypeReference<Map<String, Object>>() {
+				});
+				TestResults expected = entry.getValue();
+				Assert.assertEquals(envelope.get("hostName"), expected.getHostName(), "hostName of " + entry.getKey());
+				Assert.assertEquals(envelope.get("attemptId"), expected.getAttemptId(),
+						"attemptId of " + entry.getKey());
+				Assert.assertEquals(envelope.get("customData"), expected.getCustomData(),
+						"customData of " + entry.getKey());
+				Assert.assertEquals(envelope.get("testCaseResults"), expected.getTestCaseResults(),
+						"testCaseResults of " + entry.getKey());
+			}
+			Assert.assertEquals(spool.pending().size(), 4,
+					"Only the results of the refused upload should be left for a replay.");
+			for (ResultSpool.Record record : spool.pending()) {
+				Assert.assertEquals(record.getResults().getAttemptId(), "attempt-0",
+						"Only the refused upload's results should stay spooled.");
+			}
+			spool.close();
+		} finally {
+			server.stop();
+			spoolFile.delete();
+		}
+	}
+
+	private static FaultProfile refuse(String endpoint, int statusCode) {
+		FaultRule rule = new FaultRule();
+		rule.setEndpoint(endpoint);
+		rule.setType("error");
+		rule.setPercent(100);
+		rule.setStatusCode(statusCode);
+		FaultProfile profile = new FaultProfile();
+		profile.setRules(Collections.singletonList(rule));
+		return profile;
+	}
+
+	private static TestResults result(int number) {
+		return result(number, "attempt-1", null);
+	}
+
+	private static TestResults result(int number, String attemptId, String customData) {
+		TestResults results = new TestResults();
+		results.setHostName("spool-test");
+		results.setAttemptId(attemptId);
+		results.setCustomData(customData);
+		results.setTestCaseResults("{\"test" + number + "\":{\"result\":\"Passed\"}}");
+		return results;
+	}
+}
@@ -0,0 +1,103 @@
+package rest.stub;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AppointmentStoreTest {
+
+	private static final int BOOKINGS = 400;
+	private static final int SLOTS = 20;
+
+	@Test(groups = { "stub" }, description = "1. Race 400 concurrent bookings over 20 distinct slots\n"
+			+ "2. Verify exactly one booking per slot succeeds and every other one is refused as a clash.")
+	public void concurrentBookingsTest() throws Exception {
+		AppointmentStore store = new AppointmentStore(64);
+		ExecutorService pool = Executors.newFixedThreadPool(64);
+		CountDownLatch go = new CountDownLatch(1);
+		List<Future<Integer>> statuses = new ArrayList<>();
+		try {
+			for (int i = 0; i < BOOKINGS; i++) {
+				int slot = i % SLOTS;
+				// half of the bookings name the performer as well, as clashAppointmentData.json does
+				Map<String, Object> body = booking(slot % 4 + 1, i % 2 == 0 ? null : "Dr. Performer " + (slot % 4 + 1),
+						"2024-11-12", String.format("%02d:00:00", 8 + slot / 4));
+				Callable<Integer> book = () -> {
+					go.await();
+					return store.book(body).getStatusCode();
+				};
+				statuses.add(pool.submit(book));
+			}
+			go.countDown();
+			int booked = 0;
+			int clashed = 0;
+			for (Future<Integer> status : statuses) {
+				int code = status.get(30, TimeUnit.SECONDS);
+				if (code == 200) {
+					booked++;
+				} else if (code == 409) {
+					clashed++;
+				} else {
+					Assert.fail("Unexpected status " + code);
+				}
+			}
+			Assert.assertEquals(booked, SLOTS, "Exactly one booking per slot should succeed.");
+			Assert.assertEquals(clashed, BOOKINGS - SLOTS, "Every other booking should clash.");
+			Assert.assertEquals(store.getAppointmentCount(), SLOTS, "Only the successful bookings should be stored.");
+			Assert.assertEquals(store.getClashCount(), BOOKINGS - SLOTS, "Every refusal should be counted as a clash.");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test(groups = { "stub" }, description = "1. Book a slot by performer id only\n"
+			+ "2. Book the same slot by performer name and id\n" + "3. Verify the second booking clashes.")
+	public void performerIdAndNameClashTest() {
+		AppointmentStore store = new AppointmentStore(64);
+		Assert.assertEquals(store.book(booking(48, null, "2024-11-12", "11:30:00")).getStatusCode(), 200);
+		Assert.assertEquals(store.book(booking(48, "Dr. pooja Mishra", "2024-11-12", "11:30:00")).getStatusCode(),
+				409, "The same performer id should clash whether or not the name is given.");
+		Assert.assertEquals(store.book(booking(0, "dr. Pooja Mishra", "2024-11-12", "11:30")).getStatusCode(), 409,
+				"A name paired with an id before should clash with that id's bookings.");
+	}
+
+	@Test(groups = { "stub" }, description = "1. Book a slot by performer name only\n"
+			+ "2. Book the same slot by performer id and name\n" + "3. Book it again by performer id only\n"
+			+ "4. Verify both later bookings clash.")
+	public void performerNameThenIdClashTest() {
+		AppointmentStore store = new AppointmentStore(64);
+		Assert.assertEquals(store.book(booking(0, "Dr X", "2024-11-12", "10:00:00")).getStatusCode(), 200);
+		Assert.assertEquals(store.book(booking(5, "Dr X", "2024-11-12", "10:00:00")).getStatusCode(), 409,
+				"A booking by name should clash once the name is paired with an id.");
+		Assert.assertEquals(store.book(booking(5, null, "2024-11-12", "10:00:00")).getStatusCode(), 409,
+				"A booking by id should clash with bookings made by its paired name.");
+		Assert.assertEquals(store.book(booking(5, null, "2024-11-12", "10:30:00")).getStatusCode(), 200,
+				"Another slot of the same performer should still be free.");
+		Assert.assertEquals(store.getAppointmentCount(), 2, "Only the two free slots should be booked.");
+	}
+
+	private static Map<String, Object> booking(int performerId, String performerName, String date, String time) {
+		Map<String, Object> body = new HashMap<>();
+		body.put("FirstName", "Race");
+		body.put("LastName", "Patient");
+		body.put("AppointmentDate", date);
+		body.put("AppointmentTime", time);
+		if (performerId > 0) {
+			body.put("PerformerId", performerId);
+		}
+		if (performerName != null) {
+			body.put("PerformerName", performerName);
+		}
+		return body;
+	}
+}